@@ -0,0 +1,460 @@
+package com.aws.services.benchmark;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeSet;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.CRC32C;
+
+/**
+ * In-process stand-in for the subset of the S3 REST API (path-style) and the SQS JSON API that the services
+ * use. Every request is delayed by a fixed latency to approximate the network round trip. Received SQS
+ * messages are generated on the fly so receives always return full batches.
+ */
+public class AwsStandInServer implements AutoCloseable {
+
+	private static final ObjectMapper MAPPER = new ObjectMapper();
+	private static final int MAX_KEYS = 1000;
+
+	private final HttpServer server;
+	private final ExecutorService executor;
+	private final long latencyMillis;
+	private final Map<String, NavigableMap<String, StoredObject>> buckets = new ConcurrentHashMap<>();
+	private final Map<String, Map<Integer, byte[]>> multipartUploads = new ConcurrentHashMap<>();
+	private final AtomicLong sequence = new AtomicLong();
+	private final AtomicLong s3Window = new AtomicLong();
+	private volatile int s3RequestsPerSecond;
+
+	public AwsStandInServer(long latencyMillis) throws IOException {
+		this.latencyMillis = latencyMillis;
+		// Without TCP_NODELAY small responses wait on delayed ACKs and dominate the measured latency
+		System.setProperty("sun.net.httpserver.nodelay", "true");
+		this.server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 1024);
+		// One thread per in-flight request, so the stand-in never caps the concurrency under test
+		this.executor = Executors.newCachedThreadPool();
+		server.setExecutor(executor);
+		server.createContext("/", this::handle);
+		server.start();
+	}
+
+	public String endpoint() {
+		return "http://127.0.0.1:" + server.getAddress().getPort();
+	}
+
+	/**
+	 * Stores an object directly, e.g. to prepare a prefix for listing and download benchmarks.
+	 */
+	public void putObject(String bucket, String key, byte[] content) {
+		buckets.computeIfAbsent(bucket, name -> new ConcurrentSkipListMap<>()).put(key, new StoredObject(content, md5(content), null,
+				crc32c(content)));
+	}
+
+	/**
+	 * Answers S3 requests beyond this many per second with 503 SlowDown, as S3 does above a prefix's request
+	 * rate; 0 (the default) never throttles.
+	 */
+	public void setS3RequestsPerSecond(int requestsPerSecond) {
+		this.s3RequestsPerSecond = requestsPerSecond;
+	}
+
+	@Override
+	public void close() {
+		server.stop(0);
+		executor.shutdownNow();
+	}
+
+	private void handle(HttpExchange exchange) throws IOException {
+		try (exchange) {
+			if (latencyMillis > 0) {
+				Thread.sleep(latencyMillis);
+			}
+			String target = exchange.getRequestHeaders().getFirst("X-Amz-Target");
+			if (target != null && target.startsWith("AmazonSQS.")) {
+				handleSqs(exchange, target.substring("AmazonSQS.".length()));
+			} else {
+				handleS3(exchange);
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} catch (RuntimeException e) {
+			send(exchange, 500, "text/plain", String.valueOf(e).getBytes(StandardCharsets.UTF_8), Map.of());
+		}
+	}
+
+	// ---- SQS -------------------------------------------------------------------------------------------
+
+	private void handleSqs(HttpExchange exchange, String operation) throws IOException {
+		JsonNode request = MAPPER.readTree(exchange.getRequestBody());
+		ObjectNode response = MAPPER.createObjectNode();
+		switch (operation) {
+			case "GetQueueUrl" -> response.put("QueueUrl", endpoint() + "/000000000000/" + request.path("QueueName").asText());
+			case "SendMessage" -> {
+				response.put("MessageId", UUID.randomUUID().toString());
+				response.put("MD5OfMessageBody", md5Hex(request.path("MessageBody").asText()));
+				if (request.has("MessageGroupId")) {
+					response.put("SequenceNumber", String.valueOf(sequence.incrementAndGet()));
+				}
+			}
+			case "SendMessageBatch" -> {
+				ArrayNode successful = response.putArray("Successful");
+				response.putArray("Failed");
+				for (JsonNode entry : request.path("Entries")) {
+					ObjectNode result = successful.addObject();
+					result.put("Id", entry.path("Id").asText());
+					result.put("MessageId", UUID.randomUUID().toString());
+					result.put("MD5OfMessageBody", md5Hex(entry.path("MessageBody").asText()));
+				}
+			}
+			case "ReceiveMessage" -> {
+				ArrayNode messages = response.putArray("Messages");
+				int count = Math.max(1, request.path("MaxNumberOfMessages").asInt(1));
+				for (int i = 0; i < count; i++) {
+					String body = "{\"sequence\":" + sequence.incrementAndGet() + "}";
+					ObjectNode message = messages.addObject();
+					message.put("MessageId", UUID.randomUUID().toString());
+					message.put("ReceiptHandle", UUID.randomUUID().toString());
+					message.put("MD5OfBody", md5Hex(body));
+					message.put("Body", body);
+				}
+			}
+			case "DeleteMessageBatch", "ChangeMessageVisibilityBatch" -> {
+				ArrayNode successful = response.putArray("Successful");
+				response.putArray("Failed");
+				for (JsonNode entry : request.path("Entries")) {
+					successful.addObject().put("Id", entry.path("Id").asText());
+				}
+			}
+			case "DeleteMessage", "ChangeMessageVisibility" -> {
+				// empty response
+			}
+			default -> {
+				send(exchange, 400, "application/x-amz-json-1.0",
+						("{\"__type\":\"InvalidAction\",\"message\":\"" + operation + "\"}").getBytes(StandardCharsets.UTF_8), Map.of());
+				return;
+			}
+		}
+		send(exchange, 200, "application/x-amz-json-1.0", MAPPER.writeValueAsBytes(response), Map.of());
+	}
+
+	// ---- S3 --------------------------------------------------------------------------------------------
+
+	private void handleS3(HttpExchange exchange) throws IOException {
+		String path = exchange.getRequestURI().getRawPath();
+		Map<String, String> query = parseQuery(exchange.getRequestURI().getRawQuery());
+		String method = exchange.getRequestMethod();
+		String[] parts = path.substring(1).split("/", 2);
+		String bucket = URLDecoder.decode(parts[0], StandardCharsets.UTF_8);
+		String key = parts.length > 1 ? URLDecoder.decode(parts[1], StandardCharsets.UTF_8) : "";
+		NavigableMap<String, StoredObject> objects = buckets.computeIfAbsent(bucket, name -> new ConcurrentSkipListMap<>());
+
+		if (isS3Throttled()) {
+			readBody(exchange);
+			sendXml(exchange, 503, "<Error><Code>SlowDown</Code><Message>Please reduce your request rate.</Message></Error>",
+					"HEAD".equals(method));
+			return;
+		}
+		if (bucket.isEmpty()) {
+			StringBuilder xml = new StringBuilder("<ListAllMyBucketsResult><Buckets>");
+			buckets.keySet().forEach(name -> xml.append("<Bucket><Name>").append(escape(name))
+					.append("</Name><CreationDate>2024-01-01T00:00:00.000Z</CreationDate></Bucket>"));
+			sendXml(exchange, xml.append("</Buckets></ListAllMyBucketsResult>").toString());
+			return;
+		}
+		if (key.isEmpty() && "GET".equals(method)) {
+			listObjects(exchange, bucket, objects, query);
+			return;
+		}
+		switch (method) {
+			case "PUT" -> {
+				byte[] content = readBody(exchange);
+				String eTag = md5(content);
+				if (query.containsKey("uploadId")) {
+					multipartUploads.get(query.get("uploadId")).put(Integer.parseInt(query.get("partNumber")), content);
+				} else {
+					objects.put(key, new StoredObject(content, eTag, null, crc32c(content)));
+				}
+				send(exchange, 200, null, new byte[0], Map.of("ETag", eTag));
+			}
+			case "POST" -> {
+				if (query.containsKey("uploads")) {
+					String uploadId = UUID.randomUUID().toString();
+					multipartUploads.put(uploadId, new ConcurrentHashMap<>());
+					sendXml(exchange, "<InitiateMultipartUploadResult><Bucket>" + escape(bucket) + "</Bucket><Key>"
+							+ escape(key) + "</Key><UploadId>" + uploadId + "</UploadId></InitiateMultipartUploadResult>");
+				} else {
+					readBody(exchange);
+					Map<Integer, byte[]> uploaded = multipartUploads.remove(query.get("uploadId"));
+					ByteArrayOutputStream content = new ByteArrayOutputStream();
+					ByteArrayOutputStream digests = new ByteArrayOutputStream();
+					ByteArrayOutputStream checksums = new ByteArrayOutputStream();
+					int[] partSizes = new int[uploaded.size()];
+					for (Integer partNumber : new TreeSet<>(uploaded.keySet())) {
+						byte[] part = uploaded.get(partNumber);
+						content.writeBytes(part);
+						digests.writeBytes(digest(part));
+						checksums.writeBytes(Base64.getDecoder().decode(crc32c(part)));
+						partSizes[partNumber - 1] = part.length;
+					}
+					String eTag = "\"" + HexFormat.of().formatHex(digest(digests.toByteArray())) + "-" + uploaded.size() + "\"";
+					objects.put(key, new StoredObject(content.toByteArray(), eTag, partSizes,
+							crc32c(checksums.toByteArray()) + "-" + uploaded.size()));
+					sendXml(exchange, "<CompleteMultipartUploadResult><Bucket>" + escape(bucket) + "</Bucket><Key>"
+							+ escape(key) + "</Key><ETag>" + escape(eTag) + "</ETag></CompleteMultipartUploadResult>");
+				}
+			}
+			case "DELETE" -> {
+				if (query.containsKey("uploadId")) {
+					multipartUploads.remove(query.get("uploadId"));
+				} else {
+					objects.remove(key);
+				}
+				send(exchange, 204, null, null, Map.of());
+			}
+			case "GET", "HEAD" -> getObject(exchange, objects.get(key), query.get("partNumber"), "HEAD".equals(method));
+			default -> send(exchange, 405, null, null, Map.of());
+		}
+	}
+
+	// The upper bits of the window hold the current second, the lower ones the requests counted in it
+	private boolean isS3Throttled() {
+		int limit = s3RequestsPerSecond;
+		if (limit <= 0) {
+			return false;
+		}
+		long second = (System.nanoTime() / 1_000_000_000L) & 0x7FFFFFFFL;
+		long window = s3Window.updateAndGet(current -> (current >>> 32) == second ? current + 1 : (second << 32) | 1);
+		return (window & 0xFFFFFFFFL) > limit;
+	}
+
+	private void getObject(HttpExchange exchange, StoredObject object, String partNumber, boolean head)
+			throws IOException {
+		if (object == null) {
+			sendXml(exchange, 404, "<Error><Code>NoSuchKey</Code><Message>The specified key does not exist.</Message></Error>", head);
+			return;
+		}
+		if (object.eTag.equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+			send(exchange, 304, null, null, Map.of("ETag", object.eTag));
+			return;
+		}
+		String ifMatch = exchange.getRequestHeaders().getFirst("If-Match");
+		if (ifMatch != null && !ifMatch.equals(object.eTag)) {
+			sendXml(exchange, 412, "<Error><Code>PreconditionFailed</Code><Message>At least one of the pre-conditions "
+					+ "you specified did not hold</Message></Error>", head);
+			return;
+		}
+		Map<String, String> headers = new HashMap<>();
+		headers.put("ETag", object.eTag);
+		headers.put("Last-Modified", "Mon, 01 Jan 2024 00:00:00 GMT");
+		headers.put("Accept-Ranges", "bytes");
+		byte[] content = object.content;
+		int status = 200;
+		String range = exchange.getRequestHeaders().getFirst("Range");
+		if (partNumber != null) {
+			int part = Integer.parseInt(partNumber);
+			int[] partSizes = object.partSizes == null ? new int[] {content.length} : object.partSizes;
+			long start = 0;
+			for (int i = 0; i < part - 1; i++) {
+				start += partSizes[i];
+			}
+			range = "bytes=" + start + "-" + (start + partSizes[part - 1] - 1);
+			headers.put("x-amz-mp-parts-count", String.valueOf(partSizes.length));
+		}
+		if (range == null && "ENABLED".equals(exchange.getRequestHeaders().getFirst("x-amz-checksum-mode"))) {
+			headers.put("x-amz-checksum-crc32c", object.checksumCrc32c);
+		}
+		if (range != null && range.startsWith("bytes=")) {
+			String[] bounds = range.substring("bytes=".length()).split("-", 2);
+			long start = Long.parseLong(bounds[0]);
+			long end = bounds[1].isEmpty() ? content.length - 1 : Math.min(Long.parseLong(bounds[1]), content.length - 1);
+			byte[] slice = new byte[(int) (end - start + 1)];
+			System.arraycopy(content, (int) start, slice, 0, slice.length);
+			headers.put("Content-Range", "bytes " + start + "-" + end + "/" + content.length);
+			content = slice;
+			status = 206;
+		}
+		if (head) {
+			headers.put("Content-Length", String.valueOf(content.length));
+			send(exchange, status, "application/octet-stream", null, headers);
+		} else {
+			send(exchange, status, "application/octet-stream", content, headers);
+		}
+	}
+
+	private void listObjects(HttpExchange exchange, String bucket, NavigableMap<String, StoredObject> objects,
+			Map<String, String> query) throws IOException {
+		String prefix = query.getOrDefault("prefix", "");
+		String delimiter = query.get("delimiter");
+		String startAfter = query.get("continuation-token");
+		int maxKeys = Math.min(MAX_KEYS, Integer.parseInt(query.getOrDefault("max-keys", String.valueOf(MAX_KEYS))));
+		NavigableMap<String, StoredObject> candidates = startAfter == null
+				? objects.tailMap(prefix, true) : objects.tailMap(startAfter, false);
+		StringBuilder contents = new StringBuilder();
+		TreeSet<String> commonPrefixes = new TreeSet<>();
+		int count = 0;
+		String lastKey = null;
+		boolean truncated = false;
+		for (Map.Entry<String, StoredObject> entry : candidates.entrySet()) {
+			String key = entry.getKey();
+			if (!key.startsWith(prefix)) {
+				break;
+			}
+			if (count >= maxKeys) {
+				truncated = true;
+				break;
+			}
+			lastKey = key;
+			int delimiterAt = delimiter == null ? -1 : key.indexOf(delimiter, prefix.length());
+			if (delimiterAt >= 0) {
+				if (commonPrefixes.add(key.substring(0, delimiterAt + delimiter.length()))) {
+					count++;
+				}
+				continue;
+			}
+			count++;
+			contents.append("<Contents><Key>").append(escape(key))
+					.append("</Key><LastModified>2024-01-01T00:00:00.000Z</LastModified><ETag>").append(escape(entry.getValue().eTag))
+					.append("</ETag><Size>").append(entry.getValue().content.length)
+					.append("</Size><StorageClass>STANDARD</StorageClass></Contents>");
+		}
+		StringBuilder xml = new StringBuilder("<ListBucketResult><Name>").append(escape(bucket))
+				.append("</Name><Prefix>").append(escape(prefix)).append("</Prefix><KeyCount>").append(count)
+				.append("</KeyCount><MaxKeys>").append(maxKeys).append("</MaxKeys><IsTruncated>").append(truncated)
+				.append("</IsTruncated>");
+		if (truncated) {
+			xml.append("<NextContinuationToken>").append(escape(lastKey)).append("</NextContinuationToken>");
+		}
+		xml.append(contents);
+		commonPrefixes.forEach(common -> xml.append("<CommonPrefixes><Prefix>").append(escape(common)).append("</Prefix></CommonPrefixes>"));
+		sendXml(exchange, xml.append("</ListBucketResult>").toString());
+	}
+
+	/**
+	 * Reads a request body, decoding the aws-chunked framing the SDK uses for streaming signatures and trailing checksums.
+	 */
+	private static byte[] readBody(HttpExchange exchange) throws IOException {
+		byte[] raw = exchange.getRequestBody().readAllBytes();
+		String contentSha = exchange.getRequestHeaders().getFirst("x-amz-content-sha256");
+		String encoding = exchange.getRequestHeaders().getFirst("Content-Encoding");
+		boolean chunked = (contentSha != null && contentSha.startsWith("STREAMING"))
+				|| (encoding != null && encoding.contains("aws-chunked"));
+		if (!chunked) {
+			return raw;
+		}
+		ByteArrayOutputStream decoded = new ByteArrayOutputStream(raw.length);
+		int position = 0;
+		while (position < raw.length) {
+			int lineEnd = indexOfCrlf(raw, position);
+			String header = new String(raw, position, lineEnd - position, StandardCharsets.US_ASCII);
+			int size = Integer.parseInt(header.split(";", 2)[0].trim(), 16);
+			position = lineEnd + 2;
+			if (size == 0) {
+				break;
+			}
+			decoded.write(raw, position, size);
+			position += size + 2;
+		}
+		return decoded.toByteArray();
+	}
+
+	private static int indexOfCrlf(byte[] bytes, int from) {
+		for (int i = from; i < bytes.length - 1; i++) {
+			if (bytes[i] == '\r' && bytes[i + 1] == '\n') {
+				return i;
+			}
+		}
+		return bytes.length;
+	}
+
+	private static Map<String, String> parseQuery(String rawQuery) {
+		Map<String, String> query = new HashMap<>();
+		if (rawQuery == null || rawQuery.isEmpty()) {
+			return query;
+		}
+		for (String pair : rawQuery.split("&")) {
+			String[] keyValue = pair.split("=", 2);
+			query.put(URLDecoder.decode(keyValue[0], StandardCharsets.UTF_8),
+					keyValue.length > 1 ? URLDecoder.decode(keyValue[1], StandardCharsets.UTF_8) : "");
+		}
+		return query;
+	}
+
+	private static void sendXml(HttpExchange exchange, String xml) throws IOException {
+		sendXml(exchange, 200, xml, false);
+	}
+
+	private static void sendXml(HttpExchange exchange, int status, String xml, boolean head) throws IOException {
+		byte[] body = ("<?xml version=\"1.0\" encoding=\"UTF-8\"?>" + xml).getBytes(StandardCharsets.UTF_8);
+		send(exchange, status, "application/xml", head ? null : body, Map.of());
+	}
+
+	private static void send(HttpExchange exchange, int status, String contentType, byte[] body,
+			Map<String, String> headers) throws IOException {
+		headers.forEach((name, value) -> exchange.getResponseHeaders().set(name, value));
+		if (contentType != null) {
+			exchange.getResponseHeaders().set("Content-Type", contentType);
+		}
+		exchange.getResponseHeaders().set("x-amz-request-id", "standin");
+		if (body == null || body.length == 0) {
+			exchange.sendResponseHeaders(status, -1);
+			return;
+		}
+		exchange.sendResponseHeaders(status, body.length);
+		try (OutputStream outputStream = exchange.getResponseBody()) {
+			outputStream.write(body);
+		}
+	}
+
+	private static String escape(String value) {
+		return value.replace("&", "&amp;").replace("<", "&lt;").replace(">", "&gt;").replace("\"", "&quot;");
+	}
+
+	private static String md5(byte[] content) {
+		return "\"" + HexFormat.of().formatHex(digest(content)) + "\"";
+	}
+
+	private static String md5Hex(String value) {
+		return HexFormat.of().formatHex(digest(value.getBytes(StandardCharsets.UTF_8)));
+	}
+
+	private static byte[] digest(byte[] content) {
+		try {
+			return MessageDigest.getInstance("MD5").digest(content);
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private static String crc32c(byte[] content) {
+		CRC32C crc32c = new CRC32C();
+		crc32c.update(content);
+		return Base64.getEncoder().encodeToString(ByteBuffer.allocate(Integer.BYTES).putInt((int) crc32c.getValue()).array());
+	}
+
+	// partSizes is null for objects not created by a multipart upload; the checksum of those is composite
+	private record StoredObject(byte[] content, String eTag, int[] partSizes, String checksumCrc32c) {
+	}
+}
@@ -0,0 +1,68 @@
+package com.aws.services.benchmark;
+
+import com.aws.services.AwsServicesApplication;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Starts the application context without the web server, with every AWS client pointed at an
+ * {@link AwsStandInServer}.
+ */
+public final class BenchmarkContext implements AutoCloseable {
+
+	public static final String BUCKET = "benchmark-bucket";
+	public static final String QUEUE = "benchmark-queue";
+
+	private final AwsStandInServer server;
+	private final ConfigurableApplicationContext context;
+
+	private BenchmarkContext(AwsStandInServer server, ConfigurableApplicationContext context) {
+		this.server = server;
+		this.context = context;
+	}
+
+	/**
+	 * @param latencyMillis The latency the stand-in adds to every request.
+	 * @param overrides Application properties replacing the benchmark defaults.
+	 */
+	public static BenchmarkContext start(long latencyMillis, Map<String, Object> overrides) throws IOException {
+		AwsStandInServer server = new AwsStandInServer(latencyMillis);
+		Map<String, Object> properties = new HashMap<>();
+		properties.put("aws.access.key", "benchmark");
+		properties.put("aws.secret.key", "benchmark");
+		properties.put("aws.region", "us-east-1");
+		properties.put("aws.s3.bucket.name", BUCKET);
+		properties.put("aws.endpoint.override", server.endpoint());
+		properties.put("aws.s3.path.style.access", "true");
+		properties.put("aws.sqs.queue.names", QUEUE);
+		properties.put("aws.s3.multipart.threshold.bytes", String.valueOf(8 * 1024 * 1024));
+		properties.put("aws.s3.multipart.part.size.bytes", String.valueOf(8 * 1024 * 1024));
+		properties.put("logging.level.root", "WARN");
+		properties.put("spring.main.banner-mode", "off");
+		properties.putAll(overrides);
+
+		SpringApplication application = new SpringApplication(AwsServicesApplication.class);
+		application.setWebApplicationType(WebApplicationType.NONE);
+		application.setDefaultProperties(properties);
+		return new BenchmarkContext(server, application.run());
+	}
+
+	public <T> T getBean(Class<T> type) {
+		return context.getBean(type);
+	}
+
+	public AwsStandInServer server() {
+		return server;
+	}
+
+	@Override
+	public void close() {
+		context.close();
+		server.close();
+	}
+}
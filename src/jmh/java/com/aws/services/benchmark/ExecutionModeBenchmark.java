@@ -0,0 +1,101 @@
+package com.aws.services.benchmark;
+
+import com.aws.services.config.AWSThreadFactory;
+import com.aws.services.service.AWSS3AsyncService;
+import com.aws.services.service.AWSS3Service;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.core.task.VirtualThreadTaskExecutor;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the execution modes at high concurrency: each operation issues {@code concurrency} small uploads at
+ * once and waits for all of them. "platform" runs the blocking service on a pool the size of Tomcat's default
+ * request pool, "virtual" runs it on one virtual thread per call, and "async" uses the non-blocking service. The
+ * HTTP connection pools are sized to the concurrency so that only the threading differs. The "virtual" mode needs
+ * Java 21; on older Java leave it out with {@code -p mode=platform,async}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 5)
+@Fork(1)
+public class ExecutionModeBenchmark {
+
+	private static final int TOMCAT_DEFAULT_MAX_THREADS = 200;
+
+	@Param({"platform", "virtual", "async"})
+	public String mode;
+
+	@Param({"1000"})
+	public int concurrency;
+
+	@Param({"20"})
+	public long latencyMillis;
+
+	private BenchmarkContext context;
+	private AWSS3Service s3Service;
+	private AWSS3AsyncService s3AsyncService;
+	private Executor executor;
+	private byte[] payload;
+
+	@Setup(Level.Trial)
+	public void setUp() throws IOException {
+		context = BenchmarkContext.start(latencyMillis, Map.of(
+				"spring.threads.virtual.enabled", String.valueOf("virtual".equals(mode)),
+				"aws.http.max.connections", String.valueOf(concurrency),
+				"aws.http.async.max.concurrency", String.valueOf(concurrency)));
+		if ("virtual".equals(mode) && !context.getBean(AWSThreadFactory.class).isVirtual()) {
+			context.close();
+			throw new IllegalStateException("Virtual threads require Java 21 or later; run with -p mode=platform,async");
+		}
+		s3Service = context.getBean(AWSS3Service.class);
+		s3AsyncService = context.getBean(AWSS3AsyncService.class);
+		executor = switch (mode) {
+			case "platform" -> Executors.newFixedThreadPool(TOMCAT_DEFAULT_MAX_THREADS);
+			case "virtual" -> new VirtualThreadTaskExecutor("request-");
+			default -> null;
+		};
+		payload = new byte[1024];
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		if (executor instanceof ExecutorService executorService) {
+			executorService.shutdownNow();
+		}
+		context.close();
+	}
+
+	@Benchmark
+	public void uploadBytes() {
+		CompletableFuture<?>[] calls = new CompletableFuture[concurrency];
+		for (int i = 0; i < concurrency; i++) {
+			String key = "execution-mode/" + i;
+			calls[i] = executor == null
+					? s3AsyncService.uploadBytes(key, ByteBuffer.wrap(payload))
+					: CompletableFuture.runAsync(() -> s3Service.uploadBytes(key, ByteBuffer.wrap(payload)), executor);
+		}
+		CompletableFuture.allOf(calls).join();
+	}
+}
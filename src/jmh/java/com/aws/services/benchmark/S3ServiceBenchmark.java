@@ -0,0 +1,106 @@
+package com.aws.services.benchmark;
+
+import com.aws.services.service.AWSS3Service;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Benchmarks the S3 service paths against the in-process stand-in. Payloads above the multipart threshold of
+ * the benchmark context (8 MB) take the multipart path.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 5)
+@Fork(1)
+@Threads(4)
+public class S3ServiceBenchmark {
+
+	private static final String LIST_PREFIX = "listing/";
+
+	@Param({"1"})
+	public long latencyMillis;
+
+	@Param({"1024", "1048576", "33554432"})
+	public int payloadSize;
+
+	@Param({"2500"})
+	public int listedObjects;
+
+	private BenchmarkContext context;
+	private AWSS3Service s3Service;
+	private Path workDirectory;
+	private Path payloadFile;
+	private String payload;
+	private String downloadKey;
+
+	@Setup(Level.Trial)
+	public void setUp() throws IOException {
+		context = BenchmarkContext.start(latencyMillis, Map.of());
+		s3Service = context.getBean(AWSS3Service.class);
+		workDirectory = Files.createTempDirectory("s3-benchmark");
+
+		byte[] content = new byte[payloadSize];
+		ThreadLocalRandom.current().nextBytes(content);
+		payloadFile = Files.write(workDirectory.resolve("payload.bin"), content);
+		payload = "x".repeat(payloadSize);
+		downloadKey = "download/payload.bin";
+		context.server().putObject(BenchmarkContext.BUCKET, downloadKey, content);
+
+		byte[] small = "listed".getBytes(StandardCharsets.UTF_8);
+		for (int i = 0; i < listedObjects; i++) {
+			context.server().putObject(BenchmarkContext.BUCKET, LIST_PREFIX + String.format("%06d.txt", i), small);
+		}
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws IOException {
+		context.close();
+		try (Stream<Path> paths = Files.walk(workDirectory)) {
+			paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+		}
+	}
+
+	@Benchmark
+	public void uploadFile() {
+		s3Service.uploadFile("upload/" + Thread.currentThread().getId() + ".bin", payloadFile.toString());
+	}
+
+	@Benchmark
+	public void uploadData() {
+		s3Service.uploadData("upload/" + Thread.currentThread().getId() + ".txt", null, null, payload);
+	}
+
+	@Benchmark
+	public void downloadFile() {
+		s3Service.downloadFile(downloadKey, workDirectory.toString() + "/", "download-" + Thread.currentThread().getId() + ".bin");
+	}
+
+	@Benchmark
+	public Object listAllObjects() {
+		return s3Service.listAllObjects(BenchmarkContext.BUCKET, LIST_PREFIX, null, false);
+	}
+}
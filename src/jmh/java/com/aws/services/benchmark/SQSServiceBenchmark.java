@@ -0,0 +1,97 @@
+package com.aws.services.benchmark;
+
+import com.aws.services.service.AWSSQSService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import software.amazon.awssdk.services.sqs.SqsClient;
+import software.amazon.awssdk.services.sqs.model.Message;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks the SQS service paths against the in-process stand-in.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 5)
+@Fork(1)
+@Threads(16)
+public class SQSServiceBenchmark {
+
+	@Param({"1"})
+	public long latencyMillis;
+
+	@Param({"true", "false"})
+	public boolean batching;
+
+	@Param({"256"})
+	public int messageSize;
+
+	private BenchmarkContext context;
+	private AWSSQSService sqsService;
+	private SqsClient sqsClient;
+	private String queueUrl;
+	private String message;
+	private List<String> batch;
+
+	@Setup(Level.Trial)
+	public void setUp() throws IOException {
+		context = BenchmarkContext.start(latencyMillis, Map.of("aws.sqs.producer.batching.enabled", String.valueOf(batching)));
+		sqsService = context.getBean(AWSSQSService.class);
+		sqsClient = context.getBean(SqsClient.class);
+		queueUrl = sqsClient.getQueueUrl(request -> request.queueName(BenchmarkContext.QUEUE)).queueUrl();
+		message = "x".repeat(messageSize);
+		batch = new ArrayList<>();
+		for (int i = 0; i < 10; i++) {
+			batch.add(message);
+		}
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		context.close();
+	}
+
+	@Benchmark
+	public Object sendMessage() {
+		return sqsService.sendMessage(BenchmarkContext.QUEUE, message, null);
+	}
+
+	@Benchmark
+	public void sendBatchMessages() {
+		sqsService.sendBatchMessages(sqsClient, queueUrl, batch);
+	}
+
+	@Benchmark
+	public Object receiveMessage() {
+		return sqsService.receiveMessage(BenchmarkContext.QUEUE, 10);
+	}
+
+	@Benchmark
+	public Object deleteMessages() {
+		List<Message> messages = new ArrayList<>(10);
+		for (int i = 0; i < 10; i++) {
+			messages.add(Message.builder().messageId(String.valueOf(i)).receiptHandle(UUID.randomUUID().toString()).build());
+		}
+		return sqsService.deleteMessages(BenchmarkContext.QUEUE, messages);
+	}
+}
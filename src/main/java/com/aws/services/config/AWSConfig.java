@@ -1,47 +1,204 @@
 package com.aws.services.config;
 
-import org.springframework.beans.factory.annotation.Autowired;
+import com.amazon.sqs.javamessaging.AmazonSQSExtendedClient;
+import com.amazon.sqs.javamessaging.ExtendedClientConfiguration;
+import com.aws.services.metrics.AWSOperationMetrics;
+import com.aws.services.metrics.AWSTransportMetrics;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
 import software.amazon.awssdk.auth.credentials.AwsBasicCredentials;
+import software.amazon.awssdk.auth.credentials.AwsCredentialsProvider;
 import software.amazon.awssdk.auth.credentials.StaticCredentialsProvider;
+import software.amazon.awssdk.core.client.config.ClientOverrideConfiguration;
+import software.amazon.awssdk.http.SdkHttpClient;
+import software.amazon.awssdk.http.apache.ApacheHttpClient;
+import software.amazon.awssdk.http.async.SdkAsyncHttpClient;
+import software.amazon.awssdk.http.nio.netty.NettyNioAsyncHttpClient;
+import software.amazon.awssdk.http.nio.netty.SdkEventLoopGroup;
 import software.amazon.awssdk.regions.Region;
 import software.amazon.awssdk.services.s3.S3AsyncClient;
+import software.amazon.awssdk.services.s3.S3AsyncClientBuilder;
 import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.S3ClientBuilder;
+import software.amazon.awssdk.services.s3.S3CrtAsyncClientBuilder;
+import software.amazon.awssdk.services.sqs.SqsAsyncClient;
+import software.amazon.awssdk.services.sqs.SqsAsyncClientBuilder;
 import software.amazon.awssdk.services.sqs.SqsClient;
+import software.amazon.awssdk.services.sqs.SqsClientBuilder;
+import software.amazon.awssdk.transfer.s3.S3TransferManager;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.Optional;
 
 @Configuration
 public class AWSConfig {
 
 	ApplicationProperties applicationProperties;
+	AWSTransportMetrics awsTransportMetrics;
+	AWSOperationMetrics awsOperationMetrics;
+	AWSRateLimiter awsRateLimiter;
 
-	AWSConfig(ApplicationProperties applicationProperties) {
+	AWSConfig(ApplicationProperties applicationProperties, AWSTransportMetrics awsTransportMetrics,
+			AWSOperationMetrics awsOperationMetrics, AWSRateLimiter awsRateLimiter) {
 		this.applicationProperties = applicationProperties;
+		this.awsTransportMetrics = awsTransportMetrics;
+		this.awsOperationMetrics = awsOperationMetrics;
+		this.awsRateLimiter = awsRateLimiter;
+	}
+
+	/*DefaultCredentialsProvider looks for environment variables, java system properties or AWS Profile Configuration File for the configurations such as:
+		AWS_ACCESS_KEY and AWS_SECRET_KEY, aws.accessKeyId and aws.secretKey
+	* */
+	@Bean
+	public AwsCredentialsProvider awsCredentialsProvider() {
+		return StaticCredentialsProvider.create(AwsBasicCredentials.create(applicationProperties.getAccessKeyId(),
+				applicationProperties.getSecretAccessKey()));
+	}
+
+	//One connection pool shared by all the blocking clients.
+	@Bean
+	public SdkHttpClient sdkHttpClient() {
+		ApacheHttpClient.Builder builder = ApacheHttpClient.builder()
+				.maxConnections(applicationProperties.getHttpMaxConnections())
+				.connectionAcquisitionTimeout(Duration.ofMillis(applicationProperties.getHttpConnectionAcquisitionTimeoutMillis()))
+				.connectionTimeout(Duration.ofMillis(applicationProperties.getHttpConnectionTimeoutMillis()))
+				.socketTimeout(Duration.ofMillis(applicationProperties.getHttpSocketTimeoutMillis()))
+				.connectionMaxIdleTime(Duration.ofMillis(applicationProperties.getHttpConnectionMaxIdleMillis()))
+				.tcpKeepAlive(applicationProperties.isHttpTcpKeepAlive());
+		if (applicationProperties.getHttpConnectionTtlMillis() > 0) {
+			builder.connectionTimeToLive(Duration.ofMillis(applicationProperties.getHttpConnectionTtlMillis()));
+		}
+		return builder.build();
+	}
+
+	//One Netty event loop shared by all the async clients; each async client still gets its own connection pool.
+	@Bean
+	public SdkEventLoopGroup sdkEventLoopGroup() {
+		SdkEventLoopGroup.Builder builder = SdkEventLoopGroup.builder();
+		if (applicationProperties.getHttpEventLoopThreads() > 0) {
+			builder.numberOfThreads(applicationProperties.getHttpEventLoopThreads());
+		}
+		return builder.build();
+	}
+
+	@Bean
+	public SdkAsyncHttpClient s3AsyncHttpClient(SdkEventLoopGroup sdkEventLoopGroup) {
+		return asyncHttpClient(sdkEventLoopGroup);
+	}
+
+	@Bean
+	public SdkAsyncHttpClient sqsAsyncHttpClient(SdkEventLoopGroup sdkEventLoopGroup) {
+		return asyncHttpClient(sdkEventLoopGroup);
+	}
+
+	@Bean
+	@Primary
+	public SqsClient sqsClient(SdkHttpClient sdkHttpClient, AwsCredentialsProvider awsCredentialsProvider) {
+		SqsClientBuilder builder = SqsClient.builder().region(Region.of(applicationProperties.getRegion()))
+				.credentialsProvider(awsCredentialsProvider)
+				.httpClient(sdkHttpClient)
+				.overrideConfiguration(overrideConfiguration());
+		endpointOverride().ifPresent(builder::endpointOverride);
+		return builder.build();
 	}
 
 	@Bean
-	public SqsClient sqsClient() {
-		return SqsClient.builder().region(Region.of(applicationProperties.getRegion())).credentialsProvider(
-				StaticCredentialsProvider.create(AwsBasicCredentials.create(applicationProperties.getAccessKeyId(),
-						applicationProperties.getSecretAccessKey()))).build();
+	public SqsAsyncClient sqsAsyncClient(@Qualifier("sqsAsyncHttpClient") SdkAsyncHttpClient sqsAsyncHttpClient,
+			AwsCredentialsProvider awsCredentialsProvider) {
+		SqsAsyncClientBuilder builder = SqsAsyncClient.builder().region(Region.of(applicationProperties.getRegion()))
+				.credentialsProvider(awsCredentialsProvider)
+				.httpClient(sqsAsyncHttpClient)
+				.overrideConfiguration(overrideConfiguration());
+		endpointOverride().ifPresent(builder::endpointOverride);
+		return builder.build();
+	}
+
+	//Here, the SQS client is extended in order to upload large message to SQS that > 256KB.
+	@Bean("sqsClientExtended")
+	public SqsClient sqsClientExtended(SqsClient sqsClient, S3Client s3Client) {
+		ExtendedClientConfiguration extendedClientConfig = new ExtendedClientConfiguration().withPayloadSupportEnabled(
+				s3Client, applicationProperties.getS3Bucket());
+		return new AmazonSQSExtendedClient(sqsClient, extendedClientConfig);
 	}
 
 	@Bean
-	public S3Client s3Client() {
-		/*DefaultCredentialsProvider looks for environment variables, java system properties or AWS Profile Configuration File for the configurations such as:
-			AWS_ACCESS_KEY and AWS_SECRET_KEY, aws.accessKeyId and aws.secretKey
-		* */
-//		return S3Client.builder().region(Region.of("us-east-1"))
-//				.credentialsProvider(DefaultCredentialsProvider.create()).build();
-		return S3Client.builder().region(Region.of(applicationProperties.getRegion())).credentialsProvider(
-				StaticCredentialsProvider.create(AwsBasicCredentials.create(applicationProperties.getAccessKeyId(),
-						applicationProperties.getSecretAccessKey()))).build();
+	public S3Client s3Client(SdkHttpClient sdkHttpClient, AwsCredentialsProvider awsCredentialsProvider) {
+		S3ClientBuilder builder = S3Client.builder().region(Region.of(applicationProperties.getRegion()))
+				.credentialsProvider(awsCredentialsProvider)
+				.httpClient(sdkHttpClient)
+				.forcePathStyle(applicationProperties.isS3PathStyleAccess())
+				.overrideConfiguration(overrideConfiguration());
+		endpointOverride().ifPresent(builder::endpointOverride);
+		return builder.build();
 	}
 
 	@Bean("customS3Async")
-	public S3AsyncClient s3AsyncClient() {
-		return S3AsyncClient.builder().region(Region.of(applicationProperties.getRegion())).credentialsProvider(
-				StaticCredentialsProvider.create(AwsBasicCredentials.create(applicationProperties.getAccessKeyId(),
-						applicationProperties.getSecretAccessKey()))).build();
+	public S3AsyncClient s3AsyncClient(@Qualifier("s3AsyncHttpClient") SdkAsyncHttpClient s3AsyncHttpClient,
+			AwsCredentialsProvider awsCredentialsProvider) {
+		if (applicationProperties.isS3CrtEnabled()) {
+			//The CRT client brings its own native transport, sized by the target throughput.
+			S3CrtAsyncClientBuilder crtBuilder = S3AsyncClient.crtBuilder()
+					.region(Region.of(applicationProperties.getRegion()))
+					.credentialsProvider(awsCredentialsProvider)
+					.targetThroughputInGbps(applicationProperties.getS3CrtTargetThroughputGbps())
+					.minimumPartSizeInBytes(applicationProperties.getS3CrtMinimumPartSizeBytes())
+					.forcePathStyle(applicationProperties.isS3PathStyleAccess());
+			endpointOverride().ifPresent(crtBuilder::endpointOverride);
+			if (applicationProperties.getS3CrtMaxConcurrency() > 0) {
+				crtBuilder.maxConcurrency(applicationProperties.getS3CrtMaxConcurrency());
+			}
+			return crtBuilder.build();
+		}
+		S3AsyncClientBuilder builder = S3AsyncClient.builder().region(Region.of(applicationProperties.getRegion()))
+				.credentialsProvider(awsCredentialsProvider)
+				.httpClient(s3AsyncHttpClient)
+				.forcePathStyle(applicationProperties.isS3PathStyleAccess())
+				.overrideConfiguration(overrideConfiguration());
+		endpointOverride().ifPresent(builder::endpointOverride);
+		return builder.build();
+	}
+
+	@Bean
+	public S3TransferManager s3TransferManager(S3AsyncClient s3AsyncClient) {
+		return S3TransferManager.builder().s3Client(s3AsyncClient).build();
+	}
+
+	SdkAsyncHttpClient asyncHttpClient(SdkEventLoopGroup sdkEventLoopGroup) {
+		NettyNioAsyncHttpClient.Builder builder = NettyNioAsyncHttpClient.builder()
+				.eventLoopGroup(sdkEventLoopGroup)
+				.maxConcurrency(applicationProperties.getHttpAsyncMaxConcurrency())
+				.maxPendingConnectionAcquires(applicationProperties.getHttpAsyncMaxPendingAcquires())
+				.connectionAcquisitionTimeout(Duration.ofMillis(applicationProperties.getHttpConnectionAcquisitionTimeoutMillis()))
+				.connectionTimeout(Duration.ofMillis(applicationProperties.getHttpConnectionTimeoutMillis()))
+				.readTimeout(Duration.ofMillis(applicationProperties.getHttpSocketTimeoutMillis()))
+				.writeTimeout(Duration.ofMillis(applicationProperties.getHttpSocketTimeoutMillis()))
+				.connectionMaxIdleTime(Duration.ofMillis(applicationProperties.getHttpConnectionMaxIdleMillis()))
+				.tcpKeepAlive(applicationProperties.isHttpTcpKeepAlive());
+		if (applicationProperties.getHttpConnectionTtlMillis() > 0) {
+			builder.connectionTimeToLive(Duration.ofMillis(applicationProperties.getHttpConnectionTtlMillis()));
+		}
+		return builder.build();
+	}
+
+	//Points the clients at an S3/SQS compatible endpoint, e.g. a local stand-in, instead of the regional AWS one.
+	Optional<URI> endpointOverride() {
+		String endpoint = applicationProperties.getEndpointOverride();
+		return endpoint == null || endpoint.isBlank() ? Optional.empty() : Optional.of(URI.create(endpoint));
+	}
+
+	//The CRT client does not accept an override configuration, so its calls are neither rate limited nor instrumented.
+	ClientOverrideConfiguration overrideConfiguration() {
+		ClientOverrideConfiguration.Builder builder = ClientOverrideConfiguration.builder()
+				.addMetricPublisher(awsTransportMetrics);
+		if (applicationProperties.isRateLimitEnabled()) {
+			builder.addExecutionInterceptor(awsRateLimiter);
+		}
+		if (applicationProperties.isMetricsOperationsEnabled()) {
+			builder.addExecutionInterceptor(awsOperationMetrics);
+		}
+		return builder.build();
 	}
 }
@@ -0,0 +1,292 @@
+package com.aws.services.config;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.stereotype.Component;
+import software.amazon.awssdk.awscore.exception.AwsServiceException;
+import software.amazon.awssdk.core.ClientType;
+import software.amazon.awssdk.core.SdkRequest;
+import software.amazon.awssdk.core.exception.SdkClientException;
+import software.amazon.awssdk.core.interceptor.Context;
+import software.amazon.awssdk.core.interceptor.ExecutionAttribute;
+import software.amazon.awssdk.core.interceptor.ExecutionAttributes;
+import software.amazon.awssdk.core.interceptor.ExecutionInterceptor;
+import software.amazon.awssdk.core.interceptor.SdkExecutionAttribute;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Client-side rate limiting per S3 bucket prefix and per SQS queue, adapted to the throttling AWS reports.
+ * A limiter stays passive, only measuring the request rate, until its first 503 SlowDown, 429 or throttling
+ * error. It then limits calls to a fraction (aws.ratelimit.decrease.factor) of the rate that was throttled and
+ * raises the limit by aws.ratelimit.increase.per.second each second without throttling (AIMD). Calls of
+ * blocking clients wait for their turn in the calling thread; a call that would wait longer than
+ * aws.ratelimit.max.wait.millis is shed with an {@link SdkClientException} before it is sent. Calls of async
+ * clients run on their caller's or the SDK's event loop threads, which must not wait, so they are shed as soon
+ * as they would have to wait at all. A limiter that grows back to aws.ratelimit.max.rate becomes passive again.
+ * <p>
+ * Registered as an execution interceptor on every client built by {@code AWSConfig}, ahead of the operation
+ * metrics, so recorded latencies do not include the time spent waiting here.
+ */
+@Component
+public class AWSRateLimiter implements ExecutionInterceptor {
+
+	private static final Logger LOGGER = LogManager.getLogger(AWSRateLimiter.class);
+	private static final ExecutionAttribute<Limiter> LIMITER = new ExecutionAttribute<>("AWSRateLimiter.Limiter");
+	private static final long SECOND_NANOS = TimeUnit.SECONDS.toNanos(1);
+	// Calls that may go out back to back after an idle period, as a fraction of a second at the current rate
+	private static final double BURST_SECONDS = 0.1;
+	private static final int MAX_LIMITERS = 10_000;
+
+	private final Map<String, Limiter> limiters = new ConcurrentHashMap<>();
+	private final double minRate;
+	private final double maxRate;
+	private final double increasePerSecond;
+	private final double decreaseFactor;
+	private final long maxWaitNanos;
+	private final int prefixDepth;
+
+	public AWSRateLimiter(ApplicationProperties applicationProperties) {
+		this.minRate = Math.max(0.1, applicationProperties.getRateLimitMinRate());
+		this.maxRate = Math.max(minRate, applicationProperties.getRateLimitMaxRate());
+		this.increasePerSecond = applicationProperties.getRateLimitIncreasePerSecond();
+		this.decreaseFactor = Math.min(0.95, Math.max(0.05, applicationProperties.getRateLimitDecreaseFactor()));
+		this.maxWaitNanos = TimeUnit.MILLISECONDS.toNanos(applicationProperties.getRateLimitMaxWaitMillis());
+		this.prefixDepth = Math.max(0, applicationProperties.getRateLimitS3PrefixDepth());
+	}
+
+	@Override
+	public void beforeExecution(Context.BeforeExecution context, ExecutionAttributes executionAttributes) {
+		String service = executionAttributes.getAttribute(SdkExecutionAttribute.SERVICE_NAME);
+		String resource = resourceOf(context.request());
+		if (resource == null) {
+			return;
+		}
+		Limiter limiter = limiterFor(service + ":" + resource);
+		executionAttributes.putAttribute(LIMITER, limiter);
+		limiter.acquire(executionAttributes.getAttribute(SdkExecutionAttribute.CLIENT_TYPE) == ClientType.SYNC);
+	}
+
+	@Override
+	public void afterTransmission(Context.AfterTransmission context, ExecutionAttributes executionAttributes) {
+		Limiter limiter = executionAttributes.getAttribute(LIMITER);
+		int status = context.httpResponse().statusCode();
+		if (limiter != null && (status == 429 || status == 503)) {
+			limiter.throttled();
+		}
+	}
+
+	@Override
+	public void afterExecution(Context.AfterExecution context, ExecutionAttributes executionAttributes) {
+		Limiter limiter = executionAttributes.getAttribute(LIMITER);
+		if (limiter != null) {
+			limiter.succeeded();
+		}
+	}
+
+	@Override
+	public void onExecutionFailure(Context.FailedExecution context, ExecutionAttributes executionAttributes) {
+		Limiter limiter = executionAttributes.getAttribute(LIMITER);
+		// 429 and 503 were already counted per attempt; SQS reports throttling as a 400 with an error code
+		if (limiter != null && context.exception() instanceof AwsServiceException serviceException
+				&& serviceException.isThrottlingException()
+				&& serviceException.statusCode() != 429 && serviceException.statusCode() != 503) {
+			limiter.throttled();
+		}
+	}
+
+	/**
+	 * @return Per service and bucket prefix or queue: whether the limiter is limiting, the allowed and the
+	 * measured request rate, throttled responses, calls that waited and calls shed.
+	 */
+	public Map<String, Map<String, Object>> getLimits() {
+		Map<String, Map<String, Object>> limits = new TreeMap<>();
+		limiters.forEach((key, limiter) -> limits.put(key, limiter.snapshot()));
+		return limits;
+	}
+
+	/**
+	 * S3 calls are keyed by bucket and the first aws.ratelimit.s3.prefix.depth segments of the key (or listing
+	 * prefix), as S3 scales its request rate per prefix. SQS calls are keyed by queue.
+	 */
+	private String resourceOf(SdkRequest request) {
+		String bucket = request.getValueForField("Bucket", String.class).orElse(null);
+		if (bucket != null) {
+			String key = request.getValueForField("Key", String.class)
+					.or(() -> request.getValueForField("Prefix", String.class)).orElse("");
+			return bucket + "/" + prefixOf(key);
+		}
+		return request.getValueForField("QueueUrl", String.class)
+				.map(queueUrl -> queueUrl.substring(queueUrl.lastIndexOf('/') + 1))
+				.orElse(null);
+	}
+
+	private String prefixOf(String key) {
+		int end = 0;
+		for (int depth = 0; depth < prefixDepth; depth++) {
+			int slash = key.indexOf('/', end);
+			if (slash < 0) {
+				// The key itself is not a prefix; objects directly under the parent share its limit
+				return key.substring(0, end);
+			}
+			end = slash + 1;
+		}
+		return key.substring(0, end);
+	}
+
+	private Limiter limiterFor(String key) {
+		Limiter limiter = limiters.get(key);
+		if (limiter != null) {
+			return limiter;
+		}
+		if (limiters.size() >= MAX_LIMITERS) {
+			limiters.values().removeIf(existing -> !existing.isLimiting());
+		}
+		return limiters.computeIfAbsent(key, Limiter::new);
+	}
+
+	/**
+	 * The rate of one bucket prefix or queue. While limiting, calls reserve the next free slot at the allowed
+	 * rate under the lock and sleep until it outside of it; calls that may not wait only take a slot that is
+	 * already free.
+	 */
+	private final class Limiter {
+		private final String key;
+		private final ReentrantLock lock = new ReentrantLock();
+		private final LongAdder throttles = new LongAdder();
+		private final LongAdder delayed = new LongAdder();
+		private final LongAdder shed = new LongAdder();
+		private volatile boolean limiting;
+		private double rate;
+		private long nextFreeNanos;
+		private long lastDecreaseNanos;
+		private long lastIncreaseNanos;
+		// Calls started in the current one-second window and the rate measured over the previous one
+		private long windowStartNanos = System.nanoTime();
+		private long windowCalls;
+		private double measuredRate;
+
+		private Limiter(String key) {
+			this.key = key;
+		}
+
+		private void acquire(boolean mayWait) {
+			long waitNanos;
+			lock.lock();
+			try {
+				long now = System.nanoTime();
+				countCall(now);
+				if (!limiting) {
+					return;
+				}
+				long interval = (long) (SECOND_NANOS / rate);
+				long start = Math.max(nextFreeNanos, now - (long) (BURST_SECONDS * SECOND_NANOS));
+				waitNanos = start - now;
+				if (waitNanos > (mayWait ? maxWaitNanos : 0)) {
+					shed.increment();
+					throw SdkClientException.create("Request to " + key + " shed by the client-side rate limit of "
+							+ String.format("%.1f", rate) + " requests per second");
+				}
+				nextFreeNanos = start + interval;
+			} finally {
+				lock.unlock();
+			}
+			if (waitNanos > 0) {
+				delayed.increment();
+				try {
+					TimeUnit.NANOSECONDS.sleep(waitNanos);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					throw SdkClientException.create("Interrupted while waiting for the rate limit of " + key, e);
+				}
+			}
+		}
+
+		/**
+		 * Cuts the rate once per second at most, so a burst of throttled responses to calls sent at the same
+		 * rate counts as one signal.
+		 */
+		private void throttled() {
+			throttles.increment();
+			lock.lock();
+			try {
+				long now = System.nanoTime();
+				if (limiting && now - lastDecreaseNanos < SECOND_NANOS) {
+					return;
+				}
+				double current = limiting ? rate : Math.max(measuredRate, currentWindowRate(now));
+				rate = Math.max(minRate, Math.min(maxRate, current) * decreaseFactor);
+				if (!limiting) {
+					limiting = true;
+					nextFreeNanos = now;
+				}
+				lastDecreaseNanos = now;
+				lastIncreaseNanos = now;
+				LOGGER.warn("Throttled on {}, limiting to {} requests per second", key, String.format("%.1f", rate));
+			} finally {
+				lock.unlock();
+			}
+		}
+
+		private void succeeded() {
+			if (!limiting) {
+				return;
+			}
+			lock.lock();
+			try {
+				long now = System.nanoTime();
+				if (!limiting || now - lastIncreaseNanos < SECOND_NANOS / 10) {
+					return;
+				}
+				rate += increasePerSecond * (now - lastIncreaseNanos) / SECOND_NANOS;
+				lastIncreaseNanos = now;
+				if (rate >= maxRate) {
+					limiting = false;
+					LOGGER.info("Rate of {} recovered to {} requests per second, no longer limiting", key, maxRate);
+				}
+			} finally {
+				lock.unlock();
+			}
+		}
+
+		private boolean isLimiting() {
+			return limiting;
+		}
+
+		private void countCall(long now) {
+			if (now - windowStartNanos >= SECOND_NANOS) {
+				measuredRate = windowCalls * (double) SECOND_NANOS / (now - windowStartNanos);
+				windowStartNanos = now;
+				windowCalls = 0;
+			}
+			windowCalls++;
+		}
+
+		private double currentWindowRate(long now) {
+			return windowCalls * (double) SECOND_NANOS / Math.max(SECOND_NANOS / 10, now - windowStartNanos);
+		}
+
+		private Map<String, Object> snapshot() {
+			Map<String, Object> snapshot = new LinkedHashMap<>();
+			lock.lock();
+			try {
+				long now = System.nanoTime();
+				snapshot.put("limiting", limiting);
+				snapshot.put("allowedPerSecond", limiting ? rate : null);
+				snapshot.put("measuredPerSecond", now - windowStartNanos >= 2 * SECOND_NANOS ? 0.0 : measuredRate);
+			} finally {
+				lock.unlock();
+			}
+			snapshot.put("throttles", throttles.sum());
+			snapshot.put("delayed", delayed.sum());
+			snapshot.put("shed", shed.sum());
+			return snapshot;
+		}
+	}
+}
@@ -0,0 +1,62 @@
+package com.aws.services.config;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.boot.autoconfigure.thread.Threading;
+import org.springframework.core.env.Environment;
+import org.springframework.core.task.VirtualThreadTaskExecutor;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Creates the threads of the worker pools, following the execution mode of the application. With
+ * spring.threads.virtual.enabled=true on Java 21 or later, Spring Boot handles HTTP requests on virtual threads
+ * and the pools created here get virtual threads as well, so blocking SDK calls release their carrier thread
+ * while waiting. Otherwise the pools get named platform threads.
+ */
+@Component
+public class AWSThreadFactory {
+
+	private static final Logger LOGGER = LogManager.getLogger(AWSThreadFactory.class);
+
+	private final boolean virtual;
+
+	public AWSThreadFactory(Environment environment) {
+		this.virtual = Threading.VIRTUAL.isActive(environment);
+		if (!virtual && environment.getProperty("spring.threads.virtual.enabled", Boolean.class, false)) {
+			LOGGER.warn("Virtual threads require Java 21 or later, running on Java {} with platform threads",
+					Runtime.version().feature());
+		}
+	}
+
+	public boolean isVirtual() {
+		return virtual;
+	}
+
+	/**
+	 * @param poolName The prefix of the thread names.
+	 * @return A factory of virtual threads in virtual-thread mode, of platform threads otherwise.
+	 */
+	public ThreadFactory forPool(String poolName) {
+		if (virtual) {
+			return new VirtualThreadTaskExecutor(poolName + "-").getVirtualThreadFactory();
+		}
+		AtomicInteger threadNumber = new AtomicInteger();
+		return task -> new Thread(task, poolName + "-" + threadNumber.incrementAndGet());
+	}
+
+	/**
+	 * Creates a single long-running daemon thread, virtual in virtual-thread mode.
+	 */
+	public Thread newThread(String name, Runnable task) {
+		Thread thread = virtual ? new VirtualThreadTaskExecutor(name).getVirtualThreadFactory().newThread(task)
+				: new Thread(task, name);
+		if (!virtual) {
+			thread.setDaemon(true);
+		}
+		thread.setName(name);
+		return thread;
+	}
+}
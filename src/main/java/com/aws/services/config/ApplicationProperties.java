@@ -3,6 +3,8 @@ package com.aws.services.config;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Configuration;
 
+import java.util.List;
+
 @Configuration
 public class ApplicationProperties {
 
@@ -18,6 +20,267 @@ public class ApplicationProperties {
 	@Value("${aws.s3.bucket.name}")
 	private String s3Bucket;
 
+	@Value("${aws.sqs.queue.names:}")
+	private List<String> sqsQueueNames;
+
+	@Value("${aws.sqs.queue.url.cache.ttl.seconds:300}")
+	private long sqsQueueUrlCacheTtlSeconds;
+
+	@Value("${aws.sqs.queue.url.cache.negative.ttl.seconds:10}")
+	private long sqsQueueUrlCacheNegativeTtlSeconds;
+
+	@Value("${aws.sqs.queue.url.cache.max.size:1000}")
+	private int sqsQueueUrlCacheMaxSize;
+
+	@Value("${aws.sqs.producer.batching.enabled:true}")
+	private boolean sqsProducerBatchingEnabled;
+
+	@Value("${aws.sqs.producer.linger.millis:5}")
+	private long sqsProducerLingerMillis;
+
+	@Value("${aws.sqs.producer.max.in.flight.batches:16}")
+	private int sqsProducerMaxInFlightBatches;
+
+	@Value("${aws.sqs.producer.max.retries:3}")
+	private int sqsProducerMaxRetries;
+
+	@Value("${aws.sqs.consumer.queues:}")
+	private List<String> sqsConsumerQueues;
+
+	@Value("${aws.sqs.consumer.workers.per.queue:2}")
+	private int sqsConsumerWorkersPerQueue;
+
+	@Value("${aws.sqs.consumer.prefetch.capacity:100}")
+	private int sqsConsumerPrefetchCapacity;
+
+	@Value("${aws.sqs.consumer.wait.time.seconds:20}")
+	private int sqsConsumerWaitTimeSeconds;
+
+	@Value("${aws.sqs.consumer.visibility.timeout.seconds:30}")
+	private int sqsConsumerVisibilityTimeoutSeconds;
+
+	@Value("${aws.sqs.consumer.handler.threads:8}")
+	private int sqsConsumerHandlerThreads;
+
+	@Value("${aws.sqs.consumer.drain.wait.millis:1000}")
+	private long sqsConsumerDrainWaitMillis;
+
+	@Value("${aws.sqs.consumer.drain.threads:4}")
+	private int sqsConsumerDrainThreads;
+
+	@Value("${aws.sqs.ack.parallelism:4}")
+	private int sqsAckParallelism;
+
+	@Value("${aws.sqs.ack.coalesce.window.millis:0}")
+	private long sqsAckCoalesceWindowMillis;
+
+	@Value("${aws.sqs.ack.max.retries:3}")
+	private int sqsAckMaxRetries;
+
+	@Value("${aws.s3.download.max.concurrency:64}")
+	private int s3DownloadMaxConcurrency;
+
+	@Value("${aws.s3.download.max.in.flight.bytes:268435456}")
+	private long s3DownloadMaxInFlightBytes;
+
+	@Value("${aws.s3.multipart.threshold.bytes:104857600}")
+	private long s3MultipartThresholdBytes;
+
+	@Value("${aws.s3.multipart.part.size.bytes:16777216}")
+	private long s3MultipartPartSizeBytes;
+
+	@Value("${aws.s3.multipart.concurrency:8}")
+	private int s3MultipartConcurrency;
+
+	@Value("${aws.s3.multipart.max.retries:3}")
+	private int s3MultipartMaxRetries;
+
+	@Value("${aws.s3.metadata.cache.max.size:10000}")
+	private int s3MetadataCacheMaxSize;
+
+	@Value("${aws.s3.metadata.cache.ttl.seconds:60}")
+	private long s3MetadataCacheTtlSeconds;
+
+	@Value("${aws.s3.metadata.cache.revalidate:true}")
+	private boolean s3MetadataCacheRevalidate;
+
+	@Value("${aws.s3.metadata.bulk.concurrency:32}")
+	private int s3MetadataBulkConcurrency;
+
+	@Value("${aws.http.max.connections:200}")
+	private int httpMaxConnections;
+
+	@Value("${aws.http.connection.acquisition.timeout.millis:10000}")
+	private long httpConnectionAcquisitionTimeoutMillis;
+
+	@Value("${aws.http.connection.timeout.millis:2000}")
+	private long httpConnectionTimeoutMillis;
+
+	@Value("${aws.http.socket.timeout.millis:30000}")
+	private long httpSocketTimeoutMillis;
+
+	@Value("${aws.http.connection.ttl.millis:0}")
+	private long httpConnectionTtlMillis;
+
+	@Value("${aws.http.connection.max.idle.millis:60000}")
+	private long httpConnectionMaxIdleMillis;
+
+	@Value("${aws.http.tcp.keep.alive:true}")
+	private boolean httpTcpKeepAlive;
+
+	@Value("${aws.http.async.max.concurrency:200}")
+	private int httpAsyncMaxConcurrency;
+
+	@Value("${aws.http.async.max.pending.acquires:10000}")
+	private int httpAsyncMaxPendingAcquires;
+
+	@Value("${aws.http.event.loop.threads:0}")
+	private int httpEventLoopThreads;
+
+	@Value("${aws.s3.crt.enabled:false}")
+	private boolean s3CrtEnabled;
+
+	@Value("${aws.s3.crt.target.throughput.gbps:10.0}")
+	private double s3CrtTargetThroughputGbps;
+
+	@Value("${aws.s3.crt.max.concurrency:0}")
+	private int s3CrtMaxConcurrency;
+
+	@Value("${aws.s3.crt.minimum.part.size.bytes:8388608}")
+	private long s3CrtMinimumPartSizeBytes;
+
+	@Value("${aws.endpoint.override:}")
+	private String endpointOverride;
+
+	@Value("${aws.s3.path.style.access:false}")
+	private boolean s3PathStyleAccess;
+
+	@Value("${aws.metrics.operations.enabled:true}")
+	private boolean metricsOperationsEnabled;
+
+	@Value("${aws.metrics.trace.sample.rate:0.0}")
+	private double metricsTraceSampleRate;
+
+	@Value("${aws.metrics.trace.buffer.size:256}")
+	private int metricsTraceBufferSize;
+
+	@Value("${aws.sqs.compression.codec:gzip}")
+	private String sqsCompressionCodec;
+
+	@Value("${aws.sqs.compression.min.bytes:1024}")
+	private int sqsCompressionMinBytes;
+
+	@Value("${aws.sqs.compression.max.decoded.bytes:16777216}")
+	private int sqsCompressionMaxDecodedBytes;
+
+	@Value("${aws.sqs.ingest.max.in.flight.batches:16}")
+	private int sqsIngestMaxInFlightBatches;
+
+	@Value("${aws.sqs.ingest.max.line.bytes:1048576}")
+	private int sqsIngestMaxLineBytes;
+
+	@Value("${aws.s3.list.concurrency:16}")
+	private int s3ListConcurrency;
+
+	@Value("${aws.s3.list.partition.depth:1}")
+	private int s3ListPartitionDepth;
+
+	@Value("${aws.s3.download.ranged.threshold.bytes:104857600}")
+	private long s3DownloadRangedThresholdBytes;
+
+	@Value("${aws.s3.download.range.size.bytes:16777216}")
+	private long s3DownloadRangeSizeBytes;
+
+	@Value("${aws.s3.download.range.concurrency:8}")
+	private int s3DownloadRangeConcurrency;
+
+	@Value("${aws.s3.download.range.max.retries:3}")
+	private int s3DownloadRangeMaxRetries;
+
+	@Value("${aws.s3.checksum.algorithm:CRC32C}")
+	private String s3ChecksumAlgorithm;
+
+	@Value("${aws.ratelimit.enabled:true}")
+	private boolean rateLimitEnabled;
+
+	@Value("${aws.ratelimit.min.rate:1.0}")
+	private double rateLimitMinRate;
+
+	@Value("${aws.ratelimit.max.rate:5000.0}")
+	private double rateLimitMaxRate;
+
+	@Value("${aws.ratelimit.increase.per.second:20.0}")
+	private double rateLimitIncreasePerSecond;
+
+	@Value("${aws.ratelimit.decrease.factor:0.7}")
+	private double rateLimitDecreaseFactor;
+
+	@Value("${aws.ratelimit.max.wait.millis:5000}")
+	private long rateLimitMaxWaitMillis;
+
+	@Value("${aws.ratelimit.s3.prefix.depth:1}")
+	private int rateLimitS3PrefixDepth;
+
+	@Value("${aws.sqs.payload.max.in.flight.bytes:67108864}")
+	private long sqsPayloadMaxInFlightBytes;
+
+	@Value("${aws.sqs.payload.stream.threshold.bytes:8388608}")
+	private long sqsPayloadStreamThresholdBytes;
+
+	@Value("${aws.sqs.spool.enabled:false}")
+	private boolean sqsSpoolEnabled;
+
+	@Value("${aws.sqs.spool.directory:sqs-spool}")
+	private String sqsSpoolDirectory;
+
+	@Value("${aws.sqs.spool.segment.bytes:67108864}")
+	private long sqsSpoolSegmentBytes;
+
+	@Value("${aws.sqs.spool.max.bytes:1073741824}")
+	private long sqsSpoolMaxBytes;
+
+	@Value("${aws.sqs.spool.max.wait.millis:2000}")
+	private long sqsSpoolMaxWaitMillis;
+
+	@Value("${aws.sqs.spool.force:true}")
+	private boolean sqsSpoolForce;
+
+	@Value("${aws.sqs.spool.checkpoint.interval.millis:1000}")
+	private long sqsSpoolCheckpointIntervalMillis;
+
+	@Value("${aws.sqs.consumer.group.stripes:64}")
+	private int sqsConsumerGroupStripes;
+
+	@Value("${aws.sqs.group.key.field:}")
+	private String sqsGroupKeyField;
+
+	@Value("${aws.sqs.group.buckets:0}")
+	private int sqsGroupBuckets;
+
+	@Value("${aws.s3.pack.enabled:false}")
+	private boolean s3PackEnabled;
+
+	@Value("${aws.s3.pack.prefix:packed/}")
+	private String s3PackPrefix;
+
+	@Value("${aws.s3.pack.max.object.bytes:65536}")
+	private long s3PackMaxObjectBytes;
+
+	@Value("${aws.s3.pack.flush.bytes:8388608}")
+	private long s3PackFlushBytes;
+
+	@Value("${aws.s3.pack.flush.interval.millis:1000}")
+	private long s3PackFlushIntervalMillis;
+
+	@Value("${aws.s3.pack.flush.concurrency:4}")
+	private int s3PackFlushConcurrency;
+
+	@Value("${aws.s3.pack.compaction.live.ratio:0.5}")
+	private double s3PackCompactionLiveRatio;
+
+	@Value("${aws.s3.pack.compaction.interval.seconds:600}")
+	private long s3PackCompactionIntervalSeconds;
+
 	public String getAccessKeyId() {
 		return accessKeyId;
 	}
@@ -33,4 +296,352 @@ public class ApplicationProperties {
 	public String getS3Bucket() {
 		return s3Bucket;
 	}
+
+	public List<String> getSqsQueueNames() {
+		return sqsQueueNames;
+	}
+
+	public long getSqsQueueUrlCacheTtlSeconds() {
+		return sqsQueueUrlCacheTtlSeconds;
+	}
+
+	public long getSqsQueueUrlCacheNegativeTtlSeconds() {
+		return sqsQueueUrlCacheNegativeTtlSeconds;
+	}
+
+	public int getSqsQueueUrlCacheMaxSize() {
+		return sqsQueueUrlCacheMaxSize;
+	}
+
+	public boolean isSqsProducerBatchingEnabled() {
+		return sqsProducerBatchingEnabled;
+	}
+
+	public long getSqsProducerLingerMillis() {
+		return sqsProducerLingerMillis;
+	}
+
+	public int getSqsProducerMaxInFlightBatches() {
+		return sqsProducerMaxInFlightBatches;
+	}
+
+	public int getSqsProducerMaxRetries() {
+		return sqsProducerMaxRetries;
+	}
+
+	public List<String> getSqsConsumerQueues() {
+		return sqsConsumerQueues;
+	}
+
+	public int getSqsConsumerWorkersPerQueue() {
+		return sqsConsumerWorkersPerQueue;
+	}
+
+	public int getSqsConsumerPrefetchCapacity() {
+		return sqsConsumerPrefetchCapacity;
+	}
+
+	public int getSqsConsumerWaitTimeSeconds() {
+		return sqsConsumerWaitTimeSeconds;
+	}
+
+	public int getSqsConsumerVisibilityTimeoutSeconds() {
+		return sqsConsumerVisibilityTimeoutSeconds;
+	}
+
+	public int getSqsConsumerHandlerThreads() {
+		return sqsConsumerHandlerThreads;
+	}
+
+	public long getSqsConsumerDrainWaitMillis() {
+		return sqsConsumerDrainWaitMillis;
+	}
+
+	public int getSqsConsumerDrainThreads() {
+		return sqsConsumerDrainThreads;
+	}
+
+	public int getSqsAckParallelism() {
+		return sqsAckParallelism;
+	}
+
+	public long getSqsAckCoalesceWindowMillis() {
+		return sqsAckCoalesceWindowMillis;
+	}
+
+	public int getSqsAckMaxRetries() {
+		return sqsAckMaxRetries;
+	}
+
+	public int getS3DownloadMaxConcurrency() {
+		return s3DownloadMaxConcurrency;
+	}
+
+	public long getS3DownloadMaxInFlightBytes() {
+		return s3DownloadMaxInFlightBytes;
+	}
+
+	public long getS3MultipartThresholdBytes() {
+		return s3MultipartThresholdBytes;
+	}
+
+	public long getS3MultipartPartSizeBytes() {
+		return s3MultipartPartSizeBytes;
+	}
+
+	public int getS3MultipartConcurrency() {
+		return s3MultipartConcurrency;
+	}
+
+	public int getS3MultipartMaxRetries() {
+		return s3MultipartMaxRetries;
+	}
+
+	public int getS3MetadataCacheMaxSize() {
+		return s3MetadataCacheMaxSize;
+	}
+
+	public long getS3MetadataCacheTtlSeconds() {
+		return s3MetadataCacheTtlSeconds;
+	}
+
+	public boolean isS3MetadataCacheRevalidate() {
+		return s3MetadataCacheRevalidate;
+	}
+
+	public int getS3MetadataBulkConcurrency() {
+		return s3MetadataBulkConcurrency;
+	}
+
+	public int getHttpMaxConnections() {
+		return httpMaxConnections;
+	}
+
+	public long getHttpConnectionAcquisitionTimeoutMillis() {
+		return httpConnectionAcquisitionTimeoutMillis;
+	}
+
+	public long getHttpConnectionTimeoutMillis() {
+		return httpConnectionTimeoutMillis;
+	}
+
+	public long getHttpSocketTimeoutMillis() {
+		return httpSocketTimeoutMillis;
+	}
+
+	public long getHttpConnectionTtlMillis() {
+		return httpConnectionTtlMillis;
+	}
+
+	public long getHttpConnectionMaxIdleMillis() {
+		return httpConnectionMaxIdleMillis;
+	}
+
+	public boolean isHttpTcpKeepAlive() {
+		return httpTcpKeepAlive;
+	}
+
+	public int getHttpAsyncMaxConcurrency() {
+		return httpAsyncMaxConcurrency;
+	}
+
+	public int getHttpAsyncMaxPendingAcquires() {
+		return httpAsyncMaxPendingAcquires;
+	}
+
+	public int getHttpEventLoopThreads() {
+		return httpEventLoopThreads;
+	}
+
+	public boolean isS3CrtEnabled() {
+		return s3CrtEnabled;
+	}
+
+	public double getS3CrtTargetThroughputGbps() {
+		return s3CrtTargetThroughputGbps;
+	}
+
+	public int getS3CrtMaxConcurrency() {
+		return s3CrtMaxConcurrency;
+	}
+
+	public long getS3CrtMinimumPartSizeBytes() {
+		return s3CrtMinimumPartSizeBytes;
+	}
+
+	public String getEndpointOverride() {
+		return endpointOverride;
+	}
+
+	public boolean isS3PathStyleAccess() {
+		return s3PathStyleAccess;
+	}
+
+	public boolean isMetricsOperationsEnabled() {
+		return metricsOperationsEnabled;
+	}
+
+	public double getMetricsTraceSampleRate() {
+		return metricsTraceSampleRate;
+	}
+
+	public int getMetricsTraceBufferSize() {
+		return metricsTraceBufferSize;
+	}
+
+	public String getSqsCompressionCodec() {
+		return sqsCompressionCodec;
+	}
+
+	public int getSqsCompressionMinBytes() {
+		return sqsCompressionMinBytes;
+	}
+
+	public int getSqsCompressionMaxDecodedBytes() {
+		return sqsCompressionMaxDecodedBytes;
+	}
+
+	public int getSqsIngestMaxInFlightBatches() {
+		return sqsIngestMaxInFlightBatches;
+	}
+
+	public int getSqsIngestMaxLineBytes() {
+		return sqsIngestMaxLineBytes;
+	}
+
+	public int getS3ListConcurrency() {
+		return s3ListConcurrency;
+	}
+
+	public int getS3ListPartitionDepth() {
+		return s3ListPartitionDepth;
+	}
+
+	public long getS3DownloadRangedThresholdBytes() {
+		return s3DownloadRangedThresholdBytes;
+	}
+
+	public long getS3DownloadRangeSizeBytes() {
+		return s3DownloadRangeSizeBytes;
+	}
+
+	public int getS3DownloadRangeConcurrency() {
+		return s3DownloadRangeConcurrency;
+	}
+
+	public int getS3DownloadRangeMaxRetries() {
+		return s3DownloadRangeMaxRetries;
+	}
+
+	public String getS3ChecksumAlgorithm() {
+		return s3ChecksumAlgorithm;
+	}
+
+	public boolean isRateLimitEnabled() {
+		return rateLimitEnabled;
+	}
+
+	public double getRateLimitMinRate() {
+		return rateLimitMinRate;
+	}
+
+	public double getRateLimitMaxRate() {
+		return rateLimitMaxRate;
+	}
+
+	public double getRateLimitIncreasePerSecond() {
+		return rateLimitIncreasePerSecond;
+	}
+
+	public double getRateLimitDecreaseFactor() {
+		return rateLimitDecreaseFactor;
+	}
+
+	public long getRateLimitMaxWaitMillis() {
+		return rateLimitMaxWaitMillis;
+	}
+
+	public int getRateLimitS3PrefixDepth() {
+		return rateLimitS3PrefixDepth;
+	}
+
+	public long getSqsPayloadMaxInFlightBytes() {
+		return sqsPayloadMaxInFlightBytes;
+	}
+
+	public long getSqsPayloadStreamThresholdBytes() {
+		return sqsPayloadStreamThresholdBytes;
+	}
+
+	public boolean isSqsSpoolEnabled() {
+		return sqsSpoolEnabled;
+	}
+
+	public String getSqsSpoolDirectory() {
+		return sqsSpoolDirectory;
+	}
+
+	public long getSqsSpoolSegmentBytes() {
+		return sqsSpoolSegmentBytes;
+	}
+
+	public long getSqsSpoolMaxBytes() {
+		return sqsSpoolMaxBytes;
+	}
+
+	public long getSqsSpoolMaxWaitMillis() {
+		return sqsSpoolMaxWaitMillis;
+	}
+
+	public boolean isSqsSpoolForce() {
+		return sqsSpoolForce;
+	}
+
+	public long getSqsSpoolCheckpointIntervalMillis() {
+		return sqsSpoolCheckpointIntervalMillis;
+	}
+
+	public int getSqsConsumerGroupStripes() {
+		return sqsConsumerGroupStripes;
+	}
+
+	public String getSqsGroupKeyField() {
+		return sqsGroupKeyField;
+	}
+
+	public int getSqsGroupBuckets() {
+		return sqsGroupBuckets;
+	}
+
+	public boolean isS3PackEnabled() {
+		return s3PackEnabled;
+	}
+
+	public String getS3PackPrefix() {
+		return s3PackPrefix;
+	}
+
+	public long getS3PackMaxObjectBytes() {
+		return s3PackMaxObjectBytes;
+	}
+
+	public long getS3PackFlushBytes() {
+		return s3PackFlushBytes;
+	}
+
+	public long getS3PackFlushIntervalMillis() {
+		return s3PackFlushIntervalMillis;
+	}
+
+	public int getS3PackFlushConcurrency() {
+		return s3PackFlushConcurrency;
+	}
+
+	public double getS3PackCompactionLiveRatio() {
+		return s3PackCompactionLiveRatio;
+	}
+
+	public long getS3PackCompactionIntervalSeconds() {
+		return s3PackCompactionIntervalSeconds;
+	}
 }
@@ -0,0 +1,61 @@
+package com.aws.services.config;
+
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Limits the bytes of the objects being transferred at once. An object larger than the whole budget is
+ * let through alone rather than blocking forever.
+ */
+public final class ByteBudget {
+	private final long capacity;
+	private final ReentrantLock lock = new ReentrantLock();
+	private final Condition released = lock.newCondition();
+	private long available;
+
+	public ByteBudget(long capacity) {
+		this.capacity = capacity;
+		this.available = capacity;
+	}
+
+	/**
+	 * Waits until the size fits in the budget and takes it.
+	 *
+	 * @return The bytes reserved, to be passed to {@link #release}.
+	 */
+	public long acquire(long size) {
+		long reserved = Math.min(Math.max(size, 0), capacity);
+		lock.lock();
+		try {
+			while (available < reserved) {
+				released.awaitUninterruptibly();
+			}
+			available -= reserved;
+			return reserved;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	public void release(long reserved) {
+		lock.lock();
+		try {
+			available += reserved;
+			released.signalAll();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * @return The bytes currently reserved.
+	 */
+	public long reserved() {
+		lock.lock();
+		try {
+			return capacity - available;
+		} finally {
+			lock.unlock();
+		}
+	}
+}
@@ -0,0 +1,144 @@
+package com.aws.services.controller;
+
+import com.aws.services.model.S3ObjectMetadata;
+import com.aws.services.service.AWSS3AsyncService;
+import com.aws.services.service.AWSSQSAsyncService;
+import com.aws.services.service.sqs.SQSMessageGroups;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RestController;
+import software.amazon.awssdk.awscore.exception.AwsServiceException;
+import software.amazon.awssdk.services.s3.model.NoSuchKeyException;
+import software.amazon.awssdk.services.sqs.model.Message;
+import software.amazon.awssdk.services.sqs.model.QueueDoesNotExistException;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.NoSuchFileException;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * Non-blocking variants of the endpoints in {@link AWSServicesController}. Each handler returns a future, so
+ * the servlet thread is released while the AWS call is in flight and the response is written when it completes.
+ */
+@RestController
+public class AWSServicesAsyncController {
+
+	@Autowired
+	private AWSSQSAsyncService awsSqsAsyncService;
+
+	@Autowired
+	private AWSS3AsyncService awsS3AsyncService;
+
+	@Autowired
+	private SQSMessageGroups sqsMessageGroups;
+
+	//	SQS Service Controller
+	@GetMapping("/async/send-message")
+	public CompletableFuture<ResponseEntity<?>> sendMessage(@RequestBody Map<String,String> messageRequest) {
+		String message = messageRequest.get("message");
+		String queueName = messageRequest.get("queueName");
+		String groupId = messageRequest.get("groupId");
+		if (groupId == null) {
+			groupId = sqsMessageGroups.groupIdForKey(messageRequest.get("groupKey"));
+		}
+		return awsSqsAsyncService.sendMessage(queueName, message, groupId)
+				.handle((messageId, error) -> error == null ? ResponseEntity.ok("Message Sent") : errorResponse(error));
+	}
+
+	@GetMapping("/async/send-batch-messages")
+	public CompletableFuture<ResponseEntity<?>> sendBatchMessages(@RequestBody Map<String,Object> messageRequest) {
+		String queueName = String.valueOf(messageRequest.get("queueName"));
+		List<String> messages = strings(messageRequest.get("messages"));
+		return awsSqsAsyncService.sendBatchMessages(queueName, messages)
+				.handle((results, error) -> error == null ? ResponseEntity.ok(results) : errorResponse(error));
+	}
+
+	@GetMapping("/async/receive-message")
+	public CompletableFuture<ResponseEntity<?>> receiveMessage(@RequestBody Map<String,String> messageRequest) {
+		int maxMessages = Integer.parseInt(messageRequest.get("maxMessages"));
+		String queueName = messageRequest.get("queueName");
+		return awsSqsAsyncService.receiveMessage(queueName, maxMessages)
+				.handle((messages, error) -> error == null
+						? ResponseEntity.ok(Map.of("Success", messages.stream().map(Message::body).toList()))
+						: errorResponse(error));
+	}
+
+	@GetMapping("/async/delete-messages")
+	public CompletableFuture<ResponseEntity<?>> deleteMessages(@RequestBody Map<String,Object> deleteRequest) {
+		String queueName = String.valueOf(deleteRequest.get("queueName"));
+		List<Message> messages = ((List<?>) deleteRequest.get("messages")).stream()
+				.map(receipt -> (Map<?, ?>) receipt)
+				.map(receipt -> Message.builder().messageId(Objects.toString(receipt.get("messageId"), null))
+						.receiptHandle(Objects.toString(receipt.get("receiptHandle"), null)).build())
+				.toList();
+		return awsSqsAsyncService.deleteMessages(queueName, messages)
+				.handle((results, error) -> error == null ? ResponseEntity.ok(results) : errorResponse(error));
+	}
+
+	//	S3 Service Controller
+	@GetMapping("/async/upload-file")
+	public CompletableFuture<ResponseEntity<?>> uploadFile(@RequestBody Map<String,String> uploadRequest) {
+		String s3Path = uploadRequest.get("s3Path");
+		String filePath = uploadRequest.get("localPath");
+		return awsS3AsyncService.uploadFile(s3Path, filePath)
+				.handle((eTag, error) -> error == null ? ResponseEntity.ok(eTag) : errorResponse(error));
+	}
+
+	@GetMapping("/async/upload-data")
+	public CompletableFuture<ResponseEntity<?>> uploadData(@RequestBody Map<String,String> uploadRequest) {
+		String s3Path = uploadRequest.get("s3Path");
+		ByteBuffer data = ByteBuffer.wrap(uploadRequest.get("data").getBytes(StandardCharsets.UTF_8));
+		return awsS3AsyncService.uploadBytes(s3Path, data)
+				.handle((eTag, error) -> error == null ? ResponseEntity.ok(eTag) : errorResponse(error));
+	}
+
+	@GetMapping("/async/download-file")
+	public CompletableFuture<ResponseEntity<?>> downloadFile(@RequestBody Map<String,String> downloadRequest) {
+		String s3Path = downloadRequest.get("s3Path");
+		String destinationDirectory = downloadRequest.get("destinationDirectory");
+		return awsS3AsyncService.downloadFile(s3Path, destinationDirectory)
+				.handle((eTag, error) -> error == null ? ResponseEntity.ok(eTag) : errorResponse(error));
+	}
+
+	@GetMapping("/async/object-metadata-bulk")
+	public CompletableFuture<Map<String, S3ObjectMetadata>> getObjectMetadata(@RequestBody Map<String,Object> metadataRequest) {
+		List<String> keys = strings(metadataRequest.get("keys"));
+		return awsS3AsyncService.getObjectMetadata(keys);
+	}
+
+	@GetMapping("/async/list-all-objects")
+	public CompletableFuture<ResponseEntity<?>> listAllObjects(@RequestBody Map<String,Object> listObjectRequest) {
+		String bucketName = String.valueOf(listObjectRequest.get("bucketName"));
+		String prefix = String.valueOf(listObjectRequest.get("prefix"));
+		return awsS3AsyncService.listAllObjects(bucketName, prefix)
+				.handle((keys, error) -> error == null ? ResponseEntity.ok(keys) : errorResponse(error));
+	}
+
+	//Maps a failed AWS call to the status the blocking endpoints use, with the error message as body.
+	private static ResponseEntity<String> errorResponse(Throwable error) {
+		Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+		int status;
+		if (cause instanceof QueueDoesNotExistException || cause instanceof NoSuchFileException) {
+			status = 400;
+		} else if (cause instanceof NoSuchKeyException) {
+			status = 404;
+		} else if (cause instanceof AwsServiceException serviceException && serviceException.statusCode() > 0) {
+			status = serviceException.statusCode();
+		} else {
+			status = 500;
+		}
+		return ResponseEntity.status(status).body(String.valueOf(cause.getMessage()));
+	}
+
+	//Reads a JSON array of the request body as strings.
+	private static List<String> strings(Object values) {
+		return ((List<?>) values).stream().map(String::valueOf).toList();
+	}
+}
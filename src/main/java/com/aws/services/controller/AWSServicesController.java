@@ -1,13 +1,32 @@
 package com.aws.services.controller;
 
+import com.aws.services.config.AWSRateLimiter;
+import com.aws.services.metrics.AWSOperationMetrics;
+import com.aws.services.metrics.AWSTransportMetrics;
+import com.aws.services.model.AWSOperationTrace;
+import com.aws.services.model.S3ListFilter;
+import com.aws.services.model.S3ObjectMetadata;
+import com.aws.services.model.S3SyncReport;
 import com.aws.services.service.impl.AWSS3ServiceImpl;
 import com.aws.services.service.impl.AWSSQSServiceImpl;
+import com.aws.services.service.sqs.SQSMessageGroups;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import software.amazon.awssdk.services.sqs.model.QueueDoesNotExistException;
 
+import java.io.IOException;
+import java.time.Instant;
 import java.util.List;
 import java.util.Map;
 
@@ -20,6 +39,18 @@ public class AWSServicesController {
 	@Autowired
 	private AWSS3ServiceImpl awss3Service;
 
+	@Autowired
+	private AWSTransportMetrics awsTransportMetrics;
+
+	@Autowired
+	private AWSOperationMetrics awsOperationMetrics;
+
+	@Autowired
+	private AWSRateLimiter awsRateLimiter;
+
+	@Autowired
+	private SQSMessageGroups sqsMessageGroups;
+
 
 	AWSServicesController() {
 		//default constructor
@@ -29,12 +60,32 @@ public class AWSServicesController {
 		this.awsSqsService = awsSqsService;
 	}
 
+	@GetMapping("/aws-transport-metrics")
+	public Map<String, Map<String, Number>> getTransportMetrics() {
+		return awsTransportMetrics.getPoolStats();
+	}
+
+	@GetMapping("/aws-operation-metrics")
+	public Map<String, Map<String, Map<String, Map<String, Object>>>> getOperationMetrics() {
+		return awsOperationMetrics.getOperationStats();
+	}
+
+	@GetMapping("/aws-rate-limits")
+	public Map<String, Map<String, Object>> getRateLimits() {
+		return awsRateLimiter.getLimits();
+	}
+
+	@GetMapping("/aws-operation-traces")
+	public List<AWSOperationTrace> getOperationTraces() {
+		return awsOperationMetrics.getTraces();
+	}
+
 	//	SQS Service Controller
 	@GetMapping("/send-message")
 	public ResponseEntity<String> sendMessage(@RequestBody Map<String,String> messageRequest) {
 		String message = messageRequest.get("message");
 		String queueName = messageRequest.get("queueName");
-		String groupId = messageRequest.get("groupId");
+		String groupId = groupIdOf(messageRequest);
 		return awsSqsService.sendMessage(queueName,message, groupId);
 	}
 
@@ -42,7 +93,7 @@ public class AWSServicesController {
 	public ResponseEntity<String> sendMessageViaS3(@RequestBody Map<String,String> messageRequest) {
 		String message = messageRequest.get("message");
 		String queueName = messageRequest.get("queueName");
-		String groupId = messageRequest.get("groupId");
+		String groupId = groupIdOf(messageRequest);
 		return awsSqsService.sendMessageViaS3(queueName,message, groupId);
 	}
 
@@ -60,6 +111,38 @@ public class AWSServicesController {
 		return awsSqsService.receiveMessageViaS3(queueName,maxMessages);
 	}
 
+	@GetMapping("/sqs-queue-registry-stats")
+	public Map<String, Long> getQueueRegistryStats() {
+		return awsSqsService.getQueueRegistryStats();
+	}
+
+	@PostMapping("/bulk-ingest")
+	public void bulkIngest(@RequestParam("queueName") String queueName,
+			@RequestParam(value = "groupId", required = false) String groupId,
+			HttpServletRequest request, HttpServletResponse response) throws IOException {
+		response.setContentType("application/x-ndjson");
+		try {
+			awsSqsService.bulkIngest(queueName, groupId, request.getInputStream(), response.getOutputStream());
+		} catch (QueueDoesNotExistException e) {
+			response.sendError(400, "Invalid Queue Name");
+		}
+	}
+
+	@GetMapping("/sqs-codec-stats")
+	public Map<String, Long> getCodecStats() {
+		return awsSqsService.getCodecStats();
+	}
+
+	@GetMapping("/sqs-payload-stats")
+	public Map<String, Long> getPayloadFetchStats() {
+		return awsSqsService.getPayloadFetchStats();
+	}
+
+	@GetMapping("/sqs-spool-stats")
+	public Map<String, Long> getSpoolStats() {
+		return awsSqsService.getSpoolStats();
+	}
+
 	//	S3 Service Controller
 	@GetMapping("/list-s3-buckets")
 	public void listS3Buckets() {
@@ -73,6 +156,19 @@ public class AWSServicesController {
 		awss3Service.uploadFile(s3Path,filePath);
 	}
 
+	@PostMapping("/upload-stream")
+	public void uploadStream(@RequestParam("s3Path") String s3Path, HttpServletRequest request) throws IOException {
+		awss3Service.uploadStream(s3Path, request.getInputStream());
+	}
+
+	@GetMapping("/resume-upload")
+	public void resumeUpload(@RequestBody Map<String,String> uploadRequest) {
+		String key = uploadRequest.get("key");
+		String filePath = uploadRequest.get("localPath");
+		String uploadId = uploadRequest.get("uploadId");
+		awss3Service.resumeUpload(key,filePath,uploadId);
+	}
+
 
 	@GetMapping("/download-file")
 	public void downloadFile(@RequestBody Map<String,String> downloadRequest) {
@@ -81,6 +177,24 @@ public class AWSServicesController {
 		awss3Service.downloadFile(s3Path,destinationDirectory, null);
 	}
 
+	@GetMapping("/stream-object")
+	public ResponseEntity<StreamingResponseBody> streamObject(@RequestParam("key") String key,
+			@RequestHeader(value = HttpHeaders.RANGE, required = false) String range,
+			@RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+		return awss3Service.streamObject(key, range, ifNoneMatch);
+	}
+
+	@GetMapping("/object-metadata-bulk")
+	public Map<String, S3ObjectMetadata> getObjectMetadata(@RequestBody Map<String,Object> metadataRequest) {
+		List<String> keys = strings(metadataRequest.get("keys"));
+		return awss3Service.getObjectMetadata(keys);
+	}
+
+	@GetMapping("/s3-metadata-cache-stats")
+	public Map<String, Number> getObjectMetadataCacheStats() {
+		return awss3Service.getObjectMetadataCacheStats();
+	}
+
 	@GetMapping("/list-all-objects")
 	public Map<String, List<String>> listAllObjects(@RequestBody Map<String,Object> listObjectRequest) {
 		String bucketName = String.valueOf(listObjectRequest.get("bucketName"));
@@ -89,4 +203,60 @@ public class AWSServicesController {
 		String destinationPath = String.valueOf(listObjectRequest.get("destinationPath"));
 		return awss3Service.listAllObjects(bucketName, prefix,destinationPath,isDownload);
 	}
+
+	@GetMapping("/list-objects-stream")
+	public void listObjectsStream(@RequestParam("bucketName") String bucketName,
+			@RequestParam(value = "prefix", required = false) String prefix,
+			@RequestParam(value = "suffix", required = false) String suffix,
+			@RequestParam(value = "minSize", required = false) Long minSize,
+			@RequestParam(value = "maxSize", required = false) Long maxSize,
+			@RequestParam(value = "modifiedSince", required = false) Instant modifiedSince,
+			HttpServletResponse response) throws IOException {
+		response.setContentType("application/x-ndjson");
+		awss3Service.listObjects(bucketName, prefix, new S3ListFilter(suffix, minSize, maxSize, modifiedSince),
+				response.getOutputStream());
+	}
+
+	@GetMapping("/sync-prefix")
+	public S3SyncReport syncPrefix(@RequestBody Map<String,Object> syncRequest) {
+		String bucketName = String.valueOf(syncRequest.get("bucketName"));
+		String prefix = String.valueOf(syncRequest.get("prefix"));
+		String destinationPath = String.valueOf(syncRequest.get("destinationPath"));
+		boolean deleteRemoved = Boolean.TRUE.equals(syncRequest.get("deleteRemoved"));
+		return awss3Service.syncPrefix(bucketName, prefix, destinationPath, deleteRemoved);
+	}
+
+	@DeleteMapping("/delete-object")
+	public void deleteObject(@RequestParam("key") String key) {
+		awss3Service.deleteObject(key);
+	}
+
+	@GetMapping("/list-packed-objects")
+	public List<String> listPackedObjects(@RequestParam(value = "prefix", required = false) String prefix) {
+		return awss3Service.listPackedObjects(prefix);
+	}
+
+	@GetMapping("/s3-pack-stats")
+	public Map<String, Long> getPackStats() {
+		return awss3Service.getPackStats();
+	}
+
+	@PostMapping("/s3-pack-compact")
+	public Map<String, Long> compactPackedObjects() {
+		return awss3Service.compactPackedObjects();
+	}
+
+	/**
+	 * The explicit groupId of a send request or, without one, the group derived from its groupKey, a stable key
+	 * such as a customer or order id that keeps that entity's messages in one ordered group.
+	 */
+	private String groupIdOf(Map<String, String> messageRequest) {
+		String groupId = messageRequest.get("groupId");
+		return groupId != null ? groupId : sqsMessageGroups.groupIdForKey(messageRequest.get("groupKey"));
+	}
+
+	//Reads a JSON array of the request body as strings.
+	private static List<String> strings(Object values) {
+		return ((List<?>) values).stream().map(String::valueOf).toList();
+	}
 }
@@ -0,0 +1,284 @@
+package com.aws.services.metrics;
+
+import com.aws.services.config.ApplicationProperties;
+import com.aws.services.model.AWSOperationTrace;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.stereotype.Component;
+import software.amazon.awssdk.awscore.exception.AwsServiceException;
+import software.amazon.awssdk.core.SdkRequest;
+import software.amazon.awssdk.core.async.AsyncRequestBody;
+import software.amazon.awssdk.core.interceptor.Context;
+import software.amazon.awssdk.core.interceptor.ExecutionAttribute;
+import software.amazon.awssdk.core.interceptor.ExecutionAttributes;
+import software.amazon.awssdk.core.interceptor.ExecutionInterceptor;
+import software.amazon.awssdk.core.interceptor.SdkExecutionAttribute;
+import software.amazon.awssdk.core.sync.RequestBody;
+import software.amazon.awssdk.http.SdkHttpHeaders;
+import software.amazon.awssdk.http.SdkHttpResponse;
+
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Records every call made through the SDK clients: a latency histogram per service, operation, bucket or queue
+ * and outcome, plus bytes sent and received, retries and throttled attempts. A configurable fraction of calls
+ * is also kept as {@link AWSOperationTrace}s in a bounded buffer.
+ * <p>
+ * Registered as an execution interceptor on every client built by {@code AWSConfig}, so the service
+ * implementations need no changes. Recording allocates one small object per call; the counters are looked up
+ * without building keys.
+ */
+@Component
+public class AWSOperationMetrics implements ExecutionInterceptor {
+
+	private static final Logger LOGGER = LogManager.getLogger(AWSOperationMetrics.class);
+	private static final ExecutionAttribute<Call> CALL = new ExecutionAttribute<>("AWSOperationMetrics.Call");
+	private static final String NO_RESOURCE = "-";
+
+	enum Outcome { SUCCESS, THROTTLED, CLIENT_ERROR, SERVER_ERROR, FAILED }
+
+	private final Map<String, Map<String, Map<String, OperationStats>>> services = new ConcurrentHashMap<>();
+	private final ArrayDeque<AWSOperationTrace> traces = new ArrayDeque<>();
+	private final ReentrantLock tracesLock = new ReentrantLock();
+	private final double traceSampleRate;
+	private final int traceBufferSize;
+
+	public AWSOperationMetrics(ApplicationProperties applicationProperties) {
+		this.traceSampleRate = applicationProperties.getMetricsTraceSampleRate();
+		this.traceBufferSize = Math.max(1, applicationProperties.getMetricsTraceBufferSize());
+	}
+
+	@Override
+	public void beforeExecution(Context.BeforeExecution context, ExecutionAttributes executionAttributes) {
+		boolean sampled = traceSampleRate > 0 && ThreadLocalRandom.current().nextDouble() < traceSampleRate;
+		executionAttributes.putAttribute(CALL, new Call(System.nanoTime(), sampled));
+	}
+
+	@Override
+	public void beforeTransmission(Context.BeforeTransmission context, ExecutionAttributes executionAttributes) {
+		Call call = executionAttributes.getAttribute(CALL);
+		if (call == null) {
+			return;
+		}
+		call.attempts++;
+		long length = contentLength(context.httpRequest(), "x-amz-decoded-content-length");
+		if (length < 0) {
+			length = contentLength(context.httpRequest(), "Content-Length");
+		}
+		if (length < 0) {
+			length = context.requestBody().flatMap(RequestBody::optionalContentLength)
+					.or(() -> context.asyncRequestBody().flatMap(AsyncRequestBody::contentLength))
+					.orElse(0L);
+		}
+		call.bytesSent += length;
+	}
+
+	@Override
+	public void afterTransmission(Context.AfterTransmission context, ExecutionAttributes executionAttributes) {
+		Call call = executionAttributes.getAttribute(CALL);
+		if (call == null) {
+			return;
+		}
+		SdkHttpResponse response = context.httpResponse();
+		if (response.statusCode() == 429 || response.statusCode() == 503) {
+			call.throttles++;
+		}
+		call.bytesReceived += Math.max(0, contentLength(response, "Content-Length"));
+		if (call.sampled) {
+			call.requestId = response.firstMatchingHeader("x-amz-request-id")
+					.or(() -> response.firstMatchingHeader("x-amzn-RequestId")).orElse(null);
+		}
+	}
+
+	@Override
+	public void afterExecution(Context.AfterExecution context, ExecutionAttributes executionAttributes) {
+		complete(context.request(), executionAttributes, Outcome.SUCCESS);
+	}
+
+	@Override
+	public void onExecutionFailure(Context.FailedExecution context, ExecutionAttributes executionAttributes) {
+		complete(context.request(), executionAttributes, outcomeOf(context.exception()));
+	}
+
+	/**
+	 * @return Per service, operation and bucket or queue: calls per outcome with latency percentiles, bytes sent
+	 * and received with their rate since the first call, retries and throttled attempts.
+	 */
+	public Map<String, Map<String, Map<String, Map<String, Object>>>> getOperationStats() {
+		Map<String, Map<String, Map<String, Map<String, Object>>>> stats = new LinkedHashMap<>();
+		services.forEach((service, operations) -> {
+			Map<String, Map<String, Map<String, Object>>> serviceStats = new LinkedHashMap<>();
+			operations.forEach((operation, resources) -> {
+				Map<String, Map<String, Object>> operationStats = new LinkedHashMap<>();
+				resources.values().forEach(resourceStats -> operationStats.put(resourceStats.resource, resourceStats.snapshot()));
+				serviceStats.put(operation, operationStats);
+			});
+			stats.put(service, serviceStats);
+		});
+		return stats;
+	}
+
+	/**
+	 * @return The most recent sampled calls, oldest first.
+	 */
+	public List<AWSOperationTrace> getTraces() {
+		tracesLock.lock();
+		try {
+			return new ArrayList<>(traces);
+		} finally {
+			tracesLock.unlock();
+		}
+	}
+
+	private void complete(SdkRequest request, ExecutionAttributes executionAttributes, Outcome outcome) {
+		Call call = executionAttributes.getAttribute(CALL);
+		if (call == null || call.completed) {
+			return;
+		}
+		call.completed = true;
+		long micros = (System.nanoTime() - call.startNanos) / 1000;
+		String service = executionAttributes.getAttribute(SdkExecutionAttribute.SERVICE_NAME);
+		String operation = executionAttributes.getAttribute(SdkExecutionAttribute.OPERATION_NAME);
+		OperationStats stats = statsFor(service, operation, resourceOf(request));
+		stats.histogram(outcome).record(micros);
+		stats.bytesSent.add(call.bytesSent);
+		stats.bytesReceived.add(call.bytesReceived);
+		if (call.attempts > 1) {
+			stats.retries.add(call.attempts - 1);
+		}
+		if (call.throttles > 0) {
+			stats.throttles.add(call.throttles);
+		}
+		if (call.sampled) {
+			trace(new AWSOperationTrace(Instant.now().minusNanos(micros * 1000), service, operation, stats.resource,
+					outcome.name(), micros, call.attempts, call.throttles, call.bytesSent, call.bytesReceived, call.requestId));
+		}
+	}
+
+	private OperationStats statsFor(String service, String operation, String resourceKey) {
+		Map<String, OperationStats> resources = services
+				.computeIfAbsent(service, name -> new ConcurrentHashMap<>())
+				.computeIfAbsent(operation, name -> new ConcurrentHashMap<>());
+		OperationStats stats = resources.get(resourceKey);
+		return stats != null ? stats : resources.computeIfAbsent(resourceKey, OperationStats::new);
+	}
+
+	private void trace(AWSOperationTrace trace) {
+		LOGGER.debug("AWS call {}", trace);
+		tracesLock.lock();
+		try {
+			if (traces.size() == traceBufferSize) {
+				traces.removeFirst();
+			}
+			traces.addLast(trace);
+		} finally {
+			tracesLock.unlock();
+		}
+	}
+
+	//S3 calls are keyed by bucket, SQS calls by queue URL (or name for GetQueueUrl).
+	private static String resourceOf(SdkRequest request) {
+		return request.getValueForField("Bucket", String.class)
+				.or(() -> request.getValueForField("QueueUrl", String.class))
+				.or(() -> request.getValueForField("QueueName", String.class))
+				.orElse(NO_RESOURCE);
+	}
+
+	private static Outcome outcomeOf(Throwable exception) {
+		if (exception instanceof AwsServiceException serviceException) {
+			if (serviceException.isThrottlingException()) {
+				return Outcome.THROTTLED;
+			}
+			return serviceException.statusCode() >= 500 ? Outcome.SERVER_ERROR : Outcome.CLIENT_ERROR;
+		}
+		return Outcome.FAILED;
+	}
+
+	private static long contentLength(SdkHttpHeaders headers, String header) {
+		Optional<String> value = headers.firstMatchingHeader(header);
+		if (value.isEmpty()) {
+			return -1;
+		}
+		try {
+			return Long.parseLong(value.get());
+		} catch (NumberFormatException e) {
+			return -1;
+		}
+	}
+
+	private static final class Call {
+		private final long startNanos;
+		private final boolean sampled;
+		private int attempts;
+		private int throttles;
+		private long bytesSent;
+		private long bytesReceived;
+		private String requestId;
+		private boolean completed;
+
+		private Call(long startNanos, boolean sampled) {
+			this.startNanos = startNanos;
+			this.sampled = sampled;
+		}
+	}
+
+	private static final class OperationStats {
+		private final String resource;
+		private final long createdNanos = System.nanoTime();
+		private final AtomicReferenceArray<LatencyHistogram> histograms = new AtomicReferenceArray<>(Outcome.values().length);
+		private final LongAdder bytesSent = new LongAdder();
+		private final LongAdder bytesReceived = new LongAdder();
+		private final LongAdder retries = new LongAdder();
+		private final LongAdder throttles = new LongAdder();
+
+		private OperationStats(String resourceKey) {
+			int queueNameStart = resourceKey.lastIndexOf('/');
+			this.resource = queueNameStart >= 0 ? resourceKey.substring(queueNameStart + 1) : resourceKey;
+		}
+
+		private LatencyHistogram histogram(Outcome outcome) {
+			LatencyHistogram histogram = histograms.get(outcome.ordinal());
+			if (histogram == null) {
+				histograms.compareAndSet(outcome.ordinal(), null, new LatencyHistogram());
+				histogram = histograms.get(outcome.ordinal());
+			}
+			return histogram;
+		}
+
+		private Map<String, Object> snapshot() {
+			Map<String, Object> snapshot = new LinkedHashMap<>();
+			long calls = 0;
+			Map<String, Map<String, Number>> outcomes = new LinkedHashMap<>();
+			for (Outcome outcome : Outcome.values()) {
+				LatencyHistogram histogram = histograms.get(outcome.ordinal());
+				if (histogram != null) {
+					Map<String, Number> histogramSnapshot = histogram.snapshot();
+					calls += histogramSnapshot.get("count").longValue();
+					outcomes.put(outcome.name(), histogramSnapshot);
+				}
+			}
+			double seconds = Math.max(1e-3, (System.nanoTime() - createdNanos) / 1e9);
+			snapshot.put("calls", calls);
+			snapshot.put("callsPerSecond", calls / seconds);
+			snapshot.put("bytesSent", bytesSent.sum());
+			snapshot.put("bytesSentPerSecond", bytesSent.sum() / seconds);
+			snapshot.put("bytesReceived", bytesReceived.sum());
+			snapshot.put("bytesReceivedPerSecond", bytesReceived.sum() / seconds);
+			snapshot.put("retries", retries.sum());
+			snapshot.put("throttles", throttles.sum());
+			snapshot.put("outcomes", outcomes);
+			return snapshot;
+		}
+	}
+}
@@ -0,0 +1,103 @@
+package com.aws.services.metrics;
+
+import org.springframework.stereotype.Component;
+import software.amazon.awssdk.core.metrics.CoreMetric;
+import software.amazon.awssdk.http.HttpMetric;
+import software.amazon.awssdk.metrics.MetricCollection;
+import software.amazon.awssdk.metrics.MetricPublisher;
+import software.amazon.awssdk.metrics.SdkMetric;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Collects the connection pool figures the SDK HTTP clients report with every request, per service and
+ * HTTP client, so that pool sizes can be chosen from observed utilisation.
+ */
+@Component
+public class AWSTransportMetrics implements MetricPublisher {
+
+	private final Map<String, PoolStats> pools = new ConcurrentHashMap<>();
+
+	@Override
+	public void publish(MetricCollection metricCollection) {
+		String serviceId = first(metricCollection, CoreMetric.SERVICE_ID);
+		metricCollection.childrenWithName("ApiCallAttempt").forEach(attempt ->
+				attempt.childrenWithName("HttpClient").forEach(http -> record(serviceId, http)));
+	}
+
+	@Override
+	public void close() {
+		// nothing to release
+	}
+
+	/**
+	 * @return Per pool (service/HTTP client): the latest and peak leased connections, pending acquires and
+	 * the mean and max time spent waiting for a connection.
+	 */
+	public Map<String, Map<String, Number>> getPoolStats() {
+		Map<String, Map<String, Number>> stats = new LinkedHashMap<>();
+		pools.forEach((pool, poolStats) -> stats.put(pool, poolStats.snapshot()));
+		return stats;
+	}
+
+	private void record(String serviceId, MetricCollection http) {
+		String pool = serviceId + "/" + first(http, HttpMetric.HTTP_CLIENT_NAME);
+		PoolStats poolStats = pools.computeIfAbsent(pool, name -> new PoolStats());
+		Integer maxConcurrency = first(http, HttpMetric.MAX_CONCURRENCY);
+		Integer leased = first(http, HttpMetric.LEASED_CONCURRENCY);
+		Integer pending = first(http, HttpMetric.PENDING_CONCURRENCY_ACQUIRES);
+		Duration acquireDuration = first(http, HttpMetric.CONCURRENCY_ACQUIRE_DURATION);
+		if (maxConcurrency != null) {
+			poolStats.maxConcurrency.set(maxConcurrency);
+		}
+		if (leased != null) {
+			poolStats.leased.set(leased);
+			poolStats.peakLeased.accumulateAndGet(leased, Math::max);
+		}
+		if (pending != null) {
+			poolStats.pending.set(pending);
+			poolStats.peakPending.accumulateAndGet(pending, Math::max);
+		}
+		if (acquireDuration != null) {
+			long micros = acquireDuration.toNanos() / 1000;
+			poolStats.acquires.increment();
+			poolStats.acquireMicros.add(micros);
+			poolStats.maxAcquireMicros.accumulateAndGet(micros, Math::max);
+		}
+	}
+
+	private static <T> T first(MetricCollection collection, SdkMetric<T> metric) {
+		return collection.metricValues(metric).stream().findFirst().orElse(null);
+	}
+
+	private static final class PoolStats {
+		private final AtomicLong maxConcurrency = new AtomicLong();
+		private final AtomicLong leased = new AtomicLong();
+		private final AtomicLong peakLeased = new AtomicLong();
+		private final AtomicLong pending = new AtomicLong();
+		private final AtomicLong peakPending = new AtomicLong();
+		private final LongAdder acquires = new LongAdder();
+		private final LongAdder acquireMicros = new LongAdder();
+		private final AtomicLong maxAcquireMicros = new AtomicLong();
+
+		private Map<String, Number> snapshot() {
+			Map<String, Number> snapshot = new LinkedHashMap<>();
+			long max = maxConcurrency.get();
+			snapshot.put("maxConcurrency", max);
+			snapshot.put("leased", leased.get());
+			snapshot.put("peakLeased", peakLeased.get());
+			snapshot.put("utilisation", max == 0 ? 0.0 : (double) leased.get() / max);
+			snapshot.put("pendingAcquires", pending.get());
+			snapshot.put("peakPendingAcquires", peakPending.get());
+			long count = acquires.sum();
+			snapshot.put("meanAcquireMicros", count == 0 ? 0 : acquireMicros.sum() / count);
+			snapshot.put("maxAcquireMicros", maxAcquireMicros.get());
+			return snapshot;
+		}
+	}
+}
@@ -0,0 +1,82 @@
+package com.aws.services.metrics;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free log-linear histogram of durations in microseconds. Values below 16 get their own bucket, larger
+ * values are split into 8 buckets per power of two, so percentiles are accurate to within 12.5%. Recording
+ * does not allocate.
+ */
+public final class LatencyHistogram {
+
+	private static final int LINEAR_BUCKETS = 16;
+	private static final int SUB_BUCKET_BITS = 3;
+	private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+	private static final int BUCKETS = LINEAR_BUCKETS + (Long.SIZE - 4) * SUB_BUCKETS;
+	private static final double[] PERCENTILES = {0.5, 0.9, 0.99, 0.999};
+	private static final String[] PERCENTILE_NAMES = {"p50Micros", "p90Micros", "p99Micros", "p999Micros"};
+
+	private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+	private final LongAdder count = new LongAdder();
+	private final LongAdder totalMicros = new LongAdder();
+	private final AtomicLong maxMicros = new AtomicLong();
+
+	public void record(long micros) {
+		long value = Math.max(0, micros);
+		counts.incrementAndGet(bucketOf(value));
+		count.increment();
+		totalMicros.add(value);
+		if (value > maxMicros.get()) {
+			maxMicros.accumulateAndGet(value, Math::max);
+		}
+	}
+
+	/**
+	 * @return The number of recordings, the mean, the 50th/90th/99th/99.9th percentiles and the maximum.
+	 */
+	public Map<String, Number> snapshot() {
+		long[] buckets = new long[BUCKETS];
+		long total = 0;
+		for (int i = 0; i < BUCKETS; i++) {
+			buckets[i] = counts.get(i);
+			total += buckets[i];
+		}
+		Map<String, Number> snapshot = new LinkedHashMap<>();
+		snapshot.put("count", total);
+		snapshot.put("meanMicros", total == 0 ? 0 : totalMicros.sum() / Math.max(1, count.sum()));
+		int bucket = 0;
+		long seen = 0;
+		for (int i = 0; i < PERCENTILES.length; i++) {
+			long rank = (long) Math.ceil(PERCENTILES[i] * total);
+			while (bucket < BUCKETS - 1 && seen + buckets[bucket] < rank) {
+				seen += buckets[bucket++];
+			}
+			snapshot.put(PERCENTILE_NAMES[i], total == 0 ? 0 : Math.min(upperBoundOf(bucket), maxMicros.get()));
+		}
+		snapshot.put("maxMicros", maxMicros.get());
+		return snapshot;
+	}
+
+	static int bucketOf(long value) {
+		if (value < LINEAR_BUCKETS) {
+			return (int) value;
+		}
+		int exponent = Long.SIZE - 1 - Long.numberOfLeadingZeros(value);
+		int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+		return LINEAR_BUCKETS + (exponent - 4) * SUB_BUCKETS + subBucket;
+	}
+
+	static long upperBoundOf(int bucket) {
+		if (bucket < LINEAR_BUCKETS) {
+			return bucket;
+		}
+		int exponent = (bucket - LINEAR_BUCKETS) / SUB_BUCKETS + 4;
+		int subBucket = (bucket - LINEAR_BUCKETS) % SUB_BUCKETS;
+		long width = 1L << (exponent - SUB_BUCKET_BITS);
+		return (1L << exponent) + (subBucket + 1) * width - 1;
+	}
+}
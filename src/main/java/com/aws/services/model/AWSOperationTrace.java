@@ -0,0 +1,10 @@
+package com.aws.services.model;
+
+import java.time.Instant;
+
+/**
+ * A sampled AWS call: what was called, how it ended and what it cost.
+ */
+public record AWSOperationTrace(Instant startedAt, String service, String operation, String resource, String outcome,
+		long durationMicros, int attempts, int throttles, long bytesSent, long bytesReceived, String requestId) {
+}
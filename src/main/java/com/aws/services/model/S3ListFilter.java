@@ -0,0 +1,25 @@
+package com.aws.services.model;
+
+import software.amazon.awssdk.services.s3.model.S3Object;
+
+import java.time.Instant;
+
+/**
+ * Conditions an object must meet to be included in a streamed listing. Null fields match every object.
+ *
+ * @param suffix        The key must end with this suffix.
+ * @param minSize       The minimum size in bytes, inclusive.
+ * @param maxSize       The maximum size in bytes, inclusive.
+ * @param modifiedSince The object must have been modified at or after this time.
+ */
+public record S3ListFilter(String suffix, Long minSize, Long maxSize, Instant modifiedSince) {
+
+	public static final S3ListFilter NONE = new S3ListFilter(null, null, null, null);
+
+	public boolean matches(S3Object s3Object) {
+		return (suffix == null || s3Object.key().endsWith(suffix))
+				&& (minSize == null || s3Object.size() >= minSize)
+				&& (maxSize == null || s3Object.size() <= maxSize)
+				&& (modifiedSince == null || !s3Object.lastModified().isBefore(modifiedSince));
+	}
+}
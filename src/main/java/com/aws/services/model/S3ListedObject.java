@@ -0,0 +1,9 @@
+package com.aws.services.model;
+
+import java.time.Instant;
+
+/**
+ * One object of a streamed listing.
+ */
+public record S3ListedObject(String key, long size, String eTag, Instant lastModified, String storageClass) {
+}
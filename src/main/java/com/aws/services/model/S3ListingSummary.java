@@ -0,0 +1,13 @@
+package com.aws.services.model;
+
+/**
+ * Totals written as the last line of a streamed listing.
+ *
+ * @param listed        The number of objects returned by S3.
+ * @param matched       The number of objects that passed the filter and were streamed.
+ * @param partitions    The number of sub-prefixes listed in parallel.
+ * @param complete      False if a partition failed and the listing is missing objects.
+ * @param elapsedMillis The time taken by the listing.
+ */
+public record S3ListingSummary(long listed, long matched, long partitions, boolean complete, long elapsedMillis) {
+}
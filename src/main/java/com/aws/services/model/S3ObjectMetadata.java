@@ -0,0 +1,9 @@
+package com.aws.services.model;
+
+import java.time.Instant;
+
+/**
+ * The subset of HeadObject output returned by the bulk metadata lookup.
+ */
+public record S3ObjectMetadata(String key, String eTag, Long contentLength, String contentType, Instant lastModified) {
+}
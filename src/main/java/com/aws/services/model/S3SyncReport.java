@@ -0,0 +1,15 @@
+package com.aws.services.model;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Outcome of syncing a prefix into a local directory.
+ *
+ * @param downloaded The keys that were new or changed and have been downloaded.
+ * @param deleted    The keys removed from the prefix whose local files were deleted.
+ * @param unchanged  The number of keys whose local copy was already up to date.
+ * @param failed     The keys that failed, mapped to the reason.
+ */
+public record S3SyncReport(List<String> downloaded, List<String> deleted, long unchanged, Map<String, String> failed) {
+}
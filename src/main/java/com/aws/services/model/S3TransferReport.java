@@ -0,0 +1,13 @@
+package com.aws.services.model;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Per-object outcome of a transfer covering many S3 objects.
+ *
+ * @param succeeded The keys that were transferred.
+ * @param failed    The keys that failed, mapped to the reason.
+ */
+public record S3TransferReport(List<String> succeeded, Map<String, String> failed) {
+}
@@ -0,0 +1,20 @@
+package com.aws.services.model;
+
+/**
+ * Outcome of a single entry of an SQS batch call.
+ *
+ * @param id           The id of the entry, e.g. the message id for acknowledgements.
+ * @param success      Whether SQS accepted the entry.
+ * @param errorCode    The SQS error code when the entry failed.
+ * @param errorMessage The SQS error message when the entry failed.
+ */
+public record SQSEntryResult(String id, boolean success, String errorCode, String errorMessage) {
+
+	public static SQSEntryResult success(String id) {
+		return new SQSEntryResult(id, true, null, null);
+	}
+
+	public static SQSEntryResult failure(String id, String errorCode, String errorMessage) {
+		return new SQSEntryResult(id, false, errorCode, errorMessage);
+	}
+}
@@ -0,0 +1,21 @@
+package com.aws.services.model;
+
+/**
+ * Outcome of one line of a bulk ingest request.
+ *
+ * @param line         The 1-based line number in the request body.
+ * @param success      Whether SQS accepted the message.
+ * @param messageId    The message id assigned by SQS.
+ * @param errorCode    The SQS error code, or the reason the line was rejected before sending.
+ * @param errorMessage The error message when the line failed.
+ */
+public record SQSIngestResult(long line, boolean success, String messageId, String errorCode, String errorMessage) {
+
+	public static SQSIngestResult success(long line, String messageId) {
+		return new SQSIngestResult(line, true, messageId, null, null);
+	}
+
+	public static SQSIngestResult failure(long line, String errorCode, String errorMessage) {
+		return new SQSIngestResult(line, false, null, errorCode, errorMessage);
+	}
+}
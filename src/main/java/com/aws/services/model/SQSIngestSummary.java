@@ -0,0 +1,13 @@
+package com.aws.services.model;
+
+/**
+ * Totals written as the last line of a bulk ingest report.
+ *
+ * @param lines         The number of non-empty lines read.
+ * @param sent          The number of messages accepted by SQS.
+ * @param failed        The number of lines that were rejected or failed.
+ * @param batches       The number of SendMessageBatch calls made.
+ * @param elapsedMillis The time from the first byte read to the last result.
+ */
+public record SQSIngestSummary(long lines, long sent, long failed, long batches, long elapsedMillis) {
+}
@@ -0,0 +1,22 @@
+package com.aws.services.service;
+
+import com.aws.services.model.S3ObjectMetadata;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+public interface AWSS3AsyncService {
+	CompletableFuture<String> uploadFile(String s3Path, String path);
+
+	CompletableFuture<String> uploadBytes(String s3Path, ByteBuffer data);
+
+	CompletableFuture<String> downloadFile(String key, String destinationDirectory);
+
+	CompletableFuture<S3ObjectMetadata> getObjectMetadata(String key);
+
+	CompletableFuture<Map<String, S3ObjectMetadata>> getObjectMetadata(List<String> keys);
+
+	CompletableFuture<List<String>> listAllObjects(String bucketName, String prefix);
+}
@@ -1,18 +1,42 @@
 package com.aws.services.service;
 
 import com.amazonaws.services.s3.model.ObjectMetadata;
+import com.aws.services.model.S3ListFilter;
+import com.aws.services.model.S3ListingSummary;
+import com.aws.services.model.S3ObjectMetadata;
+import com.aws.services.model.S3SyncReport;
+import org.reactivestreams.Publisher;
 import org.springframework.http.ResponseEntity;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import software.amazon.awssdk.services.s3.model.HeadObjectResponse;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
 import java.util.List;
 import java.util.Map;
 
 public interface AWSS3Service {
 	void listS3Buckets();
 	void uploadFile(String s3Path, String path);
+	void resumeUpload(String key, String path, String uploadId);
 	void uploadFileAsync(String s3Path, String path);
 	void uploadData(String s3Path, String fileName, String fileExtension, String data);
+	void uploadBytes(String s3Path, ByteBuffer data);
+	void uploadStream(String s3Path, InputStream inputStream);
+	void uploadPublisher(String s3Path, Publisher<ByteBuffer> publisher);
 	void downloadFile(String key, String destinationPath, String fileName);
+	ResponseEntity<StreamingResponseBody> streamObject(String key, String range, String ifNoneMatch);
 	ResponseEntity<Map<String, HeadObjectResponse>> getObjectMetadata(String key);
+	Map<String, S3ObjectMetadata> getObjectMetadata(List<String> keys);
+	Map<String, Number> getObjectMetadataCacheStats();
 	Map<String,List<String>> listAllObjects(String bucketName, String prefix, String destinationPath, boolean isDownload);
+	S3ListingSummary listObjects(String bucketName, String prefix, S3ListFilter filter, OutputStream outputStream)
+			throws IOException;
+	S3SyncReport syncPrefix(String bucketName, String prefix, String destinationPath, boolean deleteRemoved);
+	void deleteObject(String key);
+	List<String> listPackedObjects(String prefix);
+	Map<String, Long> getPackStats();
+	Map<String, Long> compactPackedObjects();
 }
\ No newline at end of file
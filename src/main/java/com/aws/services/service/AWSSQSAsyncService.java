@@ -0,0 +1,17 @@
+package com.aws.services.service;
+
+import com.aws.services.model.SQSEntryResult;
+import software.amazon.awssdk.services.sqs.model.Message;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+public interface AWSSQSAsyncService {
+	CompletableFuture<String> sendMessage(String queueName, String message, String groupId);
+
+	CompletableFuture<List<SQSEntryResult>> sendBatchMessages(String queueName, List<String> messages);
+
+	CompletableFuture<List<Message>> receiveMessage(String queueName, int maxNumberOfMessages);
+
+	CompletableFuture<List<SQSEntryResult>> deleteMessages(String queueName, List<Message> messages);
+}
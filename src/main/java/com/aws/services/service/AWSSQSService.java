@@ -1,9 +1,14 @@
 package com.aws.services.service;
 
+import com.aws.services.model.SQSEntryResult;
+import com.aws.services.model.SQSIngestSummary;
 import org.springframework.http.ResponseEntity;
 import software.amazon.awssdk.services.sqs.SqsClient;
 import software.amazon.awssdk.services.sqs.model.Message;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.util.List;
 import java.util.Map;
 
@@ -16,7 +21,18 @@ public interface AWSSQSService {
 
 	ResponseEntity<Map<String, List<String>>> receiveMessageViaS3(String queueName, int maxNumberOfMessages);
 
-	void sendBatchMessages(SqsClient sqsClient, String queueUrl, List<String> messages);
+	List<SQSEntryResult> sendBatchMessages(SqsClient sqsClient, String queueUrl, List<String> messages);
 
-	void deleteMessages(SqsClient sqsClient, String queueName, List<Message> messages);
+	SQSIngestSummary bulkIngest(String queueName, String groupId, InputStream inputStream, OutputStream reportStream)
+			throws IOException;
+
+	List<SQSEntryResult> deleteMessages(String queueName, List<Message> messages);
+
+	Map<String, Long> getQueueRegistryStats();
+
+	Map<String, Long> getCodecStats();
+
+	Map<String, Long> getPayloadFetchStats();
+
+	Map<String, Long> getSpoolStats();
 }
\ No newline at end of file
@@ -0,0 +1,267 @@
+package com.aws.services.service.impl;
+
+import com.aws.services.config.ApplicationProperties;
+import com.aws.services.model.S3ObjectMetadata;
+import com.aws.services.service.AWSS3AsyncService;
+import com.aws.services.service.s3.S3Checksums;
+import com.aws.services.service.s3.S3MultipartUploader;
+import com.aws.services.service.s3.S3ObjectMetadataCache;
+import com.aws.services.service.s3.S3ObjectPacker;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.stereotype.Service;
+import software.amazon.awssdk.core.async.AsyncRequestBody;
+import software.amazon.awssdk.services.s3.S3AsyncClient;
+import software.amazon.awssdk.services.s3.model.CompleteMultipartUploadResponse;
+import software.amazon.awssdk.services.s3.model.ListObjectsV2Request;
+import software.amazon.awssdk.services.s3.model.PutObjectRequest;
+import software.amazon.awssdk.services.s3.model.PutObjectResponse;
+import software.amazon.awssdk.transfer.s3.S3TransferManager;
+import software.amazon.awssdk.transfer.s3.model.DownloadFileRequest;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Non-blocking counterpart of {@link AWSS3ServiceImpl}, built on the async client and the transfer manager.
+ * Every method returns as soon as the request is handed to the SDK, and failures are reported through the
+ * returned future.
+ */
+@Service
+public class AWSS3AsyncServiceImpl implements AWSS3AsyncService {
+
+	private static final Logger LOGGER = LogManager.getLogger(AWSS3AsyncServiceImpl.class);
+
+	S3AsyncClient s3AsyncClient;
+	S3TransferManager s3TransferManager;
+	ApplicationProperties applicationProperties;
+	S3MultipartUploader s3MultipartUploader;
+	S3ObjectMetadataCache s3ObjectMetadataCache;
+	S3Checksums s3Checksums;
+	S3ObjectPacker s3ObjectPacker;
+
+	public AWSS3AsyncServiceImpl(S3AsyncClient s3AsyncClient, S3TransferManager s3TransferManager,
+			ApplicationProperties applicationProperties, S3MultipartUploader s3MultipartUploader,
+			S3ObjectMetadataCache s3ObjectMetadataCache, S3Checksums s3Checksums, S3ObjectPacker s3ObjectPacker) {
+		this.s3AsyncClient = s3AsyncClient;
+		this.s3TransferManager = s3TransferManager;
+		this.applicationProperties = applicationProperties;
+		this.s3MultipartUploader = s3MultipartUploader;
+		this.s3ObjectMetadataCache = s3ObjectMetadataCache;
+		this.s3Checksums = s3Checksums;
+		this.s3ObjectPacker = s3ObjectPacker;
+	}
+
+	/**
+	 * Uploads a local file, as a multipart upload at or above the multipart threshold, or packed into an archive up
+	 * to aws.s3.pack.max.object.bytes when packing is enabled.
+	 *
+	 * @param s3Path The path where the file needs to be uploaded.
+	 * @param localPath The local system path from where file has to be read.
+	 * @return The ETag of the uploaded object.
+	 */
+	@Override
+	public CompletableFuture<String> uploadFile(String s3Path, String localPath) {
+		Path path = Paths.get(localPath);
+		long fileSize;
+		try {
+			fileSize = Files.size(path);
+		} catch (NoSuchFileException e) {
+			return CompletableFuture.failedFuture(e);
+		} catch (IOException e) {
+			return CompletableFuture.failedFuture(new UncheckedIOException(e));
+		}
+		String fileName = path.getFileName().toString();
+		String key = s3Path.endsWith("/") ? s3Path + fileName : s3Path + "/" + fileName;
+		String bucketName = applicationProperties.getS3Bucket();
+		if (s3ObjectPacker.isPackable(fileSize)) {
+			try {
+				return invalidateOnCompletion(s3ObjectPacker.put(key, ByteBuffer.wrap(Files.readAllBytes(path))),
+						bucketName, key);
+			} catch (IOException e) {
+				return CompletableFuture.failedFuture(new UncheckedIOException(e));
+			}
+		}
+		CompletableFuture<String> upload = s3MultipartUploader.isMultipart(fileSize)
+				? s3MultipartUploader.uploadFileAsync(bucketName, key, path).thenApply(CompleteMultipartUploadResponse::eTag)
+				: s3AsyncClient.putObject(PutObjectRequest.builder().bucket(bucketName).key(key)
+						.checksumAlgorithm(s3Checksums.algorithm()).build(),
+						AsyncRequestBody.fromFile(path)).thenApply(PutObjectResponse::eTag);
+		return invalidateOnCompletion(dropPackedAfter(upload, key), bucketName, key);
+	}
+
+	/**
+	 * Uploads the remaining bytes of the buffer as a single object, without copying them. Objects up to
+	 * aws.s3.pack.max.object.bytes are copied into the next archive instead when packing is enabled.
+	 *
+	 * @param s3Path The key of the object.
+	 * @param data The content of the object; it must not be modified until the future completes.
+	 * @return The ETag of the uploaded object.
+	 */
+	@Override
+	public CompletableFuture<String> uploadBytes(String s3Path, ByteBuffer data) {
+		String bucketName = applicationProperties.getS3Bucket();
+		if (s3ObjectPacker.isPackable(data.remaining())) {
+			return invalidateOnCompletion(s3ObjectPacker.put(s3Path, data), bucketName, s3Path);
+		}
+		return invalidateOnCompletion(dropPackedAfter(s3AsyncClient.putObject(PutObjectRequest.builder()
+				.bucket(bucketName).key(s3Path).checksumAlgorithm(s3Checksums.algorithm()).build(),
+				AsyncRequestBody.fromByteBufferUnsafe(data)).thenApply(PutObjectResponse::eTag), s3Path), bucketName, s3Path);
+	}
+
+	/**
+	 * Downloads an object into a directory, under the last segment of its key.
+	 *
+	 * @param key The s3 path of the object.
+	 * @param destinationDirectory The local directory to download to.
+	 * @return The ETag of the downloaded object.
+	 */
+	@Override
+	public CompletableFuture<String> downloadFile(String key, String destinationDirectory) {
+		Path destination = Paths.get(destinationDirectory).resolve(key.substring(key.lastIndexOf('/') + 1));
+		S3ObjectPacker.Entry packed = s3ObjectPacker.lookup(key);
+		if (packed != null) {
+			return s3ObjectPacker.readAsync(packed).thenApply(data -> {
+				try {
+					Files.write(destination, data);
+				} catch (IOException e) {
+					throw new UncheckedIOException(e);
+				}
+				LOGGER.info("File {} Downloaded in {} and tag: {}", key, destination, packed.eTag());
+				return packed.eTag();
+			});
+		}
+		return s3TransferManager.downloadFile(DownloadFileRequest.builder()
+						.getObjectRequest(request -> request.bucket(applicationProperties.getS3Bucket()).key(key)
+								.checksumMode(s3Checksums.checksumMode()))
+						.destination(destination)
+						.build())
+				.completionFuture()
+				.thenApply(download -> {
+					LOGGER.info("File {} Downloaded in {} and tag: {}", key, destination, download.response().eTag());
+					return download.response().eTag();
+				});
+	}
+
+	@Override
+	public CompletableFuture<S3ObjectMetadata> getObjectMetadata(String key) {
+		S3ObjectPacker.Entry packed = s3ObjectPacker.lookup(key);
+		if (packed != null) {
+			return CompletableFuture.completedFuture(new S3ObjectMetadata(key, packed.eTag(), (long) packed.length(),
+					null, packed.lastModified()));
+		}
+		return s3ObjectMetadataCache.getAsync(applicationProperties.getS3Bucket(), key)
+				.thenApply(headObject -> new S3ObjectMetadata(key, headObject.eTag(), headObject.contentLength(),
+						headObject.contentType(), headObject.lastModified()));
+	}
+
+	/**
+	 * Get the metadata of many objects at once, with at most aws.s3.metadata.bulk.concurrency lookups in flight.
+	 * The next lookup starts when one completes, so no thread waits for a permit. Lookups answered without a
+	 * request, from the metadata cache or the pack index, are taken in a loop rather than chained, so any number
+	 * of cached keys is looked up in constant stack depth.
+	 *
+	 * @param keys The s3 paths of the objects.
+	 * @return The metadata by key; keys that could not be resolved map to null.
+	 */
+	@Override
+	public CompletableFuture<Map<String, S3ObjectMetadata>> getObjectMetadata(List<String> keys) {
+		S3ObjectMetadata[] metadata = new S3ObjectMetadata[keys.size()];
+		AtomicInteger nextKey = new AtomicInteger();
+		CompletableFuture<?>[] lanes = new CompletableFuture<?>[
+				Math.min(keys.size(), Math.max(1, applicationProperties.getS3MetadataBulkConcurrency()))];
+		for (int i = 0; i < lanes.length; i++) {
+			CompletableFuture<Void> lane = new CompletableFuture<>();
+			lanes[i] = lane;
+			lookUpFrom(keys, metadata, nextKey, lane);
+		}
+		return CompletableFuture.allOf(lanes).thenApply(ignored -> {
+			Map<String, S3ObjectMetadata> response = new LinkedHashMap<>();
+			for (int i = 0; i < metadata.length; i++) {
+				response.put(keys.get(i), metadata[i]);
+			}
+			return response;
+		});
+	}
+
+	/**
+	 * Lists the keys under a prefix, fetching the pages over the async client.
+	 *
+	 * @param bucketName The bucket name for which you want to list the objects
+	 * @param prefix The path within the s3 bucket.
+	 * @return All keys under the prefix, in S3 order.
+	 */
+	@Override
+	public CompletableFuture<List<String>> listAllObjects(String bucketName, String prefix) {
+		List<String> keys = new ArrayList<>();
+		return s3AsyncClient.listObjectsV2Paginator(ListObjectsV2Request.builder().bucket(bucketName).prefix(prefix).build())
+				.contents()
+				.subscribe(s3Object -> keys.add(s3Object.key()))
+				.thenApply(ignored -> keys);
+	}
+
+	/**
+	 * Looks up keys one after another until none are left, then completes the lane. Completed lookups are
+	 * recorded in the loop; the lane only returns, to be continued by the completion, when a lookup is pending.
+	 */
+	private void lookUpFrom(List<String> keys, S3ObjectMetadata[] metadata, AtomicInteger nextKey,
+			CompletableFuture<Void> lane) {
+		for (int index = nextKey.getAndIncrement(); index < keys.size(); index = nextKey.getAndIncrement()) {
+			String key = keys.get(index);
+			int current = index;
+			CompletableFuture<S3ObjectMetadata> lookup;
+			try {
+				lookup = getObjectMetadata(key);
+			} catch (RuntimeException e) {
+				lookup = CompletableFuture.failedFuture(e);
+			}
+			CompletableFuture<Void> recorded = lookup.handle((objectMetadata, error) -> {
+				if (error != null) {
+					LOGGER.warn("Failed to retrieve metadata of {}/{}: {}", applicationProperties.getS3Bucket(), key,
+							unwrap(error).getMessage());
+				}
+				metadata[current] = objectMetadata;
+				return null;
+			});
+			if (!recorded.isDone()) {
+				recorded.thenRun(() -> lookUpFrom(keys, metadata, nextKey, lane));
+				return;
+			}
+		}
+		lane.complete(null);
+	}
+
+	/**
+	 * Removes the packed copy of a key once it is written as a plain object, which reads would return otherwise.
+	 */
+	private CompletableFuture<String> dropPackedAfter(CompletableFuture<String> upload, String key) {
+		return upload.thenCompose(eTag -> s3ObjectPacker.delete(key).thenApply(deleted -> eTag));
+	}
+
+	private CompletableFuture<String> invalidateOnCompletion(CompletableFuture<String> upload, String bucketName, String key) {
+		return upload.whenComplete((eTag, error) -> {
+			s3ObjectMetadataCache.invalidate(bucketName, key);
+			if (error == null) {
+				LOGGER.info("File Uploaded Success. ETag: {}", eTag);
+			} else {
+				LOGGER.error("Failed to upload {} to S3. Error: {}", key, unwrap(error).getMessage());
+			}
+		});
+	}
+
+	private static Throwable unwrap(Throwable error) {
+		return error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+	}
+}
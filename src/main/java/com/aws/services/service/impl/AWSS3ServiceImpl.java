@@ -2,13 +2,32 @@ package com.aws.services.service.impl;
 
 import com.amazonaws.services.s3.model.ObjectMetadata;
 import com.aws.services.config.ApplicationProperties;
+import com.aws.services.model.S3ListFilter;
+import com.aws.services.model.S3ListingSummary;
+import com.aws.services.model.S3ObjectMetadata;
+import com.aws.services.model.S3SyncReport;
+import com.aws.services.model.S3TransferReport;
+import com.aws.services.service.AWSS3AsyncService;
 import com.aws.services.service.AWSS3Service;
+import com.aws.services.service.s3.S3Checksums;
+import com.aws.services.service.s3.S3MultipartUploadException;
+import com.aws.services.service.s3.S3MultipartUploader;
+import com.aws.services.service.s3.S3ObjectMetadataCache;
+import com.aws.services.service.s3.S3ObjectPacker;
+import com.aws.services.service.s3.S3PrefixDownloader;
+import com.aws.services.service.s3.S3PrefixLister;
+import com.aws.services.service.s3.S3RangedDownloader;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+import org.reactivestreams.Publisher;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import software.amazon.awssdk.core.ResponseInputStream;
 import software.amazon.awssdk.core.async.AsyncRequestBody;
+import software.amazon.awssdk.core.async.AsyncResponseTransformer;
 import software.amazon.awssdk.core.sync.RequestBody;
 import software.amazon.awssdk.services.s3.S3AsyncClient;
 import software.amazon.awssdk.services.s3.S3Client;
@@ -16,7 +35,13 @@ import software.amazon.awssdk.services.s3.model.*;
 import software.amazon.awssdk.transfer.s3.S3TransferManager;
 import software.amazon.awssdk.transfer.s3.model.*;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
@@ -25,13 +50,15 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.ExecutionException;
+import java.util.concurrent.CompletionException;
 
 @Service
 public class AWSS3ServiceImpl implements AWSS3Service {
 
 	private static final Logger LOGGER = LogManager.getLogger(AWSS3ServiceImpl.class);
 
+	private static final int STREAM_BUFFER_SIZE = 64 * 1024;
+
 	@Autowired
 	S3Client s3Client;
 
@@ -41,11 +68,30 @@ public class AWSS3ServiceImpl implements AWSS3Service {
 	S3AsyncClient s3AsyncClient;
 	S3TransferManager s3TransferManager;
 
-	AWSS3ServiceImpl(S3AsyncClient s3AsyncClient) {
+	S3PrefixDownloader s3PrefixDownloader;
+	S3MultipartUploader s3MultipartUploader;
+	S3ObjectMetadataCache s3ObjectMetadataCache;
+	S3PrefixLister s3PrefixLister;
+	S3RangedDownloader s3RangedDownloader;
+	S3Checksums s3Checksums;
+	S3ObjectPacker s3ObjectPacker;
+	AWSS3AsyncService awsS3AsyncService;
+
+	AWSS3ServiceImpl(S3AsyncClient s3AsyncClient, S3TransferManager s3TransferManager,
+			S3PrefixDownloader s3PrefixDownloader, S3MultipartUploader s3MultipartUploader,
+			S3ObjectMetadataCache s3ObjectMetadataCache, S3PrefixLister s3PrefixLister,
+			S3RangedDownloader s3RangedDownloader, S3Checksums s3Checksums, S3ObjectPacker s3ObjectPacker,
+			AWSS3AsyncService awsS3AsyncService) {
 		this.s3AsyncClient = s3AsyncClient;
-		s3TransferManager = S3TransferManager.builder()
-				.s3Client(s3AsyncClient)
-				.build();
+		this.s3TransferManager = s3TransferManager;
+		this.s3PrefixDownloader = s3PrefixDownloader;
+		this.s3MultipartUploader = s3MultipartUploader;
+		this.s3ObjectMetadataCache = s3ObjectMetadataCache;
+		this.s3PrefixLister = s3PrefixLister;
+		this.s3RangedDownloader = s3RangedDownloader;
+		this.s3Checksums = s3Checksums;
+		this.s3ObjectPacker = s3ObjectPacker;
+		this.awsS3AsyncService = awsS3AsyncService;
 	}
 
 	/**
@@ -58,8 +104,7 @@ public class AWSS3ServiceImpl implements AWSS3Service {
 			List<Bucket> bucketList = response.buckets();
 			bucketList.forEach(bucket -> LOGGER.info("Bucket Name: {}",  bucket.name()));
 		} catch (S3Exception e) {
-			LOGGER.error(e.awsErrorDetails().errorMessage());
-			System.exit(1);
+			LOGGER.error("Failed to list buckets. Error: {}", e.awsErrorDetails().errorMessage());
 		}
 	}
 
@@ -86,15 +131,35 @@ public class AWSS3ServiceImpl implements AWSS3Service {
 			} else {
 				s3Path += "/" + fileName;
 			}
+			if (s3ObjectPacker.isPackable(fileSize)) {
+				String eTag = s3ObjectPacker.put(s3Path, ByteBuffer.wrap(Files.readAllBytes(path))).join();
+				LOGGER.info("File Packed Success. ETag: {}", eTag);
+				s3ObjectMetadataCache.invalidate(applicationProperties.getS3Bucket(), s3Path);
+				return;
+			}
+			if (s3MultipartUploader.isMultipart(fileSize)) {
+				CompleteMultipartUploadResponse completeResponse = s3MultipartUploader.uploadFile(
+						applicationProperties.getS3Bucket(), s3Path, path);
+				LOGGER.info("File Uploaded Success. ETag: {}", completeResponse.eTag());
+				s3ObjectMetadataCache.invalidate(applicationProperties.getS3Bucket(), s3Path);
+				dropPacked(s3Path);
+				return;
+			}
 			PutObjectRequest putObjectRequest = PutObjectRequest.builder()
 					.bucket(applicationProperties.getS3Bucket())
 					.key(s3Path)
+					.checksumAlgorithm(s3Checksums.algorithm())
 					.build();
 
 			PutObjectResponse putObjectResponse = s3Client.putObject(putObjectRequest, RequestBody.fromFile(path));
 
 			LOGGER.info("File Uploaded Success. ETag: {}", putObjectResponse.eTag());
+			s3ObjectMetadataCache.invalidate(applicationProperties.getS3Bucket(), s3Path);
+			dropPacked(s3Path);
 
+		} catch (S3MultipartUploadException e) {
+			LOGGER.error("Failed to upload file to S3, resume with upload id {}. Error: {}", e.getUploadId(),
+					e.getCause() == null ? e.getMessage() : e.getCause().getMessage());
 		} catch (S3Exception e) {
 			LOGGER.error("Failed to upload file to S3. Error: {}", e.awsErrorDetails().errorMessage());
 		} catch (Exception e) {
@@ -104,7 +169,33 @@ public class AWSS3ServiceImpl implements AWSS3Service {
 
 
 	/**
-	 * Sends a message asynchronously to the specified AWS SQS queue.
+	 * Resumes an interrupted multipart upload, uploading only the parts that are missing.
+	 *
+	 * @param key The key of the object being uploaded.
+	 * @param localPath The local system path from where file has to be read.
+	 * @param uploadId The id of the multipart upload to resume.
+	 */
+	@Override
+	public void resumeUpload(String key, String localPath, String uploadId) {
+		try {
+			CompleteMultipartUploadResponse completeResponse = s3MultipartUploader.resumeUpload(
+					applicationProperties.getS3Bucket(), key, uploadId, Paths.get(localPath));
+			LOGGER.info("File Uploaded Success. ETag: {}", completeResponse.eTag());
+			s3ObjectMetadataCache.invalidate(applicationProperties.getS3Bucket(), key);
+			dropPacked(key);
+		} catch (S3MultipartUploadException e) {
+			LOGGER.error("Failed to resume upload {}. Error: {}", e.getUploadId(),
+					e.getCause() == null ? e.getMessage() : e.getCause().getMessage());
+		} catch (S3Exception e) {
+			LOGGER.error("Failed to resume upload {}. Error: {}", uploadId, e.awsErrorDetails().errorMessage());
+		} catch (IOException e) {
+			LOGGER.error("Failed to read {} to resume upload {}: {}", localPath, uploadId, e.getMessage());
+		}
+	}
+
+	/**
+	 * Starts uploading a file and returns immediately. The ETag or the error is logged once the upload completes;
+	 * use {@link AWSS3AsyncServiceImpl#uploadFile} to get the result.
 	 *
 	 * @param s3Path The path where the file needs to be uploaded.
 	 * @param localPath The local system path from where file has to be read.
@@ -121,19 +212,24 @@ public class AWSS3ServiceImpl implements AWSS3Service {
 		PutObjectRequest putObjectRequest = PutObjectRequest.builder()
 				.bucket(applicationProperties.getS3Bucket())
 				.key(s3Path)
+				.checksumAlgorithm(s3Checksums.algorithm())
 				.build();
-		CompletableFuture<PutObjectResponse> response = s3AsyncClient.putObject(putObjectRequest,AsyncRequestBody.fromFile(Paths.get(localPath)));
-		if(response.isDone()) {
-			try {
-				LOGGER.info(response.get().eTag());
-			} catch (S3Exception | ExecutionException | InterruptedException e) {
-				throw new RuntimeException(e);
-			}
-		}
+		String key = s3Path;
+		s3AsyncClient.putObject(putObjectRequest,AsyncRequestBody.fromFile(Paths.get(localPath)))
+				.whenComplete((putObjectResponse, error) -> {
+					s3ObjectMetadataCache.invalidate(applicationProperties.getS3Bucket(), key);
+					if (error == null) {
+						LOGGER.info("File Uploaded Success. ETag: {}", putObjectResponse.eTag());
+						s3ObjectPacker.delete(key);
+					} else {
+						Throwable cause = error instanceof CompletionException ? error.getCause() : error;
+						LOGGER.error("Failed to upload {} to S3. Error: {}", key, cause.getMessage());
+					}
+				});
 	}
 
 	/**
-	 * Sends a message asynchronously to the specified AWS SQS queue.
+	 * Uploads the data straight from memory, without writing it to a local file first.
 	 *
 	 * @param s3Path The path where the file needs to be uploaded.
 	 * @param fileName The name of the file that needs to be set for the data that will be uploaded.
@@ -143,22 +239,87 @@ public class AWSS3ServiceImpl implements AWSS3Service {
 	@Override
 	public void uploadData(String s3Path, String fileName, String fileExtension, String data) {
 		if (null != data) {
-			try {
-				Path tempFile  = Files.createTempFile(fileName, fileExtension);
-				Files.write(tempFile, data.getBytes());
-				PutObjectRequest putObjectRequest = PutObjectRequest.builder()
-						.bucket(applicationProperties.getS3Bucket())
-						.key(s3Path)
-						.build();
-				s3Client.putObject(putObjectRequest,tempFile);
-			} catch (IOException e) {
-				throw new RuntimeException(e);
-			}
+			uploadBytes(s3Path, ByteBuffer.wrap(data.getBytes(StandardCharsets.UTF_8)));
+		}
+	}
+
+	/**
+	 * Uploads the remaining bytes of the buffer as a single object. Heap buffers are sent without copying. With
+	 * aws.s3.pack.enabled, objects up to aws.s3.pack.max.object.bytes are packed into an archive instead; this
+	 * returns once the archive holding the object is written.
+	 *
+	 * @param s3Path The key of the object.
+	 * @param data The content of the object.
+	 */
+	@Override
+	public void uploadBytes(String s3Path, ByteBuffer data) {
+		if (s3ObjectPacker.isPackable(data.remaining())) {
+			String eTag = join(s3ObjectPacker.put(s3Path, data));
+			LOGGER.info("Data Packed Success. ETag: {}", eTag);
+			s3ObjectMetadataCache.invalidate(applicationProperties.getS3Bucket(), s3Path);
+			return;
 		}
+		PutObjectRequest putObjectRequest = PutObjectRequest.builder()
+				.bucket(applicationProperties.getS3Bucket())
+				.key(s3Path)
+				.checksumAlgorithm(s3Checksums.algorithm())
+				.build();
+		RequestBody requestBody;
+		if (data.hasArray()) {
+			byte[] array = data.array();
+			int offset = data.arrayOffset() + data.position();
+			int length = data.remaining();
+			requestBody = RequestBody.fromContentProvider(() -> new ByteArrayInputStream(array, offset, length),
+					length, "application/octet-stream");
+		} else {
+			requestBody = RequestBody.fromRemainingByteBuffer(data);
+		}
+		PutObjectResponse putObjectResponse = s3Client.putObject(putObjectRequest, requestBody);
+		LOGGER.info("Data Uploaded Success. ETag: {}", putObjectResponse.eTag());
+		s3ObjectMetadataCache.invalidate(applicationProperties.getS3Bucket(), s3Path);
+		dropPacked(s3Path);
 	}
 
 	/**
-	 * Downloads a file from the specified bucket
+	 * Uploads a stream of unknown length in fixed-size multipart chunks, holding only a few chunks in memory.
+	 *
+	 * @param s3Path The key of the object.
+	 * @param inputStream The content of the object, read until its end.
+	 */
+	@Override
+	public void uploadStream(String s3Path, InputStream inputStream) {
+		try {
+			String eTag = s3MultipartUploader.uploadStream(applicationProperties.getS3Bucket(), s3Path, inputStream);
+			LOGGER.info("Stream Uploaded Success. ETag: {}", eTag);
+			s3ObjectMetadataCache.invalidate(applicationProperties.getS3Bucket(), s3Path);
+			dropPacked(s3Path);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	/**
+	 * Uploads the content of a reactive publisher of unknown length in fixed-size multipart chunks.
+	 *
+	 * @param s3Path The key of the object.
+	 * @param publisher The content of the object.
+	 */
+	@Override
+	public void uploadPublisher(String s3Path, Publisher<ByteBuffer> publisher) {
+		try {
+			String eTag = s3MultipartUploader.uploadPublisher(applicationProperties.getS3Bucket(), s3Path, publisher);
+			LOGGER.info("Stream Uploaded Success. ETag: {}", eTag);
+			s3ObjectMetadataCache.invalidate(applicationProperties.getS3Bucket(), s3Path);
+			dropPacked(s3Path);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	/**
+	 * Downloads a file from the specified bucket. Objects at or above aws.s3.download.ranged.threshold.bytes are
+	 * fetched as parallel byte ranges and resume from their checkpoint if an earlier attempt was interrupted.
+	 * Packed objects are read with a single range GET on their archive.
 	 *
 	 * @param key The path where the file needs to be uploaded.
 	 * @param destinationPath The name of the file that needs to be set for the data that will be uploaded.
@@ -171,8 +332,29 @@ public class AWSS3ServiceImpl implements AWSS3Service {
 		else {
 			destinationPath += fileName;
 		}
+		S3ObjectPacker.Entry packed = s3ObjectPacker.lookup(key);
+		if (packed != null) {
+			try {
+				Files.write(Paths.get(destinationPath), s3ObjectPacker.read(packed));
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+			LOGGER.info("File {} Downloaded in {} and tag: {}", fileName, destinationPath, packed.eTag());
+			return;
+		}
+		String bucketName = applicationProperties.getS3Bucket();
+		if (s3RangedDownloader.isRanged(s3ObjectMetadataCache.get(bucketName, key).contentLength())) {
+			try {
+				HeadObjectResponse head = s3RangedDownloader.download(bucketName, key, Paths.get(destinationPath));
+				LOGGER.info("File {} Downloaded in {} and tag: {}", fileName, destinationPath, head.eTag());
+				return;
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
 		DownloadFileRequest downloadFileRequest = DownloadFileRequest.builder()
-				.getObjectRequest(b -> b.bucket(applicationProperties.getS3Bucket()).key(key))
+				.getObjectRequest(b -> b.bucket(applicationProperties.getS3Bucket()).key(key)
+						.checksumMode(s3Checksums.checksumMode()))
 				.destination(Paths.get(destinationPath))  // Specify destination file path
 				.build();
 		FileDownload downloadFile = s3TransferManager.downloadFile(downloadFileRequest);
@@ -180,6 +362,73 @@ public class AWSS3ServiceImpl implements AWSS3Service {
 		LOGGER.info("File {} Downloaded in {} and tag: {}",fileName,destinationPath, downloadResult.response().eTag());
 	}
 
+	/**
+	 * Streams an object from S3 into the HTTP response. The body is read from S3 only as fast as the client
+	 * consumes it, through a fixed-size copy buffer, so memory per request does not depend on the object size.
+	 * Packed objects are small and always returned whole, ignoring the Range header.
+	 *
+	 * @param key The s3 path of the object.
+	 * @param range The HTTP Range header of the client, forwarded to S3.
+	 * @param ifNoneMatch The HTTP If-None-Match header of the client, forwarded to S3.
+	 * @return The object body with its length, type and ETag, 206 for ranges, or the S3 error status.
+	 */
+	@Override
+	public ResponseEntity<StreamingResponseBody> streamObject(String key, String range, String ifNoneMatch) {
+		S3ObjectPacker.Entry packed = s3ObjectPacker.lookup(key);
+		if (packed != null) {
+			return streamPacked(packed, ifNoneMatch);
+		}
+		GetObjectRequest getObjectRequest = GetObjectRequest.builder()
+				.bucket(applicationProperties.getS3Bucket())
+				.key(key)
+				.range(range)
+				.ifNoneMatch(ifNoneMatch)
+				// S3 only returns the object checksum for whole-object reads
+				.checksumMode(range == null ? s3Checksums.checksumMode() : null)
+				.build();
+		ResponseInputStream<GetObjectResponse> objectStream;
+		try {
+			objectStream = s3AsyncClient.getObject(getObjectRequest, AsyncResponseTransformer.toBlockingInputStream()).join();
+		} catch (CompletionException e) {
+			if (e.getCause() instanceof S3Exception s3Exception) {
+				if (s3Exception.statusCode() == 304) {
+					return ResponseEntity.status(304).eTag(ifNoneMatch).build();
+				}
+				LOGGER.error("Failed to stream {}. Error: {}", key, s3Exception.getMessage());
+				return ResponseEntity.status(s3Exception.statusCode()).build();
+			}
+			throw e;
+		}
+		GetObjectResponse getObjectResponse = objectStream.response();
+		HttpHeaders headers = new HttpHeaders();
+		headers.set(HttpHeaders.ACCEPT_RANGES, "bytes");
+		if (getObjectResponse.contentLength() != null) {
+			headers.setContentLength(getObjectResponse.contentLength());
+		}
+		if (getObjectResponse.contentType() != null) {
+			headers.set(HttpHeaders.CONTENT_TYPE, getObjectResponse.contentType());
+		}
+		if (getObjectResponse.eTag() != null) {
+			headers.setETag(getObjectResponse.eTag());
+		}
+		if (getObjectResponse.lastModified() != null) {
+			headers.setLastModified(getObjectResponse.lastModified());
+		}
+		if (getObjectResponse.contentRange() != null) {
+			headers.set(HttpHeaders.CONTENT_RANGE, getObjectResponse.contentRange());
+		}
+		StreamingResponseBody body = outputStream -> {
+			try (InputStream inputStream = objectStream) {
+				byte[] buffer = new byte[STREAM_BUFFER_SIZE];
+				int read;
+				while ((read = inputStream.read(buffer)) != -1) {
+					outputStream.write(buffer, 0, read);
+				}
+			}
+		};
+		return ResponseEntity.status(getObjectResponse.contentRange() != null ? 206 : 200).headers(headers).body(body);
+	}
+
 	/**
 	 * Get the metadata of the s3 path's object.
 	 * @param key Specifies the s3 path of the object whose metadata is to be found.
@@ -188,12 +437,14 @@ public class AWSS3ServiceImpl implements AWSS3Service {
 	@Override
 	public ResponseEntity<Map<String, HeadObjectResponse>> getObjectMetadata(String key) {
 		Map<String, HeadObjectResponse> response = new HashMap<>();
+		S3ObjectPacker.Entry packed = s3ObjectPacker.lookup(key);
+		if (packed != null) {
+			response.put("Success", HeadObjectResponse.builder().eTag(packed.eTag())
+					.contentLength((long) packed.length()).lastModified(packed.lastModified()).build());
+			return ResponseEntity.ok(response);
+		}
 		try {
-			HeadObjectRequest headObjectRequest = HeadObjectRequest.builder()
-					.bucket(applicationProperties.getS3Bucket())
-					.key(key)
-					.build();
-			HeadObjectResponse headObject = s3Client.headObject(headObjectRequest);
+			HeadObjectResponse headObject = s3ObjectMetadataCache.get(applicationProperties.getS3Bucket(), key);
 			LOGGER.info("Successfully retrieved {}/{} of type {}", applicationProperties.getS3Bucket(),key,headObject.contentType());
 			response.put("Success",headObject);
 			return ResponseEntity.ok(response);
@@ -203,6 +454,65 @@ public class AWSS3ServiceImpl implements AWSS3Service {
 		}
 	}
 
+	/**
+	 * Get the metadata of many objects at once. Keys missing from the cache are resolved concurrently over the
+	 * async client by {@link AWSS3AsyncServiceImpl#getObjectMetadata(List)}, with at most
+	 * aws.s3.metadata.bulk.concurrency lookups in flight; the calling thread only waits for the result.
+	 *
+	 * @param keys The s3 paths of the objects.
+	 * @return The metadata by key; keys that could not be resolved map to null.
+	 */
+	@Override
+	public Map<String, S3ObjectMetadata> getObjectMetadata(List<String> keys) {
+		return join(awsS3AsyncService.getObjectMetadata(keys));
+	}
+
+	@Override
+	public Map<String, Number> getObjectMetadataCacheStats() {
+		return s3ObjectMetadataCache.getStats();
+	}
+
+	/**
+	 * Deletes an object: removes its entry from its archive if it is packed, and deletes the plain object
+	 * under the key, which a packed upload leaves in place.
+	 *
+	 * @param key The s3 path of the object.
+	 */
+	@Override
+	public void deleteObject(String key) {
+		String bucketName = applicationProperties.getS3Bucket();
+		try {
+			join(s3ObjectPacker.delete(key));
+			// A plain object written before the key was packed is hidden by the packed copy, not replaced by it
+			s3Client.deleteObject(request -> request.bucket(bucketName).key(key));
+			LOGGER.info("Deleted {}/{}", bucketName, key);
+		} catch (S3Exception e) {
+			LOGGER.error("Failed to delete {}/{}. Error: {}", bucketName, key, e.getMessage());
+		} finally {
+			s3ObjectMetadataCache.invalidate(bucketName, key);
+		}
+	}
+
+	/**
+	 * Lists packed objects from the in-memory index, without any S3 request.
+	 *
+	 * @param prefix The key prefix, or null for all packed objects.
+	 */
+	@Override
+	public List<String> listPackedObjects(String prefix) {
+		return s3ObjectPacker.list(prefix);
+	}
+
+	@Override
+	public Map<String, Long> getPackStats() {
+		return s3ObjectPacker.getStats();
+	}
+
+	@Override
+	public Map<String, Long> compactPackedObjects() {
+		return s3ObjectPacker.compact();
+	}
+
 	/**
 	 * Lists all objects in the specified path in s3.
 	 *
@@ -215,6 +525,14 @@ public class AWSS3ServiceImpl implements AWSS3Service {
 	@Override
 	public Map<String,List<String>> listAllObjects(String bucketName, String prefix, String destinationPath, boolean isDownload) {
 		Map<String,List<String>> response = new HashMap<>();
+		if (isDownload) {
+			S3TransferReport report = s3PrefixDownloader.downloadPrefix(bucketName, prefix, destinationPath);
+			response.put("true", report.succeeded());
+			response.put("failed", report.failed().entrySet().stream()
+					.map(failure -> failure.getKey() + ": " + failure.getValue()).toList());
+			return response;
+		}
+		List<String> s3ObjectsInPath = new ArrayList<>();
 		boolean isTruncated;
 		String continuationToken = null;
 		do {
@@ -227,22 +545,72 @@ public class AWSS3ServiceImpl implements AWSS3Service {
 			isTruncated = listObjectsV2Response.isTruncated();
 			continuationToken = listObjectsV2Response.nextContinuationToken();
 			List<S3Object> s3Objects  = listObjectsV2Response.contents();
-			if (!isDownload) {
-				List<String> s3ObjectsInPath = new ArrayList<>();
-				for (S3Object s3Object : s3Objects) {
-					s3ObjectsInPath.add(s3Object.key());
-				}
-				response.put("false",s3ObjectsInPath);
-			} else {
-				if(!destinationPath.endsWith("/")) {
-					destinationPath += "/";
-				}
-				for (S3Object s3Object : s3Objects) {
-					downloadFile(s3Object.key(),destinationPath,s3Object.key().replace(prefix,""));
-				}
-				response.put("true",null);
+			for (S3Object s3Object : s3Objects) {
+				s3ObjectsInPath.add(s3Object.key());
 			}
 		} while(isTruncated);
+		response.put("false",s3ObjectsInPath);
 		return response;
 	}
+
+	/**
+	 * Mirrors the objects under the prefix into a local directory, downloading only the objects that are new or
+	 * changed since the last sync into that directory.
+	 *
+	 * @param bucketName The bucket to sync from.
+	 * @param prefix The path within the s3 bucket.
+	 * @param destinationPath The local directory to sync into.
+	 * @param deleteRemoved Whether to delete local files whose keys no longer exist under the prefix.
+	 */
+	@Override
+	public S3SyncReport syncPrefix(String bucketName, String prefix, String destinationPath, boolean deleteRemoved) {
+		return s3PrefixDownloader.syncPrefix(bucketName, prefix, destinationPath, deleteRemoved);
+	}
+
+	/**
+	 * Streams the objects under the prefix that match the filter as NDJSON while the listing is in progress.
+	 * Large prefixes are split into sub-prefixes that are listed in parallel.
+	 *
+	 * @param bucketName The bucket to list.
+	 * @param prefix The path within the s3 bucket.
+	 * @param filter The conditions an object must meet to be written.
+	 * @param outputStream Receives one object per line and a summary line at the end.
+	 */
+	@Override
+	public S3ListingSummary listObjects(String bucketName, String prefix, S3ListFilter filter,
+			OutputStream outputStream) throws IOException {
+		return s3PrefixLister.list(bucketName, prefix, filter, outputStream);
+	}
+
+	private ResponseEntity<StreamingResponseBody> streamPacked(S3ObjectPacker.Entry packed, String ifNoneMatch) {
+		if (packed.eTag().equals(ifNoneMatch)) {
+			return ResponseEntity.status(304).eTag(packed.eTag()).build();
+		}
+		byte[] data = s3ObjectPacker.read(packed);
+		HttpHeaders headers = new HttpHeaders();
+		headers.set(HttpHeaders.ACCEPT_RANGES, "none");
+		headers.setContentLength(data.length);
+		headers.set(HttpHeaders.CONTENT_TYPE, "application/octet-stream");
+		headers.setETag(packed.eTag());
+		headers.setLastModified(packed.lastModified());
+		StreamingResponseBody body = outputStream -> outputStream.write(data);
+		return ResponseEntity.ok().headers(headers).body(body);
+	}
+
+	/**
+	 * Removes the packed copy of a key that was just written as a plain object, which reads would return otherwise.
+	 */
+	private void dropPacked(String key) {
+		if (s3ObjectPacker.lookup(key) != null) {
+			join(s3ObjectPacker.delete(key));
+		}
+	}
+
+	private static <T> T join(CompletableFuture<T> future) {
+		try {
+			return future.join();
+		} catch (CompletionException e) {
+			throw e.getCause() instanceof RuntimeException cause ? cause : e;
+		}
+	}
 }
@@ -0,0 +1,198 @@
+package com.aws.services.service.impl;
+
+import com.aws.services.config.ApplicationProperties;
+import com.aws.services.model.SQSEntryResult;
+import com.aws.services.service.AWSSQSAsyncService;
+import com.aws.services.service.sqs.SQSAcknowledgementEngine;
+import com.aws.services.service.sqs.SQSBatchingProducer;
+import com.aws.services.service.sqs.SQSConsumerEngine;
+import com.aws.services.service.sqs.SQSMessageGroups;
+import com.aws.services.service.sqs.SQSPayloadCodec;
+import com.aws.services.service.sqs.SQSQueueRegistry;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.stereotype.Service;
+import software.amazon.awssdk.awscore.exception.AwsServiceException;
+import software.amazon.awssdk.services.sqs.SqsAsyncClient;
+import software.amazon.awssdk.services.sqs.model.Message;
+import software.amazon.awssdk.services.sqs.model.QueueDoesNotExistException;
+import software.amazon.awssdk.services.sqs.model.ReceiveMessageRequest;
+import software.amazon.awssdk.services.sqs.model.SendMessageBatchRequest;
+import software.amazon.awssdk.services.sqs.model.SendMessageBatchRequestEntry;
+import software.amazon.awssdk.services.sqs.model.SendMessageRequest;
+import software.amazon.awssdk.services.sqs.model.SendMessageResponse;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * Non-blocking counterpart of {@link AWSSQSServiceImpl}. Every method returns as soon as the request is handed
+ * to the SDK or to a pool of its own; the futures complete on the SDK's event loop threads or on that pool.
+ * Batched sends never wait for a sender, draining the prefetch buffer runs on the consumer engine's drain pool
+ * and deletes run on the acknowledgement engine's pool, which uses the blocking extended client so receipt
+ * handles of offloaded messages are stripped. Large messages through S3 are not offered because the extended
+ * client library has no async client.
+ */
+@Service
+public class AWSSQSAsyncServiceImpl implements AWSSQSAsyncService {
+
+	private static final Logger LOGGER = LogManager.getLogger(AWSSQSAsyncServiceImpl.class);
+
+	SqsAsyncClient sqsAsyncClient;
+	ApplicationProperties applicationProperties;
+	SQSQueueRegistry sqsQueueRegistry;
+	SQSBatchingProducer sqsBatchingProducer;
+	SQSConsumerEngine sqsConsumerEngine;
+	SQSAcknowledgementEngine sqsAcknowledgementEngine;
+	SQSPayloadCodec sqsPayloadCodec;
+	SQSMessageGroups sqsMessageGroups;
+
+	public AWSSQSAsyncServiceImpl(SqsAsyncClient sqsAsyncClient, ApplicationProperties applicationProperties,
+			SQSQueueRegistry sqsQueueRegistry, SQSBatchingProducer sqsBatchingProducer,
+			SQSConsumerEngine sqsConsumerEngine, SQSAcknowledgementEngine sqsAcknowledgementEngine,
+			SQSPayloadCodec sqsPayloadCodec, SQSMessageGroups sqsMessageGroups) {
+		this.sqsAsyncClient = sqsAsyncClient;
+		this.applicationProperties = applicationProperties;
+		this.sqsQueueRegistry = sqsQueueRegistry;
+		this.sqsBatchingProducer = sqsBatchingProducer;
+		this.sqsConsumerEngine = sqsConsumerEngine;
+		this.sqsAcknowledgementEngine = sqsAcknowledgementEngine;
+		this.sqsPayloadCodec = sqsPayloadCodec;
+		this.sqsMessageGroups = sqsMessageGroups;
+	}
+
+	/**
+	 * Sends a message to the specified AWS SQS queue, through the batching producer when it is enabled.
+	 *
+	 * @param queueName The name of the SQS queue to which the message should be sent.
+	 * @param message   The message body to be sent to the SQS queue.
+	 * @param groupId   The message group id; derived from the message, or random, when null.
+	 * @return The message id assigned by SQS.
+	 */
+	@Override
+	public CompletableFuture<String> sendMessage(String queueName, String message, String groupId) {
+		String messageGroupId = sqsMessageGroups.groupIdFor(groupId, message);
+		return sqsQueueRegistry.getQueueUrlAsync(queueName).thenCompose(queueUrl -> {
+			SendMessageRequest sendMessageRequest = sqsPayloadCodec.encode(SendMessageRequest.builder()
+					.queueUrl(queueUrl).messageGroupId(messageGroupId).messageBody(message).build());
+			CompletableFuture<String> messageId = applicationProperties.isSqsProducerBatchingEnabled()
+					? sqsBatchingProducer.sendAsync(sendMessageRequest)
+					: sqsAsyncClient.sendMessage(sendMessageRequest).thenApply(SendMessageResponse::messageId);
+			return invalidateOnMissingQueue(messageId, queueName, queueUrl);
+		}).whenComplete((messageId, error) -> {
+			if (error == null) {
+				LOGGER.info("Message Sent Success: {}", messageId);
+			}
+		});
+	}
+
+	/**
+	 * Sends the messages in as few SendMessageBatch calls as the 10 entry and 256 KB limits allow, all of them
+	 * concurrently.
+	 *
+	 * @param queueName The name of the SQS queue to which the messages should be sent.
+	 * @param messages  The message bodies.
+	 * @return One result per message, in order, with the message's index as id.
+	 */
+	@Override
+	public CompletableFuture<List<SQSEntryResult>> sendBatchMessages(String queueName, List<String> messages) {
+		return sqsQueueRegistry.getQueueUrlAsync(queueName).thenCompose(queueUrl -> {
+			SQSEntryResult[] results = new SQSEntryResult[messages.size()];
+			List<CompletableFuture<Void>> batches = new ArrayList<>();
+			List<SendMessageBatchRequestEntry> entries = new ArrayList<>();
+			int batchBytes = 0;
+			for (int i = 0; i < messages.size(); i++) {
+				int size = SQSBatchingProducer.payloadSize(messages.get(i), Map.of());
+				if (!entries.isEmpty() && (entries.size() == SQSBatchingProducer.MAX_BATCH_ENTRIES
+						|| batchBytes + size > SQSBatchingProducer.MAX_BATCH_BYTES)) {
+					batches.add(sendBatch(queueName, queueUrl, entries, results));
+					entries = new ArrayList<>();
+					batchBytes = 0;
+				}
+				entries.add(SendMessageBatchRequestEntry.builder().id(String.valueOf(i)).messageBody(messages.get(i)).build());
+				batchBytes += size;
+			}
+			if (!entries.isEmpty()) {
+				batches.add(sendBatch(queueName, queueUrl, entries, results));
+			}
+			return CompletableFuture.allOf(batches.toArray(new CompletableFuture<?>[0]))
+					.thenApply(ignored -> Arrays.asList(results));
+		});
+	}
+
+	/**
+	 * Receives messages from the specified queue, draining the prefetch buffer when a consumer runs for it.
+	 *
+	 * @param queueName           The name of the SQS queue.
+	 * @param maxNumberOfMessages Number of messages to be retrieved from the queue.
+	 */
+	@Override
+	public CompletableFuture<List<Message>> receiveMessage(String queueName, int maxNumberOfMessages) {
+		if (sqsConsumerEngine.isBuffering(queueName)) {
+			return sqsConsumerEngine.drainAsync(queueName, maxNumberOfMessages);
+		}
+		return sqsQueueRegistry.getQueueUrlAsync(queueName).thenCompose(queueUrl -> invalidateOnMissingQueue(
+				sqsAsyncClient.receiveMessage(ReceiveMessageRequest.builder().queueUrl(queueUrl)
+						.maxNumberOfMessages(maxNumberOfMessages)
+						.messageAttributeNames(SQSPayloadCodec.CONTENT_ENCODING).build())
+						.thenApply(response -> response.messages().stream().map(sqsPayloadCodec::decode).toList()),
+				queueName, queueUrl));
+	}
+
+	/**
+	 * Deletes the given messages from the specified queue in batches of 10.
+	 *
+	 * @param queueName The name of the SQS queue the messages were received from.
+	 * @param messages  The messages to be deleted.
+	 * @return One result per message; failed deletions are reported here instead of failing the future.
+	 */
+	@Override
+	public CompletableFuture<List<SQSEntryResult>> deleteMessages(String queueName, List<Message> messages) {
+		return sqsQueueRegistry.getQueueUrlAsync(queueName)
+				.thenCompose(queueUrl -> sqsAcknowledgementEngine.acknowledge(queueUrl, messages));
+	}
+
+	private CompletableFuture<Void> sendBatch(String queueName, String queueUrl,
+			List<SendMessageBatchRequestEntry> entries, SQSEntryResult[] results) {
+		return sqsAsyncClient.sendMessageBatch(SendMessageBatchRequest.builder()
+						.queueUrl(queueUrl).entries(entries).build())
+				.handle((response, error) -> {
+					if (error != null) {
+						Throwable cause = unwrap(error);
+						String errorCode = cause instanceof AwsServiceException serviceException
+								&& serviceException.awsErrorDetails() != null
+								? serviceException.awsErrorDetails().errorCode() : null;
+						entries.forEach(entry -> results[Integer.parseInt(entry.id())] =
+								SQSEntryResult.failure(entry.id(), errorCode, cause.getMessage()));
+						if (cause instanceof QueueDoesNotExistException) {
+							sqsQueueRegistry.invalidate(queueName, queueUrl);
+						}
+						return null;
+					}
+					response.successful().forEach(entry ->
+							results[Integer.parseInt(entry.id())] = SQSEntryResult.success(entry.id()));
+					response.failed().forEach(entry -> results[Integer.parseInt(entry.id())] =
+							SQSEntryResult.failure(entry.id(), entry.code(), entry.message()));
+					return null;
+				});
+	}
+
+	/**
+	 * Drops the cached queue URL if the call failed because the queue behind it no longer exists.
+	 */
+	private <T> CompletableFuture<T> invalidateOnMissingQueue(CompletableFuture<T> call, String queueName, String queueUrl) {
+		return call.whenComplete((result, error) -> {
+			if (error != null && unwrap(error) instanceof QueueDoesNotExistException) {
+				sqsQueueRegistry.invalidate(queueName, queueUrl);
+			}
+		});
+	}
+
+	private static Throwable unwrap(Throwable error) {
+		return error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+	}
+}
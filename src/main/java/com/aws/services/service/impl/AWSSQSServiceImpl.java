@@ -1,21 +1,36 @@
 package com.aws.services.service.impl;
 
-import com.amazon.sqs.javamessaging.AmazonSQSExtendedClient;
-import com.amazon.sqs.javamessaging.ExtendedClientConfiguration;
 import com.aws.services.config.ApplicationProperties;
+import com.aws.services.model.SQSEntryResult;
+import com.aws.services.model.SQSIngestSummary;
 import com.aws.services.service.AWSSQSService;
+import com.aws.services.service.sqs.SQSAcknowledgementEngine;
+import com.aws.services.service.sqs.SQSBatchingProducer;
+import com.aws.services.service.sqs.SQSBulkIngestor;
+import com.aws.services.service.sqs.SQSConsumerEngine;
+import com.aws.services.service.sqs.SQSMessageGroups;
+import com.aws.services.service.sqs.SQSOutboundSpool;
+import com.aws.services.service.sqs.SQSPayloadCodec;
+import com.aws.services.service.sqs.SQSPayloadFetcher;
+import com.aws.services.service.sqs.SQSQueueRegistry;
+import com.aws.services.service.sqs.SQSSpoolFullException;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Service;
 import software.amazon.awssdk.services.s3.S3Client;
 import software.amazon.awssdk.services.sqs.SqsClient;
 import software.amazon.awssdk.services.sqs.model.*;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.UUID;
+import java.util.concurrent.CompletionException;
 import java.util.stream.Collectors;
 
 @Service
@@ -27,35 +42,60 @@ public class AWSSQSServiceImpl implements AWSSQSService {
 	S3Client s3Client;
 	ApplicationProperties applicationProperties;
 	SqsClient sqsClientExtended;
+	SQSQueueRegistry sqsQueueRegistry;
+	SQSBatchingProducer sqsBatchingProducer;
+	SQSConsumerEngine sqsConsumerEngine;
+	SQSAcknowledgementEngine sqsAcknowledgementEngine;
+	SQSPayloadCodec sqsPayloadCodec;
+	SQSBulkIngestor sqsBulkIngestor;
+	SQSPayloadFetcher sqsPayloadFetcher;
+	SQSOutboundSpool sqsOutboundSpool;
+	SQSMessageGroups sqsMessageGroups;
 
-	//Here, the constructor extends the SQS in order to upload large message to SQS that > 256KB.
-	public AWSSQSServiceImpl(SqsClient sqsClient, S3Client s3Client, ApplicationProperties applicationProperties) {
+	//Here, sqsClientExtended is the SQS client extended to upload large message to SQS that > 256KB.
+	public AWSSQSServiceImpl(SqsClient sqsClient, @Qualifier("sqsClientExtended") SqsClient sqsClientExtended,
+			S3Client s3Client, ApplicationProperties applicationProperties, SQSQueueRegistry sqsQueueRegistry,
+			SQSBatchingProducer sqsBatchingProducer, SQSConsumerEngine sqsConsumerEngine,
+			SQSAcknowledgementEngine sqsAcknowledgementEngine, SQSPayloadCodec sqsPayloadCodec,
+			SQSBulkIngestor sqsBulkIngestor, SQSPayloadFetcher sqsPayloadFetcher, SQSOutboundSpool sqsOutboundSpool,
+			SQSMessageGroups sqsMessageGroups) {
 		this.sqsClient = sqsClient;
+		this.sqsClientExtended = sqsClientExtended;
 		this.applicationProperties = applicationProperties;
 		this.s3Client = s3Client;
-		ExtendedClientConfiguration extendedClientConfig = new ExtendedClientConfiguration().withPayloadSupportEnabled(
-				s3Client, applicationProperties.getS3Bucket());
-		sqsClientExtended = new AmazonSQSExtendedClient(sqsClient, extendedClientConfig);
+		this.sqsQueueRegistry = sqsQueueRegistry;
+		this.sqsBatchingProducer = sqsBatchingProducer;
+		this.sqsConsumerEngine = sqsConsumerEngine;
+		this.sqsAcknowledgementEngine = sqsAcknowledgementEngine;
+		this.sqsPayloadCodec = sqsPayloadCodec;
+		this.sqsBulkIngestor = sqsBulkIngestor;
+		this.sqsPayloadFetcher = sqsPayloadFetcher;
+		this.sqsOutboundSpool = sqsOutboundSpool;
+		this.sqsMessageGroups = sqsMessageGroups;
 	}
 
 	/**
-	 * Sends a message to the specified AWS SQS queue.
+	 * Sends a message to the specified AWS SQS queue. With the spool enabled, the message is accepted once it is
+	 * written to the local spool and sent in the background.
 	 *
 	 * @param queueName The name of the SQS queue to which the message should be sent.
 	 * @param message   The message body to be sent to the SQS queue.
 	 */
 	public ResponseEntity<String> sendMessage(String queueName, String message, String groupId) {
 		try {
-			GetQueueUrlResponse getQueueUrlResponse = sqsClient.getQueueUrl(
-					GetQueueUrlRequest.builder().queueName(queueName).build());
-			String queueUrl = getQueueUrlResponse.queueUrl();
-			if (groupId == null)
-				groupId = UUID.randomUUID().toString();
-			SendMessageRequest sendMessageRequest = SendMessageRequest.builder().queueUrl(queueUrl)
-					.messageGroupId(groupId).messageBody(message).build();
-
-			SendMessageResponse sendMessageResponse = sqsClient.sendMessage(sendMessageRequest);
-			LOGGER.info("Message Sent Success: {}", sendMessageResponse.messageId());
+			String queueUrl = sqsQueueRegistry.getQueueUrl(queueName);
+			SendMessageRequest sendMessageRequest = sqsPayloadCodec.encode(SendMessageRequest.builder()
+					.queueUrl(queueUrl).messageGroupId(sqsMessageGroups.groupIdFor(groupId, message))
+					.messageBody(message).build());
+			if (sqsOutboundSpool.isEnabled()) {
+				sqsOutboundSpool.append(queueName, sendMessageRequest);
+				return ResponseEntity.accepted().body("Message Accepted");
+			}
+
+			String messageId = applicationProperties.isSqsProducerBatchingEnabled()
+					? sendBatched(queueName, sendMessageRequest)
+					: send(sqsClient, queueName, sendMessageRequest).messageId();
+			LOGGER.info("Message Sent Success: {}", messageId);
 			return ResponseEntity.ok("Message Sent");
 		} catch (QueueDoesNotExistException e) {
 			return ResponseEntity.status(400).body("Invalid Queue Name");
@@ -63,6 +103,11 @@ public class AWSSQSServiceImpl implements AWSSQSService {
 			if (e.toString().contains("Message must be shorter")) {
 				return ResponseEntity.status(500).body("Message shorter than 256 kb can be sent");
 			}
+		} catch (SQSSpoolFullException e) {
+			LOGGER.warn(e.getMessage());
+			return ResponseEntity.status(503).body("Spool Full, Retry Later");
+		} catch (IOException e) {
+			LOGGER.error("Failed to spool message for queue {}", queueName, e);
 		}
 		return ResponseEntity.status(404).body("Something Went Wrong. Check Logs");
 
@@ -70,22 +115,21 @@ public class AWSSQSServiceImpl implements AWSSQSService {
 	//
 
 	/**
-	 * Sends a message to the specified AWS SQS queue.
+	 * Sends a message to the specified AWS SQS queue. The message is compressed first and only offloaded to S3
+	 * when the compressed form still does not fit in a single SQS message.
 	 *
 	 * @param queueName    The name of the SQS queue to which the message should be sent.
 	 * @param largeMessage The message body that is > 256 KB to be sent to the SQS queue.
 	 */
 	public ResponseEntity<String> sendMessageViaS3(String queueName, String largeMessage, String groupId) {
 		try {
-			GetQueueUrlResponse getQueueUrlResponse = sqsClient.getQueueUrl(
-					GetQueueUrlRequest.builder().queueName(queueName).build());
-			String queueUrl = getQueueUrlResponse.queueUrl();
-			if (groupId == null)
-				groupId = UUID.randomUUID().toString();
-
-			SendMessageRequest sendMessageRequest = SendMessageRequest.builder().queueUrl(queueUrl)
-					.messageGroupId(groupId).messageBody(largeMessage).build();
-			SendMessageResponse sendMessageResponse = sqsClientExtended.sendMessage(sendMessageRequest);
+			String queueUrl = sqsQueueRegistry.getQueueUrl(queueName);
+
+			SendMessageRequest sendMessageRequest = sqsPayloadCodec.encode(SendMessageRequest.builder()
+					.queueUrl(queueUrl).messageGroupId(sqsMessageGroups.groupIdFor(groupId, largeMessage))
+					.messageBody(largeMessage).build());
+			SqsClient client = sqsPayloadCodec.fitsInline(sendMessageRequest) ? sqsClient : sqsClientExtended;
+			SendMessageResponse sendMessageResponse = send(client, queueName, sendMessageRequest);
 			LOGGER.info("Message Sent Success: {}", sendMessageResponse.messageId());
 			return ResponseEntity.ok("Message Sent");
 		} catch (QueueDoesNotExistException e) {
@@ -94,25 +138,50 @@ public class AWSSQSServiceImpl implements AWSSQSService {
 	}
 
 	/**
-	 * Sends a messages in batch to the specified AWS SQS queue. Max number of message in batch(10).
+	 * Sends messages in as few SendMessageBatch calls as the 10 entry and 256 KB limits allow. A failed call
+	 * is reported for its entries and does not stop the remaining batches.
 	 *
-	 * @param sqsClient The name of the SQS queue to which the message should be sent.
-	 * @param queueUrl  The name of the SQS queue to which the message should be sent.
-	 * @param messages  The list of messages in SendMessageBatchRequestEntry type.
+	 * @param sqsClient The SQS client to send with.
+	 * @param queueUrl  The URL of the SQS queue to which the messages should be sent.
+	 * @param messages  The message bodies.
+	 * @return One result per message, in order, with the message's index as id.
 	 */
-	public void sendBatchMessages(SqsClient sqsClient, String queueUrl, List<String> messages) {
+	public List<SQSEntryResult> sendBatchMessages(SqsClient sqsClient, String queueUrl, List<String> messages) {
 		LOGGER.info("Sending multiple messages");
-		List<SendMessageBatchRequestEntry> batchMessages = messages.stream()
-				.map(message -> SendMessageBatchRequestEntry.builder().id(UUID.randomUUID().toString())
-						.messageBody(message).build()).toList();
-		try {
-			SendMessageBatchRequest sendMessageBatchRequest = SendMessageBatchRequest.builder().queueUrl(queueUrl)
-					.entries(batchMessages).build();
-			sqsClient.sendMessageBatch(sendMessageBatchRequest);
-		} catch (SqsException e) {
-			LOGGER.error(e.awsErrorDetails().errorMessage());
-			System.exit(1);
+		List<SQSEntryResult> results = new ArrayList<>(messages.size());
+		List<SendMessageBatchRequestEntry> entries = new ArrayList<>();
+		int batchBytes = 0;
+		for (int i = 0; i < messages.size(); i++) {
+			int size = SQSBatchingProducer.payloadSize(messages.get(i), Map.of());
+			if (!entries.isEmpty() && (entries.size() == SQSBatchingProducer.MAX_BATCH_ENTRIES
+					|| batchBytes + size > SQSBatchingProducer.MAX_BATCH_BYTES)) {
+				results.addAll(sendBatch(sqsClient, queueUrl, entries));
+				entries = new ArrayList<>();
+				batchBytes = 0;
+			}
+			entries.add(SendMessageBatchRequestEntry.builder().id(String.valueOf(i)).messageBody(messages.get(i)).build());
+			batchBytes += size;
 		}
+		if (!entries.isEmpty()) {
+			results.addAll(sendBatch(sqsClient, queueUrl, entries));
+		}
+		return results;
+	}
+
+	/**
+	 * Sends every line of the input as a message, keeping a bounded number of batches in flight, and writes one
+	 * result per line to the report stream as the batches complete.
+	 *
+	 * @param queueName    The name of the SQS queue to which the messages should be sent.
+	 * @param groupId      The message group id of all messages; a random one per message when null.
+	 * @param inputStream  The newline-delimited message bodies.
+	 * @param reportStream Receives the NDJSON result report.
+	 */
+	@Override
+	public SQSIngestSummary bulkIngest(String queueName, String groupId, InputStream inputStream,
+			OutputStream reportStream) throws IOException {
+		String queueUrl = sqsQueueRegistry.getQueueUrl(queueName);
+		return sqsBulkIngestor.ingest(queueUrl, groupId, inputStream, reportStream);
 	}
 
 	/**
@@ -123,14 +192,18 @@ public class AWSSQSServiceImpl implements AWSSQSService {
 	 */
 	public ResponseEntity<Map<String, List<String>>> receiveMessage(String queueName, int maxNumberOfMessages) {
 		Map<String, List<String>> response = new HashMap<>();
+		if (sqsConsumerEngine.isBuffering(queueName)) {
+			response.put("Success", sqsConsumerEngine.drain(queueName, maxNumberOfMessages).stream()
+					.map(Message::body).toList());
+			return ResponseEntity.ok(response);
+		}
 		try {
-			GetQueueUrlResponse getQueueUrlResponse = sqsClient.getQueueUrl(
-					GetQueueUrlRequest.builder().queueName(queueName).build());
-			String queueURL = getQueueUrlResponse.queueUrl();
+			String queueURL = sqsQueueRegistry.getQueueUrl(queueName);
 			ReceiveMessageResponse receiveMessageResponse = sqsClient.receiveMessage(
 					ReceiveMessageRequest.builder().queueUrl(queueURL).maxNumberOfMessages(maxNumberOfMessages)
-							.build());
-			List<String> messageResponse = receiveMessageResponse.messages().stream().map(Message::body).toList();
+							.messageAttributeNames(SQSPayloadCodec.CONTENT_ENCODING).build());
+			List<String> messageResponse = receiveMessageResponse.messages().stream()
+					.map(sqsPayloadCodec::decode).map(Message::body).toList();
 			response.put("Success", messageResponse);
 			return ResponseEntity.ok(response);
 		} catch (QueueDoesNotExistException e) {
@@ -148,15 +221,19 @@ public class AWSSQSServiceImpl implements AWSSQSService {
 	@Override
 	public ResponseEntity<Map<String, List<String>>> receiveMessageViaS3(String queueName, int maxNumberOfMessages) {
 		Map<String, List<String>> response = new HashMap<>();
+		if (sqsConsumerEngine.isBuffering(queueName)) {
+			response.put("Success", sqsConsumerEngine.drain(queueName, maxNumberOfMessages).stream()
+					.map(Message::body).toList());
+			return ResponseEntity.ok(response);
+		}
 		try {
-			GetQueueUrlResponse getQueueUrlResponse = sqsClient.getQueueUrl(
-					GetQueueUrlRequest.builder().queueName(queueName).build());
-			String queueURL = getQueueUrlResponse.queueUrl();
-			ReceiveMessageResponse receiveMessageResponse = sqsClientExtended.receiveMessage(
+			String queueURL = sqsQueueRegistry.getQueueUrl(queueName);
+			// The plain client receives the pointers, the fetcher downloads the offloaded payloads of the batch in parallel
+			ReceiveMessageResponse receiveMessageResponse = sqsClient.receiveMessage(
 					ReceiveMessageRequest.builder().queueUrl(queueURL).maxNumberOfMessages(maxNumberOfMessages)
-							.build());
-			List<String> responseMessage = receiveMessageResponse.messages().stream().map(Message::body
-			).toList();
+							.messageAttributeNames(sqsPayloadFetcher.messageAttributeNames()).build());
+			List<String> responseMessage = sqsPayloadFetcher.resolve(receiveMessageResponse.messages()).stream()
+					.map(Message::body).toList();
 			response.put("Success", responseMessage);
 			return ResponseEntity.ok(response);
 		} catch (QueueDoesNotExistException e) {
@@ -166,30 +243,90 @@ public class AWSSQSServiceImpl implements AWSSQSService {
 	}
 
 	/**
-	 * Purge the specified queue
+	 * Deletes the given messages from the specified queue in batches of 10.
 	 *
-	 * @param sqsClient
-	 * @param queueName
-	 * @param messages
+	 * @param queueName The name of the SQS queue the messages were received from.
+	 * @param messages  The messages to be deleted.
+	 * @return One result per message; failed deletions are reported here instead of being thrown.
 	 */
 	@Override
-	public void deleteMessages(SqsClient sqsClient, String queueName, List<Message> messages) {
-		LOGGER.info("\nDelete Messages");
-		GetQueueUrlResponse getQueueUrlResponse = sqsClient.getQueueUrl(
-				GetQueueUrlRequest.builder().queueName(queueName).build());
-		String queueUrl = getQueueUrlResponse.queueUrl();
+	public List<SQSEntryResult> deleteMessages(String queueName, List<Message> messages) {
+		LOGGER.info("Deleting {} messages", messages.size());
 		try {
-			for (Message message : messages) {
-				DeleteMessageRequest deleteMessageRequest = DeleteMessageRequest.builder().queueUrl(queueUrl)
-						.receiptHandle(message.receiptHandle()).build();
-				sqsClient.deleteMessage(deleteMessageRequest);
-			}
+			String queueUrl = sqsQueueRegistry.getQueueUrl(queueName);
+			return sqsAcknowledgementEngine.acknowledge(queueUrl, messages).join();
+		} catch (QueueDoesNotExistException e) {
+			return messages.stream().map(message -> SQSEntryResult.failure(message.messageId(),
+					e.awsErrorDetails() == null ? null : e.awsErrorDetails().errorCode(), "Invalid Queue Name")).toList();
+		}
+	}
+
+	@Override
+	public Map<String, Long> getQueueRegistryStats() {
+		return sqsQueueRegistry.getStats();
+	}
+
+	@Override
+	public Map<String, Long> getCodecStats() {
+		return sqsPayloadCodec.getStats();
+	}
+
+	@Override
+	public Map<String, Long> getPayloadFetchStats() {
+		return sqsPayloadFetcher.getStats();
+	}
+
+	@Override
+	public Map<String, Long> getSpoolStats() {
+		return sqsOutboundSpool.getStats();
+	}
+
+	/**
+	 * Sends the request with the cached queue URL and drops that URL from the registry if SQS
+	 * reports that the queue behind it no longer exists.
+	 */
+	private SendMessageResponse send(SqsClient client, String queueName, SendMessageRequest sendMessageRequest) {
+		try {
+			return client.sendMessage(sendMessageRequest);
+		} catch (QueueDoesNotExistException e) {
+			sqsQueueRegistry.invalidate(queueName, sendMessageRequest.queueUrl());
+			throw e;
+		}
+	}
+
+	private List<SQSEntryResult> sendBatch(SqsClient client, String queueUrl, List<SendMessageBatchRequestEntry> entries) {
+		Map<String, SQSEntryResult> results = new HashMap<>();
+		try {
+			SendMessageBatchResponse response = client.sendMessageBatch(SendMessageBatchRequest.builder()
+					.queueUrl(queueUrl).entries(entries).build());
+			response.successful().forEach(entry -> results.put(entry.id(), SQSEntryResult.success(entry.id())));
+			response.failed().forEach(entry -> results.put(entry.id(),
+					SQSEntryResult.failure(entry.id(), entry.code(), entry.message())));
 		} catch (SqsException e) {
-			LOGGER.error(e.awsErrorDetails().errorMessage());
-			System.exit(1);
+			String errorCode = e.awsErrorDetails() == null ? null : e.awsErrorDetails().errorCode();
+			String errorMessage = e.awsErrorDetails() == null ? e.getMessage() : e.awsErrorDetails().errorMessage();
+			LOGGER.error(errorMessage);
+			entries.forEach(entry -> results.put(entry.id(), SQSEntryResult.failure(entry.id(), errorCode, errorMessage)));
 		}
+		return entries.stream().map(entry -> results.get(entry.id())).toList();
 	}
 
+	/**
+	 * Sends the request through the batching producer and waits for the result of this entry.
+	 */
+	private String sendBatched(String queueName, SendMessageRequest sendMessageRequest) {
+		try {
+			return sqsBatchingProducer.send(sendMessageRequest).join();
+		} catch (CompletionException e) {
+			if (e.getCause() instanceof QueueDoesNotExistException) {
+				sqsQueueRegistry.invalidate(queueName, sendMessageRequest.queueUrl());
+			}
+			if (e.getCause() instanceof RuntimeException cause) {
+				throw cause;
+			}
+			throw e;
+		}
+	}
 }
 
 
@@ -0,0 +1,48 @@
+package com.aws.services.service.s3;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Reads one part of a file with positional reads on a shared channel. Reads go straight into the caller's
+ * buffer, so a part is never held in memory as a whole, and several parts of the same file can be read
+ * concurrently from one channel.
+ */
+class FileChannelPartInputStream extends InputStream {
+
+	private final FileChannel channel;
+	private final long end;
+	private long position;
+
+	FileChannelPartInputStream(FileChannel channel, long offset, long length) {
+		this.channel = channel;
+		this.position = offset;
+		this.end = offset + length;
+	}
+
+	@Override
+	public int read() throws IOException {
+		byte[] single = new byte[1];
+		return read(single, 0, 1) == -1 ? -1 : single[0] & 0xFF;
+	}
+
+	@Override
+	public int read(byte[] b, int off, int len) throws IOException {
+		if (position >= end) {
+			return -1;
+		}
+		int toRead = (int) Math.min(len, end - position);
+		int read = channel.read(ByteBuffer.wrap(b, off, toRead), position);
+		if (read > 0) {
+			position += read;
+		}
+		return read;
+	}
+
+	@Override
+	public int available() {
+		return (int) Math.min(Integer.MAX_VALUE, end - position);
+	}
+}
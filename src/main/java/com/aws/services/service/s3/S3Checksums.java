@@ -0,0 +1,141 @@
+package com.aws.services.service.s3;
+
+import com.aws.services.config.ApplicationProperties;
+import org.springframework.stereotype.Component;
+import software.amazon.awssdk.services.s3.model.ChecksumAlgorithm;
+import software.amazon.awssdk.services.s3.model.ChecksumMode;
+import software.amazon.awssdk.services.s3.model.CompletedPart;
+import software.amazon.awssdk.services.s3.model.Part;
+import software.amazon.awssdk.services.s3.model.UploadPartResponse;
+
+import java.nio.ByteBuffer;
+import java.util.Base64;
+import java.util.Locale;
+import java.util.zip.CRC32C;
+
+/**
+ * The additional checksum used for S3 transfers (aws.s3.checksum.algorithm: CRC32C, SHA256 or NONE). Uploads ask
+ * the SDK for the checksum, which computes it while the body is streamed and sends it as a trailer; downloads of
+ * whole objects enable checksum mode so the SDK validates the body as it is read. Also holds the CRC32C
+ * arithmetic the ranged downloader needs to combine range checksums into the object checksum.
+ */
+@Component
+public class S3Checksums {
+
+	// CRC32C (Castagnoli) polynomial, reversed
+	private static final int CRC32C_POLYNOMIAL = 0x82F63B78;
+
+	private final ChecksumAlgorithm algorithm;
+
+	public S3Checksums(ApplicationProperties applicationProperties) {
+		this.algorithm = switch (applicationProperties.getS3ChecksumAlgorithm().trim().toUpperCase(Locale.ROOT)) {
+			case "CRC32C" -> ChecksumAlgorithm.CRC32_C;
+			case "SHA256" -> ChecksumAlgorithm.SHA256;
+			case "NONE" -> null;
+			default -> throw new IllegalArgumentException("Unsupported aws.s3.checksum.algorithm: "
+					+ applicationProperties.getS3ChecksumAlgorithm());
+		};
+	}
+
+	/**
+	 * @return The algorithm to request on uploads, or null when checksums are disabled.
+	 */
+	public ChecksumAlgorithm algorithm() {
+		return algorithm;
+	}
+
+	/**
+	 * @return The checksum mode for downloads, or null when checksums are disabled.
+	 */
+	public ChecksumMode checksumMode() {
+		return algorithm == null ? null : ChecksumMode.ENABLED;
+	}
+
+	public boolean isCrc32c() {
+		return algorithm == ChecksumAlgorithm.CRC32_C;
+	}
+
+	/**
+	 * Builds the part entry of a CompleteMultipartUpload request, including the part checksum S3 returned.
+	 */
+	public CompletedPart completedPart(int partNumber, UploadPartResponse response) {
+		return CompletedPart.builder().partNumber(partNumber).eTag(response.eTag())
+				.checksumCRC32C(response.checksumCRC32C()).checksumSHA256(response.checksumSHA256()).build();
+	}
+
+	public CompletedPart completedPart(Part part) {
+		return CompletedPart.builder().partNumber(part.partNumber()).eTag(part.eTag())
+				.checksumCRC32C(part.checksumCRC32C()).checksumSHA256(part.checksumSHA256()).build();
+	}
+
+	/**
+	 * @return The CRC32C of two adjacent blocks from the CRC32C of each and the length of the second.
+	 */
+	public static int combineCrc32c(int crc1, int crc2, long length2) {
+		if (length2 <= 0) {
+			return crc1;
+		}
+		int[] even = new int[32];
+		int[] odd = new int[32];
+		// Operator for one zero bit, then squared to get the operators for two and four zero bits
+		odd[0] = CRC32C_POLYNOMIAL;
+		int row = 1;
+		for (int n = 1; n < 32; n++) {
+			odd[n] = row;
+			row <<= 1;
+		}
+		square(even, odd);
+		square(odd, even);
+		int crc = crc1;
+		do {
+			square(even, odd);
+			if ((length2 & 1) != 0) {
+				crc = times(even, crc);
+			}
+			length2 >>= 1;
+			if (length2 == 0) {
+				break;
+			}
+			square(odd, even);
+			if ((length2 & 1) != 0) {
+				crc = times(odd, crc);
+			}
+			length2 >>= 1;
+		} while (length2 != 0);
+		return crc ^ crc2;
+	}
+
+	/**
+	 * @return The checksum S3 reports for an object uploaded in parts: the CRC32C of the part checksums,
+	 * followed by the number of parts.
+	 */
+	public static String compositeCrc32c(int[] partChecksums) {
+		ByteBuffer checksums = ByteBuffer.allocate(partChecksums.length * Integer.BYTES);
+		for (int checksum : partChecksums) {
+			checksums.putInt(checksum);
+		}
+		CRC32C crc32c = new CRC32C();
+		crc32c.update(checksums.flip());
+		return toBase64((int) crc32c.getValue()) + "-" + partChecksums.length;
+	}
+
+	public static String toBase64(int crc32c) {
+		return Base64.getEncoder().encodeToString(ByteBuffer.allocate(Integer.BYTES).putInt(crc32c).array());
+	}
+
+	private static int times(int[] matrix, int vector) {
+		int sum = 0;
+		for (int i = 0; vector != 0; i++, vector >>>= 1) {
+			if ((vector & 1) != 0) {
+				sum ^= matrix[i];
+			}
+		}
+		return sum;
+	}
+
+	private static void square(int[] square, int[] matrix) {
+		for (int n = 0; n < 32; n++) {
+			square[n] = times(matrix, matrix[n]);
+		}
+	}
+}
@@ -0,0 +1,33 @@
+package com.aws.services.service.s3;
+
+/**
+ * Thrown when a multipart upload could not be completed. Uploads of files are left open on S3 so that they can
+ * be resumed with their upload id; the parts already uploaded are not sent again. Uploads of streams cannot be
+ * replayed and are aborted, so they carry no upload id.
+ */
+public class S3MultipartUploadException extends RuntimeException {
+
+	private static final long serialVersionUID = 1L;
+
+	private final String uploadId;
+
+	public S3MultipartUploadException(String uploadId, String message, Throwable cause) {
+		super(message + " (upload id: " + uploadId + ")", cause);
+		this.uploadId = uploadId;
+	}
+
+	/**
+	 * Creates the exception for an upload that was aborted and cannot be resumed.
+	 */
+	public S3MultipartUploadException(String message, Throwable cause) {
+		super(message, cause);
+		this.uploadId = null;
+	}
+
+	/**
+	 * @return The id to resume the upload with, or null if the upload was aborted.
+	 */
+	public String getUploadId() {
+		return uploadId;
+	}
+}
@@ -0,0 +1,393 @@
+package com.aws.services.service.s3;
+
+import com.aws.services.config.AWSThreadFactory;
+import com.aws.services.config.ApplicationProperties;
+import jakarta.annotation.PreDestroy;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.reactivestreams.Publisher;
+import org.springframework.stereotype.Component;
+import software.amazon.awssdk.core.FileRequestBodyConfiguration;
+import software.amazon.awssdk.core.async.AsyncRequestBody;
+import software.amazon.awssdk.core.exception.SdkException;
+import software.amazon.awssdk.core.sync.RequestBody;
+import software.amazon.awssdk.services.s3.S3AsyncClient;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.AbortMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.CompleteMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.CompleteMultipartUploadResponse;
+import software.amazon.awssdk.services.s3.model.CompletedMultipartUpload;
+import software.amazon.awssdk.services.s3.model.CompletedPart;
+import software.amazon.awssdk.services.s3.model.CreateMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.ListPartsRequest;
+import software.amazon.awssdk.services.s3.model.Part;
+import software.amazon.awssdk.services.s3.model.PutObjectRequest;
+import software.amazon.awssdk.services.s3.model.UploadPartRequest;
+import software.amazon.awssdk.utils.async.InputStreamSubscriber;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Uploads large files as S3 multipart uploads. Parts are uploaded concurrently on a shared pool, each part
+ * streamed from the file with positional reads and retried on its own. An upload that fails is left open
+ * so that {@link #resumeUpload} can finish it by sending only the parts S3 does not have yet. Streams of
+ * unknown length are uploaded in fixed-size chunks with bounded memory. Each part carries the checksum configured
+ * in {@link S3Checksums}, computed by the SDK while the part is sent, and the completed upload lists them.
+ */
+@Component
+public class S3MultipartUploader {
+
+	private static final Logger LOGGER = LogManager.getLogger(S3MultipartUploader.class);
+
+	static final long MIN_PART_SIZE = 5L * 1024 * 1024;
+	static final int MAX_PARTS = 10_000;
+	static final int MAX_STREAM_PART_SIZE = Integer.MAX_VALUE - 8;
+	static final String OCTET_STREAM = "application/octet-stream";
+
+	private final S3Client s3Client;
+	private final S3AsyncClient s3AsyncClient;
+	private final ApplicationProperties applicationProperties;
+	private final S3Checksums s3Checksums;
+	private final ExecutorService partExecutor;
+
+	public S3MultipartUploader(S3Client s3Client, S3AsyncClient s3AsyncClient, ApplicationProperties applicationProperties,
+			S3Checksums s3Checksums, AWSThreadFactory awsThreadFactory) {
+		this.s3Client = s3Client;
+		this.s3AsyncClient = s3AsyncClient;
+		this.applicationProperties = applicationProperties;
+		this.s3Checksums = s3Checksums;
+		this.partExecutor = Executors.newFixedThreadPool(applicationProperties.getS3MultipartConcurrency(),
+				awsThreadFactory.forPool("s3-multipart"));
+	}
+
+	/**
+	 * @return true if a file of this size should be uploaded as multipart.
+	 */
+	public boolean isMultipart(long fileSize) {
+		return fileSize >= applicationProperties.getS3MultipartThresholdBytes();
+	}
+
+	/**
+	 * Uploads a file with a new multipart upload.
+	 *
+	 * @param bucketName The bucket to upload to.
+	 * @param key        The key of the object.
+	 * @param path       The local file.
+	 * @return The response of the completed upload.
+	 * @throws S3MultipartUploadException if a part could not be uploaded; the upload can then be resumed.
+	 */
+	public CompleteMultipartUploadResponse uploadFile(String bucketName, String key, Path path) throws IOException {
+		String uploadId = s3Client.createMultipartUpload(CreateMultipartUploadRequest.builder()
+				.bucket(bucketName).key(key).checksumAlgorithm(s3Checksums.algorithm()).build()).uploadId();
+		LOGGER.info("Started multipart upload {} for {}/{}", uploadId, bucketName, key);
+		return uploadParts(bucketName, key, uploadId, path, partSize(path.toFile().length()), new TreeMap<>());
+	}
+
+	/**
+	 * Uploads a file with a new multipart upload over the async client, without blocking the caller. At most
+	 * aws.s3.multipart.concurrency parts are in flight, each read from the file by the SDK; the next part starts
+	 * when one completes. As with {@link #uploadFile}, a failed upload is left open for {@link #resumeUpload}.
+	 *
+	 * @param bucketName The bucket to upload to.
+	 * @param key        The key of the object.
+	 * @param path       The local file.
+	 * @return The response of the completed upload, or a future failed with {@link S3MultipartUploadException}.
+	 */
+	public CompletableFuture<CompleteMultipartUploadResponse> uploadFileAsync(String bucketName, String key, Path path) {
+		long fileSize = path.toFile().length();
+		long partSize = partSize(fileSize);
+		int partCount = (int) Math.max(1, (fileSize + partSize - 1) / partSize);
+		return s3AsyncClient.createMultipartUpload(CreateMultipartUploadRequest.builder()
+						.bucket(bucketName).key(key).checksumAlgorithm(s3Checksums.algorithm()).build())
+				.thenCompose(created -> {
+					LOGGER.info("Started multipart upload {} for {}/{}", created.uploadId(), bucketName, key);
+					AsyncFileUpload upload = new AsyncFileUpload(bucketName, key, created.uploadId(), path, fileSize,
+							partSize, new CompletedPart[partCount], new AtomicInteger(), new AtomicBoolean());
+					CompletableFuture<?>[] lanes = new CompletableFuture<?>[
+							Math.min(partCount, Math.max(1, applicationProperties.getS3MultipartConcurrency()))];
+					for (int i = 0; i < lanes.length; i++) {
+						lanes[i] = uploadNextPartAsync(upload);
+					}
+					return CompletableFuture.allOf(lanes).handle((ignored, error) -> {
+						if (error != null) {
+							Throwable cause = error instanceof CompletionException ? error.getCause() : error;
+							throw new S3MultipartUploadException(upload.uploadId(), "Multipart upload of " + key + " failed", cause);
+						}
+						return List.of(upload.parts());
+					}).thenCompose(parts -> s3AsyncClient.completeMultipartUpload(CompleteMultipartUploadRequest.builder()
+							.bucket(bucketName).key(key).uploadId(upload.uploadId())
+							.multipartUpload(CompletedMultipartUpload.builder().parts(parts).build())
+							.build()));
+				})
+				.whenComplete((response, error) -> {
+					if (response != null) {
+						LOGGER.info("Completed multipart upload of {} parts. ETag: {}", partCount, response.eTag());
+					}
+				});
+	}
+
+	/**
+	 * Finishes an interrupted multipart upload, uploading only the parts S3 has not received yet.
+	 *
+	 * @param bucketName The bucket of the upload.
+	 * @param key        The key of the object.
+	 * @param uploadId   The id of the open multipart upload.
+	 * @param path       The local file being uploaded.
+	 * @return The response of the completed upload.
+	 */
+	public CompleteMultipartUploadResponse resumeUpload(String bucketName, String key, String uploadId, Path path)
+			throws IOException {
+		long fileSize = path.toFile().length();
+		List<Part> uploaded = new ArrayList<>();
+		s3Client.listPartsPaginator(ListPartsRequest.builder().bucket(bucketName).key(key).uploadId(uploadId).build())
+				.parts().forEach(uploaded::add);
+		long partSize = uploaded.stream().filter(part -> part.partNumber() == 1).map(Part::size).findFirst()
+				.orElse(partSize(fileSize));
+		Map<Integer, CompletedPart> completed = new TreeMap<>();
+		for (Part part : uploaded) {
+			long offset = (part.partNumber() - 1L) * partSize;
+			if (part.size() == Math.min(partSize, fileSize - offset)) {
+				completed.put(part.partNumber(), s3Checksums.completedPart(part));
+			}
+		}
+		LOGGER.info("Resuming multipart upload {} for {}/{} with {} parts already uploaded", uploadId, bucketName,
+				key, completed.size());
+		return uploadParts(bucketName, key, uploadId, path, partSize, completed);
+	}
+
+	/**
+	 * Uploads a stream of unknown length. The stream is read in part-sized chunks and each chunk is uploaded
+	 * as a part while the next one is read; at most as many chunks as the upload concurrency are held in memory.
+	 * A stream shorter than one part is sent with a single PutObject.
+	 *
+	 * @param bucketName  The bucket to upload to.
+	 * @param key         The key of the object.
+	 * @param inputStream The data, read until its end.
+	 * @return The ETag of the uploaded object.
+	 * @throws S3MultipartUploadException if a part could not be uploaded; the stream cannot be read again, so the
+	 *                                    upload is aborted and the exception carries no upload id.
+	 */
+	public String uploadStream(String bucketName, String key, InputStream inputStream) throws IOException {
+		int partSize = (int) Math.min(MAX_STREAM_PART_SIZE,
+				Math.max(MIN_PART_SIZE, applicationProperties.getS3MultipartPartSizeBytes()));
+		byte[] chunk = new byte[partSize];
+		int length = inputStream.readNBytes(chunk, 0, partSize);
+		if (length < partSize) {
+			return s3Client.putObject(PutObjectRequest.builder().bucket(bucketName).key(key)
+					.checksumAlgorithm(s3Checksums.algorithm()).build(),
+					fromBytes(chunk, length)).eTag();
+		}
+		String uploadId = s3Client.createMultipartUpload(CreateMultipartUploadRequest.builder()
+				.bucket(bucketName).key(key).checksumAlgorithm(s3Checksums.algorithm()).build()).uploadId();
+		Semaphore buffers = new Semaphore(applicationProperties.getS3MultipartConcurrency() - 1);
+		List<CompletableFuture<CompletedPart>> pending = new ArrayList<>();
+		try {
+			for (int partNumber = 1; length > 0; partNumber++) {
+				if (partNumber > MAX_PARTS) {
+					throw new IOException("Stream exceeds " + MAX_PARTS + " parts of " + partSize + " bytes");
+				}
+				byte[] part = chunk;
+				int partLength = length;
+				int number = partNumber;
+				pending.add(CompletableFuture.supplyAsync(() -> {
+					try {
+						return uploadPart(bucketName, key, uploadId, number, partLength, () -> fromBytes(part, partLength));
+					} finally {
+						buffers.release();
+					}
+				}, partExecutor));
+				buffers.acquire();
+				if (pending.stream().anyMatch(CompletableFuture::isCompletedExceptionally)) {
+					break;
+				}
+				chunk = new byte[partSize];
+				length = inputStream.readNBytes(chunk, 0, partSize);
+			}
+			CompletableFuture.allOf(pending.toArray(new CompletableFuture<?>[0])).join();
+		} catch (IOException | RuntimeException | InterruptedException e) {
+			abort(bucketName, key, uploadId);
+			if (e instanceof InterruptedException) {
+				Thread.currentThread().interrupt();
+			}
+			Throwable cause = e instanceof CompletionException ? e.getCause() : e;
+			throw new S3MultipartUploadException("Streaming upload of " + key + " failed and was aborted", cause);
+		}
+		List<CompletedPart> parts = pending.stream().map(CompletableFuture::join).toList();
+		return s3Client.completeMultipartUpload(CompleteMultipartUploadRequest.builder()
+				.bucket(bucketName).key(key).uploadId(uploadId)
+				.multipartUpload(CompletedMultipartUpload.builder().parts(parts).build())
+				.build()).eTag();
+	}
+
+	/**
+	 * Uploads the content of a publisher of unknown length. The publisher is only asked for more data
+	 * as the chunks are consumed, so memory stays bounded as in {@link #uploadStream}.
+	 *
+	 * @param bucketName The bucket to upload to.
+	 * @param key        The key of the object.
+	 * @param publisher  The data to upload.
+	 * @return The ETag of the uploaded object.
+	 */
+	public String uploadPublisher(String bucketName, String key, Publisher<ByteBuffer> publisher) throws IOException {
+		try (InputStreamSubscriber subscriber = new InputStreamSubscriber()) {
+			publisher.subscribe(subscriber);
+			return uploadStream(bucketName, key, subscriber);
+		}
+	}
+
+	@PreDestroy
+	public void shutdown() {
+		partExecutor.shutdown();
+	}
+
+	private CompleteMultipartUploadResponse uploadParts(String bucketName, String key, String uploadId, Path path,
+			long partSize, Map<Integer, CompletedPart> completed) throws IOException {
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			long fileSize = channel.size();
+			int partCount = (int) Math.max(1, (fileSize + partSize - 1) / partSize);
+			List<CompletableFuture<CompletedPart>> pending = new ArrayList<>();
+			for (int partNumber = 1; partNumber <= partCount; partNumber++) {
+				if (completed.containsKey(partNumber)) {
+					continue;
+				}
+				long offset = (partNumber - 1L) * partSize;
+				long length = Math.min(partSize, fileSize - offset);
+				int number = partNumber;
+				pending.add(CompletableFuture.supplyAsync(
+						() -> uploadPart(bucketName, key, uploadId, channel, number, offset, length), partExecutor));
+			}
+			try {
+				CompletableFuture.allOf(pending.toArray(new CompletableFuture<?>[0])).join();
+			} catch (CompletionException e) {
+				throw new S3MultipartUploadException(uploadId, "Multipart upload of " + key + " failed", e.getCause());
+			}
+			pending.forEach(part -> completed.put(part.join().partNumber(), part.join()));
+		}
+		List<CompletedPart> parts = completed.values().stream()
+				.sorted(Comparator.comparing(CompletedPart::partNumber)).toList();
+		CompleteMultipartUploadResponse response = s3Client.completeMultipartUpload(CompleteMultipartUploadRequest.builder()
+				.bucket(bucketName).key(key).uploadId(uploadId)
+				.multipartUpload(CompletedMultipartUpload.builder().parts(parts).build())
+				.build());
+		LOGGER.info("Completed multipart upload {} of {} parts. ETag: {}", uploadId, parts.size(), response.eTag());
+		return response;
+	}
+
+	private CompletedPart uploadPart(String bucketName, String key, String uploadId, FileChannel channel,
+			int partNumber, long offset, long length) {
+		return uploadPart(bucketName, key, uploadId, partNumber, length, () -> RequestBody.fromContentProvider(
+				() -> new FileChannelPartInputStream(channel, offset, length), length, OCTET_STREAM));
+	}
+
+	private CompletedPart uploadPart(String bucketName, String key, String uploadId, int partNumber, long length,
+			Supplier<RequestBody> requestBody) {
+		UploadPartRequest uploadPartRequest = UploadPartRequest.builder().bucket(bucketName).key(key)
+				.uploadId(uploadId).partNumber(partNumber).contentLength(length)
+				.checksumAlgorithm(s3Checksums.algorithm()).build();
+		for (int attempt = 0; ; attempt++) {
+			try {
+				return s3Checksums.completedPart(partNumber, s3Client.uploadPart(uploadPartRequest, requestBody.get()));
+			} catch (SdkException | UncheckedIOException e) {
+				if (attempt >= applicationProperties.getS3MultipartMaxRetries()) {
+					throw e;
+				}
+				LOGGER.warn("Retrying part {} of upload {}: {}", partNumber, uploadId, e.getMessage());
+				try {
+					Thread.sleep(Math.min(5000L, 200L << attempt));
+				} catch (InterruptedException interrupted) {
+					Thread.currentThread().interrupt();
+					throw e;
+				}
+			}
+		}
+	}
+
+	//Uploads parts one after another until none are left; several of these run side by side.
+	private CompletableFuture<Void> uploadNextPartAsync(AsyncFileUpload upload) {
+		int index = upload.nextPart().getAndIncrement();
+		if (index >= upload.parts().length || upload.failed().get()) {
+			return CompletableFuture.completedFuture(null);
+		}
+		long offset = index * upload.partSize();
+		long length = Math.min(upload.partSize(), upload.fileSize() - offset);
+		return uploadPartAsync(upload, index + 1, offset, length, 0)
+				.whenComplete((part, error) -> {
+					if (error != null) {
+						upload.failed().set(true);
+					}
+				})
+				.thenCompose(part -> {
+					upload.parts()[index] = part;
+					return uploadNextPartAsync(upload);
+				});
+	}
+
+	private CompletableFuture<CompletedPart> uploadPartAsync(AsyncFileUpload upload, int partNumber, long offset,
+			long length, int attempt) {
+		UploadPartRequest uploadPartRequest = UploadPartRequest.builder().bucket(upload.bucketName()).key(upload.key())
+				.uploadId(upload.uploadId()).partNumber(partNumber).contentLength(length)
+				.checksumAlgorithm(s3Checksums.algorithm()).build();
+		AsyncRequestBody requestBody = AsyncRequestBody.fromFile(FileRequestBodyConfiguration.builder()
+				.path(upload.path()).position(offset).numBytesToRead(length).build());
+		return s3AsyncClient.uploadPart(uploadPartRequest, requestBody)
+				.thenApply(response -> s3Checksums.completedPart(partNumber, response))
+				.exceptionallyCompose(error -> {
+					if (attempt >= applicationProperties.getS3MultipartMaxRetries()) {
+						return CompletableFuture.failedFuture(error);
+					}
+					LOGGER.warn("Retrying part {} of upload {}: {}", partNumber, upload.uploadId(), error.getMessage());
+					return CompletableFuture.runAsync(() -> { },
+									CompletableFuture.delayedExecutor(Math.min(5000L, 200L << attempt), TimeUnit.MILLISECONDS))
+							.thenCompose(ignored -> uploadPartAsync(upload, partNumber, offset, length, attempt + 1));
+				});
+	}
+
+	private void abort(String bucketName, String key, String uploadId) {
+		try {
+			s3Client.abortMultipartUpload(AbortMultipartUploadRequest.builder().bucket(bucketName).key(key)
+					.uploadId(uploadId).build());
+		} catch (SdkException e) {
+			LOGGER.warn("Failed to abort multipart upload {}: {}", uploadId, e.getMessage());
+		}
+	}
+
+	/**
+	 * Wraps the first bytes of an array without copying them.
+	 */
+	static RequestBody fromBytes(byte[] bytes, int length) {
+		return RequestBody.fromContentProvider(() -> new ByteArrayInputStream(bytes, 0, length), length, OCTET_STREAM);
+	}
+
+	/**
+	 * The configured part size, raised to the S3 minimum and to what keeps the upload within 10,000 parts.
+	 */
+	long partSize(long fileSize) {
+		long partSize = Math.max(MIN_PART_SIZE, applicationProperties.getS3MultipartPartSizeBytes());
+		return Math.max(partSize, (fileSize + MAX_PARTS - 1) / MAX_PARTS);
+	}
+
+	private record AsyncFileUpload(String bucketName, String key, String uploadId, Path path, long fileSize,
+			long partSize, CompletedPart[] parts, AtomicInteger nextPart, AtomicBoolean failed) {
+	}
+}
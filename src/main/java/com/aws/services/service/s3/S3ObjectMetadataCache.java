@@ -0,0 +1,251 @@
+package com.aws.services.service.s3;
+
+import com.aws.services.config.ApplicationProperties;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.stereotype.Component;
+import software.amazon.awssdk.services.s3.S3AsyncClient;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.HeadObjectRequest;
+import software.amazon.awssdk.services.s3.model.HeadObjectResponse;
+import software.amazon.awssdk.services.s3.model.S3Exception;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Bounded LRU cache of HeadObject responses. Entries live for a TTL; once expired they are either dropped or,
+ * when revalidation is enabled, checked with a conditional HeadObject that costs no transfer when the ETag
+ * is unchanged. Uploads done by this service invalidate the entry of the key they write. Each key with a
+ * HeadObject in flight has a generation that invalidation bumps, so a response that was requested before the
+ * key was invalidated is returned to its caller but not cached.
+ */
+@Component
+public class S3ObjectMetadataCache {
+
+	private static final Logger LOGGER = LogManager.getLogger(S3ObjectMetadataCache.class);
+
+	private final S3Client s3Client;
+	private final S3AsyncClient s3AsyncClient;
+	private final ApplicationProperties applicationProperties;
+	private final ReentrantLock lock = new ReentrantLock();
+	private final LinkedHashMap<String, MetadataEntry> entries;
+	private final Map<String, Generation> inFlight = new HashMap<>();
+
+	private final LongAdder hits = new LongAdder();
+	private final LongAdder misses = new LongAdder();
+	private final LongAdder revalidations = new LongAdder();
+	private final LongAdder evictions = new LongAdder();
+
+	public S3ObjectMetadataCache(S3Client s3Client, S3AsyncClient s3AsyncClient,
+			ApplicationProperties applicationProperties) {
+		this.s3Client = s3Client;
+		this.s3AsyncClient = s3AsyncClient;
+		this.applicationProperties = applicationProperties;
+		int maxSize = applicationProperties.getS3MetadataCacheMaxSize();
+		this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, MetadataEntry> eldest) {
+				boolean evict = size() > maxSize;
+				if (evict) {
+					evictions.increment();
+				}
+				return evict;
+			}
+		};
+	}
+
+	/**
+	 * Returns the metadata of an object, calling HeadObject only when there is no fresh entry.
+	 *
+	 * @throws software.amazon.awssdk.services.s3.model.NoSuchKeyException if the object does not exist.
+	 */
+	public HeadObjectResponse get(String bucketName, String key) {
+		Lookup lookup = lookup(bucketName, key);
+		if (lookup.isHit()) {
+			return lookup.cached.response;
+		}
+		HeadObjectResponse response;
+		try {
+			response = s3Client.headObject(headRequest(bucketName, key, lookup.cached));
+		} catch (S3Exception e) {
+			if (lookup.cached != null && e.statusCode() == 304) {
+				return revalidated(lookup);
+			}
+			release(lookup);
+			throw e;
+		} catch (RuntimeException e) {
+			release(lookup);
+			throw e;
+		}
+		return store(lookup, response);
+	}
+
+	/**
+	 * Same as {@link #get} but resolved over the async client, for lookups of many keys at once.
+	 */
+	public CompletableFuture<HeadObjectResponse> getAsync(String bucketName, String key) {
+		Lookup lookup = lookup(bucketName, key);
+		if (lookup.isHit()) {
+			return CompletableFuture.completedFuture(lookup.cached.response);
+		}
+		CompletableFuture<HeadObjectResponse> head;
+		try {
+			head = s3AsyncClient.headObject(headRequest(bucketName, key, lookup.cached));
+		} catch (RuntimeException e) {
+			release(lookup);
+			throw e;
+		}
+		return head.handle((response, error) -> {
+			if (error == null) {
+				return store(lookup, response);
+			}
+			Throwable cause = error instanceof CompletionException ? error.getCause() : error;
+			if (lookup.cached != null && cause instanceof S3Exception s3Exception && s3Exception.statusCode() == 304) {
+				return revalidated(lookup);
+			}
+			release(lookup);
+			throw cause instanceof RuntimeException runtime ? runtime : new CompletionException(cause);
+		});
+	}
+
+	/**
+	 * Drops the entry of a key, called after this service wrote to it. HeadObject calls already in flight for
+	 * the key will not cache their response.
+	 */
+	public void invalidate(String bucketName, String key) {
+		String cacheKey = cacheKey(bucketName, key);
+		lock.lock();
+		try {
+			entries.remove(cacheKey);
+			Generation generation = inFlight.get(cacheKey);
+			if (generation != null) {
+				generation.value++;
+			}
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	public Map<String, Number> getStats() {
+		long hitCount = hits.sum();
+		long missCount = misses.sum();
+		Map<String, Number> stats = new LinkedHashMap<>();
+		stats.put("hits", hitCount);
+		stats.put("misses", missCount);
+		stats.put("hitRatio", hitCount + missCount == 0 ? 0.0 : (double) hitCount / (hitCount + missCount));
+		stats.put("revalidations", revalidations.sum());
+		stats.put("evictions", evictions.sum());
+		lock.lock();
+		try {
+			stats.put("size", entries.size());
+		} finally {
+			lock.unlock();
+		}
+		return stats;
+	}
+
+	/**
+	 * Looks up the entry of a key. On a miss the caller calls HeadObject and must end the lookup with
+	 * {@link #store}, {@link #revalidated} or {@link #release}.
+	 */
+	private Lookup lookup(String bucketName, String key) {
+		String cacheKey = cacheKey(bucketName, key);
+		lock.lock();
+		try {
+			MetadataEntry cached = entries.get(cacheKey);
+			if (cached != null && cached.isFresh()) {
+				hits.increment();
+				return new Lookup(bucketName, key, cached, -1);
+			}
+			misses.increment();
+			Generation generation = inFlight.computeIfAbsent(cacheKey, ignored -> new Generation());
+			generation.lookups++;
+			return new Lookup(bucketName, key, cached, generation.value);
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	private HeadObjectRequest headRequest(String bucketName, String key, MetadataEntry cached) {
+		HeadObjectRequest.Builder request = HeadObjectRequest.builder().bucket(bucketName).key(key);
+		if (cached != null && applicationProperties.isS3MetadataCacheRevalidate()) {
+			request.ifNoneMatch(cached.response.eTag());
+		}
+		return request.build();
+	}
+
+	private HeadObjectResponse revalidated(Lookup lookup) {
+		revalidations.increment();
+		LOGGER.debug("Metadata of {}/{} revalidated", lookup.bucketName, lookup.key);
+		return store(lookup, lookup.cached.response);
+	}
+
+	/**
+	 * Caches the response of a lookup unless its key was invalidated while the HeadObject was in flight.
+	 */
+	private HeadObjectResponse store(Lookup lookup, HeadObjectResponse response) {
+		MetadataEntry entry = new MetadataEntry(response,
+				System.nanoTime() + TimeUnit.SECONDS.toNanos(applicationProperties.getS3MetadataCacheTtlSeconds()));
+		String cacheKey = cacheKey(lookup.bucketName, lookup.key);
+		lock.lock();
+		try {
+			if (inFlight.get(cacheKey).value == lookup.generation) {
+				entries.put(cacheKey, entry);
+			} else {
+				LOGGER.debug("Metadata of {}/{} not cached, the key was invalidated during the lookup",
+						lookup.bucketName, lookup.key);
+			}
+			endLookup(cacheKey);
+		} finally {
+			lock.unlock();
+		}
+		return response;
+	}
+
+	private void release(Lookup lookup) {
+		lock.lock();
+		try {
+			endLookup(cacheKey(lookup.bucketName, lookup.key));
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	private void endLookup(String cacheKey) {
+		Generation generation = inFlight.get(cacheKey);
+		if (--generation.lookups == 0) {
+			inFlight.remove(cacheKey);
+		}
+	}
+
+	private static String cacheKey(String bucketName, String key) {
+		return bucketName + "/" + key;
+	}
+
+	private record Lookup(String bucketName, String key, MetadataEntry cached, long generation) {
+		private boolean isHit() {
+			return generation < 0;
+		}
+	}
+
+	/**
+	 * Invalidation count of a key and the number of lookups in flight for it; guarded by the cache lock.
+	 */
+	private static final class Generation {
+		private long value;
+		private int lookups;
+	}
+
+	private record MetadataEntry(HeadObjectResponse response, long expiresAt) {
+		private boolean isFresh() {
+			return System.nanoTime() - expiresAt < 0;
+		}
+	}
+}
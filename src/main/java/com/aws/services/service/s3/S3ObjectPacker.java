@@ -0,0 +1,958 @@
+package com.aws.services.service.s3;
+
+import com.aws.services.config.AWSThreadFactory;
+import com.aws.services.config.ApplicationProperties;
+import jakarta.annotation.PreDestroy;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import software.amazon.awssdk.core.async.AsyncResponseTransformer;
+import software.amazon.awssdk.core.sync.RequestBody;
+import software.amazon.awssdk.services.s3.S3AsyncClient;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.GetObjectRequest;
+import software.amazon.awssdk.services.s3.model.ListObjectsV2Request;
+import software.amazon.awssdk.services.s3.model.NoSuchKeyException;
+import software.amazon.awssdk.services.s3.model.PutObjectRequest;
+import software.amazon.awssdk.services.s3.model.S3Object;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.CRC32C;
+
+/**
+ * Packs small objects into archive objects under aws.s3.pack.prefix, so that many small uploads cost one PUT.
+ * Objects are buffered until aws.s3.pack.flush.bytes are pending or the oldest has waited
+ * aws.s3.pack.flush.interval.millis, then written as one archive followed by its index, a small object next to it
+ * that lists the key, offset, length, CRC32C and version of every entry. The index is the commit point: an
+ * archive without one is never read. All indexes are loaded into memory at startup, so reads of a packed object
+ * cost one byte-range GET and listing packed keys costs no request at all.
+ * <p>
+ * Overwritten and deleted entries stay in their archive until the archive's index is rewritten without them; an
+ * archive without live entries is deleted. Archives whose live bytes fall below aws.s3.pack.compaction.live.ratio
+ * are compacted periodically: their live entries are packed again into a new archive, keeping their version,
+ * which empties the old archive. Every entry carries a version that only grows, so when a crash leaves a key in
+ * two indexes the newer entry wins on the next load. The packer assumes it is the only writer of its prefix.
+ */
+@Component
+public class S3ObjectPacker {
+
+	private static final Logger LOGGER = LogManager.getLogger(S3ObjectPacker.class);
+
+	static final String ARCHIVE_SUFFIX = ".pack";
+	static final String INDEX_SUFFIX = ".idx";
+
+	private static final int INDEX_MAGIC = 0x5333504b;
+	private static final int INDEX_VERSION = 1;
+
+	/**
+	 * Where a packed object is stored. The version is a timestamp in microseconds that is unique per packer.
+	 */
+	public record Entry(String key, String archive, long offset, int length, int crc32c, long version) {
+
+		public String eTag() {
+			return S3ObjectPacker.eTag(version);
+		}
+
+		public Instant lastModified() {
+			return Instant.EPOCH.plus(version, ChronoUnit.MICROS);
+		}
+	}
+
+	private final S3Client s3Client;
+	private final S3AsyncClient s3AsyncClient;
+	private final S3Checksums s3Checksums;
+	private final AWSThreadFactory awsThreadFactory;
+	private final boolean enabled;
+	private final String bucketName;
+	private final String prefix;
+	private final long maxObjectBytes;
+	private final long flushBytes;
+	private final long flushIntervalNanos;
+	private final double compactionLiveRatio;
+	private final long compactionIntervalSeconds;
+	private final ExecutorService flushExecutor;
+
+	private final ReentrantLock lock = new ReentrantLock();
+	// Guarded by lock: the live entry of every packed key, the archives by name and the batches not committed yet
+	private final TreeMap<String, Entry> entries = new TreeMap<>();
+	private final Map<String, Archive> archives = new HashMap<>();
+	// Guarded by lock: archives whose stored index still lists entries that are no longer live
+	private final Set<String> dirty = new HashSet<>();
+	private final Set<Batch> flushing = new HashSet<>();
+	private Batch batch = new Batch();
+	private long lastRewriteAt = System.nanoTime();
+	// Held while indexes are rewritten, so that an older snapshot of an index never lands after a newer one
+	private final ReentrantLock indexLock = new ReentrantLock();
+	private final AtomicLong lastVersion = new AtomicLong();
+	private final AtomicBoolean compacting = new AtomicBoolean();
+
+	private final LongAdder packed = new LongAdder();
+	private final LongAdder flushes = new LongAdder();
+	private final LongAdder failedFlushes = new LongAdder();
+	private final LongAdder deleted = new LongAdder();
+	private final LongAdder rangeReads = new LongAdder();
+	private final LongAdder compactedArchives = new LongAdder();
+	private final LongAdder removedArchives = new LongAdder();
+
+	private ScheduledExecutorService scheduler;
+
+	public S3ObjectPacker(S3Client s3Client, S3AsyncClient s3AsyncClient, S3Checksums s3Checksums,
+			ApplicationProperties applicationProperties, AWSThreadFactory awsThreadFactory) {
+		this.s3Client = s3Client;
+		this.s3AsyncClient = s3AsyncClient;
+		this.s3Checksums = s3Checksums;
+		this.awsThreadFactory = awsThreadFactory;
+		this.enabled = applicationProperties.isS3PackEnabled();
+		this.bucketName = applicationProperties.getS3Bucket();
+		String packPrefix = applicationProperties.getS3PackPrefix();
+		this.prefix = packPrefix == null || packPrefix.isEmpty() ? ""
+				: packPrefix.endsWith("/") ? packPrefix : packPrefix + "/";
+		this.maxObjectBytes = applicationProperties.getS3PackMaxObjectBytes();
+		this.flushBytes = Math.max(1, applicationProperties.getS3PackFlushBytes());
+		this.flushIntervalNanos = TimeUnit.MILLISECONDS.toNanos(
+				Math.max(10, applicationProperties.getS3PackFlushIntervalMillis()));
+		this.compactionLiveRatio = applicationProperties.getS3PackCompactionLiveRatio();
+		this.compactionIntervalSeconds = applicationProperties.getS3PackCompactionIntervalSeconds();
+		this.flushExecutor = enabled ? Executors.newFixedThreadPool(
+				Math.max(1, applicationProperties.getS3PackFlushConcurrency()), awsThreadFactory.forPool("s3-pack"))
+				: null;
+	}
+
+	/**
+	 * Loads the indexes of all archives under the prefix and starts the flush and compaction timers.
+	 */
+	@EventListener(ApplicationReadyEvent.class)
+	public void start() {
+		if (!enabled || scheduler != null) {
+			return;
+		}
+		load();
+		scheduler = Executors.newScheduledThreadPool(2, awsThreadFactory.forPool("s3-pack-timer"));
+		long tickNanos = Math.max(TimeUnit.MILLISECONDS.toNanos(10), flushIntervalNanos / 4);
+		scheduler.scheduleWithFixedDelay(this::flushIfDue, tickNanos, tickNanos, TimeUnit.NANOSECONDS);
+		if (compactionIntervalSeconds > 0) {
+			scheduler.scheduleWithFixedDelay(this::compactQuietly, compactionIntervalSeconds,
+					compactionIntervalSeconds, TimeUnit.SECONDS);
+		}
+	}
+
+	/**
+	 * @return true if an object of this size should be packed.
+	 */
+	public boolean isPackable(long objectSize) {
+		return enabled && objectSize >= 0 && objectSize <= maxObjectBytes;
+	}
+
+	/**
+	 * @return The live entry of a key, or null if the key is not packed.
+	 */
+	public Entry lookup(String key) {
+		if (!enabled) {
+			return null;
+		}
+		lock.lock();
+		try {
+			return entries.get(key);
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * @return The packed keys that start with the prefix, in key order.
+	 */
+	public List<String> list(String keyPrefix) {
+		List<String> keys = new ArrayList<>();
+		if (!enabled) {
+			return keys;
+		}
+		String from = keyPrefix == null ? "" : keyPrefix;
+		lock.lock();
+		try {
+			for (String key : entries.tailMap(from, true).keySet()) {
+				if (!key.startsWith(from)) {
+					break;
+				}
+				keys.add(key);
+			}
+		} finally {
+			lock.unlock();
+		}
+		return keys;
+	}
+
+	/**
+	 * Adds an object to the next archive. The bytes are copied, so the buffer can be reused right away.
+	 *
+	 * @return The ETag of the packed entry, once the archive and its index are written.
+	 */
+	public CompletableFuture<String> put(String key, ByteBuffer data) {
+		if (!enabled) {
+			return CompletableFuture.failedFuture(new IllegalStateException("S3 object packing is not enabled"));
+		}
+		byte[] bytes = new byte[data.remaining()];
+		data.duplicate().get(bytes);
+		return enqueue(new PendingObject(key, bytes, nextVersion(), null, new CompletableFuture<>()));
+	}
+
+	/**
+	 * Removes a packed object. Reads stop returning it at once; the future completes once the index of its archive
+	 * is rewritten without it, or with false right away if the key is not packed.
+	 */
+	public CompletableFuture<Boolean> delete(String key) {
+		if (!enabled) {
+			return CompletableFuture.completedFuture(false);
+		}
+		List<CompletableFuture<Void>> awaited = new ArrayList<>();
+		lock.lock();
+		try {
+			PendingObject pending = batch.objects.remove(key);
+			if (pending != null) {
+				batch.bytes -= pending.data().length;
+				pending.done().complete(eTag(pending.version()));
+			}
+			// A batch being written stores the key anyway, its commit skips it and marks the new archive dirty
+			for (Batch writing : flushing) {
+				if (writing.objects.containsKey(key)) {
+					writing.deleted.add(key);
+					awaited.add(writing.flushed);
+				}
+			}
+			Entry entry = entries.remove(key);
+			if (entry != null) {
+				release(entry);
+			}
+			if (entry == null && awaited.isEmpty()) {
+				if (pending != null) {
+					deleted.increment();
+				}
+				return CompletableFuture.completedFuture(pending != null);
+			}
+			deleted.increment();
+			batch.awaited = true;
+			batch.since = batch.since == 0 ? System.nanoTime() : batch.since;
+			awaited.add(batch.flushed);
+		} finally {
+			lock.unlock();
+		}
+		return CompletableFuture.allOf(awaited.toArray(new CompletableFuture<?>[0])).thenApply(ignored -> true);
+	}
+
+	/**
+	 * Reads a packed object with a byte-range GET on its archive and checks it against the CRC32C in the index.
+	 * If the archive was compacted away in the meantime, the object is read from where it was moved.
+	 */
+	public byte[] read(Entry entry) {
+		if (entry.length() == 0) {
+			return new byte[0];
+		}
+		byte[] data;
+		try {
+			data = s3Client.getObjectAsBytes(rangeRequest(entry)).asByteArray();
+		} catch (NoSuchKeyException e) {
+			Entry moved = movedFrom(entry);
+			if (moved != null) {
+				return read(moved);
+			}
+			throw e;
+		}
+		return verified(entry, data);
+	}
+
+	/**
+	 * Same as {@link #read} over the async client.
+	 */
+	public CompletableFuture<byte[]> readAsync(Entry entry) {
+		if (entry.length() == 0) {
+			return CompletableFuture.completedFuture(new byte[0]);
+		}
+		return s3AsyncClient.getObject(rangeRequest(entry), AsyncResponseTransformer.toBytes())
+				.handle((bytes, error) -> {
+					if (error == null) {
+						return CompletableFuture.completedFuture(verified(entry, bytes.asByteArray()));
+					}
+					Throwable cause = error instanceof CompletionException ? error.getCause() : error;
+					Entry moved = cause instanceof NoSuchKeyException ? movedFrom(entry) : null;
+					return moved != null ? readAsync(moved) : CompletableFuture.<byte[]>failedFuture(cause);
+				})
+				.thenCompose(data -> data);
+	}
+
+	/**
+	 * Packs the live entries of archives below aws.s3.pack.compaction.live.ratio into new archives, one archive at
+	 * a time, after which the emptied archives are deleted.
+	 *
+	 * @return The number of archives compacted, the entries moved and the archive bytes reclaimed.
+	 */
+	public Map<String, Long> compact() {
+		Map<String, Long> result = new LinkedHashMap<>();
+		result.put("archives", 0L);
+		result.put("movedObjects", 0L);
+		result.put("reclaimedBytes", 0L);
+		if (!enabled || !compacting.compareAndSet(false, true)) {
+			return result;
+		}
+		try {
+			List<Archive> candidates = new ArrayList<>();
+			lock.lock();
+			try {
+				for (Archive archive : archives.values()) {
+					if (!archive.live.isEmpty() && archive.liveBytes < compactionLiveRatio * archive.size) {
+						candidates.add(archive);
+					}
+				}
+			} finally {
+				lock.unlock();
+			}
+			// Entries of several archives fill one new archive; waiting for it bounds the bytes held in memory
+			List<CompletableFuture<String>> moves = new ArrayList<>();
+			long movedBytes = 0;
+			for (int i = 0; i < candidates.size(); i++) {
+				Archive archive = candidates.get(i);
+				List<CompletableFuture<String>> moved = moveLiveEntries(archive);
+				if (moved != null) {
+					moves.addAll(moved);
+					movedBytes += archive.liveBytes;
+					compactedArchives.increment();
+					result.merge("archives", 1L, Long::sum);
+					result.merge("movedObjects", (long) moved.size(), Long::sum);
+					result.merge("reclaimedBytes", archive.size, Long::sum);
+				}
+				if (movedBytes >= flushBytes || i == candidates.size() - 1) {
+					// Index rewrites that fail are retried by the flush timer
+					CompletableFuture<Void> flushed = flushNow().exceptionally(error -> null);
+					CompletableFuture.allOf(moves.toArray(new CompletableFuture<?>[0])).join();
+					flushed.join();
+					moves.clear();
+					movedBytes = 0;
+				}
+			}
+			return result;
+		} finally {
+			compacting.set(false);
+		}
+	}
+
+	/**
+	 * @return The archives and their size, the live objects and bytes in them, the objects and bytes waiting to be
+	 * packed, the indexes waiting to be rewritten and the counts of packed, deleted and range-read objects, of
+	 * archive writes, failed writes and compacted and removed archives.
+	 */
+	public Map<String, Long> getStats() {
+		Map<String, Long> stats = new LinkedHashMap<>();
+		stats.put("enabled", enabled ? 1L : 0L);
+		if (!enabled) {
+			return stats;
+		}
+		lock.lock();
+		try {
+			stats.put("archives", (long) archives.size());
+			stats.put("archiveBytes", archives.values().stream().mapToLong(archive -> archive.size).sum());
+			stats.put("liveObjects", (long) entries.size());
+			stats.put("liveBytes", archives.values().stream().mapToLong(archive -> archive.liveBytes).sum());
+			stats.put("pendingObjects", (long) batch.objects.size()
+					+ flushing.stream().mapToLong(writing -> writing.objects.size()).sum());
+			stats.put("pendingBytes", batch.bytes + flushing.stream().mapToLong(writing -> writing.bytes).sum());
+			stats.put("dirtyIndexes", (long) dirty.size());
+		} finally {
+			lock.unlock();
+		}
+		stats.put("packed", packed.sum());
+		stats.put("deleted", deleted.sum());
+		stats.put("rangeReads", rangeReads.sum());
+		stats.put("flushes", flushes.sum());
+		stats.put("failedFlushes", failedFlushes.sum());
+		stats.put("compactedArchives", compactedArchives.sum());
+		stats.put("removedArchives", removedArchives.sum());
+		return stats;
+	}
+
+	/**
+	 * Writes the objects still pending and waits briefly for the archives being written.
+	 */
+	@PreDestroy
+	public void shutdown() throws InterruptedException {
+		if (!enabled) {
+			return;
+		}
+		if (scheduler != null) {
+			scheduler.shutdownNow();
+		}
+		flushNow();
+		flushExecutor.shutdown();
+		if (!flushExecutor.awaitTermination(10, TimeUnit.SECONDS)) {
+			LOGGER.warn("Packed objects still being written to {}{} at shutdown", bucketName, prefix);
+		}
+	}
+
+	private CompletableFuture<String> enqueue(PendingObject object) {
+		Batch full = null;
+		lock.lock();
+		try {
+			PendingObject replaced = batch.objects.get(object.key());
+			if (replaced != null && object.source() != null) {
+				// A newer version of the key is already pending, the compacted copy is not needed
+				return CompletableFuture.completedFuture(null);
+			}
+			batch.objects.put(object.key(), object);
+			if (replaced != null) {
+				batch.bytes -= replaced.data().length;
+				object.done().whenComplete((eTag, error) -> {
+					if (error == null) {
+						replaced.done().complete(eTag);
+					} else {
+						replaced.done().completeExceptionally(error);
+					}
+				});
+			}
+			batch.bytes += object.data().length;
+			batch.since = batch.since == 0 ? System.nanoTime() : batch.since;
+			if (batch.bytes >= flushBytes) {
+				full = swap();
+			}
+		} finally {
+			lock.unlock();
+		}
+		if (full != null) {
+			submit(full);
+		}
+		return object.done();
+	}
+
+	private void flushIfDue() {
+		Batch due = null;
+		lock.lock();
+		try {
+			long now = System.nanoTime();
+			boolean batchDue = batch.since != 0 && now - batch.since >= flushIntervalNanos;
+			// Index rewrites that failed are retried once per interval while nothing else is written
+			boolean retryDue = !dirty.isEmpty() && flushing.isEmpty() && now - lastRewriteAt >= flushIntervalNanos;
+			if (batchDue || retryDue) {
+				due = swap();
+			}
+		} finally {
+			lock.unlock();
+		}
+		if (due != null) {
+			submit(due);
+		}
+	}
+
+	/**
+	 * @return Completes once the batch is written and the indexes it made dirty are rewritten.
+	 */
+	private CompletableFuture<Void> flushNow() {
+		Batch due;
+		lock.lock();
+		try {
+			if (batch.objects.isEmpty() && !batch.awaited && dirty.isEmpty()) {
+				return CompletableFuture.completedFuture(null);
+			}
+			due = swap();
+		} finally {
+			lock.unlock();
+		}
+		submit(due);
+		return due.flushed;
+	}
+
+	/**
+	 * Called with the lock held: replaces the batch that collects new objects.
+	 */
+	private Batch swap() {
+		Batch due = batch;
+		batch = new Batch();
+		flushing.add(due);
+		return due;
+	}
+
+	private void submit(Batch due) {
+		try {
+			flushExecutor.execute(() -> flush(due));
+		} catch (RejectedExecutionException e) {
+			lock.lock();
+			try {
+				flushing.remove(due);
+			} finally {
+				lock.unlock();
+			}
+			due.objects.values().forEach(object -> object.done().completeExceptionally(e));
+			due.flushed.completeExceptionally(e);
+		}
+	}
+
+	/**
+	 * Writes the archive and index of a batch, makes its entries live, then rewrites the indexes of the archives
+	 * that lost entries, which is what makes deletes and overwrites durable.
+	 */
+	private void flush(Batch due) {
+		List<PendingObject> objects = new ArrayList<>(due.objects.values());
+		Index archive = null;
+		RuntimeException failure = null;
+		if (!objects.isEmpty()) {
+			try {
+				archive = write(objects);
+				flushes.increment();
+			} catch (RuntimeException e) {
+				failedFlushes.increment();
+				failure = e;
+				LOGGER.error("Failed to write an archive of {} packed objects to {}{}: {}", objects.size(), bucketName,
+						prefix, e.getMessage());
+			}
+		}
+		lock.lock();
+		try {
+			flushing.remove(due);
+			if (archive != null) {
+				commit(due, archive, objects);
+			}
+		} finally {
+			lock.unlock();
+		}
+		for (PendingObject object : objects) {
+			if (failure != null) {
+				object.done().completeExceptionally(failure);
+			} else {
+				object.done().complete(eTag(object.version()));
+			}
+		}
+		try {
+			rewriteDirtyIndexes();
+			due.flushed.complete(null);
+		} catch (RuntimeException e) {
+			due.flushed.completeExceptionally(e);
+		}
+	}
+
+	/**
+	 * Uploads the objects as one archive, then its index.
+	 */
+	private Index write(List<PendingObject> objects) {
+		String name = prefix + String.format("%016x", nextVersion());
+		long size = objects.stream().mapToLong(object -> object.data().length).sum();
+		if (size > Integer.MAX_VALUE - 8) {
+			throw new IllegalStateException("Archive of " + size + " bytes is too large");
+		}
+		byte[] content = new byte[(int) size];
+		List<Entry> written = new ArrayList<>(objects.size());
+		int offset = 0;
+		for (PendingObject object : objects) {
+			byte[] data = object.data();
+			System.arraycopy(data, 0, content, offset, data.length);
+			written.add(new Entry(object.key(), name, offset, data.length, crc32c(data, 0, data.length),
+					object.version()));
+			offset += data.length;
+		}
+		s3Client.putObject(PutObjectRequest.builder()
+				.bucket(bucketName)
+				.key(name + ARCHIVE_SUFFIX)
+				.contentType("application/octet-stream")
+				.checksumAlgorithm(s3Checksums.algorithm())
+				.build(), RequestBody.fromBytes(content));
+		putIndex(name, size, written);
+		packed.add(objects.size());
+		return new Index(size, written);
+	}
+
+	/**
+	 * Called with the lock held: makes the written entries live unless a newer version, or a delete, came first.
+	 * Compacted copies only replace the exact entry they were copied from.
+	 */
+	private void commit(Batch due, Index index, List<PendingObject> objects) {
+		Archive archive = new Archive(index.entries().get(0).archive(), index.size());
+		archives.put(archive.name, archive);
+		for (int i = 0; i < objects.size(); i++) {
+			PendingObject object = objects.get(i);
+			Entry entry = index.entries().get(i);
+			Entry current = entries.get(object.key());
+			boolean live = !due.deleted.contains(object.key()) && (object.source() == null
+					? current == null || current.version() < object.version()
+					: object.source().equals(current));
+			if (!live) {
+				dirty.add(archive.name);
+				continue;
+			}
+			if (current != null) {
+				release(current);
+			}
+			entries.put(entry.key(), entry);
+			archive.live.put(entry.key(), entry);
+			archive.liveBytes += entry.length();
+		}
+		if (archive.live.isEmpty()) {
+			dirty.add(archive.name);
+		}
+	}
+
+	/**
+	 * Called with the lock held: the entry is no longer live in its archive, whose index has to be rewritten.
+	 */
+	private void release(Entry entry) {
+		Archive archive = archives.get(entry.archive());
+		if (archive != null && archive.live.remove(entry.key()) != null) {
+			archive.liveBytes -= entry.length();
+			dirty.add(archive.name);
+		}
+	}
+
+	private void rewriteDirtyIndexes() {
+		indexLock.lock();
+		try {
+			List<String> names;
+			lock.lock();
+			try {
+				names = new ArrayList<>(dirty);
+				dirty.clear();
+				lastRewriteAt = System.nanoTime();
+			} finally {
+				lock.unlock();
+			}
+			RuntimeException failure = null;
+			for (String name : names) {
+				Archive archive;
+				List<Entry> live;
+				lock.lock();
+				try {
+					archive = archives.get(name);
+					if (archive == null) {
+						continue;
+					}
+					live = new ArrayList<>(archive.live.values());
+					if (live.isEmpty()) {
+						archives.remove(name);
+					}
+				} finally {
+					lock.unlock();
+				}
+				try {
+					if (live.isEmpty()) {
+						// The index goes first, an archive without one is never read
+						s3Client.deleteObject(request -> request.bucket(bucketName).key(name + INDEX_SUFFIX));
+						s3Client.deleteObject(request -> request.bucket(bucketName).key(name + ARCHIVE_SUFFIX));
+						removedArchives.increment();
+					} else {
+						live.sort(Comparator.comparingLong(Entry::offset));
+						putIndex(name, archive.size, live);
+					}
+				} catch (RuntimeException e) {
+					LOGGER.warn("Failed to rewrite the index of {}, retrying later: {}", name, e.getMessage());
+					lock.lock();
+					try {
+						if (live.isEmpty()) {
+							archives.putIfAbsent(name, archive);
+						}
+						dirty.add(name);
+					} finally {
+						lock.unlock();
+					}
+					failure = e;
+				}
+			}
+			if (failure != null) {
+				throw failure;
+			}
+		} finally {
+			indexLock.unlock();
+		}
+	}
+
+	private List<CompletableFuture<String>> moveLiveEntries(Archive archive) {
+		byte[] content;
+		try {
+			content = s3Client.getObjectAsBytes(GetObjectRequest.builder().bucket(bucketName)
+					.key(archive.name + ARCHIVE_SUFFIX).build()).asByteArray();
+		} catch (RuntimeException e) {
+			LOGGER.warn("Failed to read archive {} for compaction: {}", archive.name, e.getMessage());
+			return null;
+		}
+		List<Entry> live;
+		lock.lock();
+		try {
+			live = new ArrayList<>(archive.live.values());
+		} finally {
+			lock.unlock();
+		}
+		List<CompletableFuture<String>> moves = new ArrayList<>(live.size());
+		for (Entry entry : live) {
+			if (entry.offset() + entry.length() > content.length
+					|| crc32c(content, (int) entry.offset(), entry.length()) != entry.crc32c()) {
+				LOGGER.error("Packed object {} in {} does not match its CRC32C, left in place", entry.key(),
+						archive.name);
+				continue;
+			}
+			byte[] data = Arrays.copyOfRange(content, (int) entry.offset(), (int) entry.offset() + entry.length());
+			moves.add(enqueue(new PendingObject(entry.key(), data, entry.version(), entry, new CompletableFuture<>())));
+		}
+		return moves;
+	}
+
+	private void compactQuietly() {
+		try {
+			Map<String, Long> result = compact();
+			if (result.get("archives") > 0) {
+				LOGGER.info("Compacted packed archives in {}{}: {}", bucketName, prefix, result);
+			}
+		} catch (RuntimeException e) {
+			LOGGER.error("Compaction of packed archives in {}{} failed: {}", bucketName, prefix, e.getMessage());
+		}
+	}
+
+	/**
+	 * Reads every index under the prefix. When a key is listed more than once, after a crash between writing an
+	 * archive and rewriting the index of the entry it replaced, the newest version is kept. Archives without an
+	 * index were never committed and are deleted.
+	 */
+	private void load() {
+		Set<String> indexNames = new HashSet<>();
+		Set<String> archiveNames = new HashSet<>();
+		for (S3Object object : s3Client.listObjectsV2Paginator(ListObjectsV2Request.builder().bucket(bucketName)
+				.prefix(prefix).build()).contents()) {
+			if (object.key().endsWith(INDEX_SUFFIX)) {
+				indexNames.add(object.key().substring(0, object.key().length() - INDEX_SUFFIX.length()));
+			} else if (object.key().endsWith(ARCHIVE_SUFFIX)) {
+				archiveNames.add(object.key().substring(0, object.key().length() - ARCHIVE_SUFFIX.length()));
+			}
+		}
+		Map<String, CompletableFuture<Index>> indexes = new HashMap<>();
+		for (String name : indexNames) {
+			indexes.put(name, CompletableFuture.supplyAsync(() -> readIndex(name), flushExecutor));
+		}
+		long entryCount = 0;
+		lock.lock();
+		try {
+			for (Map.Entry<String, CompletableFuture<Index>> loaded : indexes.entrySet()) {
+				String name = loaded.getKey();
+				Index index;
+				try {
+					index = loaded.getValue().join();
+				} catch (CompletionException e) {
+					// Left in place, its entries are not served until the index can be read
+					LOGGER.error("Failed to load packed index {}: {}", name, e.getCause().getMessage());
+					archiveNames.remove(name);
+					continue;
+				}
+				Archive archive = new Archive(name, index.size());
+				archives.put(name, archive);
+				advanceVersion(versionOf(name));
+				for (Entry entry : index.entries()) {
+					advanceVersion(entry.version());
+					Entry current = entries.get(entry.key());
+					if (current != null && (current.version() > entry.version() || current.version() == entry.version()
+							&& current.archive().compareTo(entry.archive()) > 0)) {
+						dirty.add(name);
+						continue;
+					}
+					if (current != null) {
+						release(current);
+					}
+					entries.put(entry.key(), entry);
+					archive.live.put(entry.key(), entry);
+					archive.liveBytes += entry.length();
+				}
+				if (archive.live.isEmpty()) {
+					dirty.add(name);
+				}
+			}
+			entryCount = entries.size();
+		} finally {
+			lock.unlock();
+		}
+		archiveNames.removeAll(indexNames);
+		for (String orphan : archiveNames) {
+			LOGGER.info("Deleting packed archive {} that was never committed", orphan);
+			try {
+				s3Client.deleteObject(request -> request.bucket(bucketName).key(orphan + ARCHIVE_SUFFIX));
+			} catch (RuntimeException e) {
+				LOGGER.warn("Failed to delete packed archive {}: {}", orphan, e.getMessage());
+			}
+		}
+		try {
+			rewriteDirtyIndexes();
+		} catch (RuntimeException e) {
+			// Retried by the flush timer
+		}
+		LOGGER.info("Loaded {} packed objects in {} archives from {}{}", entryCount, indexes.size(), bucketName,
+				prefix);
+	}
+
+	private GetObjectRequest rangeRequest(Entry entry) {
+		return GetObjectRequest.builder()
+				.bucket(bucketName)
+				.key(entry.archive() + ARCHIVE_SUFFIX)
+				.range("bytes=" + entry.offset() + "-" + (entry.offset() + entry.length() - 1))
+				.build();
+	}
+
+	/**
+	 * @return The entry of the key if it moved to another archive since it was looked up, null otherwise.
+	 */
+	private Entry movedFrom(Entry entry) {
+		Entry moved = lookup(entry.key());
+		return moved != null && !moved.archive().equals(entry.archive()) ? moved : null;
+	}
+
+	private byte[] verified(Entry entry, byte[] data) {
+		rangeReads.increment();
+		if (data.length != entry.length() || crc32c(data, 0, data.length) != entry.crc32c()) {
+			throw new IllegalStateException("Packed object " + entry.key() + " in " + entry.archive()
+					+ " does not match its CRC32C");
+		}
+		return data;
+	}
+
+	private void putIndex(String name, long size, List<Entry> indexEntries) {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream(64 + indexEntries.size() * 64);
+		try (DataOutputStream out = new DataOutputStream(bytes)) {
+			out.writeInt(INDEX_MAGIC);
+			out.writeInt(INDEX_VERSION);
+			out.writeLong(size);
+			out.writeInt(indexEntries.size());
+			for (Entry entry : indexEntries) {
+				out.writeUTF(entry.key());
+				out.writeLong(entry.offset());
+				out.writeInt(entry.length());
+				out.writeInt(entry.crc32c());
+				out.writeLong(entry.version());
+			}
+			byte[] body = bytes.toByteArray();
+			out.writeInt(crc32c(body, 0, body.length));
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		s3Client.putObject(PutObjectRequest.builder()
+				.bucket(bucketName)
+				.key(name + INDEX_SUFFIX)
+				.contentType("application/octet-stream")
+				.checksumAlgorithm(s3Checksums.algorithm())
+				.build(), RequestBody.fromBytes(bytes.toByteArray()));
+	}
+
+	private Index readIndex(String name) {
+		byte[] bytes = s3Client.getObjectAsBytes(GetObjectRequest.builder().bucket(bucketName)
+				.key(name + INDEX_SUFFIX).build()).asByteArray();
+		if (bytes.length < 24) {
+			throw new IllegalStateException("Index " + name + " is truncated");
+		}
+		int expected = ByteBuffer.wrap(bytes, bytes.length - 4, 4).getInt();
+		if (crc32c(bytes, 0, bytes.length - 4) != expected) {
+			throw new IllegalStateException("Index " + name + " does not match its CRC32C");
+		}
+		try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes, 0, bytes.length - 4))) {
+			if (in.readInt() != INDEX_MAGIC || in.readInt() != INDEX_VERSION) {
+				throw new IllegalStateException(name + " is not a packed index");
+			}
+			long size = in.readLong();
+			int count = in.readInt();
+			List<Entry> indexEntries = new ArrayList<>(count);
+			for (int i = 0; i < count; i++) {
+				indexEntries.add(new Entry(in.readUTF(), name, in.readLong(), in.readInt(), in.readInt(),
+						in.readLong()));
+			}
+			return new Index(size, indexEntries);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	/**
+	 * @return A version above every version handed out or loaded so far, the current time in microseconds if the
+	 * clock is ahead of them.
+	 */
+	private long nextVersion() {
+		long now = ChronoUnit.MICROS.between(Instant.EPOCH, Instant.now());
+		return lastVersion.updateAndGet(last -> Math.max(last + 1, now));
+	}
+
+	private void advanceVersion(long version) {
+		lastVersion.accumulateAndGet(version, Math::max);
+	}
+
+	private long versionOf(String archiveName) {
+		try {
+			return Long.parseUnsignedLong(archiveName.substring(archiveName.lastIndexOf('/') + 1), 16);
+		} catch (NumberFormatException e) {
+			return 0;
+		}
+	}
+
+	private static String eTag(long version) {
+		return "\"" + Long.toHexString(version) + "\"";
+	}
+
+	private static int crc32c(byte[] data, int offset, int length) {
+		CRC32C crc = new CRC32C();
+		crc.update(data, offset, length);
+		return (int) crc.getValue();
+	}
+
+	/**
+	 * Objects waiting to be packed, by key; a put of a key that is already pending replaces it. Deletes of keys
+	 * in a batch that is being written are recorded so that its commit skips them.
+	 */
+	private static final class Batch {
+		private final Map<String, PendingObject> objects = new LinkedHashMap<>();
+		private final Set<String> deleted = new HashSet<>();
+		private final CompletableFuture<Void> flushed = new CompletableFuture<>();
+		private long bytes;
+		// When the first object or awaited delete was added, 0 while there is none
+		private long since;
+		private boolean awaited;
+	}
+
+	/**
+	 * An object to pack; source is the entry a compacted copy was made from, null for new objects.
+	 */
+	private record PendingObject(String key, byte[] data, long version, Entry source,
+			CompletableFuture<String> done) {
+	}
+
+	/**
+	 * The archive size and entries an index lists.
+	 */
+	private record Index(long size, List<Entry> entries) {
+	}
+
+	private static final class Archive {
+		private final String name;
+		private final long size;
+		// Guarded by the packer's lock
+		private final Map<String, Entry> live = new HashMap<>();
+		private long liveBytes;
+
+		private Archive(String name, long size) {
+			this.name = name;
+			this.size = size;
+		}
+	}
+}
@@ -0,0 +1,269 @@
+package com.aws.services.service.s3;
+
+import com.aws.services.config.ApplicationProperties;
+import com.aws.services.config.ByteBudget;
+import com.aws.services.model.S3SyncReport;
+import com.aws.services.model.S3TransferReport;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.stereotype.Component;
+import software.amazon.awssdk.core.exception.SdkException;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.GetObjectResponse;
+import software.amazon.awssdk.services.s3.model.ListObjectsV2Request;
+import software.amazon.awssdk.services.s3.model.S3Object;
+import software.amazon.awssdk.transfer.s3.S3TransferManager;
+import software.amazon.awssdk.transfer.s3.model.DownloadFileRequest;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Semaphore;
+import java.util.function.BiConsumer;
+
+/**
+ * Downloads every object under a prefix with the transfer manager. The listing of the next page runs while
+ * the downloads of the previous ones are still in flight; it only waits when either the number of running
+ * downloads or the number of bytes being downloaded reaches its configured limit. A sync only downloads the
+ * objects that changed since the last sync into the same directory, as recorded in its {@link S3SyncManifest}.
+ */
+@Component
+public class S3PrefixDownloader {
+
+	private static final Logger LOGGER = LogManager.getLogger(S3PrefixDownloader.class);
+
+	private static final String SYNC_FILE_PREFIX = ".s3sync-";
+	private static final String PART_SUFFIX = ".s3sync-part";
+
+	private final S3Client s3Client;
+	private final S3TransferManager s3TransferManager;
+	private final ApplicationProperties applicationProperties;
+	private final S3Checksums s3Checksums;
+	private final Set<Path> activeSyncs = ConcurrentHashMap.newKeySet();
+
+	public S3PrefixDownloader(S3Client s3Client, S3TransferManager s3TransferManager,
+			ApplicationProperties applicationProperties, S3Checksums s3Checksums) {
+		this.s3Client = s3Client;
+		this.s3TransferManager = s3TransferManager;
+		this.applicationProperties = applicationProperties;
+		this.s3Checksums = s3Checksums;
+	}
+
+	/**
+	 * Downloads all objects under the prefix, keeping the key hierarchy below the prefix under the destination.
+	 *
+	 * @param bucketName      The bucket to download from.
+	 * @param prefix          The path within the s3 bucket.
+	 * @param destinationPath The local directory to download into.
+	 * @return The keys downloaded and the keys that failed.
+	 */
+	public S3TransferReport downloadPrefix(String bucketName, String prefix, String destinationPath) {
+		Downloads downloads = new Downloads();
+		Queue<String> succeeded = new ConcurrentLinkedQueue<>();
+		Map<String, String> failed = new ConcurrentHashMap<>();
+		Path destination = Paths.get(destinationPath).toAbsolutePath().normalize();
+
+		ListObjectsV2Request listObjectsRequest = ListObjectsV2Request.builder().bucket(bucketName).prefix(prefix).build();
+		try {
+			for (S3Object s3Object : s3Client.listObjectsV2Paginator(listObjectsRequest).contents()) {
+				if (s3Object.key().endsWith("/")) {
+					continue;
+				}
+				Path target = resolveTarget(destination, prefix, s3Object.key());
+				if (target == null) {
+					failed.put(s3Object.key(), "Key resolves outside of the destination directory");
+					continue;
+				}
+				downloads.start(bucketName, s3Object, target, (response, error) -> {
+					if (error == null) {
+						succeeded.add(s3Object.key());
+					} else {
+						failed.put(s3Object.key(), String.valueOf(error.getMessage()));
+					}
+				});
+			}
+		} finally {
+			downloads.awaitAll();
+		}
+		LOGGER.info("Downloaded {} objects of {}/{} to {}, {} failed", succeeded.size(), bucketName, prefix,
+				destination, failed.size());
+		return new S3TransferReport(new ArrayList<>(succeeded), failed);
+	}
+
+	/**
+	 * Brings the destination up to date with the prefix. Only objects that are new, whose ETag or size differs
+	 * from the manifest of the directory, or whose local file is missing are downloaded. Each object is written
+	 * to a temporary file and moved into place once complete, then recorded in the manifest.
+	 *
+	 * @param bucketName      The bucket to sync from.
+	 * @param prefix          The path within the s3 bucket.
+	 * @param destinationPath The local directory to sync into.
+	 * @param deleteRemoved   Whether to delete local files of keys that are no longer listed. Nothing is deleted
+	 *                        if the listing did not complete.
+	 * @return The keys downloaded and deleted, the number left unchanged and the keys that failed.
+	 */
+	public S3SyncReport syncPrefix(String bucketName, String prefix, String destinationPath, boolean deleteRemoved) {
+		Path destination = Paths.get(destinationPath).toAbsolutePath().normalize();
+		String keyPrefix = prefix == null ? "" : prefix;
+		Queue<String> downloaded = new ConcurrentLinkedQueue<>();
+		List<String> deleted = new ArrayList<>();
+		Map<String, String> failed = new ConcurrentHashMap<>();
+		long unchanged = 0;
+		if (!activeSyncs.add(destination)) {
+			failed.put(destinationPath, "A sync into this directory is already running");
+			return new S3SyncReport(List.of(), List.of(), 0, failed);
+		}
+		try {
+			Files.createDirectories(destination);
+			try (S3SyncManifest manifest = S3SyncManifest.load(destination, bucketName, keyPrefix)) {
+				Set<String> unlisted = deleteRemoved ? manifest.keys() : new HashSet<>();
+				boolean listed = false;
+				Downloads downloads = new Downloads();
+				ListObjectsV2Request listObjectsRequest = ListObjectsV2Request.builder().bucket(bucketName)
+						.prefix(keyPrefix).build();
+				try {
+					for (S3Object s3Object : s3Client.listObjectsV2Paginator(listObjectsRequest).contents()) {
+						String key = s3Object.key();
+						if (key.endsWith("/")) {
+							continue;
+						}
+						unlisted.remove(key);
+						Path target = resolveTarget(destination, keyPrefix, key);
+						if (target == null || target.getFileName().toString().startsWith(SYNC_FILE_PREFIX)) {
+							failed.put(key, "Key resolves outside of the destination directory or to a reserved name");
+							continue;
+						}
+						S3SyncManifest.Entry entry = manifest.get(key);
+						if (entry != null && entry.eTag().equals(s3Object.eTag()) && entry.size() == s3Object.size()
+								&& hasSize(target, s3Object.size())) {
+							unchanged++;
+							continue;
+						}
+						Path partFile = target.resolveSibling(target.getFileName() + PART_SUFFIX);
+						downloads.start(bucketName, s3Object, partFile, (response, error) -> {
+							if (error != null) {
+								failed.put(key, String.valueOf(error.getMessage()));
+								return;
+							}
+							try {
+								Files.move(partFile, target, StandardCopyOption.ATOMIC_MOVE,
+										StandardCopyOption.REPLACE_EXISTING);
+								manifest.put(key, new S3SyncManifest.Entry(response.eTag(), response.contentLength(),
+										response.lastModified() == null ? 0 : response.lastModified().toEpochMilli()));
+								downloaded.add(key);
+							} catch (IOException e) {
+								failed.put(key, String.valueOf(e.getMessage()));
+							}
+						});
+					}
+					listed = true;
+				} catch (SdkException e) {
+					LOGGER.error("Listing {}/{} failed: {}", bucketName, keyPrefix, e.getMessage());
+					failed.put(keyPrefix, String.valueOf(e.getMessage()));
+				} finally {
+					downloads.awaitAll();
+				}
+				if (deleteRemoved && listed) {
+					for (String key : unlisted) {
+						Path target = resolveTarget(destination, keyPrefix, key);
+						try {
+							if (target != null) {
+								Files.deleteIfExists(target);
+							}
+							manifest.remove(key);
+							deleted.add(key);
+						} catch (IOException e) {
+							failed.put(key, String.valueOf(e.getMessage()));
+						}
+					}
+				}
+				manifest.compact();
+			}
+		} catch (IOException e) {
+			LOGGER.error("Sync of {}/{} to {} failed: {}", bucketName, keyPrefix, destination, e.getMessage());
+			failed.put(destinationPath, String.valueOf(e.getMessage()));
+		} finally {
+			activeSyncs.remove(destination);
+		}
+		LOGGER.info("Synced {}/{} to {}: {} downloaded, {} unchanged, {} deleted, {} failed", bucketName, keyPrefix,
+				destination, downloaded.size(), unchanged, deleted.size(), failed.size());
+		return new S3SyncReport(new ArrayList<>(downloaded), deleted, unchanged, failed);
+	}
+
+	private static boolean hasSize(Path file, long size) {
+		try {
+			return Files.size(file) == size;
+		} catch (IOException e) {
+			return false;
+		}
+	}
+
+	/**
+	 * Maps a key to its file below the destination, or null if the key would escape the destination.
+	 */
+	static Path resolveTarget(Path destination, String prefix, String key) {
+		String relative = prefix != null && key.startsWith(prefix) ? key.substring(prefix.length()) : key;
+		while (relative.startsWith("/")) {
+			relative = relative.substring(1);
+		}
+		if (relative.isEmpty()) {
+			relative = key.substring(key.lastIndexOf('/') + 1);
+		}
+		Path target = destination.resolve(relative).normalize();
+		return target.startsWith(destination) && !target.equals(destination) ? target : null;
+	}
+
+	/**
+	 * Runs the downloads of one request within the configured limits on concurrent downloads and bytes in flight.
+	 */
+	private final class Downloads {
+		private final int maxConcurrency = applicationProperties.getS3DownloadMaxConcurrency();
+		private final Semaphore running = new Semaphore(maxConcurrency);
+		private final ByteBudget bytes = new ByteBudget(applicationProperties.getS3DownloadMaxInFlightBytes());
+
+		/**
+		 * Starts the download once the limits allow it. The callback runs when the download ends, before its
+		 * share of the limits is released.
+		 */
+		void start(String bucketName, S3Object s3Object, Path target,
+				BiConsumer<GetObjectResponse, Throwable> callback) {
+			long reserved = bytes.acquire(s3Object.size());
+			running.acquireUninterruptibly();
+			try {
+				Files.createDirectories(target.getParent());
+				DownloadFileRequest downloadFileRequest = DownloadFileRequest.builder()
+						.getObjectRequest(b -> b.bucket(bucketName).key(s3Object.key())
+								.checksumMode(s3Checksums.checksumMode()))
+						.destination(target)
+						.build();
+				s3TransferManager.downloadFile(downloadFileRequest).completionFuture().whenComplete((result, error) -> {
+					try {
+						callback.accept(result == null ? null : result.response(), error);
+					} finally {
+						running.release();
+						bytes.release(reserved);
+					}
+				});
+			} catch (IOException | RuntimeException e) {
+				running.release();
+				bytes.release(reserved);
+				callback.accept(null, e);
+			}
+		}
+
+		void awaitAll() {
+			running.acquireUninterruptibly(maxConcurrency);
+			running.release(maxConcurrency);
+		}
+	}
+}
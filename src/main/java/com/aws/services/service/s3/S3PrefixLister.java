@@ -0,0 +1,187 @@
+package com.aws.services.service.s3;
+
+import com.aws.services.config.AWSThreadFactory;
+import com.aws.services.config.ApplicationProperties;
+import com.aws.services.model.S3ListFilter;
+import com.aws.services.model.S3ListedObject;
+import com.aws.services.model.S3ListingSummary;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.stereotype.Component;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.CommonPrefix;
+import software.amazon.awssdk.services.s3.model.ListObjectsV2Request;
+import software.amazon.awssdk.services.s3.model.ListObjectsV2Response;
+import software.amazon.awssdk.services.s3.model.S3Object;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lists a prefix as a stream. The prefix is split into partitions with delimiter listings down to the configured
+ * depth, the partitions are listed in parallel and each page is filtered and handed to the calling thread, which
+ * writes one JSON object per key to the output as the pages arrive. At most a few pages per worker are buffered;
+ * the workers wait when the client reads slower than S3 lists. Keys of different partitions are interleaved.
+ */
+@Component
+public class S3PrefixLister {
+
+	private static final Logger LOGGER = LogManager.getLogger(S3PrefixLister.class);
+
+	private static final String DELIMITER = "/";
+	private static final int OUTPUT_BUFFER_SIZE = 64 * 1024;
+	// Marks the end of the listing in the page queue, compared by identity
+	private static final List<S3Object> END = new ArrayList<>();
+
+	private final S3Client s3Client;
+	private final ApplicationProperties applicationProperties;
+	private final AWSThreadFactory awsThreadFactory;
+	private final ObjectMapper objectMapper;
+
+	public S3PrefixLister(S3Client s3Client, ApplicationProperties applicationProperties,
+			AWSThreadFactory awsThreadFactory, ObjectMapper objectMapper) {
+		this.s3Client = s3Client;
+		this.applicationProperties = applicationProperties;
+		this.awsThreadFactory = awsThreadFactory;
+		this.objectMapper = objectMapper;
+	}
+
+	/**
+	 * Streams the objects under the prefix that match the filter as NDJSON, followed by a summary line.
+	 *
+	 * @param bucketName   The bucket to list.
+	 * @param prefix       The path within the s3 bucket.
+	 * @param filter       The conditions an object must meet to be written.
+	 * @param outputStream Receives one {@link S3ListedObject} per line and a final {@link S3ListingSummary}.
+	 * @return The summary written at the end of the output.
+	 */
+	public S3ListingSummary list(String bucketName, String prefix, S3ListFilter filter, OutputStream outputStream)
+			throws IOException {
+		long start = System.nanoTime();
+		int concurrency = Math.max(1, applicationProperties.getS3ListConcurrency());
+		Listing listing = new Listing(bucketName, filter, concurrency);
+		ExecutorService executor = Executors.newFixedThreadPool(concurrency, awsThreadFactory.forPool("s3-list"));
+		OutputStream output = new BufferedOutputStream(outputStream, OUTPUT_BUFFER_SIZE);
+		long matched = 0;
+		try {
+			listing.submit(executor, prefix == null ? "" : prefix, 0);
+			while (true) {
+				List<S3Object> page = listing.pages.take();
+				if (page == END) {
+					break;
+				}
+				for (S3Object s3Object : page) {
+					output.write(objectMapper.writeValueAsBytes(new S3ListedObject(s3Object.key(), s3Object.size(),
+							s3Object.eTag(), s3Object.lastModified(), s3Object.storageClassAsString())));
+					output.write('\n');
+				}
+				matched += page.size();
+				output.flush();
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Listing of " + bucketName + "/" + prefix + " interrupted");
+		} finally {
+			listing.cancelled = true;
+			executor.shutdownNow();
+		}
+		S3ListingSummary summary = new S3ListingSummary(listing.listed.sum(), matched, listing.partitions.sum(),
+				!listing.failed, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+		output.write(objectMapper.writeValueAsBytes(summary));
+		output.write('\n');
+		output.flush();
+		LOGGER.info("Listed {} objects of {}/{} in {} partitions, {} matched ({} ms)", summary.listed(), bucketName,
+				prefix, summary.partitions(), summary.matched(), summary.elapsedMillis());
+		return summary;
+	}
+
+	/**
+	 * The state shared by the workers of one listing.
+	 */
+	private final class Listing {
+		private final String bucketName;
+		private final S3ListFilter filter;
+		private final int maxDepth = applicationProperties.getS3ListPartitionDepth();
+		private final BlockingQueue<List<S3Object>> pages;
+		private final AtomicInteger pending = new AtomicInteger();
+		private final LongAdder listed = new LongAdder();
+		private final LongAdder partitions = new LongAdder();
+		private volatile boolean failed;
+		private volatile boolean cancelled;
+
+		private Listing(String bucketName, S3ListFilter filter, int concurrency) {
+			this.bucketName = bucketName;
+			this.filter = filter;
+			this.pages = new ArrayBlockingQueue<>(concurrency * 2);
+		}
+
+		private void submit(ExecutorService executor, String prefix, int depth) {
+			pending.incrementAndGet();
+			partitions.increment();
+			executor.execute(() -> {
+				try {
+					listPartition(executor, prefix, depth);
+				} catch (RuntimeException e) {
+					failed = true;
+					LOGGER.error("Listing of {}/{} failed: {}", bucketName, prefix, e.getMessage());
+				} finally {
+					if (pending.decrementAndGet() == 0) {
+						put(END);
+					}
+				}
+			});
+		}
+
+		/**
+		 * Lists one partition. Above the maximum depth the listing is split at the delimiter and every common
+		 * prefix becomes a partition of its own; the keys directly under the prefix are still returned here.
+		 */
+		private void listPartition(ExecutorService executor, String prefix, int depth) {
+			boolean split = depth < maxDepth;
+			ListObjectsV2Request listObjectsRequest = ListObjectsV2Request.builder()
+					.bucket(bucketName)
+					.prefix(prefix)
+					.delimiter(split ? DELIMITER : null)
+					.build();
+			for (ListObjectsV2Response response : s3Client.listObjectsV2Paginator(listObjectsRequest)) {
+				if (cancelled) {
+					return;
+				}
+				if (split) {
+					for (CommonPrefix commonPrefix : response.commonPrefixes()) {
+						submit(executor, commonPrefix.prefix(), depth + 1);
+					}
+				}
+				listed.add(response.contents().size());
+				List<S3Object> page = response.contents().stream().filter(filter::matches).toList();
+				if (!page.isEmpty()) {
+					put(page);
+				}
+			}
+		}
+
+		private void put(List<S3Object> page) {
+			try {
+				while (!cancelled) {
+					if (pages.offer(page, 100, TimeUnit.MILLISECONDS)) {
+						return;
+					}
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+}
@@ -0,0 +1,22 @@
+package com.aws.services.service.s3;
+
+/**
+ * Thrown when a ranged download could not be completed. Unless the object changed or failed verification,
+ * the partial file and its checkpoint are kept so that downloading the same object to the same path again
+ * only fetches the missing ranges.
+ */
+public class S3RangedDownloadException extends RuntimeException {
+
+	private static final long serialVersionUID = 1L;
+
+	private final boolean resumable;
+
+	public S3RangedDownloadException(String message, boolean resumable, Throwable cause) {
+		super(message, cause);
+		this.resumable = resumable;
+	}
+
+	public boolean isResumable() {
+		return resumable;
+	}
+}
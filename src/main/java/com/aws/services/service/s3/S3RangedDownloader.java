@@ -0,0 +1,489 @@
+package com.aws.services.service.s3;
+
+import com.aws.services.config.AWSThreadFactory;
+import com.aws.services.config.ApplicationProperties;
+import jakarta.annotation.PreDestroy;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.stereotype.Component;
+import software.amazon.awssdk.core.ResponseInputStream;
+import software.amazon.awssdk.core.exception.SdkException;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.GetObjectRequest;
+import software.amazon.awssdk.services.s3.model.GetObjectResponse;
+import software.amazon.awssdk.services.s3.model.HeadObjectRequest;
+import software.amazon.awssdk.services.s3.model.HeadObjectResponse;
+import software.amazon.awssdk.services.s3.model.S3Exception;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.CRC32C;
+
+/**
+ * Downloads large objects as concurrent byte-range GETs on a shared pool. Each range is written straight to its
+ * offset in a file preallocated to the object size. Every range is requested with If-Match on the ETag, so an
+ * object that changes mid-download fails the transfer instead of producing a mix of versions. Completed ranges
+ * are recorded in a small checkpoint file next to the partial file; downloading the same object to the same
+ * path again resumes with the missing ranges only. With CRC32C checksums configured, the CRC32C of each range is
+ * computed while it is written and kept in the checkpoint; the range checksums are combined into the object
+ * checksum S3 reports, so the assembled file is verified without reading it again. Objects without a CRC32C
+ * checksum are checked against the ETag (the MD5 of the object, or the MD5 of the part MD5s for multipart
+ * uploads) before they are moved into place.
+ */
+@Component
+public class S3RangedDownloader {
+
+	private static final Logger LOGGER = LogManager.getLogger(S3RangedDownloader.class);
+
+	static final String PARTIAL_SUFFIX = ".s3download";
+	static final String CHECKPOINT_SUFFIX = ".s3download-checkpoint";
+
+	private static final int CHECKPOINT_MAGIC = 0x53335232;
+	private static final int COPY_BUFFER_SIZE = 64 * 1024;
+	private static final int DIGEST_BUFFER_SIZE = 1024 * 1024;
+
+	private final S3Client s3Client;
+	private final ApplicationProperties applicationProperties;
+	private final S3Checksums s3Checksums;
+	private final ExecutorService rangeExecutor;
+
+	public S3RangedDownloader(S3Client s3Client, ApplicationProperties applicationProperties,
+			S3Checksums s3Checksums, AWSThreadFactory awsThreadFactory) {
+		this.s3Client = s3Client;
+		this.applicationProperties = applicationProperties;
+		this.s3Checksums = s3Checksums;
+		this.rangeExecutor = Executors.newFixedThreadPool(applicationProperties.getS3DownloadRangeConcurrency(),
+				awsThreadFactory.forPool("s3-range"));
+	}
+
+	/**
+	 * @return true if an object of this size should be downloaded in ranges.
+	 */
+	public boolean isRanged(long objectSize) {
+		return objectSize > 0 && objectSize >= applicationProperties.getS3DownloadRangedThresholdBytes();
+	}
+
+	/**
+	 * Downloads the object to the target path, resuming an earlier interrupted download of the same version.
+	 *
+	 * @param bucketName The bucket to download from.
+	 * @param key        The key of the object.
+	 * @param target     The local file to create or replace.
+	 * @return The HeadObject response of the downloaded version.
+	 * @throws S3RangedDownloadException if a range could not be fetched, the object changed or the file failed
+	 *                                   verification.
+	 */
+	public HeadObjectResponse download(String bucketName, String key, Path target) throws IOException {
+		HeadObjectResponse head = s3Client.headObject(HeadObjectRequest.builder().bucket(bucketName).key(key)
+				.checksumMode(s3Checksums.checksumMode()).build());
+		long size = head.contentLength();
+		long rangeSize = Math.max(1, applicationProperties.getS3DownloadRangeSizeBytes());
+		String checksum = s3Checksums.isCrc32c() ? head.checksumCRC32C() : null;
+		int dash = checksum == null ? -1 : checksum.indexOf('-');
+		// A composite checksum is built from part checksums, so ranges must not cross part boundaries
+		long[] parts = dash < 0 ? new long[] {0, size}
+				: partOffsets(bucketName, key, size, Integer.parseInt(checksum.substring(dash + 1)));
+		List<Range> ranges = plan(parts, rangeSize);
+		int rangeCount = ranges.size();
+		Path partial = target.resolveSibling(target.getFileName() + PARTIAL_SUFFIX);
+		Path checkpointFile = target.resolveSibling(target.getFileName() + CHECKPOINT_SUFFIX);
+		if (target.getParent() != null) {
+			Files.createDirectories(target.getParent());
+		}
+		Checkpoint checkpoint = Checkpoint.load(checkpointFile, head.eTag(), size, rangeSize, rangeCount);
+		if (checkpoint.completed.isEmpty() || !Files.exists(partial)) {
+			checkpoint.completed.clear();
+		} else {
+			LOGGER.info("Resuming download of {}/{}: {} of {} ranges already complete", bucketName, key,
+					checkpoint.completed.cardinality(), rangeCount);
+		}
+
+		try (FileChannel channel = FileChannel.open(partial, StandardOpenOption.CREATE, StandardOpenOption.READ,
+				StandardOpenOption.WRITE)) {
+			preallocate(channel, size);
+			AtomicBoolean failed = new AtomicBoolean();
+			List<CompletableFuture<Void>> pending = new ArrayList<>();
+			for (int range = 0; range < rangeCount; range++) {
+				if (checkpoint.isComplete(range)) {
+					continue;
+				}
+				Range next = ranges.get(range);
+				int index = range;
+				pending.add(CompletableFuture.runAsync(() -> {
+					if (failed.get()) {
+						return;
+					}
+					try {
+						int rangeChecksum = downloadRange(bucketName, key, head.eTag(), channel, next.offset(),
+								next.length(), checksum != null);
+						checkpoint.complete(index, rangeChecksum, channel);
+					} catch (RuntimeException e) {
+						failed.set(true);
+						throw e;
+					}
+				}, rangeExecutor));
+			}
+			try {
+				CompletableFuture.allOf(pending.toArray(new CompletableFuture<?>[0])).join();
+			} catch (CompletionException e) {
+				Throwable cause = e.getCause() != null ? e.getCause() : e;
+				if (cause instanceof S3Exception s3Exception && s3Exception.statusCode() == 412) {
+					discard(partial, checkpointFile);
+					throw new S3RangedDownloadException("Object " + key + " changed during the download", false, cause);
+				}
+				throw new S3RangedDownloadException("Ranged download of " + key + " failed after "
+						+ checkpoint.completed.cardinality() + " of " + rangeCount + " ranges", true, cause);
+			}
+			channel.force(true);
+			if (checksum != null) {
+				String actual = combinedChecksum(ranges, checkpoint.checksums, parts.length - 1, dash >= 0);
+				if (!actual.equals(checksum)) {
+					discard(partial, checkpointFile);
+					throw new S3RangedDownloadException("Downloaded file of " + key + " does not match CRC32C "
+							+ checksum + ", computed " + actual, false, null);
+				}
+			} else if (!verify(bucketName, key, head, channel)) {
+				discard(partial, checkpointFile);
+				throw new S3RangedDownloadException("Downloaded file of " + key + " does not match ETag "
+						+ head.eTag(), false, null);
+			}
+		}
+		Files.move(partial, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+		Files.deleteIfExists(checkpointFile);
+		LOGGER.info("Downloaded {}/{} ({} bytes) in {} ranges to {}", bucketName, key, size, rangeCount, target);
+		return head;
+	}
+
+	@PreDestroy
+	public void shutdown() {
+		rangeExecutor.shutdown();
+	}
+
+	private static void preallocate(FileChannel channel, long size) throws IOException {
+		if (channel.size() > size) {
+			channel.truncate(size);
+		} else if (channel.size() < size) {
+			channel.write(ByteBuffer.wrap(new byte[1]), size - 1);
+		}
+	}
+
+	/**
+	 * Splits each part into ranges of at most rangeSize bytes.
+	 */
+	private static List<Range> plan(long[] parts, long rangeSize) {
+		List<Range> ranges = new ArrayList<>();
+		for (int part = 0; part < parts.length - 1; part++) {
+			for (long offset = parts[part]; offset < parts[part + 1]; offset += rangeSize) {
+				ranges.add(new Range(offset, Math.min(rangeSize, parts[part + 1] - offset), part));
+			}
+		}
+		return ranges;
+	}
+
+	/**
+	 * @return The CRC32C of the range, or 0 if the checksum is not computed.
+	 */
+	private int downloadRange(String bucketName, String key, String eTag, FileChannel channel, long offset,
+			long length, boolean computeChecksum) {
+		GetObjectRequest getObjectRequest = GetObjectRequest.builder().bucket(bucketName).key(key)
+				.range("bytes=" + offset + "-" + (offset + length - 1))
+				.ifMatch(eTag)
+				.build();
+		for (int attempt = 0; ; attempt++) {
+			try (ResponseInputStream<GetObjectResponse> inputStream = s3Client.getObject(getObjectRequest)) {
+				byte[] buffer = new byte[COPY_BUFFER_SIZE];
+				CRC32C crc32c = computeChecksum ? new CRC32C() : null;
+				long written = 0;
+				int read;
+				while (written < length && (read = inputStream.read(buffer, 0,
+						(int) Math.min(buffer.length, length - written))) != -1) {
+					if (crc32c != null) {
+						crc32c.update(buffer, 0, read);
+					}
+					ByteBuffer byteBuffer = ByteBuffer.wrap(buffer, 0, read);
+					while (byteBuffer.hasRemaining()) {
+						written += channel.write(byteBuffer, offset + written);
+					}
+				}
+				if (written != length) {
+					throw new IOException("Range at " + offset + " ended after " + written + " of " + length + " bytes");
+				}
+				return crc32c == null ? 0 : (int) crc32c.getValue();
+			} catch (S3Exception e) {
+				if (e.statusCode() == 412 || attempt >= applicationProperties.getS3DownloadRangeMaxRetries()) {
+					throw e;
+				}
+				retryPause(key, offset, attempt, e);
+			} catch (SdkException | IOException e) {
+				if (attempt >= applicationProperties.getS3DownloadRangeMaxRetries()) {
+					throw e instanceof IOException ioException ? new UncheckedIOException(ioException)
+							: (SdkException) e;
+				}
+				retryPause(key, offset, attempt, e);
+			}
+		}
+	}
+
+	private static void retryPause(String key, long offset, int attempt, Exception e) {
+		LOGGER.warn("Retrying range at {} of {}: {}", offset, key, e.getMessage());
+		try {
+			Thread.sleep(Math.min(5000L, 200L << attempt));
+		} catch (InterruptedException interrupted) {
+			Thread.currentThread().interrupt();
+			throw new CompletionException(e);
+		}
+	}
+
+	/**
+	 * Combines the range checksums into the checksum S3 reports for the object: the CRC32C of the whole object,
+	 * or for a composite checksum the CRC32C of the part checksums followed by the part count.
+	 */
+	private static String combinedChecksum(List<Range> ranges, int[] rangeChecksums, int partCount,
+			boolean composite) {
+		int[] partChecksums = new int[partCount];
+		int whole = 0;
+		for (int range = 0; range < ranges.size(); range++) {
+			Range next = ranges.get(range);
+			partChecksums[next.part()] = S3Checksums.combineCrc32c(partChecksums[next.part()], rangeChecksums[range],
+					next.length());
+			whole = S3Checksums.combineCrc32c(whole, rangeChecksums[range], next.length());
+		}
+		return composite ? S3Checksums.compositeCrc32c(partChecksums) : S3Checksums.toBase64(whole);
+	}
+
+	/**
+	 * Checks the file against the ETag. Objects encrypted with SSE-KMS or SSE-C have ETags that are not MD5
+	 * digests and are accepted unverified.
+	 */
+	private boolean verify(String bucketName, String key, HeadObjectResponse head, FileChannel channel)
+			throws IOException {
+		String eTag = head.eTag() == null ? "" : head.eTag().replace("\"", "");
+		String encryption = head.serverSideEncryptionAsString();
+		if (eTag.isEmpty() || head.sseCustomerAlgorithm() != null
+				|| (encryption != null && encryption.startsWith("aws:kms"))) {
+			LOGGER.info("Skipping ETag verification of {}: ETag is not an MD5 digest", key);
+			return true;
+		}
+		int dash = eTag.indexOf('-');
+		String actual;
+		if (dash < 0) {
+			actual = HexFormat.of().formatHex(md5(channel, 0, channel.size()));
+		} else {
+			actual = multipartETag(bucketName, key, channel, Integer.parseInt(eTag.substring(dash + 1)));
+		}
+		if (!actual.equals(eTag)) {
+			LOGGER.error("ETag mismatch for {}: expected {}, computed {}", key, eTag, actual);
+			return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Computes the ETag of a multipart upload, the MD5 of the concatenated part MD5s. The part digests are
+	 * computed in parallel.
+	 */
+	private String multipartETag(String bucketName, String key, FileChannel channel, int partCount)
+			throws IOException {
+		long[] offsets = partOffsets(bucketName, key, channel.size(), partCount);
+		List<CompletableFuture<byte[]>> digests = new ArrayList<>();
+		for (int part = 0; part < partCount; part++) {
+			long offset = offsets[part];
+			long length = offsets[part + 1] - offset;
+			digests.add(CompletableFuture.supplyAsync(() -> {
+				try {
+					return md5(channel, offset, length);
+				} catch (IOException e) {
+					throw new UncheckedIOException(e);
+				}
+			}, rangeExecutor));
+		}
+		MessageDigest combined = newMd5();
+		try {
+			for (CompletableFuture<byte[]> digest : digests) {
+				combined.update(digest.join());
+			}
+		} catch (CompletionException e) {
+			if (e.getCause() instanceof UncheckedIOException uncheckedIOException) {
+				throw uncheckedIOException.getCause();
+			}
+			throw e;
+		}
+		return HexFormat.of().formatHex(combined.digest()) + "-" + partCount;
+	}
+
+	/**
+	 * The start offsets of the parts of a multipart object, followed by its size. Part boundaries are taken from
+	 * the size of part 1 when all parts can have that size, otherwise from a HeadObject per part.
+	 */
+	private long[] partOffsets(String bucketName, String key, long size, int partCount) {
+		long partSize = headPart(bucketName, key, 1);
+		long[] offsets = new long[partCount + 1];
+		if ((partCount - 1) * partSize < size && partCount * partSize >= size) {
+			for (int part = 0; part < partCount; part++) {
+				offsets[part] = part * partSize;
+			}
+		} else {
+			for (int part = 1; part < partCount; part++) {
+				offsets[part] = offsets[part - 1] + headPart(bucketName, key, part);
+			}
+		}
+		offsets[partCount] = size;
+		return offsets;
+	}
+
+	private long headPart(String bucketName, String key, int partNumber) {
+		return s3Client.headObject(HeadObjectRequest.builder().bucket(bucketName).key(key)
+				.partNumber(partNumber).build()).contentLength();
+	}
+
+	private static byte[] md5(FileChannel channel, long offset, long length) throws IOException {
+		MessageDigest digest = newMd5();
+		ByteBuffer buffer = ByteBuffer.allocate(DIGEST_BUFFER_SIZE);
+		long position = offset;
+		long end = offset + length;
+		while (position < end) {
+			buffer.clear().limit((int) Math.min(buffer.capacity(), end - position));
+			int read = channel.read(buffer, position);
+			if (read < 0) {
+				throw new IOException("File ended at " + position + " before " + end);
+			}
+			position += read;
+			digest.update(buffer.flip());
+		}
+		return digest.digest();
+	}
+
+	private static MessageDigest newMd5() {
+		try {
+			return MessageDigest.getInstance("MD5");
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private static void discard(Path partial, Path checkpointFile) throws IOException {
+		Files.deleteIfExists(partial);
+		Files.deleteIfExists(checkpointFile);
+	}
+
+	private record Range(long offset, long length, int part) {
+	}
+
+	/**
+	 * The set of completed ranges of one download and their checksums, rewritten through a temporary file and an
+	 * atomic move each time a range completes. A checkpoint written for another ETag, size or range plan is
+	 * ignored.
+	 */
+	private static final class Checkpoint {
+		private final Path file;
+		private final String eTag;
+		private final long size;
+		private final long rangeSize;
+		private final BitSet completed;
+		private final int[] checksums;
+		private final ReentrantLock lock = new ReentrantLock();
+
+		private Checkpoint(Path file, String eTag, long size, long rangeSize, BitSet completed, int[] checksums) {
+			this.file = file;
+			this.eTag = eTag;
+			this.size = size;
+			this.rangeSize = rangeSize;
+			this.completed = completed;
+			this.checksums = checksums;
+		}
+
+		private static Checkpoint load(Path file, String eTag, long size, long rangeSize, int rangeCount)
+				throws IOException {
+			String expectedETag = eTag == null ? "" : eTag;
+			try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+				if (in.readInt() == CHECKPOINT_MAGIC && in.readUTF().equals(expectedETag) && in.readLong() == size
+						&& in.readLong() == rangeSize && in.readInt() == rangeCount) {
+					long[] words = new long[in.readInt()];
+					for (int i = 0; i < words.length; i++) {
+						words[i] = in.readLong();
+					}
+					int[] checksums = new int[rangeCount];
+					for (int i = 0; i < rangeCount; i++) {
+						checksums[i] = in.readInt();
+					}
+					BitSet completed = BitSet.valueOf(words);
+					if (completed.length() <= rangeCount) {
+						return new Checkpoint(file, expectedETag, size, rangeSize, completed, checksums);
+					}
+				}
+				LOGGER.info("Ignoring checkpoint {} of another version or range size", file);
+			} catch (NoSuchFileException e) {
+				// First attempt at this download
+			} catch (IOException e) {
+				LOGGER.warn("Ignoring unreadable checkpoint {}: {}", file, e.getMessage());
+			}
+			return new Checkpoint(file, expectedETag, size, rangeSize, new BitSet(rangeCount), new int[rangeCount]);
+		}
+
+		private boolean isComplete(int range) {
+			lock.lock();
+			try {
+				return completed.get(range);
+			} finally {
+				lock.unlock();
+			}
+		}
+
+		/**
+		 * Marks the range complete once its bytes are on disk.
+		 */
+		private void complete(int range, int checksum, FileChannel channel) {
+			lock.lock();
+			try {
+				channel.force(false);
+				completed.set(range);
+				checksums[range] = checksum;
+				Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+				try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+						Files.newOutputStream(temporary)))) {
+					out.writeInt(CHECKPOINT_MAGIC);
+					out.writeUTF(eTag);
+					out.writeLong(size);
+					out.writeLong(rangeSize);
+					out.writeInt(checksums.length);
+					long[] words = completed.toLongArray();
+					out.writeInt(words.length);
+					for (long word : words) {
+						out.writeLong(word);
+					}
+					for (int value : checksums) {
+						out.writeInt(value);
+					}
+				}
+				Files.move(temporary, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			} finally {
+				lock.unlock();
+			}
+		}
+	}
+}
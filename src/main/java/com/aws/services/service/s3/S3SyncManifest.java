@@ -0,0 +1,260 @@
+package com.aws.services.service.s3;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * The state of a synced directory: key, ETag, size and last-modified time of every object downloaded into it.
+ * It is kept as a compact binary snapshot plus an append-only journal of the changes made since. Each change
+ * is appended to the journal as soon as it happens, so a crash loses at most the record being written; a torn
+ * record at the end of the journal is ignored on load. {@link #compact()} writes a new snapshot to a temporary
+ * file, forces it to disk and moves it over the old one atomically before the journal is truncated.
+ */
+public class S3SyncManifest implements Closeable {
+
+	private static final Logger LOGGER = LogManager.getLogger(S3SyncManifest.class);
+
+	public static final String MANIFEST_FILE = ".s3sync-manifest";
+	public static final String JOURNAL_FILE = ".s3sync-journal";
+
+	private static final int MAGIC = 0x53334d46;
+	private static final int VERSION = 1;
+	private static final byte PUT = 1;
+	private static final byte REMOVE = 2;
+
+	public record Entry(String eTag, long size, long lastModified) {
+	}
+
+	private final Path manifestFile;
+	private final Path journalFile;
+	private final String bucketName;
+	private final String prefix;
+	private final Map<String, Entry> entries;
+	private final ReentrantLock lock = new ReentrantLock();
+	private DataOutputStream journal;
+
+	private S3SyncManifest(Path directory, String bucketName, String prefix, Map<String, Entry> entries) {
+		this.manifestFile = directory.resolve(MANIFEST_FILE);
+		this.journalFile = directory.resolve(JOURNAL_FILE);
+		this.bucketName = bucketName;
+		this.prefix = prefix;
+		this.entries = entries;
+	}
+
+	/**
+	 * Loads the manifest of the directory and replays its journal. A missing manifest, or one written for a
+	 * different bucket or prefix, gives an empty manifest.
+	 */
+	public static S3SyncManifest load(Path directory, String bucketName, String prefix) throws IOException {
+		Map<String, Entry> entries = new HashMap<>();
+		boolean matches = readSnapshot(directory.resolve(MANIFEST_FILE), bucketName, prefix, entries);
+		if (!matches) {
+			entries.clear();
+		} else if (!replayJournal(directory.resolve(JOURNAL_FILE), entries)) {
+			return new S3SyncManifest(directory, bucketName, prefix, entries);
+		}
+		// Folding the journal into the snapshot also drops a torn record that new appends would otherwise follow
+		S3SyncManifest manifest = new S3SyncManifest(directory, bucketName, prefix, entries);
+		manifest.compact();
+		return manifest;
+	}
+
+	public Entry get(String key) {
+		lock.lock();
+		try {
+			return entries.get(key);
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	public Set<String> keys() {
+		lock.lock();
+		try {
+			return new HashSet<>(entries.keySet());
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	public int size() {
+		lock.lock();
+		try {
+			return entries.size();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	public void put(String key, Entry entry) throws IOException {
+		lock.lock();
+		try {
+			DataOutputStream out = journal();
+			out.writeByte(PUT);
+			out.writeUTF(key);
+			writeEntry(out, entry);
+			out.flush();
+			entries.put(key, entry);
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	public void remove(String key) throws IOException {
+		lock.lock();
+		try {
+			DataOutputStream out = journal();
+			out.writeByte(REMOVE);
+			out.writeUTF(key);
+			out.flush();
+			entries.remove(key);
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Replaces the snapshot with the current entries and empties the journal.
+	 */
+	public void compact() throws IOException {
+		lock.lock();
+		try {
+			Path temporary = manifestFile.resolveSibling(MANIFEST_FILE + ".tmp");
+			try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE,
+					StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+				DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+						Channels.newOutputStream(channel), 64 * 1024));
+				out.writeInt(MAGIC);
+				out.writeInt(VERSION);
+				out.writeUTF(bucketName);
+				out.writeUTF(prefix);
+				out.writeInt(entries.size());
+				for (Map.Entry<String, Entry> entry : entries.entrySet()) {
+					out.writeUTF(entry.getKey());
+					writeEntry(out, entry.getValue());
+				}
+				out.flush();
+				channel.force(true);
+			}
+			Files.move(temporary, manifestFile, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+			closeJournal();
+			Files.deleteIfExists(journalFile);
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public void close() throws IOException {
+		lock.lock();
+		try {
+			closeJournal();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	private DataOutputStream journal() throws IOException {
+		if (journal == null) {
+			OutputStream outputStream = Files.newOutputStream(journalFile, StandardOpenOption.CREATE,
+					StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+			journal = new DataOutputStream(new BufferedOutputStream(outputStream, 8192));
+		}
+		return journal;
+	}
+
+	private void closeJournal() throws IOException {
+		if (journal != null) {
+			journal.close();
+			journal = null;
+		}
+	}
+
+	private static boolean readSnapshot(Path manifestFile, String bucketName, String prefix,
+			Map<String, Entry> entries) throws IOException {
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(manifestFile),
+				64 * 1024))) {
+			if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+				LOGGER.warn("Ignoring manifest {} with an unknown format", manifestFile);
+				return false;
+			}
+			if (!bucketName.equals(in.readUTF()) || !prefix.equals(in.readUTF())) {
+				LOGGER.info("Manifest {} belongs to another bucket or prefix, starting a new one", manifestFile);
+				return false;
+			}
+			int count = in.readInt();
+			for (int i = 0; i < count; i++) {
+				entries.put(in.readUTF(), readEntry(in));
+			}
+			return true;
+		} catch (NoSuchFileException e) {
+			return false;
+		} catch (EOFException e) {
+			LOGGER.warn("Ignoring truncated manifest {}", manifestFile);
+			return false;
+		}
+	}
+
+	/**
+	 * @return false if there is no journal.
+	 */
+	private static boolean replayJournal(Path journalFile, Map<String, Entry> entries) throws IOException {
+		int replayed = 0;
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(journalFile),
+				64 * 1024))) {
+			while (true) {
+				int operation = in.read();
+				if (operation == -1) {
+					break;
+				}
+				String key = in.readUTF();
+				if (operation == PUT) {
+					entries.put(key, readEntry(in));
+				} else if (operation == REMOVE) {
+					entries.remove(key);
+				} else {
+					LOGGER.warn("Stopping replay of {} at an unknown record", journalFile);
+					break;
+				}
+				replayed++;
+			}
+		} catch (NoSuchFileException e) {
+			return false;
+		} catch (EOFException e) {
+			LOGGER.warn("Ignoring torn record at the end of {}", journalFile);
+		}
+		LOGGER.info("Replayed {} journal records from {}", replayed, journalFile);
+		return true;
+	}
+
+	private static void writeEntry(DataOutputStream out, Entry entry) throws IOException {
+		out.writeUTF(entry.eTag() == null ? "" : entry.eTag());
+		out.writeLong(entry.size());
+		out.writeLong(entry.lastModified());
+	}
+
+	private static Entry readEntry(DataInputStream in) throws IOException {
+		return new Entry(in.readUTF(), in.readLong(), in.readLong());
+	}
+}
@@ -0,0 +1,240 @@
+package com.aws.services.service.sqs;
+
+import com.aws.services.config.AWSThreadFactory;
+import com.aws.services.config.ApplicationProperties;
+import com.aws.services.model.SQSEntryResult;
+import jakarta.annotation.PreDestroy;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Component;
+import software.amazon.awssdk.awscore.exception.AwsServiceException;
+import software.amazon.awssdk.services.sqs.SqsClient;
+import software.amazon.awssdk.services.sqs.model.BatchResultErrorEntry;
+import software.amazon.awssdk.services.sqs.model.DeleteMessageBatchRequest;
+import software.amazon.awssdk.services.sqs.model.DeleteMessageBatchRequestEntry;
+import software.amazon.awssdk.services.sqs.model.DeleteMessageBatchResponse;
+import software.amazon.awssdk.services.sqs.model.DeleteMessageBatchResultEntry;
+import software.amazon.awssdk.services.sqs.model.Message;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Deletes received messages with DeleteMessageBatch calls of up to 10 receipt handles, run on a pool
+ * of bounded size. When a coalescing window is configured, acknowledgements of concurrent callers for the
+ * same queue are merged into shared batches. Failures are reported per message instead of thrown, and every
+ * message gets a result: entries missing from a response, and batches submitted after shutdown, fail.
+ */
+@Component
+public class SQSAcknowledgementEngine {
+
+	private static final Logger LOGGER = LogManager.getLogger(SQSAcknowledgementEngine.class);
+
+	private static final int MAX_BATCH_ENTRIES = 10;
+
+	private final SqsClient sqsClient;
+	private final ApplicationProperties applicationProperties;
+	private final ExecutorService deleteExecutor;
+	private final ScheduledExecutorService coalesceScheduler;
+	private final Map<String, PendingAcks> pendingAcks = new ConcurrentHashMap<>();
+
+	//The extended client strips the S3 pointer from receipt handles of offloaded messages before deleting.
+	public SQSAcknowledgementEngine(@Qualifier("sqsClientExtended") SqsClient sqsClient,
+			ApplicationProperties applicationProperties, AWSThreadFactory awsThreadFactory) {
+		this.sqsClient = sqsClient;
+		this.applicationProperties = applicationProperties;
+		this.deleteExecutor = Executors.newFixedThreadPool(applicationProperties.getSqsAckParallelism(),
+				awsThreadFactory.forPool("sqs-ack"));
+		this.coalesceScheduler = Executors.newSingleThreadScheduledExecutor(awsThreadFactory.forPool("sqs-ack-coalesce"));
+	}
+
+	/**
+	 * Deletes the given messages from the queue.
+	 *
+	 * @param queueUrl The URL of the queue the messages were received from.
+	 * @param messages The messages to acknowledge.
+	 * @return A future completed with one result per message, in the order of the messages.
+	 */
+	public CompletableFuture<List<SQSEntryResult>> acknowledge(String queueUrl, List<Message> messages) {
+		List<CompletableFuture<SQSEntryResult>> results = new ArrayList<>(messages.size());
+		if (applicationProperties.getSqsAckCoalesceWindowMillis() > 0) {
+			messages.forEach(message -> results.add(enqueue(queueUrl, message)));
+		} else {
+			for (int from = 0; from < messages.size(); from += MAX_BATCH_ENTRIES) {
+				List<PendingAck> batch = messages.subList(from, Math.min(from + MAX_BATCH_ENTRIES, messages.size()))
+						.stream().map(PendingAck::new).toList();
+				batch.forEach(ack -> results.add(ack.future));
+				submit(queueUrl, batch);
+			}
+		}
+		return CompletableFuture.allOf(results.toArray(new CompletableFuture<?>[0]))
+				.thenApply(done -> results.stream().map(CompletableFuture::join).toList());
+	}
+
+	/**
+	 * Deletes a single message, sharing the batch with other acknowledgements of the same queue when coalescing.
+	 */
+	public CompletableFuture<SQSEntryResult> acknowledge(String queueUrl, Message message) {
+		if (applicationProperties.getSqsAckCoalesceWindowMillis() > 0) {
+			return enqueue(queueUrl, message);
+		}
+		PendingAck ack = new PendingAck(message);
+		submit(queueUrl, List.of(ack));
+		return ack.future;
+	}
+
+	@PreDestroy
+	public void shutdown() throws InterruptedException {
+		coalesceScheduler.shutdownNow();
+		for (Map.Entry<String, PendingAcks> entry : pendingAcks.entrySet()) {
+			submit(entry.getKey(), entry.getValue().detach());
+		}
+		deleteExecutor.shutdown();
+		deleteExecutor.awaitTermination(30, TimeUnit.SECONDS);
+	}
+
+	private CompletableFuture<SQSEntryResult> enqueue(String queueUrl, Message message) {
+		PendingAck ack = new PendingAck(message);
+		PendingAcks pending = pendingAcks.computeIfAbsent(queueUrl, url -> new PendingAcks());
+		List<PendingAck> full = null;
+		pending.lock.lock();
+		try {
+			boolean scheduled = true;
+			if (pending.entries.isEmpty()) {
+				try {
+					pending.flushTask = coalesceScheduler.schedule(() -> submit(queueUrl, pending.detach()),
+							applicationProperties.getSqsAckCoalesceWindowMillis(), TimeUnit.MILLISECONDS);
+				} catch (RejectedExecutionException e) {
+					// Shutting down: submitted right away, which fails the batch if the deletes stopped too
+					scheduled = false;
+				}
+			}
+			pending.entries.add(ack);
+			if (!scheduled || pending.entries.size() >= MAX_BATCH_ENTRIES) {
+				full = pending.detach();
+			}
+		} finally {
+			pending.lock.unlock();
+		}
+		if (full != null) {
+			submit(queueUrl, full);
+		}
+		return ack.future;
+	}
+
+	private void submit(String queueUrl, List<PendingAck> batch) {
+		if (batch.isEmpty()) {
+			return;
+		}
+		try {
+			deleteExecutor.execute(() -> deleteWithRetries(queueUrl, batch));
+		} catch (RejectedExecutionException e) {
+			LOGGER.error("Delete batch on {} rejected: {}", queueUrl, e.getMessage());
+			batch.forEach(ack -> ack.complete(SQSEntryResult.failure(ack.message.messageId(), null,
+					"Acknowledgement engine is shut down")));
+		}
+	}
+
+	private void deleteWithRetries(String queueUrl, List<PendingAck> batch) {
+		List<PendingAck> remaining = batch;
+		for (int attempt = 0; !remaining.isEmpty(); attempt++) {
+			Map<String, PendingAck> acksById = new HashMap<>();
+			List<DeleteMessageBatchRequestEntry> entries = new ArrayList<>(remaining.size());
+			for (int i = 0; i < remaining.size(); i++) {
+				String id = String.valueOf(i);
+				acksById.put(id, remaining.get(i));
+				entries.add(DeleteMessageBatchRequestEntry.builder().id(id)
+						.receiptHandle(remaining.get(i).message.receiptHandle()).build());
+			}
+			DeleteMessageBatchResponse response;
+			try {
+				response = sqsClient.deleteMessageBatch(DeleteMessageBatchRequest.builder().queueUrl(queueUrl)
+						.entries(entries).build());
+			} catch (AwsServiceException e) {
+				LOGGER.error("Delete batch on {} failed: {}", queueUrl, e.getMessage());
+				remaining.forEach(ack -> ack.complete(SQSEntryResult.failure(ack.message.messageId(),
+						e.awsErrorDetails() == null ? null : e.awsErrorDetails().errorCode(), e.getMessage())));
+				return;
+			} catch (RuntimeException e) {
+				LOGGER.error("Delete batch on {} failed", queueUrl, e);
+				remaining.forEach(ack -> ack.complete(SQSEntryResult.failure(ack.message.messageId(), null, e.getMessage())));
+				return;
+			}
+			for (DeleteMessageBatchResultEntry result : response.successful()) {
+				PendingAck ack = acksById.remove(result.id());
+				if (ack != null) {
+					ack.complete(SQSEntryResult.success(ack.message.messageId()));
+				}
+			}
+			List<PendingAck> retries = new ArrayList<>();
+			for (BatchResultErrorEntry error : response.failed()) {
+				PendingAck ack = acksById.remove(error.id());
+				if (ack == null) {
+					continue;
+				}
+				if (error.senderFault() || attempt >= applicationProperties.getSqsAckMaxRetries()) {
+					ack.complete(SQSEntryResult.failure(ack.message.messageId(), error.code(), error.message()));
+				} else {
+					retries.add(ack);
+				}
+			}
+			acksById.values().forEach(ack -> ack.complete(SQSEntryResult.failure(ack.message.messageId(), null,
+					"No result returned for entry")));
+			if (!retries.isEmpty()) {
+				LOGGER.warn("Retrying {} failed acknowledgements on {}", retries.size(), queueUrl);
+				try {
+					Thread.sleep(Math.min(1000L, 50L << attempt));
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}
+			remaining = retries;
+		}
+	}
+
+	private static final class PendingAcks {
+		private final ReentrantLock lock = new ReentrantLock();
+		private List<PendingAck> entries = new ArrayList<>(MAX_BATCH_ENTRIES);
+		private ScheduledFuture<?> flushTask;
+
+		private List<PendingAck> detach() {
+			lock.lock();
+			try {
+				List<PendingAck> batch = entries;
+				entries = new ArrayList<>(MAX_BATCH_ENTRIES);
+				if (flushTask != null) {
+					flushTask.cancel(false);
+					flushTask = null;
+				}
+				return batch;
+			} finally {
+				lock.unlock();
+			}
+		}
+	}
+
+	private static final class PendingAck {
+		private final Message message;
+		private final CompletableFuture<SQSEntryResult> future = new CompletableFuture<>();
+
+		private PendingAck(Message message) {
+			this.message = message;
+		}
+
+		private void complete(SQSEntryResult result) {
+			future.complete(result);
+		}
+	}
+}
@@ -0,0 +1,370 @@
+package com.aws.services.service.sqs;
+
+import com.aws.services.config.AWSThreadFactory;
+import com.aws.services.config.ApplicationProperties;
+import jakarta.annotation.PreDestroy;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.stereotype.Component;
+import software.amazon.awssdk.awscore.exception.AwsErrorDetails;
+import software.amazon.awssdk.services.sqs.SqsClient;
+import software.amazon.awssdk.services.sqs.model.BatchResultErrorEntry;
+import software.amazon.awssdk.services.sqs.model.MessageAttributeValue;
+import software.amazon.awssdk.services.sqs.model.SendMessageBatchRequest;
+import software.amazon.awssdk.services.sqs.model.SendMessageBatchRequestEntry;
+import software.amazon.awssdk.services.sqs.model.SendMessageBatchResponse;
+import software.amazon.awssdk.services.sqs.model.SendMessageBatchResultEntry;
+import software.amazon.awssdk.services.sqs.model.SendMessageRequest;
+import software.amazon.awssdk.services.sqs.model.SqsException;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Collects single sends from concurrent callers into SendMessageBatch calls per queue. A batch is
+ * flushed once it holds 10 entries, once it reaches the 256 KB request limit or once the linger
+ * time since its first entry has passed, whichever comes first. Messages that exceed the request limit on
+ * their own are rejected before they are batched, with the error SQS returns for them.
+ */
+@Component
+public class SQSBatchingProducer {
+
+	private static final Logger LOGGER = LogManager.getLogger(SQSBatchingProducer.class);
+
+	public static final int MAX_BATCH_ENTRIES = 10;
+	public static final int MAX_BATCH_BYTES = 256 * 1024;
+
+	private final SqsClient sqsClient;
+	private final ApplicationProperties applicationProperties;
+	private final Map<String, QueueBuffer> queueBuffers = new ConcurrentHashMap<>();
+	private final ScheduledExecutorService lingerScheduler;
+	private final ExecutorService senderExecutor;
+	private final Semaphore inFlightBatches;
+	// Batches handed off by linger flushes and async callers while all senders were busy; senders take them
+	// before giving up their permit
+	private final Queue<PendingBatch> waitingBatches = new ConcurrentLinkedQueue<>();
+
+	public SQSBatchingProducer(SqsClient sqsClient, ApplicationProperties applicationProperties,
+			AWSThreadFactory awsThreadFactory) {
+		this.sqsClient = sqsClient;
+		this.applicationProperties = applicationProperties;
+		int maxInFlightBatches = applicationProperties.getSqsProducerMaxInFlightBatches();
+		this.inFlightBatches = new Semaphore(maxInFlightBatches);
+		this.senderExecutor = Executors.newFixedThreadPool(maxInFlightBatches, awsThreadFactory.forPool("sqs-producer"));
+		this.lingerScheduler = Executors.newSingleThreadScheduledExecutor(awsThreadFactory.forPool("sqs-producer-linger"));
+	}
+
+	/**
+	 * Queues a message for the next batch of its queue.
+	 *
+	 * @param sendMessageRequest The single message request, including the resolved queue URL.
+	 * @return A future completed with the message id assigned by SQS, or with the error of this entry.
+	 */
+	public CompletableFuture<String> send(SendMessageRequest sendMessageRequest) {
+		return enqueue(sendMessageRequest, true);
+	}
+
+	/**
+	 * Queues a message for the next batch of its queue without ever blocking the caller, for callers on event
+	 * loop threads. A batch it fills while all senders are busy waits in the same queue as batches flushed on
+	 * linger, so these callers get no back-pressure from aws.sqs.producer.max.in.flight.batches.
+	 *
+	 * @param sendMessageRequest The single message request, including the resolved queue URL.
+	 * @return A future completed with the message id assigned by SQS, or with the error of this entry.
+	 */
+	public CompletableFuture<String> sendAsync(SendMessageRequest sendMessageRequest) {
+		return enqueue(sendMessageRequest, false);
+	}
+
+	@PreDestroy
+	public void shutdown() throws InterruptedException {
+		lingerScheduler.shutdownNow();
+		for (QueueBuffer buffer : queueBuffers.values()) {
+			buffer.lock.lock();
+			PendingBatch batch;
+			try {
+				batch = buffer.detach();
+			} finally {
+				buffer.lock.unlock();
+			}
+			dispatch(batch);
+		}
+		senderExecutor.shutdown();
+		senderExecutor.awaitTermination(30, TimeUnit.SECONDS);
+	}
+
+	private CompletableFuture<String> enqueue(SendMessageRequest sendMessageRequest, boolean blocking) {
+		PendingEntry entry = new PendingEntry(sendMessageRequest);
+		if (entry.size > MAX_BATCH_BYTES) {
+			return CompletableFuture.failedFuture(tooLong());
+		}
+		QueueBuffer buffer = queueBuffers.computeIfAbsent(sendMessageRequest.queueUrl(), QueueBuffer::new);
+		PendingBatch full = null;
+		PendingBatch filled = null;
+		buffer.lock.lock();
+		try {
+			if (buffer.current != null && !buffer.current.fits(entry)) {
+				full = buffer.detach();
+			}
+			if (buffer.current == null) {
+				PendingBatch batch = new PendingBatch(buffer.queueUrl);
+				batch.lingerTask = lingerScheduler.schedule(() -> flushOnLinger(buffer, batch),
+						applicationProperties.getSqsProducerLingerMillis(), TimeUnit.MILLISECONDS);
+				buffer.current = batch;
+			}
+			buffer.current.add(entry);
+			if (buffer.current.isFull()) {
+				filled = buffer.detach();
+			}
+		} finally {
+			buffer.lock.unlock();
+		}
+		if (blocking) {
+			dispatch(full);
+			dispatch(filled);
+		} else {
+			handOff(full);
+			handOff(filled);
+		}
+		return entry.future;
+	}
+
+	private void flushOnLinger(QueueBuffer buffer, PendingBatch batch) {
+		buffer.lock.lock();
+		try {
+			if (buffer.current != batch) {
+				return;
+			}
+			buffer.detach();
+		} finally {
+			buffer.lock.unlock();
+		}
+		// The linger thread serves every queue, so it must not wait for a sender
+		handOff(batch);
+	}
+
+	/**
+	 * Hands a batch to the sender pool without waiting: it is sent at once if a permit is free, otherwise by
+	 * the next sender that finishes.
+	 */
+	private void handOff(PendingBatch batch) {
+		if (batch == null || batch.entries.isEmpty()) {
+			return;
+		}
+		waitingBatches.add(batch);
+		takeWaitingBatch();
+	}
+
+	/**
+	 * Hands a batch to the sender pool. Blocks the calling producer while the maximum number of
+	 * batches is already in flight, which pushes back on producers instead of queueing without bound.
+	 */
+	private void dispatch(PendingBatch batch) {
+		if (batch == null || batch.entries.isEmpty()) {
+			return;
+		}
+		inFlightBatches.acquireUninterruptibly();
+		execute(batch);
+	}
+
+	/**
+	 * Sends a batch on the sender pool; the caller holds an in-flight permit, which the sender keeps for the
+	 * waiting batches and releases once there are none.
+	 */
+	private void execute(PendingBatch batch) {
+		try {
+			senderExecutor.execute(() -> {
+				PendingBatch next = batch;
+				while (next != null) {
+					sendWithRetries(next.queueUrl, next.entries);
+					next = waitingBatches.poll();
+				}
+				inFlightBatches.release();
+				// A linger flush may have queued a batch after the last poll, while this sender still held the permit
+				takeWaitingBatch();
+			});
+		} catch (RuntimeException e) {
+			inFlightBatches.release();
+			batch.entries.forEach(entry -> entry.future.completeExceptionally(e));
+		}
+	}
+
+	private void takeWaitingBatch() {
+		if (waitingBatches.isEmpty() || !inFlightBatches.tryAcquire()) {
+			return;
+		}
+		PendingBatch next = waitingBatches.poll();
+		if (next == null) {
+			inFlightBatches.release();
+		} else {
+			execute(next);
+		}
+	}
+
+	/**
+	 * Sends a batch, retrying the entries that failed on the SQS side. Never throws: every outcome is reported
+	 * through the futures of the entries.
+	 */
+	private void sendWithRetries(String queueUrl, List<PendingEntry> entries) {
+		List<PendingEntry> remaining = entries;
+		for (int attempt = 0; !remaining.isEmpty(); attempt++) {
+			Map<String, PendingEntry> entriesById = new HashMap<>();
+			List<SendMessageBatchRequestEntry> requestEntries = new ArrayList<>(remaining.size());
+			for (int i = 0; i < remaining.size(); i++) {
+				String id = String.valueOf(i);
+				entriesById.put(id, remaining.get(i));
+				requestEntries.add(remaining.get(i).toBatchEntry(id));
+			}
+			SendMessageBatchResponse response;
+			try {
+				response = sqsClient.sendMessageBatch(SendMessageBatchRequest.builder().queueUrl(queueUrl)
+						.entries(requestEntries).build());
+			} catch (RuntimeException e) {
+				remaining.forEach(entry -> entry.future.completeExceptionally(e));
+				return;
+			}
+			for (SendMessageBatchResultEntry result : response.successful()) {
+				entriesById.get(result.id()).future.complete(result.messageId());
+			}
+			List<PendingEntry> retries = new ArrayList<>();
+			for (BatchResultErrorEntry error : response.failed()) {
+				PendingEntry entry = entriesById.get(error.id());
+				if (error.senderFault() || attempt >= applicationProperties.getSqsProducerMaxRetries()) {
+					entry.future.completeExceptionally(toException(error));
+				} else {
+					retries.add(entry);
+				}
+			}
+			if (!retries.isEmpty()) {
+				LOGGER.warn("Retrying {} failed entries of batch to {}", retries.size(), queueUrl);
+				backOff(attempt);
+			}
+			remaining = retries;
+		}
+	}
+
+	private static void backOff(int attempt) {
+		try {
+			Thread.sleep(Math.min(1000L, 50L << attempt));
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * The error SQS returns for a message above the request size limit, so callers map it the same way whether
+	 * the message was batched or not.
+	 */
+	static SqsException tooLong() {
+		String message = "One or more parameters are invalid. Reason: Message must be shorter than "
+				+ MAX_BATCH_BYTES + " bytes.";
+		return (SqsException) SqsException.builder().message(message).statusCode(400)
+				.awsErrorDetails(AwsErrorDetails.builder().errorCode("InvalidParameterValue").errorMessage(message)
+						.build())
+				.build();
+	}
+
+	static SqsException toException(BatchResultErrorEntry error) {
+		// Sender faults are reported as client errors, so callers can tell them from failures worth retrying
+		return (SqsException) SqsException.builder().message(error.message())
+				.statusCode(error.senderFault() ? 400 : 500)
+				.awsErrorDetails(AwsErrorDetails.builder().errorCode(error.code()).errorMessage(error.message()).build())
+				.build();
+	}
+
+	/**
+	 * Approximates the size SQS counts against the batch limit: message body plus attribute names and values.
+	 */
+	public static int payloadSize(String body, Map<String, MessageAttributeValue> attributes) {
+		int size = body == null ? 0 : body.getBytes(StandardCharsets.UTF_8).length;
+		for (Map.Entry<String, MessageAttributeValue> attribute : attributes.entrySet()) {
+			MessageAttributeValue value = attribute.getValue();
+			size += attribute.getKey().length() + value.dataType().length();
+			if (value.stringValue() != null) {
+				size += value.stringValue().getBytes(StandardCharsets.UTF_8).length;
+			}
+			if (value.binaryValue() != null) {
+				size += value.binaryValue().asByteArrayUnsafe().length;
+			}
+		}
+		return size;
+	}
+
+	private static final class QueueBuffer {
+		private final String queueUrl;
+		private final ReentrantLock lock = new ReentrantLock();
+		private PendingBatch current;
+
+		private QueueBuffer(String queueUrl) {
+			this.queueUrl = queueUrl;
+		}
+
+		private PendingBatch detach() {
+			PendingBatch batch = current;
+			current = null;
+			if (batch != null && batch.lingerTask != null) {
+				batch.lingerTask.cancel(false);
+			}
+			return batch;
+		}
+	}
+
+	private static final class PendingBatch {
+		private final String queueUrl;
+		private final List<PendingEntry> entries = new ArrayList<>(MAX_BATCH_ENTRIES);
+		private int bytes;
+		private ScheduledFuture<?> lingerTask;
+
+		private PendingBatch(String queueUrl) {
+			this.queueUrl = queueUrl;
+		}
+
+		private boolean fits(PendingEntry entry) {
+			return entries.size() < MAX_BATCH_ENTRIES && bytes + entry.size <= MAX_BATCH_BYTES;
+		}
+
+		private void add(PendingEntry entry) {
+			entries.add(entry);
+			bytes += entry.size;
+		}
+
+		private boolean isFull() {
+			return entries.size() >= MAX_BATCH_ENTRIES || bytes >= MAX_BATCH_BYTES;
+		}
+	}
+
+	private static final class PendingEntry {
+		private final SendMessageRequest request;
+		private final int size;
+		private final CompletableFuture<String> future = new CompletableFuture<>();
+
+		private PendingEntry(SendMessageRequest request) {
+			this.request = request;
+			this.size = payloadSize(request.messageBody(), request.messageAttributes());
+		}
+
+		private SendMessageBatchRequestEntry toBatchEntry(String id) {
+			return SendMessageBatchRequestEntry.builder().id(id)
+					.messageBody(request.messageBody())
+					.messageGroupId(request.messageGroupId())
+					.messageDeduplicationId(request.messageDeduplicationId())
+					.delaySeconds(request.delaySeconds())
+					.messageAttributes(request.messageAttributes())
+					.build();
+		}
+	}
+}
@@ -0,0 +1,334 @@
+package com.aws.services.service.sqs;
+
+import com.aws.services.config.ApplicationProperties;
+import com.aws.services.model.SQSIngestResult;
+import com.aws.services.model.SQSIngestSummary;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.stereotype.Component;
+import software.amazon.awssdk.awscore.exception.AwsServiceException;
+import software.amazon.awssdk.services.sqs.SqsAsyncClient;
+import software.amazon.awssdk.services.sqs.model.BatchResultErrorEntry;
+import software.amazon.awssdk.services.sqs.model.SendMessageBatchRequest;
+import software.amazon.awssdk.services.sqs.model.SendMessageBatchRequestEntry;
+import software.amazon.awssdk.services.sqs.model.SendMessageBatchResponse;
+import software.amazon.awssdk.services.sqs.model.SendMessageBatchResultEntry;
+import software.amazon.awssdk.services.sqs.model.SendMessageRequest;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sends a newline-delimited stream of message bodies to a queue. Lines are packed into SendMessageBatch calls
+ * within the 10 entry and 256 KB limits, a bounded number of batches is kept in flight, and one JSON result per
+ * line is written to the report stream in input order as the oldest batch completes. Only the in-flight batches
+ * are held in memory, whatever the length of the input.
+ * <p>
+ * When all lines go to one message group, a batch is only sent once the previous one completed: SQS orders a group
+ * by arrival, so batches in flight together could be stored out of order. Parallel batches are only used when every
+ * line gets a group of its own.
+ */
+@Component
+public class SQSBulkIngestor {
+
+	private static final Logger LOGGER = LogManager.getLogger(SQSBulkIngestor.class);
+
+	private static final int READ_BUFFER_SIZE = 64 * 1024;
+	// Bounds the results held by a batch when many consecutive lines are rejected before sending
+	private static final int MAX_BATCH_LINES = 1000;
+
+	private final SqsAsyncClient sqsAsyncClient;
+	private final SQSPayloadCodec sqsPayloadCodec;
+	private final ApplicationProperties applicationProperties;
+	private final ObjectMapper objectMapper;
+
+	public SQSBulkIngestor(SqsAsyncClient sqsAsyncClient, SQSPayloadCodec sqsPayloadCodec,
+			ApplicationProperties applicationProperties, ObjectMapper objectMapper) {
+		this.sqsAsyncClient = sqsAsyncClient;
+		this.sqsPayloadCodec = sqsPayloadCodec;
+		this.applicationProperties = applicationProperties;
+		this.objectMapper = objectMapper;
+	}
+
+	/**
+	 * Sends every non-empty line of the input as a message and reports the outcome of each line.
+	 *
+	 * @param queueUrl     The URL of the queue.
+	 * @param groupId      The message group id of all messages, sent one batch at a time to keep their order; a
+	 *                     random one per message when null.
+	 * @param inputStream  The NDJSON (or any newline-delimited) input, read until its end.
+	 * @param reportStream Receives one {@link SQSIngestResult} per line and a final {@link SQSIngestSummary}.
+	 * @return The summary written at the end of the report.
+	 */
+	public SQSIngestSummary ingest(String queueUrl, String groupId, InputStream inputStream, OutputStream reportStream)
+			throws IOException {
+		long start = System.nanoTime();
+		int maxInFlight = groupId == null ? Math.max(1, applicationProperties.getSqsIngestMaxInFlightBatches()) : 1;
+		LineReader lineReader = new LineReader(inputStream, applicationProperties.getSqsIngestMaxLineBytes());
+		Report report = new Report(reportStream);
+		Deque<PendingBatch> inFlight = new ArrayDeque<>(maxInFlight);
+		PendingBatch batch = new PendingBatch();
+		long lines = 0;
+		while (lineReader.next()) {
+			long lineNumber = lineReader.lineNumber();
+			if (lineReader.isTooLong()) {
+				lines++;
+				batch.reject(lineNumber, "LineTooLong",
+						"Line exceeds " + applicationProperties.getSqsIngestMaxLineBytes() + " bytes");
+			} else {
+				String body = lineReader.line();
+				if (body.isBlank()) {
+					continue;
+				}
+				lines++;
+				SendMessageRequest request = sqsPayloadCodec.encode(SendMessageRequest.builder().queueUrl(queueUrl)
+						.messageGroupId(groupId == null ? UUID.randomUUID().toString() : groupId)
+						.messageBody(body).build());
+				int size = SQSBatchingProducer.payloadSize(request.messageBody(), request.messageAttributes());
+				if (size > SQSBatchingProducer.MAX_BATCH_BYTES) {
+					batch.reject(lineNumber, "MessageTooLong", "Message is " + size + " bytes after encoding");
+				} else {
+					if (!batch.fits(size)) {
+						dispatch(queueUrl, batch, inFlight, maxInFlight, report);
+						batch = new PendingBatch();
+					}
+					batch.add(lineNumber, request, size);
+				}
+			}
+			if (batch.isFull()) {
+				dispatch(queueUrl, batch, inFlight, maxInFlight, report);
+				batch = new PendingBatch();
+			}
+		}
+		dispatch(queueUrl, batch, inFlight, maxInFlight, report);
+		while (!inFlight.isEmpty()) {
+			report.write(inFlight.poll());
+		}
+		SQSIngestSummary summary = new SQSIngestSummary(lines, report.sent, report.failed, report.batches,
+				TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+		report.writeSummary(summary);
+		LOGGER.info("Ingested {} lines into {}: {} sent, {} failed in {} batches ({} ms)", summary.lines(), queueUrl,
+				summary.sent(), summary.failed(), summary.batches(), summary.elapsedMillis());
+		return summary;
+	}
+
+	/**
+	 * Sends the batch once the oldest in-flight batch has been reported, if the in-flight limit is reached.
+	 */
+	private void dispatch(String queueUrl, PendingBatch batch, Deque<PendingBatch> inFlight, int maxInFlight,
+			Report report) throws IOException {
+		if (batch.lines.isEmpty()) {
+			return;
+		}
+		if (inFlight.size() >= maxInFlight) {
+			report.write(inFlight.poll());
+		}
+		batch.response = batch.entries.isEmpty() ? CompletableFuture.completedFuture(null)
+				: sqsAsyncClient.sendMessageBatch(SendMessageBatchRequest.builder()
+						.queueUrl(queueUrl).entries(batch.entries).build());
+		inFlight.add(batch);
+	}
+
+	private record BatchLine(long line, SQSIngestResult rejected) {
+	}
+
+	private static final class PendingBatch {
+		private final List<BatchLine> lines = new ArrayList<>();
+		private final List<SendMessageBatchRequestEntry> entries = new ArrayList<>(SQSBatchingProducer.MAX_BATCH_ENTRIES);
+		private int bytes;
+		private CompletableFuture<SendMessageBatchResponse> response;
+
+		private boolean fits(int size) {
+			return entries.size() < SQSBatchingProducer.MAX_BATCH_ENTRIES
+					&& bytes + size <= SQSBatchingProducer.MAX_BATCH_BYTES;
+		}
+
+		private boolean isFull() {
+			return entries.size() == SQSBatchingProducer.MAX_BATCH_ENTRIES || lines.size() >= MAX_BATCH_LINES;
+		}
+
+		private void add(long line, SendMessageRequest request, int size) {
+			lines.add(new BatchLine(line, null));
+			entries.add(SendMessageBatchRequestEntry.builder().id(String.valueOf(line))
+					.messageBody(request.messageBody())
+					.messageGroupId(request.messageGroupId())
+					.messageAttributes(request.messageAttributes())
+					.build());
+			bytes += size;
+		}
+
+		private void reject(long line, String errorCode, String errorMessage) {
+			lines.add(new BatchLine(line, SQSIngestResult.failure(line, errorCode, errorMessage)));
+		}
+	}
+
+	/**
+	 * Writes the per-line results of completed batches to the report stream, from the calling thread only.
+	 */
+	private final class Report {
+		private final OutputStream outputStream;
+		private long sent;
+		private long failed;
+		private long batches;
+
+		private Report(OutputStream outputStream) {
+			this.outputStream = outputStream;
+		}
+
+		private void write(PendingBatch batch) throws IOException {
+			Map<String, SQSIngestResult> results = new HashMap<>();
+			if (!batch.entries.isEmpty()) {
+				batches++;
+				try {
+					SendMessageBatchResponse response = batch.response.join();
+					for (SendMessageBatchResultEntry entry : response.successful()) {
+						results.put(entry.id(), SQSIngestResult.success(Long.parseLong(entry.id()), entry.messageId()));
+					}
+					for (BatchResultErrorEntry entry : response.failed()) {
+						results.put(entry.id(), SQSIngestResult.failure(Long.parseLong(entry.id()), entry.code(),
+								entry.message()));
+					}
+				} catch (CompletionException e) {
+					Throwable cause = e.getCause() != null ? e.getCause() : e;
+					String errorCode = cause instanceof AwsServiceException serviceException
+							&& serviceException.awsErrorDetails() != null
+							? serviceException.awsErrorDetails().errorCode() : null;
+					LOGGER.error("Batch of {} messages failed: {}", batch.entries.size(), cause.getMessage());
+					for (SendMessageBatchRequestEntry entry : batch.entries) {
+						results.put(entry.id(), SQSIngestResult.failure(Long.parseLong(entry.id()), errorCode,
+								cause.getMessage()));
+					}
+				}
+			}
+			for (BatchLine line : batch.lines) {
+				SQSIngestResult result = line.rejected() != null ? line.rejected()
+						: results.getOrDefault(String.valueOf(line.line()),
+								SQSIngestResult.failure(line.line(), null, "No result returned for entry"));
+				if (result.success()) {
+					sent++;
+				} else {
+					failed++;
+				}
+				writeLine(result);
+			}
+			outputStream.flush();
+		}
+
+		private void writeSummary(SQSIngestSummary summary) throws IOException {
+			writeLine(summary);
+			outputStream.flush();
+		}
+
+		private void writeLine(Object value) throws IOException {
+			outputStream.write(objectMapper.writeValueAsBytes(value));
+			outputStream.write('\n');
+		}
+	}
+
+	/**
+	 * Splits a byte stream into UTF-8 lines terminated by LF or CRLF. Lines longer than the limit are skipped
+	 * up to their terminator instead of being buffered.
+	 */
+	static final class LineReader {
+		private final InputStream inputStream;
+		private final int maxLineBytes;
+		private final byte[] buffer = new byte[READ_BUFFER_SIZE];
+		private final ByteArrayOutputStream line = new ByteArrayOutputStream();
+		private int position;
+		private int limit;
+		private long lineNumber;
+		private boolean tooLong;
+		// Whether the last byte of the line read so far is a CR
+		private boolean carriageReturn;
+		private boolean eof;
+
+		LineReader(InputStream inputStream, int maxLineBytes) {
+			this.inputStream = inputStream;
+			this.maxLineBytes = maxLineBytes;
+		}
+
+		boolean next() throws IOException {
+			if (eof) {
+				return false;
+			}
+			line.reset();
+			tooLong = false;
+			carriageReturn = false;
+			boolean read = false;
+			while (true) {
+				if (position == limit) {
+					limit = inputStream.read(buffer);
+					position = 0;
+					if (limit <= 0) {
+						limit = 0;
+						eof = true;
+						if (!read) {
+							return false;
+						}
+						break;
+					}
+				}
+				read = true;
+				int start = position;
+				while (position < limit && buffer[position] != '\n') {
+					position++;
+				}
+				append(start, position - start);
+				if (position < limit) {
+					position++;
+					break;
+				}
+			}
+			// append allows one byte over the limit for the CR of a CRLF
+			if (!tooLong && line.size() > maxLineBytes && !carriageReturn) {
+				tooLong = true;
+				line.reset();
+			}
+			lineNumber++;
+			return true;
+		}
+
+		private void append(int offset, int length) {
+			if (tooLong) {
+				return;
+			}
+			if (line.size() + length > maxLineBytes + 1) {
+				tooLong = true;
+				line.reset();
+				return;
+			}
+			line.write(buffer, offset, length);
+			if (length > 0) {
+				carriageReturn = buffer[offset + length - 1] == '\r';
+			}
+		}
+
+		boolean isTooLong() {
+			return tooLong;
+		}
+
+		long lineNumber() {
+			return lineNumber;
+		}
+
+		String line() {
+			byte[] bytes = line.toByteArray();
+			int length = carriageReturn ? bytes.length - 1 : bytes.length;
+			return new String(bytes, 0, length, StandardCharsets.UTF_8);
+		}
+	}
+}
@@ -0,0 +1,462 @@
+package com.aws.services.service.sqs;
+
+import com.aws.services.config.AWSThreadFactory;
+import com.aws.services.config.ApplicationProperties;
+import jakarta.annotation.PreDestroy;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import software.amazon.awssdk.services.sqs.SqsClient;
+import software.amazon.awssdk.services.sqs.model.ChangeMessageVisibilityRequest;
+import software.amazon.awssdk.services.sqs.model.Message;
+import software.amazon.awssdk.services.sqs.model.MessageSystemAttributeName;
+import software.amazon.awssdk.services.sqs.model.QueueDoesNotExistException;
+import software.amazon.awssdk.services.sqs.model.ReceiveMessageRequest;
+import software.amazon.awssdk.services.sqs.model.SqsException;
+
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Runs long-polling receive workers per queue that keep a bounded prefetch buffer filled. Messages in
+ * the buffer are either handed to the handler registered for the queue or drained by the receive endpoints.
+ * Workers only receive as many messages as the buffer has room for, so a slow consumer stops the polling
+ * instead of piling up messages whose visibility timeout is running out.
+ * <p>
+ * Payloads the extended client offloaded to S3 are fetched concurrently per received batch. Payloads larger
+ * than aws.sqs.payload.stream.threshold.bytes are only fetched when a message is handed out, and are streamed
+ * from S3 to handlers registered with {@link #registerPayloadHandler}.
+ * <p>
+ * Handlers of FIFO queues run one message at a time and in order per message group and in parallel across
+ * groups. When a message fails, or its visibility timeout runs out before its turn, the messages of its group
+ * received with it are skipped, so SQS delivers the group again starting from the failed message.
+ */
+@Component
+public class SQSConsumerEngine {
+
+	private static final Logger LOGGER = LogManager.getLogger(SQSConsumerEngine.class);
+
+	private static final int MAX_RECEIVE_MESSAGES = 10;
+
+	private final SqsClient sqsClient;
+	private final SqsClient sqsClientExtended;
+	private final SQSQueueRegistry sqsQueueRegistry;
+	private final SQSAcknowledgementEngine sqsAcknowledgementEngine;
+	private final ApplicationProperties applicationProperties;
+	private final AWSThreadFactory awsThreadFactory;
+	private final SQSPayloadFetcher sqsPayloadFetcher;
+	private final Map<String, QueueConsumer> consumers = new ConcurrentHashMap<>();
+	private final ExecutorService handlerExecutor;
+	private final ExecutorService drainExecutor;
+	private final ScheduledExecutorService visibilityExtender;
+
+	// Receives go through the plain client so offloaded payloads are fetched in parallel by the fetcher; the
+	// extended client strips the S3 pointer from receipt handles when extending visibility
+	public SQSConsumerEngine(SqsClient sqsClient, @Qualifier("sqsClientExtended") SqsClient sqsClientExtended,
+			SQSQueueRegistry sqsQueueRegistry, SQSAcknowledgementEngine sqsAcknowledgementEngine,
+			ApplicationProperties applicationProperties, AWSThreadFactory awsThreadFactory,
+			SQSPayloadFetcher sqsPayloadFetcher) {
+		this.sqsClient = sqsClient;
+		this.sqsClientExtended = sqsClientExtended;
+		this.sqsQueueRegistry = sqsQueueRegistry;
+		this.sqsAcknowledgementEngine = sqsAcknowledgementEngine;
+		this.applicationProperties = applicationProperties;
+		this.awsThreadFactory = awsThreadFactory;
+		this.sqsPayloadFetcher = sqsPayloadFetcher;
+		this.handlerExecutor = Executors.newFixedThreadPool(applicationProperties.getSqsConsumerHandlerThreads(),
+				awsThreadFactory.forPool("sqs-handler"));
+		this.drainExecutor = Executors.newFixedThreadPool(applicationProperties.getSqsConsumerDrainThreads(),
+				awsThreadFactory.forPool("sqs-drain"));
+		this.visibilityExtender = Executors.newSingleThreadScheduledExecutor(awsThreadFactory.forPool("sqs-visibility"));
+	}
+
+	/**
+	 * Starts buffering the queues configured in aws.sqs.consumer.queues once the application is up.
+	 */
+	@EventListener(ApplicationReadyEvent.class)
+	public void startConfiguredConsumers() {
+		applicationProperties.getSqsConsumerQueues().forEach(this::start);
+	}
+
+	/**
+	 * Starts the long-polling workers of a queue if they are not running yet.
+	 *
+	 * @param queueName The name of the SQS queue to consume.
+	 */
+	public void start(String queueName) {
+		consumers.computeIfAbsent(queueName, name -> {
+			try {
+				QueueConsumer consumer = new QueueConsumer(name, sqsQueueRegistry.getQueueUrl(name));
+				consumer.startWorkers();
+				return consumer;
+			} catch (QueueDoesNotExistException e) {
+				LOGGER.error("Cannot start consumer, queue {} does not exist", name);
+				return null;
+			}
+		});
+	}
+
+	/**
+	 * Registers the handler of a queue and runs it on the engine's handler pool.
+	 */
+	public void registerHandler(String queueName, SQSMessageHandler handler) {
+		registerHandler(queueName, handler, handlerExecutor);
+	}
+
+	/**
+	 * Registers the handler of a queue, starting its consumer if needed. From then on buffered messages
+	 * are dispatched to the handler instead of being drained by the receive endpoints. Messages of one FIFO
+	 * message group are handled one after the other, in order.
+	 *
+	 * @param queueName The name of the SQS queue.
+	 * @param handler   The handler invoked for every message.
+	 * @param executor  The executor the handler runs on.
+	 */
+	public void registerHandler(String queueName, SQSMessageHandler handler, Executor executor) {
+		startDispatcher(queueName, message -> handler.handle(resolveDeferred(message)), executor);
+	}
+
+	/**
+	 * Registers a handler that reads the payload of every message from a stream and runs it on the engine's
+	 * handler pool.
+	 */
+	public void registerPayloadHandler(String queueName, SQSPayloadHandler handler) {
+		registerPayloadHandler(queueName, handler, handlerExecutor);
+	}
+
+	/**
+	 * Registers a handler that reads the payload of every message from a stream, starting the consumer of the
+	 * queue if needed. Payloads above aws.sqs.payload.stream.threshold.bytes are streamed from S3 while the
+	 * handler reads them; the body of such a message is the S3 pointer.
+	 *
+	 * @param queueName The name of the SQS queue.
+	 * @param handler   The handler invoked for every message.
+	 * @param executor  The executor the handler runs on.
+	 */
+	public void registerPayloadHandler(String queueName, SQSPayloadHandler handler, Executor executor) {
+		startDispatcher(queueName, message -> {
+			try (InputStream payload = sqsPayloadFetcher.open(message)) {
+				handler.handle(message, payload);
+			}
+		}, executor);
+	}
+
+	/**
+	 * @return true if the queue has running workers and no handler, i.e. its buffer can be drained.
+	 */
+	public boolean isBuffering(String queueName) {
+		QueueConsumer consumer = consumers.get(queueName);
+		return consumer != null && consumer.handler.get() == null;
+	}
+
+	/**
+	 * Takes up to the given number of messages from the prefetch buffer of a queue. Waits up to
+	 * aws.sqs.consumer.drain.wait.millis for the first message and returns what is buffered after that.
+	 *
+	 * @param queueName           The name of the SQS queue.
+	 * @param maxNumberOfMessages The maximum number of messages to return.
+	 * @return The drained messages, possibly empty.
+	 */
+	public List<Message> drain(String queueName, int maxNumberOfMessages) {
+		QueueConsumer consumer = consumers.get(queueName);
+		List<Message> messages = new ArrayList<>(maxNumberOfMessages);
+		if (consumer == null) {
+			return messages;
+		}
+		try {
+			BufferedMessage first = consumer.poll(applicationProperties.getSqsConsumerDrainWaitMillis(), false);
+			while (first != null && messages.size() < maxNumberOfMessages) {
+				messages.add(first.message);
+				first = consumer.poll(0, false);
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		return sqsPayloadFetcher.resolveDeferred(messages);
+	}
+
+	/**
+	 * Same as {@link #drain} but waits for the first message, and fetches deferred payloads, on the engine's
+	 * drain pool of aws.sqs.consumer.drain.threads threads instead of the calling thread.
+	 */
+	public CompletableFuture<List<Message>> drainAsync(String queueName, int maxNumberOfMessages) {
+		return CompletableFuture.supplyAsync(() -> drain(queueName, maxNumberOfMessages), drainExecutor);
+	}
+
+	private void startDispatcher(String queueName, SQSMessageHandler handler, Executor executor) {
+		start(queueName);
+		QueueConsumer consumer = consumers.get(queueName);
+		if (consumer != null) {
+			consumer.startDispatcher(handler, executor);
+		}
+	}
+
+	/**
+	 * Fetches the payload of a message the poller left in S3, for handlers that take the body as a String.
+	 */
+	private Message resolveDeferred(Message message) {
+		if (!sqsPayloadFetcher.isOffloaded(message)) {
+			return message;
+		}
+		List<Message> resolved = sqsPayloadFetcher.resolveDeferred(List.of(message));
+		if (resolved.isEmpty()) {
+			throw new IllegalStateException("Failed to fetch the payload of message " + message.messageId());
+		}
+		return resolved.get(0);
+	}
+
+	@PreDestroy
+	public void shutdown() {
+		consumers.values().forEach(QueueConsumer::stop);
+		visibilityExtender.shutdownNow();
+		handlerExecutor.shutdown();
+		drainExecutor.shutdownNow();
+	}
+
+	private final class QueueConsumer {
+		private final String queueName;
+		private final String queueUrl;
+		private final BlockingQueue<BufferedMessage> buffer = new LinkedBlockingQueue<>();
+		private final Semaphore capacity = new Semaphore(applicationProperties.getSqsConsumerPrefetchCapacity());
+		private final List<Thread> threads = new CopyOnWriteArrayList<>();
+		private volatile boolean running = true;
+		private final AtomicReference<SQSMessageHandler> handler = new AtomicReference<>();
+		// Groups whose messages received up to the given time are skipped after one of them failed
+		private final Map<String, Long> blockedGroups = new ConcurrentHashMap<>();
+
+		private QueueConsumer(String queueName, String queueUrl) {
+			this.queueName = queueName;
+			this.queueUrl = queueUrl;
+		}
+
+		private void startWorkers() {
+			for (int i = 0; i < applicationProperties.getSqsConsumerWorkersPerQueue(); i++) {
+				startThread("sqs-poller-" + queueName + "-" + i, this::pollLoop);
+			}
+			LOGGER.info("Started {} long-polling workers for queue {}", threads.size(), queueName);
+		}
+
+		private void startDispatcher(SQSMessageHandler handler, Executor executor) {
+			if (!this.handler.compareAndSet(null, handler)) {
+				throw new IllegalStateException("A handler is already registered for queue " + queueName);
+			}
+			startThread("sqs-dispatcher-" + queueName, () -> dispatchLoop(handler, executor));
+		}
+
+		private void startThread(String name, Runnable task) {
+			Thread thread = awsThreadFactory.newThread(name, task);
+			threads.add(thread);
+			thread.start();
+		}
+
+		private void pollLoop() {
+			while (running) {
+				int permits = 0;
+				try {
+					capacity.acquire();
+					permits = 1;
+					while (permits < MAX_RECEIVE_MESSAGES && capacity.tryAcquire()) {
+						permits++;
+					}
+					List<Message> messages = sqsClient.receiveMessage(ReceiveMessageRequest.builder()
+							.queueUrl(queueUrl)
+							.maxNumberOfMessages(permits)
+							.waitTimeSeconds(applicationProperties.getSqsConsumerWaitTimeSeconds())
+							.visibilityTimeout(applicationProperties.getSqsConsumerVisibilityTimeoutSeconds())
+							.messageAttributeNames("All")
+							.messageSystemAttributeNames(MessageSystemAttributeName.MESSAGE_GROUP_ID)
+							.build()).messages();
+					long receivedAt = System.nanoTime();
+					List<Message> resolved = sqsPayloadFetcher.resolve(messages,
+							applicationProperties.getSqsPayloadStreamThresholdBytes());
+					for (Message message : resolved) {
+						buffer.add(new BufferedMessage(message, receivedAt));
+					}
+					capacity.release(permits - resolved.size());
+				} catch (InterruptedException e) {
+					capacity.release(permits);
+					Thread.currentThread().interrupt();
+					return;
+				} catch (SqsException e) {
+					capacity.release(permits);
+					LOGGER.error("Receive from queue {} failed: {}", queueName, e.getMessage());
+					pause();
+				} catch (RuntimeException e) {
+					capacity.release(permits);
+					LOGGER.error("Receive from queue {} failed", queueName, e);
+					pause();
+				}
+			}
+		}
+
+		private void dispatchLoop(SQSMessageHandler handler, Executor executor) {
+			SQSGroupDispatcher dispatcher = new SQSGroupDispatcher(executor,
+					new Semaphore(applicationProperties.getSqsConsumerHandlerThreads()),
+					applicationProperties.getSqsConsumerGroupStripes());
+			while (running) {
+				BufferedMessage buffered;
+				try {
+					buffered = poll(Long.MAX_VALUE, true);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					return;
+				}
+				if (buffered == null) {
+					continue;
+				}
+				// The buffer permit is held until the message is handled, which bounds the backlog of the stripes
+				try {
+					dispatcher.execute(groupIdOf(buffered.message), () -> {
+						try {
+							process(handler, buffered);
+						} finally {
+							capacity.release();
+						}
+					});
+				} catch (RejectedExecutionException e) {
+					capacity.release();
+					LOGGER.error("Handler executor rejected message {} of queue {}", buffered.message.messageId(), queueName);
+				} catch (InterruptedException e) {
+					capacity.release();
+					Thread.currentThread().interrupt();
+					return;
+				}
+			}
+		}
+
+		private void process(SQSMessageHandler handler, BufferedMessage buffered) {
+			Message message = buffered.message;
+			String groupId = groupIdOf(message);
+			int visibilityTimeout = applicationProperties.getSqsConsumerVisibilityTimeoutSeconds();
+			if (groupId != null && skip(groupId, buffered, TimeUnit.SECONDS.toNanos(visibilityTimeout))) {
+				return;
+			}
+			long extendEvery = Math.max(1, visibilityTimeout / 2);
+			ScheduledFuture<?> extension = visibilityExtender.scheduleAtFixedRate(
+					() -> extendVisibility(message, visibilityTimeout), extendEvery, extendEvery, TimeUnit.SECONDS);
+			try {
+				handler.handle(message);
+				extension.cancel(false);
+				sqsAcknowledgementEngine.acknowledge(queueUrl, message).thenAccept(result -> {
+					if (!result.success()) {
+						LOGGER.error("Failed to delete message {} of queue {}: {}", result.id(), queueName,
+								result.errorMessage());
+					}
+				});
+			} catch (Exception e) {
+				LOGGER.error("Handler failed for message {} of queue {}", message.messageId(), queueName, e);
+				if (groupId != null) {
+					block(groupId, buffered.receivedAt);
+				}
+			} finally {
+				extension.cancel(false);
+			}
+		}
+
+		private void extendVisibility(Message message, int visibilityTimeout) {
+			try {
+				sqsClientExtended.changeMessageVisibility(ChangeMessageVisibilityRequest.builder().queueUrl(queueUrl)
+						.receiptHandle(message.receiptHandle()).visibilityTimeout(visibilityTimeout).build());
+			} catch (SqsException e) {
+				LOGGER.warn("Failed to extend visibility of message {}: {}", message.messageId(), e.getMessage());
+			}
+		}
+
+		/**
+		 * Decides whether a message of a FIFO group must not run: an earlier message of the group received with it
+		 * failed, or it waited behind them until its visibility timeout ran out. Running it would process the
+		 * group out of order once SQS redelivers the skipped messages.
+		 */
+		private boolean skip(String groupId, BufferedMessage buffered, long visibilityNanos) {
+			Long blockedUntil = blockedGroups.get(groupId);
+			if (blockedUntil != null) {
+				if (buffered.receivedAt <= blockedUntil) {
+					LOGGER.warn("Skipping message {} of queue {}, an earlier message of group {} failed",
+							buffered.message.messageId(), queueName, groupId);
+					return true;
+				}
+				blockedGroups.remove(groupId, blockedUntil);
+			}
+			if (System.nanoTime() - buffered.receivedAt >= visibilityNanos) {
+				LOGGER.warn("Skipping message {} of queue {}, its visibility timeout expired behind group {}",
+						buffered.message.messageId(), queueName, groupId);
+				block(groupId, buffered.receivedAt);
+				return true;
+			}
+			return false;
+		}
+
+		private void block(String groupId, long receivedAt) {
+			long expired = System.nanoTime()
+					- 2 * TimeUnit.SECONDS.toNanos(applicationProperties.getSqsConsumerVisibilityTimeoutSeconds());
+			blockedGroups.values().removeIf(blockedUntil -> blockedUntil < expired);
+			blockedGroups.merge(groupId, receivedAt, Math::max);
+		}
+
+		/**
+		 * Takes the next buffered message, skipping the ones whose visibility timeout has already run out
+		 * while they were waiting, since SQS may have delivered those to another consumer. With keepPermit the
+		 * buffer capacity taken by the returned message is released by the caller once it is done with it.
+		 */
+		private BufferedMessage poll(long waitMillis, boolean keepPermit) throws InterruptedException {
+			long visibilityNanos = TimeUnit.SECONDS.toNanos(applicationProperties.getSqsConsumerVisibilityTimeoutSeconds());
+			BufferedMessage buffered = buffer.poll(waitMillis, TimeUnit.MILLISECONDS);
+			while (buffered != null) {
+				if (System.nanoTime() - buffered.receivedAt < visibilityNanos) {
+					if (!keepPermit) {
+						capacity.release();
+					}
+					return buffered;
+				}
+				capacity.release();
+				LOGGER.warn("Dropping message {} of queue {}, its visibility timeout expired in the buffer",
+						buffered.message.messageId(), queueName);
+				String groupId = groupIdOf(buffered.message);
+				if (groupId != null) {
+					block(groupId, buffered.receivedAt);
+				}
+				buffered = buffer.poll();
+			}
+			return null;
+		}
+
+		private void pause() {
+			try {
+				Thread.sleep(1000);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+
+		private void stop() {
+			running = false;
+			threads.forEach(Thread::interrupt);
+		}
+	}
+
+	private static String groupIdOf(Message message) {
+		return message.attributes().get(MessageSystemAttributeName.MESSAGE_GROUP_ID);
+	}
+
+	private record BufferedMessage(Message message, long receivedAt) {
+	}
+}
@@ -0,0 +1,131 @@
+package com.aws.services.service.sqs;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Runs the handler tasks of FIFO messages on an executor, one at a time and in submission order per message
+ * group, in parallel across groups. Groups are hashed onto a fixed number of stripes, each of which has at most
+ * one task on the executor; a stripe drains its backlog on that thread and hands the thread back once it is
+ * empty. Tasks without a group run on the executor directly.
+ * <p>
+ * A handler slot is taken when a stripe or an ungrouped task is started and given back when it is done, so
+ * tasks queued behind a busy stripe hold no slot and cannot keep other groups from running. Stripes do not bound
+ * their backlog, so {@link #execute} never waits for a busy stripe; the caller bounds the tasks it hands over.
+ */
+final class SQSGroupDispatcher {
+
+	private static final Logger LOGGER = LogManager.getLogger(SQSGroupDispatcher.class);
+
+	private final Executor executor;
+	private final Semaphore slots;
+	private final Stripe[] stripes;
+
+	SQSGroupDispatcher(Executor executor, Semaphore slots, int stripeCount) {
+		this.executor = executor;
+		this.slots = slots;
+		this.stripes = new Stripe[Math.max(1, stripeCount)];
+		for (int i = 0; i < stripes.length; i++) {
+			stripes[i] = new Stripe();
+		}
+	}
+
+	/**
+	 * Queues a task, waiting for a handler slot only if it starts a stripe or has no group.
+	 *
+	 * @throws RejectedExecutionException if the executor rejects the task, or the stripe that would run it.
+	 */
+	void execute(String groupId, Runnable task) throws InterruptedException {
+		if (groupId == null) {
+			slots.acquire();
+			try {
+				executor.execute(() -> {
+					try {
+						task.run();
+					} finally {
+						slots.release();
+					}
+				});
+			} catch (RuntimeException e) {
+				slots.release();
+				throw e;
+			}
+			return;
+		}
+		int hash = groupId.hashCode();
+		stripes[Math.floorMod(hash ^ (hash >>> 16), stripes.length)].execute(task);
+	}
+
+	private final class Stripe implements Runnable {
+		private final ReentrantLock lock = new ReentrantLock();
+		private final Queue<Runnable> tasks = new ArrayDeque<>();
+		private boolean scheduled;
+
+		private void execute(Runnable task) throws InterruptedException {
+			lock.lock();
+			try {
+				tasks.add(task);
+				if (scheduled) {
+					return;
+				}
+				scheduled = true;
+			} finally {
+				lock.unlock();
+			}
+			// Tasks queued while this waits for a slot join the backlog of the stripe
+			try {
+				slots.acquire();
+			} catch (InterruptedException e) {
+				unschedule(task);
+				throw e;
+			}
+			try {
+				executor.execute(this);
+			} catch (RuntimeException e) {
+				slots.release();
+				unschedule(task);
+				throw e;
+			}
+		}
+
+		private void unschedule(Runnable task) {
+			lock.lock();
+			try {
+				tasks.remove(task);
+				scheduled = false;
+			} finally {
+				lock.unlock();
+			}
+		}
+
+		@Override
+		public void run() {
+			while (true) {
+				Runnable task;
+				lock.lock();
+				try {
+					task = tasks.poll();
+					if (task == null) {
+						scheduled = false;
+						slots.release();
+						return;
+					}
+				} finally {
+					lock.unlock();
+				}
+				try {
+					task.run();
+				} catch (RuntimeException e) {
+					LOGGER.error("Message group task failed", e);
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,119 @@
+package com.aws.services.service.sqs;
+
+import com.aws.services.config.ApplicationProperties;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.UUID;
+import java.util.zip.CRC32C;
+
+/**
+ * Chooses the message group id of outgoing messages. An explicit group id is used as given. Otherwise the group
+ * is derived from a key the caller supplies or, when aws.sqs.group.key.field is set, from that top-level field of
+ * a JSON body, so messages about the same entity keep their order on a FIFO queue while different entities spread
+ * over groups that consumers process in parallel. With aws.sqs.group.buckets > 0 keys are hashed onto that many
+ * groups. Messages without any key get a random group, which gives no ordering.
+ */
+@Component
+public class SQSMessageGroups {
+
+	// SQS allows up to 128 alphanumeric and punctuation characters in a group id
+	private static final int MAX_GROUP_ID_LENGTH = 128;
+
+	private final ObjectMapper objectMapper;
+	private final String keyField;
+	private final int buckets;
+
+	public SQSMessageGroups(ObjectMapper objectMapper, ApplicationProperties applicationProperties) {
+		this.objectMapper = objectMapper;
+		String field = applicationProperties.getSqsGroupKeyField();
+		this.keyField = field == null || field.isBlank() ? null : field.trim();
+		this.buckets = Math.max(0, applicationProperties.getSqsGroupBuckets());
+	}
+
+	/**
+	 * @param groupId The explicit group id, or null.
+	 * @param body    The message body, used for the key field when there is no group id.
+	 * @return The group id to send the message with.
+	 */
+	public String groupIdFor(String groupId, String body) {
+		if (groupId != null) {
+			return groupId;
+		}
+		String groupIdForKey = groupIdForKey(keyOf(body));
+		return groupIdForKey != null ? groupIdForKey : UUID.randomUUID().toString();
+	}
+
+	/**
+	 * Maps a caller-supplied key to a stable group id: its hash bucket when aws.sqs.group.buckets is set, the key
+	 * itself when it is a valid group id, and a hash of the key otherwise.
+	 *
+	 * @return The group id, or null without a key.
+	 */
+	public String groupIdForKey(String key) {
+		if (key == null || key.isEmpty()) {
+			return null;
+		}
+		byte[] bytes = key.getBytes(StandardCharsets.UTF_8);
+		if (buckets > 0) {
+			CRC32C crc = new CRC32C();
+			crc.update(bytes);
+			return "group-" + (crc.getValue() % buckets);
+		}
+		if (isValidGroupId(key)) {
+			return key;
+		}
+		try {
+			return "key-" + HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(bytes));
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * Reads the key field from the top level of a JSON object body without binding the whole document.
+	 *
+	 * @return The field's scalar value, or null if it is not configured, missing or the body is not JSON.
+	 */
+	private String keyOf(String body) {
+		if (keyField == null || body == null) {
+			return null;
+		}
+		try (JsonParser parser = objectMapper.getFactory().createParser(body)) {
+			if (parser.nextToken() != JsonToken.START_OBJECT) {
+				return null;
+			}
+			while (parser.nextToken() == JsonToken.FIELD_NAME) {
+				boolean matches = keyField.equals(parser.currentName());
+				JsonToken value = parser.nextToken();
+				if (matches) {
+					return value.isScalarValue() && value != JsonToken.VALUE_NULL ? parser.getValueAsString() : null;
+				}
+				parser.skipChildren();
+			}
+		} catch (IOException e) {
+			// Not JSON, no key
+		}
+		return null;
+	}
+
+	private static boolean isValidGroupId(String key) {
+		if (key.length() > MAX_GROUP_ID_LENGTH) {
+			return false;
+		}
+		for (int i = 0; i < key.length(); i++) {
+			char c = key.charAt(i);
+			if (c < '!' || c > '~') {
+				return false;
+			}
+		}
+		return true;
+	}
+}
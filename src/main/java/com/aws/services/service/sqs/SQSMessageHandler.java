@@ -0,0 +1,12 @@
+package com.aws.services.service.sqs;
+
+import software.amazon.awssdk.services.sqs.model.Message;
+
+/**
+ * Processes a message delivered by the {@link SQSConsumerEngine}. The message is deleted from the
+ * queue when this returns normally and becomes visible again after its visibility timeout when it throws.
+ */
+@FunctionalInterface
+public interface SQSMessageHandler {
+	void handle(Message message) throws Exception;
+}
@@ -0,0 +1,828 @@
+package com.aws.services.service.sqs;
+
+import com.aws.services.config.AWSThreadFactory;
+import com.aws.services.config.ApplicationProperties;
+import jakarta.annotation.PreDestroy;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import software.amazon.awssdk.awscore.exception.AwsServiceException;
+import software.amazon.awssdk.core.SdkBytes;
+import software.amazon.awssdk.services.sqs.model.MessageAttributeValue;
+import software.amazon.awssdk.services.sqs.model.QueueDoesNotExistException;
+import software.amazon.awssdk.services.sqs.model.SendMessageRequest;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.ClosedByInterruptException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+/**
+ * Write-ahead spool for outbound messages, enabled with aws.sqs.spool.enabled. Accepted messages are appended
+ * to a log of memory-mapped segment files in aws.sqs.spool.directory and the caller is answered once the record
+ * is forced to disk; concurrent appends share one force. A drain thread reads the log in order and hands the
+ * messages to the {@link SQSBatchingProducer}, whose sender pool sends them in SendMessageBatch calls.
+ * <p>
+ * The offset up to which every message was sent is checkpointed every aws.sqs.spool.checkpoint.interval.millis,
+ * and segments below it are deleted. After a restart the log is replayed from the checkpoint, so delivery is at
+ * least once: messages sent after the last checkpoint are sent again. Records torn by a crash are detected by
+ * their CRC32C and dropped. Appends wait up to aws.sqs.spool.max.wait.millis while the log holds
+ * aws.sqs.spool.max.bytes and then fail with {@link SQSSpoolFullException}.
+ * <p>
+ * Failed sends are retried with backoff until they succeed, except for requests SQS rejects as invalid, which
+ * are logged and dropped so that they do not hold back the checkpoint. A message with a group id is only sent
+ * once the previous message of its group is, so that concurrent batches and retries keep the group's order.
+ */
+@Component
+public class SQSOutboundSpool {
+
+	private static final Logger LOGGER = LogManager.getLogger(SQSOutboundSpool.class);
+
+	static final String SEGMENT_SUFFIX = ".segment";
+	static final String CHECKPOINT_FILE = "checkpoint";
+
+	private static final int CHECKPOINT_MAGIC = 0x53515350;
+	// Payload length and CRC32C of the payload
+	private static final int HEADER_BYTES = 8;
+	private static final long MIN_SEGMENT_BYTES = 1L << 20;
+	private static final long MAX_SEGMENT_BYTES = 1L << 30;
+
+	private final SQSBatchingProducer sqsBatchingProducer;
+	private final SQSQueueRegistry sqsQueueRegistry;
+	private final AWSThreadFactory awsThreadFactory;
+	private final boolean enabled;
+	private final boolean force;
+	private final Path directory;
+	private final long segmentBytes;
+	private final long maxBytes;
+	private final long maxWaitNanos;
+	private final long checkpointIntervalMillis;
+
+	// Segments by the log offset of their first byte; offsets keep growing across segments and restarts
+	private final ConcurrentSkipListMap<Long, Segment> segments = new ConcurrentSkipListMap<>();
+	private final ReentrantLock appendLock = new ReentrantLock();
+	private final Condition appended = appendLock.newCondition();
+	private final Condition spaceFreed = appendLock.newCondition();
+	private final ReentrantLock forceLock = new ReentrantLock();
+	private final ReentrantLock checkpointLock = new ReentrantLock();
+	private final ReentrantLock ackLock = new ReentrantLock();
+	private volatile long writeOffset;
+	private volatile long durableOffset;
+	private volatile long readOffset;
+	// Drain thread only: where the range of the next message read starts, including skipped segment tails
+	private long unreadOffset;
+	private volatile long checkpointOffset;
+	// Guarded by ackLock: everything below ackedOffset is sent, sent ranges above it wait for the gap to close
+	private long ackedOffset;
+	private final TreeMap<Long, Long> ackedRanges = new TreeMap<>();
+	private final TreeMap<Long, Long> inFlight = new TreeMap<>();
+	// Completion of the last message handed out per queue and message group, which the next one waits for
+	private final Map<String, CompletableFuture<Void>> lastOfGroup = new ConcurrentHashMap<>();
+
+	private final AtomicLong pending = new AtomicLong();
+	private final AtomicLong lastDrainLagMillis = new AtomicLong();
+	private final LongAdder accepted = new LongAdder();
+	private final LongAdder sent = new LongAdder();
+	private final LongAdder retried = new LongAdder();
+	private final LongAdder dropped = new LongAdder();
+	private final LongAdder rejected = new LongAdder();
+	private final LongAdder replayed = new LongAdder();
+
+	private ScheduledExecutorService scheduler;
+	private Thread drainer;
+	private volatile boolean running;
+
+	public SQSOutboundSpool(SQSBatchingProducer sqsBatchingProducer, SQSQueueRegistry sqsQueueRegistry,
+			ApplicationProperties applicationProperties, AWSThreadFactory awsThreadFactory) {
+		this.sqsBatchingProducer = sqsBatchingProducer;
+		this.sqsQueueRegistry = sqsQueueRegistry;
+		this.awsThreadFactory = awsThreadFactory;
+		this.enabled = applicationProperties.isSqsSpoolEnabled();
+		this.force = applicationProperties.isSqsSpoolForce();
+		this.directory = Paths.get(applicationProperties.getSqsSpoolDirectory());
+		this.segmentBytes = Math.max(MIN_SEGMENT_BYTES,
+				Math.min(MAX_SEGMENT_BYTES, applicationProperties.getSqsSpoolSegmentBytes()));
+		this.maxBytes = Math.max(2 * segmentBytes, applicationProperties.getSqsSpoolMaxBytes());
+		this.maxWaitNanos = TimeUnit.MILLISECONDS.toNanos(applicationProperties.getSqsSpoolMaxWaitMillis());
+		this.checkpointIntervalMillis = Math.max(10, applicationProperties.getSqsSpoolCheckpointIntervalMillis());
+		if (enabled) {
+			try {
+				recover();
+			} catch (IOException e) {
+				throw new UncheckedIOException("Failed to open the SQS spool in " + directory, e);
+			}
+		}
+	}
+
+	public boolean isEnabled() {
+		return enabled;
+	}
+
+	/**
+	 * Starts draining the spool, including the messages replayed from a previous run, once the application is up.
+	 */
+	@EventListener(ApplicationReadyEvent.class)
+	public void start() {
+		if (!enabled || running) {
+			return;
+		}
+		running = true;
+		scheduler = Executors.newSingleThreadScheduledExecutor(awsThreadFactory.forPool("sqs-spool"));
+		scheduler.scheduleWithFixedDelay(this::checkpointQuietly, checkpointIntervalMillis, checkpointIntervalMillis,
+				TimeUnit.MILLISECONDS);
+		drainer = awsThreadFactory.newThread("sqs-spool-drain", this::drainLoop);
+		drainer.start();
+		LOGGER.info("Draining SQS spool in {}, {} messages pending", directory, pending.get());
+	}
+
+	/**
+	 * Appends a message to the spool and returns once it is durable.
+	 *
+	 * @param queueName          The name of the queue the message is sent to once it is drained.
+	 * @param sendMessageRequest The message; its queue URL is resolved again when it is sent.
+	 * @throws SQSSpoolFullException if the spool stays full for longer than aws.sqs.spool.max.wait.millis.
+	 * @throws IOException           if the message could not be written.
+	 */
+	public void append(String queueName, SendMessageRequest sendMessageRequest) throws IOException {
+		if (!enabled) {
+			throw new IllegalStateException("The SQS spool is not enabled");
+		}
+		byte[] payload = encode(queueName, sendMessageRequest, System.currentTimeMillis());
+		int length = HEADER_BYTES + payload.length;
+		if (length > segmentBytes) {
+			throw new IllegalArgumentException("Message of " + length + " bytes does not fit in a spool segment");
+		}
+		CRC32C crc = new CRC32C();
+		crc.update(payload);
+		long end;
+		appendLock.lock();
+		try {
+			Segment segment = reserve(length);
+			int position = (int) (writeOffset - segment.base());
+			segment.buffer().putInt(position + 4, (int) crc.getValue());
+			segment.buffer().put(position + HEADER_BYTES, payload);
+			segment.buffer().putInt(position, payload.length);
+			end = segment.base() + position + length;
+			writeOffset = end;
+			pending.incrementAndGet();
+			accepted.increment();
+			appended.signalAll();
+		} finally {
+			appendLock.unlock();
+		}
+		if (force) {
+			forceTo(end);
+		}
+	}
+
+	/**
+	 * @return Messages and bytes waiting to be sent, disk used, the age of the oldest unsent message, the time
+	 * the last sent message spent in the spool and the counts of accepted, sent, retried, dropped, rejected
+	 * (spool full) and replayed messages.
+	 */
+	public Map<String, Long> getStats() {
+		Map<String, Long> stats = new LinkedHashMap<>();
+		stats.put("enabled", enabled ? 1L : 0L);
+		if (!enabled) {
+			return stats;
+		}
+		long acked;
+		long oldestInFlight;
+		ackLock.lock();
+		try {
+			acked = ackedOffset;
+			oldestInFlight = inFlight.isEmpty() ? -1 : inFlight.firstEntry().getValue();
+		} finally {
+			ackLock.unlock();
+		}
+		long oldest = oldestInFlight >= 0 ? oldestInFlight : acceptedAtOf(readOffset);
+		stats.put("depthMessages", pending.get());
+		stats.put("depthBytes", writeOffset - acked);
+		stats.put("diskBytes", segments.values().stream().mapToLong(segment -> segment.buffer().capacity()).sum());
+		stats.put("oldestPendingAgeMillis", oldest < 0 ? 0 : Math.max(0, System.currentTimeMillis() - oldest));
+		stats.put("lastDrainLagMillis", lastDrainLagMillis.get());
+		stats.put("accepted", accepted.sum());
+		stats.put("sent", sent.sum());
+		stats.put("retried", retried.sum());
+		stats.put("dropped", dropped.sum());
+		stats.put("rejected", rejected.sum());
+		stats.put("replayed", replayed.sum());
+		return stats;
+	}
+
+	/**
+	 * Stops draining, waits briefly for the messages being sent and writes a last checkpoint. Whatever is not
+	 * sent by then is replayed on the next start.
+	 */
+	@PreDestroy
+	public void shutdown() throws InterruptedException {
+		if (!enabled) {
+			return;
+		}
+		running = false;
+		if (drainer != null) {
+			drainer.interrupt();
+			drainer.join(TimeUnit.SECONDS.toMillis(5));
+		}
+		long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+		while (hasInFlight() && System.nanoTime() < deadline) {
+			Thread.sleep(50);
+		}
+		if (scheduler != null) {
+			scheduler.shutdownNow();
+			scheduler.awaitTermination(5, TimeUnit.SECONDS);
+		}
+		forceTo(writeOffset);
+		checkpointQuietly();
+		for (Segment segment : segments.values()) {
+			try {
+				segment.channel().close();
+			} catch (IOException e) {
+				LOGGER.warn("Failed to close spool segment {}: {}", segment.file(), e.getMessage());
+			}
+		}
+	}
+
+	/**
+	 * Finds room for a record of the given length, rolling to a new segment when it does not fit in the current
+	 * one. Waits for checkpoints to free segments while the log is at its quota. Called with the append lock held.
+	 */
+	private Segment reserve(int length) throws IOException {
+		long deadline = System.nanoTime() + maxWaitNanos;
+		boolean checkpointed = false;
+		while (true) {
+			Segment segment = segments.lastEntry().getValue();
+			boolean fits = writeOffset + length <= segment.end();
+			long end = fits ? writeOffset + length : segment.end() + Math.max(segmentBytes, length);
+			if (end - segments.firstKey() <= maxBytes) {
+				return fits ? segment : roll(segment);
+			}
+			if (!checkpointed) {
+				// Sent messages may already free whole segments without waiting for the next scheduled checkpoint
+				appendLock.unlock();
+				try {
+					checkpointQuietly();
+				} finally {
+					appendLock.lock();
+				}
+				checkpointed = true;
+				continue;
+			}
+			long remaining = deadline - System.nanoTime();
+			if (remaining <= 0) {
+				rejected.increment();
+				throw new SQSSpoolFullException("SQS spool in " + directory + " is full (" + maxBytes + " bytes)");
+			}
+			try {
+				spaceFreed.awaitNanos(remaining);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new IOException("Interrupted while waiting for room in the SQS spool", e);
+			}
+		}
+	}
+
+	private Segment roll(Segment current) throws IOException {
+		// The bytes after the last record of the old segment stay zero, which readers take as its end
+		Segment segment = openSegment(current.end(), segmentBytes);
+		segments.put(segment.base(), segment);
+		writeOffset = segment.base();
+		return segment;
+	}
+
+	/**
+	 * Forces the log to disk up to at least the given offset. A caller that finds another one forcing waits for
+	 * it and usually finds its own record already covered, so concurrent appends share one force.
+	 */
+	private void forceTo(long offset) {
+		if (durableOffset >= offset) {
+			return;
+		}
+		forceLock.lock();
+		try {
+			if (durableOffset >= offset) {
+				return;
+			}
+			long target = writeOffset;
+			Long from = segments.floorKey(durableOffset);
+			for (Segment segment : segments.tailMap(from != null ? from : segments.firstKey()).values()) {
+				if (segment.base() >= target) {
+					break;
+				}
+				int start = (int) Math.max(0, durableOffset - segment.base());
+				int end = (int) Math.min(segment.buffer().capacity(), target - segment.base());
+				if (end > start) {
+					segment.buffer().force(start, end - start);
+				}
+			}
+			durableOffset = target;
+		} finally {
+			forceLock.unlock();
+		}
+	}
+
+	private void drainLoop() {
+		while (running) {
+			try {
+				SpooledMessage message = next();
+				if (message != null) {
+					submit(message);
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return;
+			} catch (RuntimeException e) {
+				LOGGER.error("Failed to drain the SQS spool", e);
+				pause();
+			}
+		}
+	}
+
+	/**
+	 * Reads the record at the drain position, waiting up to a second for one to be appended.
+	 */
+	private SpooledMessage next() throws InterruptedException {
+		if (readOffset >= writeOffset) {
+			appendLock.lock();
+			try {
+				if (readOffset >= writeOffset && !appended.await(1, TimeUnit.SECONDS)) {
+					return null;
+				}
+			} finally {
+				appendLock.unlock();
+			}
+		}
+		while (readOffset < writeOffset) {
+			Segment segment = segments.floorEntry(readOffset).getValue();
+			int position = (int) (readOffset - segment.base());
+			byte[] payload = readRecord(segment, position);
+			if (payload == null) {
+				// End of a segment, or a record the append path never wrote completely
+				readOffset = segment.end();
+				continue;
+			}
+			long from = unreadOffset;
+			long end = segment.base() + position + HEADER_BYTES + payload.length;
+			readOffset = end;
+			unreadOffset = end;
+			try {
+				return decode(payload, from, end);
+			} catch (IOException e) {
+				LOGGER.error("Dropping unreadable spool record at offset {}: {}", from, e.getMessage());
+				dropped.increment();
+				acknowledge(from, end, System.currentTimeMillis());
+			}
+		}
+		return null;
+	}
+
+	private void submit(SpooledMessage message) {
+		ackLock.lock();
+		try {
+			inFlight.put(message.from(), message.acceptedAt());
+		} finally {
+			ackLock.unlock();
+		}
+		String groupId = message.request().messageGroupId();
+		if (groupId == null) {
+			send(message, 0);
+			return;
+		}
+		String group = message.queueName() + "/" + groupId;
+		CompletableFuture<Void> previous = lastOfGroup.put(group, message.done());
+		message.done().whenComplete((result, error) -> lastOfGroup.remove(group, message.done()));
+		if (previous == null) {
+			send(message, 0);
+		} else {
+			// Not on the sender thread that completes the previous message, it may hold the producer's last permit
+			previous.whenCompleteAsync((result, error) -> send(message, 0), scheduler);
+		}
+	}
+
+	private void send(SpooledMessage message, int attempt) {
+		CompletableFuture<String> result;
+		String queueUrl = null;
+		try {
+			queueUrl = sqsQueueRegistry.getQueueUrl(message.queueName());
+			result = sqsBatchingProducer.send(message.request().toBuilder().queueUrl(queueUrl).build());
+		} catch (RuntimeException e) {
+			result = CompletableFuture.failedFuture(e);
+		}
+		String resolvedQueueUrl = queueUrl;
+		result.whenComplete((messageId, error) -> {
+			if (error == null) {
+				sent.increment();
+				acknowledge(message.from(), message.end(), message.acceptedAt());
+				message.done().complete(null);
+			} else {
+				failed(message, attempt, resolvedQueueUrl, error instanceof CompletionException && error.getCause() != null
+						? error.getCause() : error);
+			}
+		});
+	}
+
+	private void failed(SpooledMessage message, int attempt, String queueUrl, Throwable error) {
+		if (error instanceof QueueDoesNotExistException && queueUrl != null) {
+			sqsQueueRegistry.invalidate(message.queueName(), queueUrl);
+		}
+		if (isPermanent(error)) {
+			LOGGER.error("Dropping spooled message for queue {}: {}", message.queueName(), error.getMessage());
+			dropped.increment();
+			acknowledge(message.from(), message.end(), message.acceptedAt());
+			message.done().complete(null);
+			return;
+		}
+		retried.increment();
+		if (attempt == 0) {
+			LOGGER.warn("Send of spooled message for queue {} failed, retrying until it is sent: {}",
+					message.queueName(), error.getMessage());
+		}
+		try {
+			scheduler.schedule(() -> send(message, attempt + 1), Math.min(5000L, 200L << Math.min(attempt, 5)),
+					TimeUnit.MILLISECONDS);
+		} catch (RejectedExecutionException e) {
+			// Shutting down; the message is replayed from the log on the next start
+		}
+	}
+
+	/**
+	 * Requests SQS rejects as invalid fail the same way on every attempt. Throttling, server errors and
+	 * authorization errors, which can go away, are retried.
+	 */
+	private static boolean isPermanent(Throwable error) {
+		return error instanceof QueueDoesNotExistException
+				|| error instanceof AwsServiceException serviceException && serviceException.statusCode() == 400
+				&& !serviceException.isThrottlingException();
+	}
+
+	private void acknowledge(long from, long end, long acceptedAt) {
+		ackLock.lock();
+		try {
+			inFlight.remove(from);
+			ackedRanges.put(from, end);
+			Long next;
+			while ((next = ackedRanges.remove(ackedOffset)) != null) {
+				ackedOffset = next;
+			}
+		} finally {
+			ackLock.unlock();
+		}
+		pending.decrementAndGet();
+		lastDrainLagMillis.set(Math.max(0, System.currentTimeMillis() - acceptedAt));
+	}
+
+	private boolean hasInFlight() {
+		ackLock.lock();
+		try {
+			return !inFlight.isEmpty();
+		} finally {
+			ackLock.unlock();
+		}
+	}
+
+	private void checkpointQuietly() {
+		try {
+			checkpoint();
+		} catch (ClosedByInterruptException e) {
+			// Interrupted by shutdown, which writes the last checkpoint itself
+			LOGGER.debug("SQS spool checkpoint interrupted");
+		} catch (IOException | RuntimeException e) {
+			LOGGER.error("Failed to checkpoint the SQS spool: {}", e.getMessage());
+		}
+	}
+
+	/**
+	 * Writes the sent offset to the checkpoint file atomically, then deletes the segments below it.
+	 */
+	private void checkpoint() throws IOException {
+		checkpointLock.lock();
+		try {
+			long offset;
+			ackLock.lock();
+			try {
+				offset = ackedOffset;
+			} finally {
+				ackLock.unlock();
+			}
+			if (offset == checkpointOffset) {
+				return;
+			}
+			Path temporary = directory.resolve(CHECKPOINT_FILE + ".tmp");
+			try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE,
+					StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+				ByteBuffer buffer = ByteBuffer.allocate(16).putInt(CHECKPOINT_MAGIC).putLong(offset);
+				CRC32C crc = new CRC32C();
+				crc.update(buffer.array(), 0, 12);
+				buffer.putInt((int) crc.getValue()).flip();
+				while (buffer.hasRemaining()) {
+					channel.write(buffer);
+				}
+				channel.force(true);
+			}
+			Files.move(temporary, directory.resolve(CHECKPOINT_FILE), StandardCopyOption.ATOMIC_MOVE,
+					StandardCopyOption.REPLACE_EXISTING);
+			checkpointOffset = offset;
+			if (deleteSegmentsBelow(offset)) {
+				appendLock.lock();
+				try {
+					spaceFreed.signalAll();
+				} finally {
+					appendLock.unlock();
+				}
+			}
+		} finally {
+			checkpointLock.unlock();
+		}
+	}
+
+	/**
+	 * Deletes the segments that end at or below the offset, never the one being written. Their mappings stay
+	 * valid until they are garbage collected, so a concurrent force of an old range is harmless.
+	 */
+	private boolean deleteSegmentsBelow(long offset) throws IOException {
+		boolean deleted = false;
+		while (segments.size() > 1 && segments.firstEntry().getValue().end() <= offset) {
+			Segment segment = segments.pollFirstEntry().getValue();
+			segment.channel().close();
+			Files.deleteIfExists(segment.file());
+			deleted = true;
+		}
+		return deleted;
+	}
+
+	/**
+	 * Opens the segments left by a previous run, drops the ones below the checkpoint and scans the rest to find
+	 * the end of the log and the number of messages to replay.
+	 */
+	private void recover() throws IOException {
+		Files.createDirectories(directory);
+		long checkpoint = readCheckpoint();
+		try (Stream<Path> files = Files.list(directory)) {
+			for (Path file : files.filter(file -> file.getFileName().toString().endsWith(SEGMENT_SUFFIX)).toList()) {
+				String name = file.getFileName().toString();
+				long base = Long.parseLong(name.substring(0, name.length() - SEGMENT_SUFFIX.length()));
+				segments.put(base, openSegment(base, Files.size(file)));
+			}
+		}
+		long start = segments.isEmpty() ? Math.max(0, checkpoint) : Math.max(checkpoint, segments.firstKey());
+		deleteSegmentsBelow(start);
+		if (segments.isEmpty() || segments.lastEntry().getValue().end() <= start) {
+			Segment segment = openSegment(start, segmentBytes);
+			segments.put(segment.base(), segment);
+		}
+		long offset = start;
+		long messages = 0;
+		for (Segment segment : segments.tailMap(segments.floorKey(start)).values()) {
+			int position = (int) Math.max(0, offset - segment.base());
+			byte[] payload;
+			while ((payload = readRecord(segment, position)) != null) {
+				messages++;
+				position += HEADER_BYTES + payload.length;
+			}
+			if (segment == segments.lastEntry().getValue()) {
+				offset = segment.base() + position;
+				clearTail(segment, position);
+			} else {
+				offset = segment.end();
+			}
+		}
+		writeOffset = offset;
+		durableOffset = offset;
+		readOffset = start;
+		unreadOffset = start;
+		ackedOffset = start;
+		checkpointOffset = checkpoint;
+		pending.set(messages);
+		replayed.add(messages);
+		if (messages > 0) {
+			LOGGER.info("Replaying {} unsent messages from the SQS spool in {}", messages, directory);
+		}
+	}
+
+	private long readCheckpoint() throws IOException {
+		try {
+			ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(directory.resolve(CHECKPOINT_FILE)));
+			CRC32C crc = new CRC32C();
+			crc.update(buffer.array(), 0, Math.min(12, buffer.capacity()));
+			if (buffer.capacity() == 16 && buffer.getInt(0) == CHECKPOINT_MAGIC
+					&& buffer.getInt(12) == (int) crc.getValue()) {
+				return buffer.getLong(4);
+			}
+			LOGGER.warn("Ignoring corrupt SQS spool checkpoint in {}, replaying all segments", directory);
+		} catch (NoSuchFileException e) {
+			// First start
+		}
+		return -1;
+	}
+
+	/**
+	 * Zeroes whatever a crash left after the last complete record, so that records appended from here on are
+	 * never followed by the remains of a torn one.
+	 */
+	private static void clearTail(Segment segment, int position) {
+		MappedByteBuffer buffer = segment.buffer();
+		byte[] zeros = new byte[64 * 1024];
+		int limit = buffer.capacity();
+		int end = position;
+		for (int i = position; i < limit; i++) {
+			if (buffer.get(i) != 0) {
+				end = limit;
+				break;
+			}
+		}
+		for (int i = position; i < end; i += zeros.length) {
+			buffer.put(i, zeros, 0, Math.min(zeros.length, end - i));
+		}
+		if (end > position) {
+			buffer.force(position, end - position);
+		}
+	}
+
+	/**
+	 * @return The payload of the record at the position, or null at the end of the segment or for a torn record.
+	 */
+	private static byte[] readRecord(Segment segment, int position) {
+		MappedByteBuffer buffer = segment.buffer();
+		if (position + HEADER_BYTES > buffer.capacity()) {
+			return null;
+		}
+		int length = buffer.getInt(position);
+		if (length <= 0 || length > buffer.capacity() - position - HEADER_BYTES) {
+			return null;
+		}
+		byte[] payload = new byte[length];
+		buffer.get(position + HEADER_BYTES, payload);
+		CRC32C crc = new CRC32C();
+		crc.update(payload);
+		return buffer.getInt(position + 4) == (int) crc.getValue() ? payload : null;
+	}
+
+	/**
+	 * @return When the record at the offset was accepted, or -1 if there is no record there.
+	 */
+	private long acceptedAtOf(long offset) {
+		if (offset >= writeOffset) {
+			return -1;
+		}
+		Map.Entry<Long, Segment> entry = segments.floorEntry(offset);
+		if (entry == null) {
+			return -1;
+		}
+		Segment segment = entry.getValue();
+		int position = (int) (offset - segment.base());
+		if (position + HEADER_BYTES + Long.BYTES > segment.buffer().capacity()
+				|| segment.buffer().getInt(position) <= 0) {
+			Map.Entry<Long, Segment> next = segments.higherEntry(segment.base());
+			return next == null ? -1 : acceptedAtOf(next.getKey());
+		}
+		return segment.buffer().getLong(position + HEADER_BYTES);
+	}
+
+	private Segment openSegment(long base, long size) throws IOException {
+		Path file = directory.resolve(String.format("%020d", base) + SEGMENT_SUFFIX);
+		FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+				StandardOpenOption.WRITE);
+		try {
+			return new Segment(base, file, channel, channel.map(FileChannel.MapMode.READ_WRITE, 0, size));
+		} catch (IOException e) {
+			channel.close();
+			throw e;
+		}
+	}
+
+	private void pause() {
+		try {
+			Thread.sleep(1000);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * Record payload: accept time, queue name, group id, deduplication id, delay, body and message attributes.
+	 */
+	private static byte[] encode(String queueName, SendMessageRequest request, long acceptedAt) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream(256 + request.messageBody().length());
+		DataOutputStream out = new DataOutputStream(bytes);
+		out.writeLong(acceptedAt);
+		out.writeUTF(queueName);
+		writeString(out, request.messageGroupId());
+		writeString(out, request.messageDeduplicationId());
+		out.writeInt(request.delaySeconds() == null ? -1 : request.delaySeconds());
+		writeString(out, request.messageBody());
+		out.writeInt(request.messageAttributes().size());
+		for (Map.Entry<String, MessageAttributeValue> attribute : request.messageAttributes().entrySet()) {
+			MessageAttributeValue value = attribute.getValue();
+			out.writeUTF(attribute.getKey());
+			out.writeUTF(value.dataType());
+			writeString(out, value.stringValue());
+			writeBytes(out, value.binaryValue() == null ? null : value.binaryValue().asByteArrayUnsafe());
+		}
+		out.flush();
+		return bytes.toByteArray();
+	}
+
+	private static SpooledMessage decode(byte[] payload, long from, long end) throws IOException {
+		DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload));
+		long acceptedAt = in.readLong();
+		String queueName = in.readUTF();
+		SendMessageRequest.Builder request = SendMessageRequest.builder()
+				.messageGroupId(readString(in))
+				.messageDeduplicationId(readString(in));
+		int delaySeconds = in.readInt();
+		if (delaySeconds >= 0) {
+			request.delaySeconds(delaySeconds);
+		}
+		request.messageBody(readString(in));
+		int attributeCount = in.readInt();
+		Map<String, MessageAttributeValue> attributes = new HashMap<>();
+		for (int i = 0; i < attributeCount; i++) {
+			String name = in.readUTF();
+			MessageAttributeValue.Builder value = MessageAttributeValue.builder().dataType(in.readUTF())
+					.stringValue(readString(in));
+			byte[] binary = readBytes(in);
+			if (binary != null) {
+				value.binaryValue(SdkBytes.fromByteArrayUnsafe(binary));
+			}
+			attributes.put(name, value.build());
+		}
+		return new SpooledMessage(from, end, acceptedAt, queueName, request.messageAttributes(attributes).build(),
+				new CompletableFuture<>());
+	}
+
+	private static void writeString(DataOutputStream out, String value) throws IOException {
+		writeBytes(out, value == null ? null : value.getBytes(StandardCharsets.UTF_8));
+	}
+
+	private static String readString(DataInputStream in) throws IOException {
+		byte[] bytes = readBytes(in);
+		return bytes == null ? null : new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	private static void writeBytes(DataOutputStream out, byte[] value) throws IOException {
+		if (value == null) {
+			out.writeInt(-1);
+			return;
+		}
+		out.writeInt(value.length);
+		out.write(value);
+	}
+
+	private static byte[] readBytes(DataInputStream in) throws IOException {
+		int length = in.readInt();
+		if (length < 0) {
+			return null;
+		}
+		byte[] value = new byte[length];
+		in.readFully(value);
+		return value;
+	}
+
+	private record Segment(long base, Path file, FileChannel channel, MappedByteBuffer buffer) {
+		private long end() {
+			return base + buffer.capacity();
+		}
+	}
+
+	/**
+	 * A message read from the log. Its range runs from the drain position it was read at, which can be the unused
+	 * tail of the previous segment, to the end of its record, so that the sent ranges close up without gaps. Its
+	 * future completes once it is sent or dropped.
+	 */
+	private record SpooledMessage(long from, long end, long acceptedAt, String queueName, SendMessageRequest request,
+			CompletableFuture<Void> done) {
+	}
+}
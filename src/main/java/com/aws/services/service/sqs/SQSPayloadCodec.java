@@ -0,0 +1,229 @@
+package com.aws.services.service.sqs;
+
+import com.aws.services.config.ApplicationProperties;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.stereotype.Component;
+import software.amazon.awssdk.services.sqs.model.Message;
+import software.amazon.awssdk.services.sqs.model.MessageAttributeValue;
+import software.amazon.awssdk.services.sqs.model.SendMessageRequest;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Compresses message bodies on send and restores them on receive. A compressed body is base64 encoded and
+ * marked with the {@value #CONTENT_ENCODING} message attribute; bodies that do not shrink are sent unchanged.
+ * "gzip" gives the better ratio, "deflate" (raw deflate at the fastest level) costs much less CPU.
+ */
+@Component
+public class SQSPayloadCodec {
+
+	private static final Logger LOGGER = LogManager.getLogger(SQSPayloadCodec.class);
+
+	public static final String CONTENT_ENCODING = "ContentEncoding";
+	public static final int MAX_MESSAGE_BYTES = 256 * 1024;
+
+	enum Codec { NONE, GZIP, DEFLATE }
+
+	private final Codec codec;
+	private final int minBytes;
+	private final int maxDecodedBytes;
+
+	private final LongAdder encoded = new LongAdder();
+	private final LongAdder skipped = new LongAdder();
+	private final LongAdder originalBytes = new LongAdder();
+	private final LongAdder encodedBytes = new LongAdder();
+	private final LongAdder decoded = new LongAdder();
+	private final LongAdder decodeFailures = new LongAdder();
+	private final LongAdder inlined = new LongAdder();
+	private final LongAdder offloaded = new LongAdder();
+
+	public SQSPayloadCodec(ApplicationProperties applicationProperties) {
+		this.codec = Codec.valueOf(applicationProperties.getSqsCompressionCodec().trim().toUpperCase(Locale.ROOT));
+		this.minBytes = applicationProperties.getSqsCompressionMinBytes();
+		this.maxDecodedBytes = applicationProperties.getSqsCompressionMaxDecodedBytes();
+	}
+
+	/**
+	 * Compresses the body of the request if it is large enough and the encoded form is smaller.
+	 *
+	 * @param sendMessageRequest The request to send.
+	 * @return The request with the encoded body and the content encoding attribute, or the request unchanged.
+	 */
+	public SendMessageRequest encode(SendMessageRequest sendMessageRequest) {
+		String body = sendMessageRequest.messageBody();
+		if (codec == Codec.NONE || body == null || body.length() < minBytes
+				|| sendMessageRequest.messageAttributes().containsKey(CONTENT_ENCODING)) {
+			return sendMessageRequest;
+		}
+		byte[] raw = body.getBytes(StandardCharsets.UTF_8);
+		String encodedBody = Base64.getEncoder().encodeToString(compress(raw));
+		if (encodedBody.length() >= raw.length) {
+			skipped.increment();
+			return sendMessageRequest;
+		}
+		encoded.increment();
+		originalBytes.add(raw.length);
+		encodedBytes.add(encodedBody.length());
+		Map<String, MessageAttributeValue> attributes = new HashMap<>(sendMessageRequest.messageAttributes());
+		attributes.put(CONTENT_ENCODING, MessageAttributeValue.builder().dataType("String")
+				.stringValue(codec.name().toLowerCase(Locale.ROOT)).build());
+		return sendMessageRequest.toBuilder().messageBody(encodedBody).messageAttributes(attributes).build();
+	}
+
+	/**
+	 * @return true if the request is within the SQS message size limit and can be sent without S3. Counts the
+	 * decision for the statistics.
+	 */
+	public boolean fitsInline(SendMessageRequest sendMessageRequest) {
+		boolean fits = SQSBatchingProducer.payloadSize(sendMessageRequest.messageBody(),
+				sendMessageRequest.messageAttributes()) <= MAX_MESSAGE_BYTES;
+		(fits ? inlined : offloaded).increment();
+		return fits;
+	}
+
+	/**
+	 * Restores the body of a message sent with {@link #encode}. Messages without the content encoding
+	 * attribute, or that fail to decode, are returned unchanged. Inflating stops at
+	 * aws.sqs.compression.max.decoded.bytes, so a body that would grow beyond it fails to decode instead of
+	 * exhausting the heap.
+	 */
+	public Message decode(Message message) {
+		MessageAttributeValue encoding = message.messageAttributes().get(CONTENT_ENCODING);
+		if (encoding == null || encoding.stringValue() == null) {
+			return message;
+		}
+		try {
+			Codec messageCodec = Codec.valueOf(encoding.stringValue().toUpperCase(Locale.ROOT));
+			byte[] raw = decompress(messageCodec, Base64.getDecoder().decode(message.body()));
+			decoded.increment();
+			return message.toBuilder().body(new String(raw, StandardCharsets.UTF_8)).build();
+		} catch (IllegalArgumentException | UncheckedIOException e) {
+			decodeFailures.increment();
+			LOGGER.warn("Failed to decode message {} with encoding {}: {}", message.messageId(), encoding.stringValue(),
+					e.getMessage());
+			return message;
+		}
+	}
+
+	/**
+	 * Wraps the stream of a message body sent with {@link #encode} so that it is decoded as it is read, for
+	 * bodies too large to decode in memory. Streams of messages without the content encoding attribute are
+	 * returned unchanged.
+	 */
+	public InputStream decode(Message message, InputStream body) throws IOException {
+		MessageAttributeValue encoding = message.messageAttributes().get(CONTENT_ENCODING);
+		if (encoding == null || encoding.stringValue() == null) {
+			return body;
+		}
+		Codec messageCodec;
+		try {
+			messageCodec = Codec.valueOf(encoding.stringValue().toUpperCase(Locale.ROOT));
+		} catch (IllegalArgumentException e) {
+			decodeFailures.increment();
+			throw new IOException("Unknown encoding " + encoding.stringValue() + " of message " + message.messageId(), e);
+		}
+		InputStream decodedBody = Base64.getDecoder().wrap(body);
+		decoded.increment();
+		if (messageCodec == Codec.GZIP) {
+			return new GZIPInputStream(decodedBody, 8192);
+		}
+		if (messageCodec == Codec.DEFLATE) {
+			Inflater inflater = new Inflater(true);
+			return new InflaterInputStream(decodedBody, inflater, 8192) {
+				@Override
+				public void close() throws IOException {
+					try {
+						super.close();
+					} finally {
+						inflater.end();
+					}
+				}
+			};
+		}
+		return decodedBody;
+	}
+
+	public Map<String, Long> getStats() {
+		Map<String, Long> stats = new LinkedHashMap<>();
+		stats.put("encoded", encoded.sum());
+		stats.put("skipped", skipped.sum());
+		stats.put("originalBytes", originalBytes.sum());
+		stats.put("encodedBytes", encodedBytes.sum());
+		stats.put("decoded", decoded.sum());
+		stats.put("decodeFailures", decodeFailures.sum());
+		stats.put("inlined", inlined.sum());
+		stats.put("offloaded", offloaded.sum());
+		return stats;
+	}
+
+	private byte[] compress(byte[] raw) {
+		ByteArrayOutputStream compressed = new ByteArrayOutputStream(raw.length / 4 + 64);
+		Deflater deflater = null;
+		try {
+			OutputStream outputStream;
+			if (codec == Codec.GZIP) {
+				outputStream = new GZIPOutputStream(compressed, 8192);
+			} else {
+				deflater = new Deflater(Deflater.BEST_SPEED, true);
+				outputStream = new DeflaterOutputStream(compressed, deflater, 8192);
+			}
+			try (outputStream) {
+				outputStream.write(raw);
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		} finally {
+			if (deflater != null) {
+				deflater.end();
+			}
+		}
+		return compressed.toByteArray();
+	}
+
+	private byte[] decompress(Codec codec, byte[] compressed) {
+		Inflater inflater = null;
+		try {
+			InputStream inputStream;
+			if (codec == Codec.GZIP) {
+				inputStream = new GZIPInputStream(new ByteArrayInputStream(compressed), 8192);
+			} else if (codec == Codec.DEFLATE) {
+				inflater = new Inflater(true);
+				inputStream = new InflaterInputStream(new ByteArrayInputStream(compressed), inflater, 8192);
+			} else {
+				return compressed;
+			}
+			try (inputStream) {
+				byte[] raw = inputStream.readNBytes(maxDecodedBytes + 1);
+				if (raw.length > maxDecodedBytes) {
+					throw new IOException("Decoded body exceeds " + maxDecodedBytes + " bytes");
+				}
+				return raw;
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		} finally {
+			if (inflater != null) {
+				inflater.end();
+			}
+		}
+	}
+}
@@ -0,0 +1,230 @@
+package com.aws.services.service.sqs;
+
+import com.amazon.sqs.javamessaging.SQSExtendedClientConstants;
+import com.aws.services.config.ApplicationProperties;
+import com.aws.services.config.ByteBudget;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.stereotype.Component;
+import software.amazon.awssdk.core.ResponseBytes;
+import software.amazon.awssdk.core.ResponseInputStream;
+import software.amazon.awssdk.core.async.AsyncResponseTransformer;
+import software.amazon.awssdk.services.s3.S3AsyncClient;
+import software.amazon.awssdk.services.s3.model.GetObjectResponse;
+import software.amazon.awssdk.services.sqs.model.Message;
+import software.amazon.awssdk.services.sqs.model.MessageAttributeValue;
+import software.amazon.payloadoffloading.PayloadS3Pointer;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Resolves messages whose payload the extended client offloaded to S3. The S3 pointers of a received batch
+ * are fetched concurrently over the async client, so a batch costs one S3 round trip instead of one per
+ * message; at most aws.sqs.payload.max.in.flight.bytes of payloads are fetched at once. The receipt handles
+ * of offloaded messages carry the S3 pointer the same way the extended client embeds it, so deleting them
+ * through the extended client also removes the payload.
+ * <p>
+ * Payloads above a caller's size limit are left unresolved and can be read later with {@link #open}, which
+ * streams them from S3 instead of holding them as a String.
+ */
+@Component
+public class SQSPayloadFetcher {
+
+	private static final Logger LOGGER = LogManager.getLogger(SQSPayloadFetcher.class);
+
+	// Attribute of messages sent by extended client versions before 1.1.0
+	private static final String LEGACY_RESERVED_ATTRIBUTE_NAME = "SQSLargePayloadSize";
+	private static final List<String> RESERVED_ATTRIBUTE_NAMES = List.of(
+			SQSExtendedClientConstants.RESERVED_ATTRIBUTE_NAME, LEGACY_RESERVED_ATTRIBUTE_NAME);
+
+	private final S3AsyncClient s3AsyncClient;
+	private final SQSPayloadCodec sqsPayloadCodec;
+	private final ByteBudget inFlightBytes;
+
+	private final LongAdder fetched = new LongAdder();
+	private final LongAdder fetchedBytes = new LongAdder();
+	private final LongAdder deferred = new LongAdder();
+	private final LongAdder streamed = new LongAdder();
+	private final LongAdder failed = new LongAdder();
+
+	public SQSPayloadFetcher(S3AsyncClient s3AsyncClient, SQSPayloadCodec sqsPayloadCodec,
+			ApplicationProperties applicationProperties) {
+		this.s3AsyncClient = s3AsyncClient;
+		this.sqsPayloadCodec = sqsPayloadCodec;
+		this.inFlightBytes = new ByteBudget(applicationProperties.getSqsPayloadMaxInFlightBytes());
+	}
+
+	/**
+	 * @return The message attributes a receive has to request for messages to be decoded and resolved.
+	 */
+	public List<String> messageAttributeNames() {
+		List<String> names = new ArrayList<>(RESERVED_ATTRIBUTE_NAMES);
+		names.add(SQSPayloadCodec.CONTENT_ENCODING);
+		return names;
+	}
+
+	/**
+	 * @return true if the body of the message is an S3 pointer that has not been resolved yet.
+	 */
+	public boolean isOffloaded(Message message) {
+		return RESERVED_ATTRIBUTE_NAMES.stream().anyMatch(message.messageAttributes()::containsKey);
+	}
+
+	/**
+	 * Decodes a received batch and fetches all offloaded payloads concurrently.
+	 *
+	 * @return The resolved messages in receive order. Messages whose payload could not be fetched are left out
+	 * and become visible again after their visibility timeout.
+	 */
+	public List<Message> resolve(List<Message> messages) {
+		return resolve(messages, Long.MAX_VALUE);
+	}
+
+	/**
+	 * Decodes a received batch and fetches the offloaded payloads of up to maxPayloadBytes concurrently.
+	 * Larger payloads stay unresolved, for {@link #open} or {@link #resolveDeferred}.
+	 */
+	public List<Message> resolve(List<Message> messages, long maxPayloadBytes) {
+		List<CompletableFuture<Message>> pending = new ArrayList<>(messages.size());
+		for (Message message : messages) {
+			if (!isOffloaded(message)) {
+				pending.add(CompletableFuture.completedFuture(sqsPayloadCodec.decode(message)));
+			} else if (payloadSize(message) > maxPayloadBytes) {
+				deferred.increment();
+				pending.add(CompletableFuture.supplyAsync(() -> withPointerReceiptHandle(message), Runnable::run));
+			} else {
+				pending.add(fetch(message));
+			}
+		}
+		return join(messages, pending);
+	}
+
+	/**
+	 * Fetches the payloads of messages {@link #resolve} left unresolved; other messages are returned unchanged.
+	 */
+	public List<Message> resolveDeferred(List<Message> messages) {
+		List<CompletableFuture<Message>> pending = new ArrayList<>(messages.size());
+		for (Message message : messages) {
+			pending.add(isOffloaded(message) ? fetch(message) : CompletableFuture.completedFuture(message));
+		}
+		return join(messages, pending);
+	}
+
+	/**
+	 * Opens the payload of a message returned by {@link #resolve}. Unresolved payloads are streamed from S3 and
+	 * decoded as they are read; the caller must close the stream.
+	 */
+	public InputStream open(Message message) throws IOException {
+		if (!isOffloaded(message)) {
+			return new ByteArrayInputStream(message.body().getBytes(StandardCharsets.UTF_8));
+		}
+		PayloadS3Pointer pointer = PayloadS3Pointer.fromJson(message.body());
+		try {
+			ResponseInputStream<GetObjectResponse> payload = s3AsyncClient.getObject(request -> request
+							.bucket(pointer.getS3BucketName()).key(pointer.getS3Key()),
+					AsyncResponseTransformer.<GetObjectResponse>toBlockingInputStream()).join();
+			streamed.increment();
+			return sqsPayloadCodec.decode(message, payload);
+		} catch (CompletionException e) {
+			failed.increment();
+			throw new IOException("Failed to open the payload of message " + message.messageId(), e.getCause());
+		}
+	}
+
+	public Map<String, Long> getStats() {
+		Map<String, Long> stats = new LinkedHashMap<>();
+		stats.put("fetched", fetched.sum());
+		stats.put("fetchedBytes", fetchedBytes.sum());
+		stats.put("deferred", deferred.sum());
+		stats.put("streamed", streamed.sum());
+		stats.put("failed", failed.sum());
+		stats.put("inFlightBytes", inFlightBytes.reserved());
+		return stats;
+	}
+
+	/**
+	 * Starts fetching one payload once it fits in the in-flight budget. Waiting for the budget happens in the
+	 * calling thread, so the fetches of a batch start as soon as earlier ones complete.
+	 */
+	private CompletableFuture<Message> fetch(Message message) {
+		PayloadS3Pointer pointer;
+		try {
+			pointer = PayloadS3Pointer.fromJson(message.body());
+		} catch (RuntimeException e) {
+			return CompletableFuture.failedFuture(e);
+		}
+		long reserved = inFlightBytes.acquire(payloadSize(message));
+		CompletableFuture<ResponseBytes<GetObjectResponse>> payload;
+		try {
+			payload = s3AsyncClient.getObject(request -> request.bucket(pointer.getS3BucketName())
+					.key(pointer.getS3Key()), AsyncResponseTransformer.toBytes());
+		} catch (RuntimeException e) {
+			inFlightBytes.release(reserved);
+			return CompletableFuture.failedFuture(e);
+		}
+		return payload.whenComplete((bytes, error) -> inFlightBytes.release(reserved))
+				.thenApply(bytes -> {
+					fetched.increment();
+					fetchedBytes.add(bytes.asByteBuffer().remaining());
+					Map<String, MessageAttributeValue> attributes = new HashMap<>(message.messageAttributes());
+					RESERVED_ATTRIBUTE_NAMES.forEach(attributes::remove);
+					return sqsPayloadCodec.decode(withPointerReceiptHandle(message).toBuilder()
+							.body(bytes.asUtf8String()).messageAttributes(attributes).build());
+				});
+	}
+
+	private List<Message> join(List<Message> messages, List<CompletableFuture<Message>> pending) {
+		List<Message> resolved = new ArrayList<>(pending.size());
+		for (int i = 0; i < pending.size(); i++) {
+			try {
+				resolved.add(pending.get(i).join());
+			} catch (CompletionException e) {
+				failed.increment();
+				Throwable cause = e.getCause() != null ? e.getCause() : e;
+				LOGGER.error("Failed to fetch the payload of message {}: {}", messages.get(i).messageId(),
+						cause.getMessage());
+			}
+		}
+		return resolved;
+	}
+
+	/**
+	 * Embeds the S3 pointer in the receipt handle in the extended client's format, unless it is already there.
+	 */
+	private static Message withPointerReceiptHandle(Message message) {
+		String receiptHandle = message.receiptHandle();
+		if (receiptHandle == null || receiptHandle.contains(SQSExtendedClientConstants.S3_BUCKET_NAME_MARKER)) {
+			return message;
+		}
+		PayloadS3Pointer pointer = PayloadS3Pointer.fromJson(message.body());
+		return message.toBuilder().receiptHandle(SQSExtendedClientConstants.S3_BUCKET_NAME_MARKER
+				+ pointer.getS3BucketName() + SQSExtendedClientConstants.S3_BUCKET_NAME_MARKER
+				+ SQSExtendedClientConstants.S3_KEY_MARKER + pointer.getS3Key()
+				+ SQSExtendedClientConstants.S3_KEY_MARKER + receiptHandle).build();
+	}
+
+	private static long payloadSize(Message message) {
+		for (String name : RESERVED_ATTRIBUTE_NAMES) {
+			MessageAttributeValue size = message.messageAttributes().get(name);
+			if (size != null && size.stringValue() != null) {
+				try {
+					return Long.parseLong(size.stringValue());
+				} catch (NumberFormatException e) {
+					return 0;
+				}
+			}
+		}
+		return 0;
+	}
+}
@@ -0,0 +1,15 @@
+package com.aws.services.service.sqs;
+
+import software.amazon.awssdk.services.sqs.model.Message;
+
+import java.io.InputStream;
+
+/**
+ * Processes a message delivered by the {@link SQSConsumerEngine} from a stream of its payload, so payloads
+ * offloaded to S3 are read as they arrive instead of being held in memory. The stream is closed after the
+ * handler returns. As with {@link SQSMessageHandler}, the message is deleted when this returns normally.
+ */
+@FunctionalInterface
+public interface SQSPayloadHandler {
+	void handle(Message message, InputStream payload) throws Exception;
+}
@@ -0,0 +1,247 @@
+package com.aws.services.service.sqs;
+
+import com.aws.services.config.ApplicationProperties;
+import jakarta.annotation.PostConstruct;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.stereotype.Component;
+import software.amazon.awssdk.services.sqs.SqsAsyncClient;
+import software.amazon.awssdk.services.sqs.SqsClient;
+import software.amazon.awssdk.services.sqs.model.GetQueueUrlRequest;
+import software.amazon.awssdk.services.sqs.model.QueueDoesNotExistException;
+import software.amazon.awssdk.services.sqs.model.SqsException;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Resolves SQS queue names to queue URLs and keeps them in a bounded cache, so that the
+ * GetQueueUrl round trip is paid once per queue instead of once per request. When the cache is full, expired
+ * entries are dropped first, then entries of queues that do not exist, then the least recently used ones.
+ */
+@Component
+public class SQSQueueRegistry {
+
+	private static final Logger LOGGER = LogManager.getLogger(SQSQueueRegistry.class);
+
+	private final SqsClient sqsClient;
+	private final SqsAsyncClient sqsAsyncClient;
+	private final ApplicationProperties applicationProperties;
+	private final Map<String, QueueUrlEntry> queueUrls = new ConcurrentHashMap<>();
+	// Lookups in progress, so that concurrent misses for a queue share one GetQueueUrl call
+	private final Map<String, CompletableFuture<QueueUrlEntry>> loading = new ConcurrentHashMap<>();
+
+	private final LongAdder hits = new LongAdder();
+	private final LongAdder misses = new LongAdder();
+	private final LongAdder negativeHits = new LongAdder();
+	private final LongAdder evictions = new LongAdder();
+
+	public SQSQueueRegistry(SqsClient sqsClient, SqsAsyncClient sqsAsyncClient, ApplicationProperties applicationProperties) {
+		this.sqsClient = sqsClient;
+		this.sqsAsyncClient = sqsAsyncClient;
+		this.applicationProperties = applicationProperties;
+	}
+
+	/**
+	 * Resolves the configured queues at startup so the first requests do not pay the lookup.
+	 */
+	@PostConstruct
+	public void warmUp() {
+		for (String queueName : applicationProperties.getSqsQueueNames()) {
+			try {
+				LOGGER.info("Queue {} resolved to {}", queueName, getQueueUrl(queueName));
+			} catch (QueueDoesNotExistException e) {
+				LOGGER.warn("Queue {} configured for warm-up does not exist", queueName);
+			} catch (SqsException e) {
+				LOGGER.warn("Failed to warm up queue {}: {}", queueName, e.getMessage());
+			}
+		}
+	}
+
+	/**
+	 * Returns the URL of the queue, calling GetQueueUrl only when there is no live cache entry.
+	 *
+	 * @param queueName The name of the SQS queue.
+	 * @return The queue URL.
+	 * @throws QueueDoesNotExistException if the queue does not exist (possibly served from the negative cache).
+	 */
+	public String getQueueUrl(String queueName) {
+		QueueUrlEntry entry = queueUrls.get(queueName);
+		long now = System.nanoTime();
+		if (entry != null && !entry.isExpired(now)) {
+			entry.touch(now);
+			return fromEntry(queueName, entry, true);
+		}
+		misses.increment();
+		if (entry == null) {
+			ensureCapacity();
+		}
+		CompletableFuture<QueueUrlEntry> lookup = new CompletableFuture<>();
+		CompletableFuture<QueueUrlEntry> pending = loading.putIfAbsent(queueName, lookup);
+		if (pending != null) {
+			try {
+				return fromEntry(queueName, pending.join(), false);
+			} catch (CompletionException e) {
+				throw e.getCause() instanceof RuntimeException cause ? cause : e;
+			}
+		}
+		// The network call runs outside any map lock, so lookups of other queues are not held up
+		try {
+			QueueUrlEntry resolved = load(queueName);
+			queueUrls.put(queueName, resolved);
+			lookup.complete(resolved);
+			return fromEntry(queueName, resolved, false);
+		} catch (RuntimeException e) {
+			lookup.completeExceptionally(e);
+			throw e;
+		} finally {
+			loading.remove(queueName, lookup);
+		}
+	}
+
+	/**
+	 * Non-blocking variant of {@link #getQueueUrl}. Cache hits complete immediately; misses are resolved over
+	 * the async client. Concurrent misses for the same queue may each call GetQueueUrl.
+	 *
+	 * @param queueName The name of the SQS queue.
+	 * @return The queue URL, or a future failed with {@link QueueDoesNotExistException}.
+	 */
+	public CompletableFuture<String> getQueueUrlAsync(String queueName) {
+		QueueUrlEntry entry = queueUrls.get(queueName);
+		long now = System.nanoTime();
+		if (entry != null && !entry.isExpired(now)) {
+			entry.touch(now);
+			try {
+				return CompletableFuture.completedFuture(fromEntry(queueName, entry, true));
+			} catch (QueueDoesNotExistException e) {
+				return CompletableFuture.failedFuture(e);
+			}
+		}
+		misses.increment();
+		if (entry == null) {
+			ensureCapacity();
+		}
+		return sqsAsyncClient.getQueueUrl(GetQueueUrlRequest.builder().queueName(queueName).build())
+				.handle((response, error) -> {
+					Throwable cause = error instanceof CompletionException ? error.getCause() : error;
+					if (cause != null && !(cause instanceof QueueDoesNotExistException)) {
+						throw new CompletionException(cause);
+					}
+					QueueUrlEntry resolved = cause == null
+							? new QueueUrlEntry(response.queueUrl(), applicationProperties.getSqsQueueUrlCacheTtlSeconds())
+							: new QueueUrlEntry(null, applicationProperties.getSqsQueueUrlCacheNegativeTtlSeconds());
+					queueUrls.put(queueName, resolved);
+					return fromEntry(queueName, resolved, false);
+				});
+	}
+
+	/**
+	 * Drops the cached URL of a queue after a call made with it failed, e.g. because the queue was
+	 * deleted and recreated. The entry is only removed if it still holds the given URL.
+	 *
+	 * @param queueName The name of the SQS queue.
+	 * @param queueUrl The URL that turned out to be stale.
+	 */
+	public void invalidate(String queueName, String queueUrl) {
+		QueueUrlEntry current = queueUrls.get(queueName);
+		if (current != null && queueUrl.equals(current.queueUrl) && queueUrls.remove(queueName, current)) {
+			LOGGER.info("Invalidated cached URL of queue {}", queueName);
+		}
+	}
+
+	public Map<String, Long> getStats() {
+		Map<String, Long> stats = new LinkedHashMap<>();
+		stats.put("hits", hits.sum());
+		stats.put("misses", misses.sum());
+		stats.put("negativeHits", negativeHits.sum());
+		stats.put("evictions", evictions.sum());
+		stats.put("size", (long) queueUrls.size());
+		return stats;
+	}
+
+	private String fromEntry(String queueName, QueueUrlEntry entry, boolean cached) {
+		if (entry.queueUrl == null) {
+			if (cached) {
+				negativeHits.increment();
+			}
+			throw QueueDoesNotExistException.builder().message("Queue " + queueName + " does not exist").build();
+		}
+		if (cached) {
+			hits.increment();
+		}
+		return entry.queueUrl;
+	}
+
+	private QueueUrlEntry load(String queueName) {
+		try {
+			String queueUrl = sqsClient.getQueueUrl(GetQueueUrlRequest.builder().queueName(queueName).build()).queueUrl();
+			return new QueueUrlEntry(queueUrl, applicationProperties.getSqsQueueUrlCacheTtlSeconds());
+		} catch (QueueDoesNotExistException e) {
+			return new QueueUrlEntry(null, applicationProperties.getSqsQueueUrlCacheNegativeTtlSeconds());
+		}
+	}
+
+	private void ensureCapacity() {
+		if (queueUrls.size() < applicationProperties.getSqsQueueUrlCacheMaxSize()) {
+			return;
+		}
+		long now = System.nanoTime();
+		if (queueUrls.values().removeIf(entry -> entry.isExpired(now))) {
+			LOGGER.debug("Purged expired queue URL entries");
+		}
+		// Negative entries go first, so that a burst of unknown names cannot push out the queues in use
+		for (Map.Entry<String, QueueUrlEntry> entry : queueUrls.entrySet()) {
+			if (queueUrls.size() < applicationProperties.getSqsQueueUrlCacheMaxSize()) {
+				return;
+			}
+			if (entry.getValue().queueUrl == null && queueUrls.remove(entry.getKey(), entry.getValue())) {
+				evictions.increment();
+			}
+		}
+		while (queueUrls.size() >= applicationProperties.getSqsQueueUrlCacheMaxSize()) {
+			Map.Entry<String, QueueUrlEntry> leastRecentlyUsed = null;
+			for (Map.Entry<String, QueueUrlEntry> entry : queueUrls.entrySet()) {
+				if (leastRecentlyUsed == null
+						|| entry.getValue().lastAccess - leastRecentlyUsed.getValue().lastAccess < 0) {
+					leastRecentlyUsed = entry;
+				}
+			}
+			if (leastRecentlyUsed == null) {
+				return;
+			}
+			if (queueUrls.remove(leastRecentlyUsed.getKey(), leastRecentlyUsed.getValue())) {
+				evictions.increment();
+			}
+		}
+	}
+
+	private static final class QueueUrlEntry {
+		// Last access times closer together than this are not told apart, which saves writes on hot entries
+		private static final long ACCESS_RESOLUTION_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+		private final String queueUrl;
+		private final long expiresAt;
+		private volatile long lastAccess;
+
+		private QueueUrlEntry(String queueUrl, long ttlSeconds) {
+			this.queueUrl = queueUrl;
+			this.lastAccess = System.nanoTime();
+			this.expiresAt = lastAccess + TimeUnit.SECONDS.toNanos(ttlSeconds);
+		}
+
+		private void touch(long now) {
+			if (now - lastAccess >= ACCESS_RESOLUTION_NANOS) {
+				lastAccess = now;
+			}
+		}
+
+		private boolean isExpired(long now) {
+			return now - expiresAt >= 0;
+		}
+	}
+}
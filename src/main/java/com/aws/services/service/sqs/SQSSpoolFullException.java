@@ -0,0 +1,14 @@
+package com.aws.services.service.sqs;
+
+/**
+ * Thrown when a message cannot be spooled because the spool stayed at its disk quota for longer than
+ * aws.sqs.spool.max.wait.millis. The message was not accepted and can be sent again later.
+ */
+public class SQSSpoolFullException extends RuntimeException {
+
+	private static final long serialVersionUID = 1L;
+
+	public SQSSpoolFullException(String message) {
+		super(message);
+	}
+}
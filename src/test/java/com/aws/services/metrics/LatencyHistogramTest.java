@@ -0,0 +1,87 @@
+package com.aws.services.metrics;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class LatencyHistogramTest {
+
+	@Test
+	void smallValuesGetTheirOwnBucket() {
+		for (long value = 0; value < 16; value++) {
+			assertThat(LatencyHistogram.bucketOf(value)).isEqualTo((int) value);
+			assertThat(LatencyHistogram.upperBoundOf((int) value)).isEqualTo(value);
+		}
+	}
+
+	@Test
+	void everyValueFallsBetweenTheBoundsOfItsBucket() {
+		long[] values = {16, 17, 18, 19, 20, 31, 32, 33, 35, 36, 63, 64, 1000, 1023, 1024, 1_000_000,
+				(1L << 40) + 12345, Long.MAX_VALUE / 3, Long.MAX_VALUE - 1, Long.MAX_VALUE};
+		for (long value : values) {
+			int bucket = LatencyHistogram.bucketOf(value);
+
+			assertThat(LatencyHistogram.upperBoundOf(bucket)).as("upper bound of %d", value).isGreaterThanOrEqualTo(value);
+			assertThat(LatencyHistogram.upperBoundOf(bucket - 1)).as("bound below %d", value).isLessThan(value);
+		}
+		assertThat(LatencyHistogram.upperBoundOf(LatencyHistogram.bucketOf(Long.MAX_VALUE))).isEqualTo(Long.MAX_VALUE);
+	}
+
+	@Test
+	void bucketsAreContiguousAndAtMostAnEighthWide() {
+		for (int bucket = 16; bucket < LatencyHistogram.bucketOf(Long.MAX_VALUE); bucket++) {
+			long lower = LatencyHistogram.upperBoundOf(bucket - 1) + 1;
+			long upper = LatencyHistogram.upperBoundOf(bucket);
+
+			assertThat(LatencyHistogram.bucketOf(lower)).isEqualTo(bucket);
+			assertThat(LatencyHistogram.bucketOf(upper)).isEqualTo(bucket);
+			assertThat(upper - lower + 1).as("width of bucket %d", bucket).isLessThanOrEqualTo(lower / 8);
+		}
+	}
+
+	@Test
+	void snapshotReportsPercentilesWithinTheBucketError() {
+		LatencyHistogram histogram = new LatencyHistogram();
+		for (long micros = 1; micros <= 10_000; micros++) {
+			histogram.record(micros);
+		}
+
+		Map<String, Number> snapshot = histogram.snapshot();
+
+		assertThat(snapshot).containsEntry("count", 10_000L).containsEntry("meanMicros", 5000L)
+				.containsEntry("maxMicros", 10_000L);
+		assertPercentile(snapshot, "p50Micros", 5000);
+		assertPercentile(snapshot, "p90Micros", 9000);
+		assertPercentile(snapshot, "p99Micros", 9900);
+		assertPercentile(snapshot, "p999Micros", 9990);
+	}
+
+	@Test
+	void percentilesNeverExceedTheMaximum() {
+		LatencyHistogram histogram = new LatencyHistogram();
+		histogram.record(1000);
+
+		assertThat(histogram.snapshot()).containsEntry("p999Micros", 1000L).containsEntry("maxMicros", 1000L);
+	}
+
+	@Test
+	void emptySnapshotIsAllZero() {
+		assertThat(new LatencyHistogram().snapshot()).containsEntry("count", 0L).containsEntry("meanMicros", 0L)
+				.containsEntry("p50Micros", 0L).containsEntry("maxMicros", 0L);
+	}
+
+	@Test
+	void negativeDurationsAreRecordedAsZero() {
+		LatencyHistogram histogram = new LatencyHistogram();
+		histogram.record(-5);
+
+		assertThat(histogram.snapshot()).containsEntry("count", 1L).containsEntry("p50Micros", 0L)
+				.containsEntry("maxMicros", 0L);
+	}
+
+	private static void assertPercentile(Map<String, Number> snapshot, String name, long expected) {
+		assertThat(snapshot.get(name).longValue()).as(name).isBetween(expected, expected + expected / 8);
+	}
+}
@@ -0,0 +1,64 @@
+package com.aws.services.service.s3;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+import java.util.zip.CRC32C;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class S3ChecksumsTest {
+
+	@Test
+	void combiningTheChecksumsOfTwoBlocksGivesTheChecksumOfBoth() {
+		Random random = new Random(42);
+		byte[] data = new byte[1 << 16];
+		random.nextBytes(data);
+		int whole = crc32c(data, 0, data.length);
+
+		for (int split : new int[]{0, 1, 3, 4, 7, 8, 1000, 4096, data.length - 1, data.length}) {
+			int first = crc32c(data, 0, split);
+			int second = crc32c(data, split, data.length - split);
+
+			assertThat(S3Checksums.combineCrc32c(first, second, data.length - split)).as("split at %d", split)
+					.isEqualTo(whole);
+		}
+	}
+
+	@Test
+	void combinesTheChecksumsOfManyRanges() {
+		Random random = new Random(7);
+		byte[] data = new byte[100_003];
+		random.nextBytes(data);
+		int rangeSize = 8191;
+
+		int combined = 0;
+		for (int offset = 0; offset < data.length; offset += rangeSize) {
+			int length = Math.min(rangeSize, data.length - offset);
+			combined = S3Checksums.combineCrc32c(combined, crc32c(data, offset, length), length);
+		}
+
+		assertThat(combined).isEqualTo(crc32c(data, 0, data.length));
+	}
+
+	@Test
+	void combiningWithAnEmptyBlockKeepsTheFirstChecksum() {
+		int crc = crc32c(new byte[]{1, 2, 3}, 0, 3);
+
+		assertThat(S3Checksums.combineCrc32c(crc, 0, 0)).isEqualTo(crc);
+	}
+
+	@Test
+	void compositeChecksumIsTheChecksumOfThePartChecksumsAndThePartCount() {
+		byte[] partChecksums = {0, 0, 0, 1, 0, 0, 0, 2};
+
+		assertThat(S3Checksums.compositeCrc32c(new int[]{1, 2}))
+				.isEqualTo(S3Checksums.toBase64(crc32c(partChecksums, 0, partChecksums.length)) + "-2");
+	}
+
+	private static int crc32c(byte[] data, int offset, int length) {
+		CRC32C crc32c = new CRC32C();
+		crc32c.update(data, offset, length);
+		return (int) crc32c.getValue();
+	}
+}
@@ -0,0 +1,259 @@
+package com.aws.services.service.s3;
+
+import com.aws.services.config.AWSThreadFactory;
+import com.aws.services.config.ApplicationProperties;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.test.util.ReflectionTestUtils;
+import software.amazon.awssdk.core.ResponseBytes;
+import software.amazon.awssdk.core.sync.RequestBody;
+import software.amazon.awssdk.services.s3.S3AsyncClient;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.DeleteObjectRequest;
+import software.amazon.awssdk.services.s3.model.GetObjectRequest;
+import software.amazon.awssdk.services.s3.model.GetObjectResponse;
+import software.amazon.awssdk.services.s3.model.ListObjectsV2Request;
+import software.amazon.awssdk.services.s3.model.ListObjectsV2Response;
+import software.amazon.awssdk.services.s3.model.NoSuchKeyException;
+import software.amazon.awssdk.services.s3.model.PutObjectRequest;
+import software.amazon.awssdk.services.s3.model.S3Object;
+import software.amazon.awssdk.services.s3.paginators.ListObjectsV2Iterable;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class S3ObjectPackerTest {
+
+	private static final String BUCKET = "bucket";
+	private static final String PREFIX = "packed/";
+
+	// The objects of the bucket by key
+	private final Map<String, byte[]> store = new ConcurrentSkipListMap<>();
+	private final AtomicReference<Hold> heldArchivePut = new AtomicReference<>();
+	private final List<S3ObjectPacker> packers = new ArrayList<>();
+	private S3Client s3Client;
+
+	@BeforeEach
+	void setUp() {
+		s3Client = mock(S3Client.class);
+		when(s3Client.putObject(any(PutObjectRequest.class), any(RequestBody.class))).thenAnswer(invocation -> {
+			String key = invocation.<PutObjectRequest>getArgument(0).key();
+			byte[] data;
+			try (InputStream in = invocation.<RequestBody>getArgument(1).contentStreamProvider().newStream()) {
+				data = in.readAllBytes();
+			}
+			Hold hold = key.endsWith(S3ObjectPacker.ARCHIVE_SUFFIX) ? heldArchivePut.getAndSet(null) : null;
+			if (hold != null) {
+				hold.entered.countDown();
+				hold.released.await();
+			}
+			store.put(key, data);
+			return null;
+		});
+		when(s3Client.getObjectAsBytes(any(GetObjectRequest.class))).thenAnswer(invocation -> {
+			GetObjectRequest request = invocation.getArgument(0);
+			byte[] data = store.get(request.key());
+			if (data == null) {
+				throw NoSuchKeyException.builder().message(request.key()).build();
+			}
+			if (request.range() != null) {
+				String[] range = request.range().substring("bytes=".length()).split("-");
+				data = Arrays.copyOfRange(data, Integer.parseInt(range[0]), Integer.parseInt(range[1]) + 1);
+			}
+			return ResponseBytes.fromByteArray(GetObjectResponse.builder().build(), data);
+		});
+		doAnswer(invocation -> {
+			DeleteObjectRequest.Builder request = DeleteObjectRequest.builder();
+			invocation.<Consumer<DeleteObjectRequest.Builder>>getArgument(0).accept(request);
+			store.remove(request.build().key());
+			return null;
+		}).when(s3Client).deleteObject(any(Consumer.class));
+		when(s3Client.listObjectsV2(any(ListObjectsV2Request.class))).thenAnswer(invocation -> {
+			String prefix = invocation.<ListObjectsV2Request>getArgument(0).prefix();
+			return ListObjectsV2Response.builder().isTruncated(false).contents(store.keySet().stream()
+					.filter(key -> key.startsWith(prefix))
+					.map(key -> S3Object.builder().key(key).size((long) store.get(key).length).build())
+					.toList()).build();
+		});
+		when(s3Client.listObjectsV2Paginator(any(ListObjectsV2Request.class))).thenAnswer(
+				invocation -> new ListObjectsV2Iterable(s3Client, invocation.getArgument(0)));
+	}
+
+	@AfterEach
+	void tearDown() throws InterruptedException {
+		Hold hold = heldArchivePut.getAndSet(null);
+		if (hold != null) {
+			hold.released.countDown();
+		}
+		for (S3ObjectPacker packer : packers) {
+			packer.shutdown();
+		}
+	}
+
+	@Test
+	void readsPackedObjectsBackAfterARestart() {
+		S3ObjectPacker packer = start();
+		String eTag = packer.put("a", bytes("first")).join();
+		packer.put("b", bytes("second")).join();
+
+		assertThat(packer.lookup("a").eTag()).isEqualTo(eTag);
+		assertThat(read(packer, "a")).isEqualTo("first");
+
+		S3ObjectPacker restarted = start();
+		assertThat(restarted.list("")).containsExactly("a", "b");
+		assertThat(read(restarted, "b")).isEqualTo("second");
+	}
+
+	@Test
+	void deleteDuringTheWriteOfItsArchiveKeepsTheKeyDeleted() throws Exception {
+		S3ObjectPacker packer = start();
+		Hold hold = holdNextArchivePut();
+		CompletableFuture<String> put = packer.put("a", bytes("first"));
+		hold.awaitEntered();
+
+		CompletableFuture<Boolean> delete = packer.delete("a");
+		hold.release();
+
+		assertThat(delete.get(5, TimeUnit.SECONDS)).isTrue();
+		assertThat(put.get(5, TimeUnit.SECONDS)).isNotNull();
+		assertThat(packer.lookup("a")).isNull();
+		// The archive has no live entry left, so it is removed with its index
+		assertThat(store).isEmpty();
+		assertThat(start().list("")).isEmpty();
+	}
+
+	@Test
+	void anOlderWriteThatCommitsLastDoesNotHideANewerOne() throws Exception {
+		S3ObjectPacker packer = start();
+		Hold hold = holdNextArchivePut();
+		CompletableFuture<String> first = packer.put("a", bytes("first"));
+		hold.awaitEntered();
+
+		String second = packer.put("a", bytes("second")).get(5, TimeUnit.SECONDS);
+		hold.release();
+		first.get(5, TimeUnit.SECONDS);
+		awaitArchives(1);
+
+		assertThat(packer.lookup("a").eTag()).isEqualTo(second);
+		assertThat(read(packer, "a")).isEqualTo("second");
+		assertThat(read(start(), "a")).isEqualTo("second");
+	}
+
+	@Test
+	void aCompactedCopyDoesNotReviveAKeyDeletedWhileItIsWritten() throws Exception {
+		S3ObjectPacker packer = start();
+		CompletableFuture.allOf(packer.put("a", bytes("x".repeat(100))), packer.put("b", bytes("y".repeat(100))))
+				.join();
+		CompletableFuture.allOf(packer.put("c", bytes("z".repeat(100))), packer.put("d", bytes("w".repeat(100))))
+				.join();
+		// Leaves the archive of a and b half live, below the compaction ratio
+		packer.delete("a").get(5, TimeUnit.SECONDS);
+
+		Hold hold = holdNextArchivePut();
+		CompletableFuture<Map<String, Long>> compaction = CompletableFuture.supplyAsync(packer::compact);
+		hold.awaitEntered();
+		CompletableFuture<Boolean> delete = packer.delete("b");
+		hold.release();
+
+		assertThat(compaction.get(5, TimeUnit.SECONDS)).containsEntry("archives", 1L);
+		assertThat(delete.get(5, TimeUnit.SECONDS)).isTrue();
+		assertThat(packer.lookup("b")).isNull();
+		assertThat(packer.list("")).containsExactly("c", "d");
+		assertThat(start().list("")).containsExactly("c", "d");
+	}
+
+	@Test
+	void deleteOfAPendingObjectNeverWritesIt() throws Exception {
+		S3ObjectPacker packer = start();
+		Hold hold = holdNextArchivePut();
+		packer.put("a", bytes("first"));
+		hold.awaitEntered();
+		// Queued behind the archive being written
+		CompletableFuture<String> pending = packer.put("b", bytes("second"));
+
+		assertThat(packer.delete("b").get(5, TimeUnit.SECONDS)).isTrue();
+		assertThat(pending).isDone();
+		hold.release();
+		awaitArchives(1);
+
+		assertThat(packer.list("")).containsExactly("a");
+		assertThat(packer.delete("b").get(5, TimeUnit.SECONDS)).isFalse();
+	}
+
+	private S3ObjectPacker start() {
+		ApplicationProperties applicationProperties = new ApplicationProperties();
+		ReflectionTestUtils.setField(applicationProperties, "s3Bucket", BUCKET);
+		ReflectionTestUtils.setField(applicationProperties, "s3ChecksumAlgorithm", "CRC32C");
+		ReflectionTestUtils.setField(applicationProperties, "s3PackEnabled", true);
+		ReflectionTestUtils.setField(applicationProperties, "s3PackPrefix", PREFIX);
+		ReflectionTestUtils.setField(applicationProperties, "s3PackMaxObjectBytes", 64L * 1024);
+		ReflectionTestUtils.setField(applicationProperties, "s3PackFlushBytes", 1L << 20);
+		ReflectionTestUtils.setField(applicationProperties, "s3PackFlushIntervalMillis", 10L);
+		ReflectionTestUtils.setField(applicationProperties, "s3PackFlushConcurrency", 2);
+		ReflectionTestUtils.setField(applicationProperties, "s3PackCompactionLiveRatio", 0.75);
+		S3ObjectPacker packer = new S3ObjectPacker(s3Client, mock(S3AsyncClient.class),
+				new S3Checksums(applicationProperties), applicationProperties,
+				new AWSThreadFactory(new MockEnvironment()));
+		packer.start();
+		packers.add(packer);
+		return packer;
+	}
+
+	private Hold holdNextArchivePut() {
+		Hold hold = new Hold();
+		heldArchivePut.set(hold);
+		return hold;
+	}
+
+	/**
+	 * Waits until the indexes are rewritten and only the given number of archives is left in the bucket.
+	 */
+	private void awaitArchives(int archives) throws InterruptedException {
+		long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+		while (store.keySet().stream().filter(key -> key.endsWith(S3ObjectPacker.ARCHIVE_SUFFIX)).count() != archives) {
+			assertThat(System.nanoTime()).as("%d archives left in time", archives).isLessThan(deadline);
+			Thread.sleep(10);
+		}
+	}
+
+	private static String read(S3ObjectPacker packer, String key) {
+		return new String(packer.read(packer.lookup(key)), StandardCharsets.UTF_8);
+	}
+
+	private static ByteBuffer bytes(String data) {
+		return ByteBuffer.wrap(data.getBytes(StandardCharsets.UTF_8));
+	}
+
+	private static final class Hold {
+		private final CountDownLatch entered = new CountDownLatch(1);
+		private final CountDownLatch released = new CountDownLatch(1);
+
+		private void awaitEntered() throws InterruptedException {
+			assertThat(entered.await(5, TimeUnit.SECONDS)).as("archive write started").isTrue();
+		}
+
+		private void release() {
+			released.countDown();
+		}
+	}
+}
@@ -0,0 +1,58 @@
+package com.aws.services.service.s3;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class S3PrefixDownloaderTest {
+
+	@TempDir
+	Path destination;
+
+	@Test
+	void keepsTheKeyHierarchyBelowThePrefix() {
+		assertThat(S3PrefixDownloader.resolveTarget(destination, "data/", "data/2024/01/file.json"))
+				.isEqualTo(destination.resolve("2024/01/file.json"));
+	}
+
+	@Test
+	void usesTheWholeKeyWhenItDoesNotStartWithThePrefix() {
+		assertThat(S3PrefixDownloader.resolveTarget(destination, "data/", "other/file.json"))
+				.isEqualTo(destination.resolve("other/file.json"));
+		assertThat(S3PrefixDownloader.resolveTarget(destination, null, "file.json"))
+				.isEqualTo(destination.resolve("file.json"));
+	}
+
+	@Test
+	void usesTheFileNameOfAKeyEqualToThePrefix() {
+		assertThat(S3PrefixDownloader.resolveTarget(destination, "data/file.json", "data/file.json"))
+				.isEqualTo(destination.resolve("file.json"));
+	}
+
+	@Test
+	void keepsAbsoluteKeysInsideTheDestination() {
+		assertThat(S3PrefixDownloader.resolveTarget(destination, "", "/etc/passwd"))
+				.isEqualTo(destination.resolve("etc/passwd"));
+		assertThat(S3PrefixDownloader.resolveTarget(destination, "data", "data//etc/passwd"))
+				.isEqualTo(destination.resolve("etc/passwd"));
+	}
+
+	@Test
+	void rejectsKeysThatEscapeTheDestination() {
+		assertThat(S3PrefixDownloader.resolveTarget(destination, "data/", "data/../../etc/passwd")).isNull();
+		assertThat(S3PrefixDownloader.resolveTarget(destination, "data/", "data/a/../../../x")).isNull();
+		assertThat(S3PrefixDownloader.resolveTarget(destination, "", "../sibling/file")).isNull();
+		assertThat(S3PrefixDownloader.resolveTarget(destination, "data/", "data/..")).isNull();
+		assertThat(S3PrefixDownloader.resolveTarget(destination, "data/", "data/a/..")).isNull();
+		assertThat(S3PrefixDownloader.resolveTarget(destination, "data/", "data/.")).isNull();
+	}
+
+	@Test
+	void allowsDotSegmentsThatStayInside() {
+		assertThat(S3PrefixDownloader.resolveTarget(destination, "data/", "data/a/../b/./file"))
+				.isEqualTo(destination.resolve("b/file"));
+	}
+}
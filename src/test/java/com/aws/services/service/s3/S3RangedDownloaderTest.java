@@ -0,0 +1,241 @@
+package com.aws.services.service.s3;
+
+import com.aws.services.config.AWSThreadFactory;
+import com.aws.services.config.ApplicationProperties;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.test.util.ReflectionTestUtils;
+import software.amazon.awssdk.core.ResponseInputStream;
+import software.amazon.awssdk.http.AbortableInputStream;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.GetObjectRequest;
+import software.amazon.awssdk.services.s3.model.GetObjectResponse;
+import software.amazon.awssdk.services.s3.model.HeadObjectRequest;
+import software.amazon.awssdk.services.s3.model.HeadObjectResponse;
+import software.amazon.awssdk.services.s3.model.S3Exception;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.stream.LongStream;
+import java.util.zip.CRC32C;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class S3RangedDownloaderTest {
+
+	private static final String BUCKET = "bucket";
+	private static final String KEY = "large.bin";
+	private static final int RANGE_SIZE = 1024;
+
+	@TempDir
+	Path directory;
+
+	// The offsets of the ranges fetched successfully
+	private final List<Long> fetched = new CopyOnWriteArrayList<>();
+	private final S3Client s3Client = mock(S3Client.class);
+	private byte[] object;
+	private String eTag;
+	private String reportedChecksum;
+	// Ranges at or above this offset fail
+	private long failFrom = Long.MAX_VALUE;
+	// The size of every part but the last, 0 for an object uploaded in one part
+	private long partSize;
+	private S3RangedDownloader downloader;
+
+	@BeforeEach
+	void setUp() {
+		setObject(randomBytes(10 * RANGE_SIZE, 1), "\"v1\"");
+		when(s3Client.headObject(any(HeadObjectRequest.class))).thenAnswer(invocation -> {
+			Integer partNumber = invocation.<HeadObjectRequest>getArgument(0).partNumber();
+			long contentLength = partNumber == null ? object.length
+					: Math.min(partSize, object.length - (partNumber - 1) * partSize);
+			return HeadObjectResponse.builder().contentLength(contentLength).eTag(eTag)
+					.checksumCRC32C(reportedChecksum).build();
+		});
+		when(s3Client.getObject(any(GetObjectRequest.class))).thenAnswer(invocation -> {
+			String[] range = invocation.<GetObjectRequest>getArgument(0).range().substring("bytes=".length()).split("-");
+			long from = Long.parseLong(range[0]);
+			if (from >= failFrom) {
+				throw S3Exception.builder().statusCode(500).message("Internal error").build();
+			}
+			fetched.add(from);
+			return new ResponseInputStream<>(GetObjectResponse.builder().build(), AbortableInputStream.create(
+					new ByteArrayInputStream(Arrays.copyOfRange(object, (int) from, Integer.parseInt(range[1]) + 1))));
+		});
+	}
+
+	@AfterEach
+	void tearDown() {
+		if (downloader != null) {
+			downloader.shutdown();
+		}
+	}
+
+	@Test
+	void resumesWithTheMissingRangesOnly() throws IOException {
+		downloader = start("CRC32C", RANGE_SIZE);
+		Path target = directory.resolve("large.bin");
+		failFrom = 4 * RANGE_SIZE;
+
+		assertThatThrownBy(() -> downloader.download(BUCKET, KEY, target))
+				.isInstanceOfSatisfying(S3RangedDownloadException.class,
+						e -> assertThat(e.isResumable()).isTrue());
+		assertThat(fetched).containsExactly(0L, 1024L, 2048L, 3072L);
+		assertThat(target.resolveSibling("large.bin" + S3RangedDownloader.CHECKPOINT_SUFFIX)).exists();
+
+		fetched.clear();
+		failFrom = Long.MAX_VALUE;
+		downloader.download(BUCKET, KEY, target);
+
+		assertThat(fetched).containsExactlyElementsOf(offsets(4, 10, RANGE_SIZE));
+		assertThat(Files.readAllBytes(target)).isEqualTo(object);
+		assertThat(target.resolveSibling("large.bin" + S3RangedDownloader.CHECKPOINT_SUFFIX)).doesNotExist();
+		assertThat(target.resolveSibling("large.bin" + S3RangedDownloader.PARTIAL_SUFFIX)).doesNotExist();
+	}
+
+	@Test
+	void ignoresACheckpointOfAnotherETag() throws IOException {
+		downloader = start("CRC32C", RANGE_SIZE);
+		Path target = directory.resolve("large.bin");
+		failFrom = 4 * RANGE_SIZE;
+		assertThatThrownBy(() -> downloader.download(BUCKET, KEY, target))
+				.isInstanceOf(S3RangedDownloadException.class);
+
+		setObject(randomBytes(10 * RANGE_SIZE, 2), "\"v2\"");
+		fetched.clear();
+		failFrom = Long.MAX_VALUE;
+		downloader.download(BUCKET, KEY, target);
+
+		assertThat(fetched).containsExactlyElementsOf(offsets(0, 10, RANGE_SIZE));
+		assertThat(Files.readAllBytes(target)).isEqualTo(object);
+	}
+
+	@Test
+	void ignoresACheckpointOfAnotherRangeSize() throws IOException {
+		downloader = start("CRC32C", RANGE_SIZE);
+		Path target = directory.resolve("large.bin");
+		failFrom = 4 * RANGE_SIZE;
+		assertThatThrownBy(() -> downloader.download(BUCKET, KEY, target))
+				.isInstanceOf(S3RangedDownloadException.class);
+		downloader.shutdown();
+
+		downloader = start("CRC32C", 2 * RANGE_SIZE);
+		fetched.clear();
+		failFrom = Long.MAX_VALUE;
+		downloader.download(BUCKET, KEY, target);
+
+		assertThat(fetched).containsExactlyElementsOf(offsets(0, 5, 2 * RANGE_SIZE));
+		assertThat(Files.readAllBytes(target)).isEqualTo(object);
+	}
+
+	@Test
+	void verifiesACompositeChecksumWithRangesSplitAtPartBoundaries() throws IOException {
+		downloader = start("CRC32C", RANGE_SIZE);
+		Path target = directory.resolve("large.bin");
+		partSize = 3000;
+		int[] partChecksums = new int[4];
+		for (int part = 0; part < partChecksums.length; part++) {
+			CRC32C crc32c = new CRC32C();
+			int from = (int) (part * partSize);
+			crc32c.update(object, from, (int) Math.min(partSize, object.length - from));
+			partChecksums[part] = (int) crc32c.getValue();
+		}
+		reportedChecksum = S3Checksums.compositeCrc32c(partChecksums);
+
+		downloader.download(BUCKET, KEY, target);
+
+		assertThat(fetched).contains(0L, 2048L, 3000L, 6000L, 9000L).hasSize(11);
+		assertThat(Files.readAllBytes(target)).isEqualTo(object);
+	}
+
+	@Test
+	void rejectsAFileThatDoesNotMatchItsCrc32c() {
+		downloader = start("CRC32C", RANGE_SIZE);
+		Path target = directory.resolve("large.bin");
+		reportedChecksum = S3Checksums.toBase64(12345);
+
+		assertThatThrownBy(() -> downloader.download(BUCKET, KEY, target))
+				.isInstanceOfSatisfying(S3RangedDownloadException.class, e -> {
+					assertThat(e.isResumable()).isFalse();
+					assertThat(e).hasMessageContaining("does not match CRC32C");
+				});
+		assertThat(target).doesNotExist();
+		assertThat(target.resolveSibling("large.bin" + S3RangedDownloader.CHECKPOINT_SUFFIX)).doesNotExist();
+		assertThat(target.resolveSibling("large.bin" + S3RangedDownloader.PARTIAL_SUFFIX)).doesNotExist();
+	}
+
+	@Test
+	void verifiesTheFileAgainstTheETagWithoutChecksums() throws IOException {
+		downloader = start("NONE", RANGE_SIZE);
+		Path target = directory.resolve("large.bin");
+		setObject(object, "\"" + HexFormat.of().formatHex(md5(object)) + "\"");
+
+		downloader.download(BUCKET, KEY, target);
+
+		assertThat(Files.readAllBytes(target)).isEqualTo(object);
+	}
+
+	@Test
+	void rejectsAFileThatDoesNotMatchItsETag() {
+		downloader = start("NONE", RANGE_SIZE);
+		Path target = directory.resolve("large.bin");
+		setObject(object, "\"" + HexFormat.of().formatHex(md5(new byte[1])) + "\"");
+
+		assertThatThrownBy(() -> downloader.download(BUCKET, KEY, target))
+				.isInstanceOf(S3RangedDownloadException.class).hasMessageContaining("does not match ETag");
+		assertThat(target).doesNotExist();
+	}
+
+	private S3RangedDownloader start(String checksumAlgorithm, long rangeSize) {
+		ApplicationProperties applicationProperties = new ApplicationProperties();
+		ReflectionTestUtils.setField(applicationProperties, "s3ChecksumAlgorithm", checksumAlgorithm);
+		ReflectionTestUtils.setField(applicationProperties, "s3DownloadRangeSizeBytes", rangeSize);
+		// One range at a time, so the ranges complete in order
+		ReflectionTestUtils.setField(applicationProperties, "s3DownloadRangeConcurrency", 1);
+		ReflectionTestUtils.setField(applicationProperties, "s3DownloadRangeMaxRetries", 0);
+		return new S3RangedDownloader(s3Client, applicationProperties, new S3Checksums(applicationProperties),
+				new AWSThreadFactory(new MockEnvironment()));
+	}
+
+	private void setObject(byte[] data, String objectETag) {
+		object = data;
+		eTag = objectETag;
+		CRC32C crc32c = new CRC32C();
+		crc32c.update(data);
+		reportedChecksum = S3Checksums.toBase64((int) crc32c.getValue());
+	}
+
+	private static List<Long> offsets(int fromRange, int toRange, long rangeSize) {
+		return LongStream.range(fromRange, toRange).map(range -> range * rangeSize).boxed().toList();
+	}
+
+	private static byte[] randomBytes(int size, long seed) {
+		byte[] data = new byte[size];
+		new Random(seed).nextBytes(data);
+		return data;
+	}
+
+	private static byte[] md5(byte[] data) {
+		try {
+			return MessageDigest.getInstance("MD5").digest(data);
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+}
@@ -0,0 +1,133 @@
+package com.aws.services.service.s3;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class S3SyncManifestTest {
+
+	private static final String BUCKET = "bucket";
+	private static final String PREFIX = "data/";
+
+	@TempDir
+	Path directory;
+
+	@Test
+	void replaysTheJournalAfterARestart() throws IOException {
+		try (S3SyncManifest manifest = S3SyncManifest.load(directory, BUCKET, PREFIX)) {
+			manifest.put("data/a", entry("a", 1));
+			manifest.put("data/b", entry("b", 2));
+			manifest.remove("data/a");
+		}
+		assertThat(directory.resolve(S3SyncManifest.JOURNAL_FILE)).exists();
+
+		try (S3SyncManifest manifest = S3SyncManifest.load(directory, BUCKET, PREFIX)) {
+			assertThat(manifest.keys()).containsExactly("data/b");
+			assertThat(manifest.get("data/b")).isEqualTo(entry("b", 2));
+		}
+		// Loading folds the journal into the snapshot
+		assertThat(directory.resolve(S3SyncManifest.JOURNAL_FILE)).doesNotExist();
+	}
+
+	@Test
+	void replaysTheJournalOverTheSnapshot() throws IOException {
+		try (S3SyncManifest manifest = S3SyncManifest.load(directory, BUCKET, PREFIX)) {
+			manifest.put("data/a", entry("a1", 1));
+			manifest.put("data/b", entry("b", 2));
+			manifest.compact();
+			manifest.put("data/a", entry("a2", 3));
+			manifest.remove("data/b");
+			manifest.put("data/c", entry("c", 4));
+		}
+
+		try (S3SyncManifest manifest = S3SyncManifest.load(directory, BUCKET, PREFIX)) {
+			assertThat(manifest.keys()).containsExactlyInAnyOrder("data/a", "data/c");
+			assertThat(manifest.get("data/a")).isEqualTo(entry("a2", 3));
+		}
+	}
+
+	@Test
+	void ignoresATornRecordAtTheEndOfTheJournal() throws IOException {
+		try (S3SyncManifest manifest = S3SyncManifest.load(directory, BUCKET, PREFIX)) {
+			manifest.put("data/a", entry("a", 1));
+			manifest.put("data/b", entry("b", 2));
+		}
+		Path journal = directory.resolve(S3SyncManifest.JOURNAL_FILE);
+		try (FileChannel channel = FileChannel.open(journal, StandardOpenOption.WRITE)) {
+			channel.truncate(channel.size() - 3);
+		}
+
+		try (S3SyncManifest manifest = S3SyncManifest.load(directory, BUCKET, PREFIX)) {
+			assertThat(manifest.keys()).containsExactly("data/a");
+			manifest.put("data/c", entry("c", 3));
+		}
+		// Records appended after the recovery do not follow the torn one
+		try (S3SyncManifest manifest = S3SyncManifest.load(directory, BUCKET, PREFIX)) {
+			assertThat(manifest.keys()).containsExactlyInAnyOrder("data/a", "data/c");
+		}
+	}
+
+	@Test
+	void compactionReplacesTheSnapshotAndEmptiesTheJournal() throws IOException {
+		try (S3SyncManifest manifest = S3SyncManifest.load(directory, BUCKET, PREFIX)) {
+			for (int i = 0; i < 1000; i++) {
+				manifest.put("data/" + i, entry("e" + i, i));
+			}
+			manifest.compact();
+			assertThat(directory.resolve(S3SyncManifest.JOURNAL_FILE)).doesNotExist();
+			assertThat(directory.resolve(S3SyncManifest.MANIFEST_FILE + ".tmp")).doesNotExist();
+			manifest.put("data/after", entry("after", 1));
+		}
+
+		try (S3SyncManifest manifest = S3SyncManifest.load(directory, BUCKET, PREFIX)) {
+			assertThat(manifest.size()).isEqualTo(1001);
+			assertThat(manifest.get("data/500")).isEqualTo(entry("e500", 500));
+			assertThat(manifest.get("data/after")).isEqualTo(entry("after", 1));
+		}
+	}
+
+	@Test
+	void ignoresTheStateOfAnotherBucket() throws IOException {
+		writeEntry(BUCKET, PREFIX);
+
+		try (S3SyncManifest manifest = S3SyncManifest.load(directory, "other-bucket", PREFIX)) {
+			assertThat(manifest.size()).isZero();
+		}
+	}
+
+	@Test
+	void ignoresTheStateOfAnotherPrefix() throws IOException {
+		writeEntry(BUCKET, PREFIX);
+
+		try (S3SyncManifest manifest = S3SyncManifest.load(directory, BUCKET, "other/")) {
+			assertThat(manifest.size()).isZero();
+		}
+	}
+
+	@Test
+	void ignoresAManifestWithAnUnknownFormat() throws IOException {
+		Files.write(directory.resolve(S3SyncManifest.MANIFEST_FILE), new byte[]{1, 2, 3, 4, 5, 6, 7, 8});
+
+		try (S3SyncManifest manifest = S3SyncManifest.load(directory, BUCKET, PREFIX)) {
+			assertThat(manifest.size()).isZero();
+		}
+	}
+
+	private void writeEntry(String bucketName, String prefix) throws IOException {
+		try (S3SyncManifest manifest = S3SyncManifest.load(directory, bucketName, prefix)) {
+			manifest.put(prefix + "a", entry("a", 1));
+			manifest.compact();
+		}
+	}
+
+	private static S3SyncManifest.Entry entry(String eTag, long size) {
+		return new S3SyncManifest.Entry("\"" + eTag + "\"", size, 1_700_000_000_000L + size);
+	}
+}
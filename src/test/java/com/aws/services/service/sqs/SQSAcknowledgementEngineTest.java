@@ -0,0 +1,90 @@
+package com.aws.services.service.sqs;
+
+import com.aws.services.config.AWSThreadFactory;
+import com.aws.services.config.ApplicationProperties;
+import com.aws.services.model.SQSEntryResult;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.test.util.ReflectionTestUtils;
+import software.amazon.awssdk.services.sqs.SqsClient;
+import software.amazon.awssdk.services.sqs.model.BatchResultErrorEntry;
+import software.amazon.awssdk.services.sqs.model.DeleteMessageBatchRequest;
+import software.amazon.awssdk.services.sqs.model.DeleteMessageBatchResponse;
+import software.amazon.awssdk.services.sqs.model.DeleteMessageBatchResultEntry;
+import software.amazon.awssdk.services.sqs.model.Message;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class SQSAcknowledgementEngineTest {
+
+	private static final String QUEUE_URL = "https://sqs.us-east-1.amazonaws.com/000000000000/queue";
+
+	private final SqsClient sqsClient = mock(SqsClient.class);
+	private SQSAcknowledgementEngine engine;
+
+	@AfterEach
+	void tearDown() throws InterruptedException {
+		engine.shutdown();
+	}
+
+	@Test
+	void failsEntriesMissingFromTheResponse() throws Exception {
+		when(sqsClient.deleteMessageBatch(any(DeleteMessageBatchRequest.class))).thenReturn(
+				DeleteMessageBatchResponse.builder()
+						.successful(DeleteMessageBatchResultEntry.builder().id("0").build())
+						.failed(BatchResultErrorEntry.builder().id("1").code("ReceiptHandleIsInvalid")
+								.senderFault(true).build())
+						.build());
+		engine = start(0);
+
+		List<SQSEntryResult> results = engine.acknowledge(QUEUE_URL, messages(3)).get(5, TimeUnit.SECONDS);
+
+		assertThat(results).extracting(SQSEntryResult::id).containsExactly("m0", "m1", "m2");
+		assertThat(results).extracting(SQSEntryResult::success).containsExactly(true, false, false);
+		assertThat(results.get(1).errorCode()).isEqualTo("ReceiptHandleIsInvalid");
+		assertThat(results.get(2).errorMessage()).isEqualTo("No result returned for entry");
+	}
+
+	@Test
+	void failsAcknowledgementsSubmittedAfterShutdown() throws Exception {
+		engine = start(0);
+		engine.shutdown();
+
+		SQSEntryResult result = engine.acknowledge(QUEUE_URL, messages(1).get(0)).get(5, TimeUnit.SECONDS);
+
+		assertThat(result.success()).isFalse();
+	}
+
+	@Test
+	void failsCoalescedAcknowledgementsSubmittedAfterShutdown() throws Exception {
+		engine = start(20);
+		engine.shutdown();
+
+		List<SQSEntryResult> results = engine.acknowledge(QUEUE_URL, messages(3)).get(5, TimeUnit.SECONDS);
+
+		assertThat(results).hasSize(3).noneMatch(SQSEntryResult::success);
+	}
+
+	private SQSAcknowledgementEngine start(long coalesceWindowMillis) {
+		ApplicationProperties applicationProperties = new ApplicationProperties();
+		ReflectionTestUtils.setField(applicationProperties, "sqsAckParallelism", 2);
+		ReflectionTestUtils.setField(applicationProperties, "sqsAckCoalesceWindowMillis", coalesceWindowMillis);
+		ReflectionTestUtils.setField(applicationProperties, "sqsAckMaxRetries", 2);
+		return new SQSAcknowledgementEngine(sqsClient, applicationProperties,
+				new AWSThreadFactory(new MockEnvironment()));
+	}
+
+	private static List<Message> messages(int count) {
+		return IntStream.range(0, count)
+				.mapToObj(i -> Message.builder().messageId("m" + i).receiptHandle("handle-" + i).build())
+				.toList();
+	}
+}
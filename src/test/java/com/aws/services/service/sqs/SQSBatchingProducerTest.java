@@ -0,0 +1,133 @@
+package com.aws.services.service.sqs;
+
+import com.aws.services.config.AWSThreadFactory;
+import com.aws.services.config.ApplicationProperties;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.test.util.ReflectionTestUtils;
+import software.amazon.awssdk.services.sqs.SqsClient;
+import software.amazon.awssdk.services.sqs.model.SendMessageBatchRequest;
+import software.amazon.awssdk.services.sqs.model.SendMessageBatchRequestEntry;
+import software.amazon.awssdk.services.sqs.model.SendMessageBatchResponse;
+import software.amazon.awssdk.services.sqs.model.SendMessageBatchResultEntry;
+import software.amazon.awssdk.services.sqs.model.SendMessageRequest;
+import software.amazon.awssdk.services.sqs.model.SqsException;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class SQSBatchingProducerTest {
+
+	private static final String QUEUE_URL = "https://sqs.us-east-1.amazonaws.com/000000000000/queue";
+
+	private final List<SendMessageBatchRequest> requests = new CopyOnWriteArrayList<>();
+	private SQSBatchingProducer producer;
+
+	@BeforeEach
+	void setUp() {
+		SqsClient sqsClient = mock(SqsClient.class);
+		when(sqsClient.sendMessageBatch(any(SendMessageBatchRequest.class))).thenAnswer(invocation -> {
+			SendMessageBatchRequest request = invocation.getArgument(0);
+			requests.add(request);
+			return SendMessageBatchResponse.builder().successful(request.entries().stream()
+					.map(entry -> SendMessageBatchResultEntry.builder().id(entry.id())
+							.messageId("id-" + entry.messageBody().length()).build())
+					.toList()).build();
+		});
+		ApplicationProperties applicationProperties = new ApplicationProperties();
+		ReflectionTestUtils.setField(applicationProperties, "sqsProducerLingerMillis", 50L);
+		ReflectionTestUtils.setField(applicationProperties, "sqsProducerMaxInFlightBatches", 2);
+		ReflectionTestUtils.setField(applicationProperties, "sqsProducerMaxRetries", 3);
+		producer = new SQSBatchingProducer(sqsClient, applicationProperties, new AWSThreadFactory(new MockEnvironment()));
+	}
+
+	@AfterEach
+	void tearDown() throws InterruptedException {
+		producer.shutdown();
+	}
+
+	@Test
+	void flushesFullBatchesOfTenAndTheRestOnLinger() {
+		List<CompletableFuture<String>> sent = new ArrayList<>();
+		for (int i = 0; i < 25; i++) {
+			sent.add(producer.send(message("message-" + i)));
+		}
+
+		CompletableFuture.allOf(sent.toArray(new CompletableFuture<?>[0])).orTimeout(5, TimeUnit.SECONDS).join();
+
+		assertThat(requests).extracting(request -> request.entries().size()).containsExactlyInAnyOrder(10, 10, 5);
+	}
+
+	@Test
+	void keepsBatchesWithinTheRequestSizeLimit() {
+		String body = "x".repeat(100 * 1024);
+		List<CompletableFuture<String>> sent = new ArrayList<>();
+		for (int i = 0; i < 5; i++) {
+			sent.add(producer.send(message(body)));
+		}
+
+		CompletableFuture.allOf(sent.toArray(new CompletableFuture<?>[0])).orTimeout(5, TimeUnit.SECONDS).join();
+
+		assertThat(requests).extracting(request -> request.entries().size()).containsExactlyInAnyOrder(2, 2, 1);
+		assertThat(requests).allSatisfy(request -> assertThat(request.entries().stream()
+				.mapToInt(SQSBatchingProducerTest::payloadSize).sum())
+				.isLessThanOrEqualTo(SQSBatchingProducer.MAX_BATCH_BYTES));
+	}
+
+	@Test
+	void fillsABatchUpToExactlyTheRequestSizeLimit() {
+		String body = "x".repeat(SQSBatchingProducer.MAX_BATCH_BYTES / 2);
+		CompletableFuture<String> first = producer.send(message(body));
+		CompletableFuture<String> second = producer.send(message(body));
+
+		CompletableFuture.allOf(first, second).orTimeout(5, TimeUnit.SECONDS).join();
+
+		assertThat(requests).hasSize(1);
+		assertThat(requests.get(0).entries()).hasSize(2);
+	}
+
+	@Test
+	void rejectsAMessageAboveTheLimitWithoutSendingIt() {
+		CompletableFuture<String> sent = producer.send(message("x".repeat(SQSBatchingProducer.MAX_BATCH_BYTES + 1)));
+
+		assertThatThrownBy(sent::join).isInstanceOf(CompletionException.class).cause()
+				.isInstanceOfSatisfying(SqsException.class, e -> {
+					assertThat(e.statusCode()).isEqualTo(400);
+					assertThat(e.awsErrorDetails().errorCode()).isEqualTo("InvalidParameterValue");
+				});
+		assertThat(requests).isEmpty();
+	}
+
+	@Test
+	void sendAsyncBatchesLikeSend() {
+		List<CompletableFuture<String>> sent = new ArrayList<>();
+		for (int i = 0; i < 100; i++) {
+			sent.add(producer.sendAsync(message("message-" + i)));
+		}
+
+		CompletableFuture.allOf(sent.toArray(new CompletableFuture<?>[0])).orTimeout(5, TimeUnit.SECONDS).join();
+
+		assertThat(requests).hasSize(10);
+		assertThat(requests).allSatisfy(request -> assertThat(request.entries()).hasSize(10));
+	}
+
+	private static SendMessageRequest message(String body) {
+		return SendMessageRequest.builder().queueUrl(QUEUE_URL).messageBody(body).build();
+	}
+
+	private static int payloadSize(SendMessageBatchRequestEntry entry) {
+		return SQSBatchingProducer.payloadSize(entry.messageBody(), entry.messageAttributes());
+	}
+}
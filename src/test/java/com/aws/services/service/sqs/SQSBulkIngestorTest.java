@@ -0,0 +1,166 @@
+package com.aws.services.service.sqs;
+
+import com.aws.services.config.ApplicationProperties;
+import com.aws.services.model.SQSIngestResult;
+import com.aws.services.model.SQSIngestSummary;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import software.amazon.awssdk.services.sqs.SqsAsyncClient;
+import software.amazon.awssdk.services.sqs.model.SendMessageBatchRequest;
+import software.amazon.awssdk.services.sqs.model.SendMessageBatchRequestEntry;
+import software.amazon.awssdk.services.sqs.model.SendMessageBatchResponse;
+import software.amazon.awssdk.services.sqs.model.SendMessageBatchResultEntry;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class SQSBulkIngestorTest {
+
+	private static final String QUEUE_URL = "https://sqs.us-east-1.amazonaws.com/000000000000/queue.fifo";
+
+	private final List<SendMessageBatchRequest> requests = new CopyOnWriteArrayList<>();
+	private final AtomicInteger inFlight = new AtomicInteger();
+	private final AtomicInteger maxInFlight = new AtomicInteger();
+	private final ObjectMapper objectMapper = new ObjectMapper();
+	private SQSBulkIngestor ingestor;
+
+	@BeforeEach
+	void setUp() {
+		SqsAsyncClient sqsAsyncClient = mock(SqsAsyncClient.class);
+		when(sqsAsyncClient.sendMessageBatch(any(SendMessageBatchRequest.class))).thenAnswer(invocation -> {
+			SendMessageBatchRequest request = invocation.getArgument(0);
+			requests.add(request);
+			maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+			return CompletableFuture.supplyAsync(() -> {
+				inFlight.decrementAndGet();
+				return SendMessageBatchResponse.builder().successful(request.entries().stream()
+						.map(entry -> SendMessageBatchResultEntry.builder().id(entry.id())
+								.messageId("id-" + entry.id()).build())
+						.toList()).build();
+			}, CompletableFuture.delayedExecutor(5, TimeUnit.MILLISECONDS));
+		});
+		ApplicationProperties applicationProperties = new ApplicationProperties();
+		ReflectionTestUtils.setField(applicationProperties, "sqsCompressionCodec", "NONE");
+		ReflectionTestUtils.setField(applicationProperties, "sqsIngestMaxInFlightBatches", 16);
+		ReflectionTestUtils.setField(applicationProperties, "sqsIngestMaxLineBytes", 1024);
+		ingestor = new SQSBulkIngestor(sqsAsyncClient, new SQSPayloadCodec(applicationProperties),
+				applicationProperties, objectMapper);
+	}
+
+	@Test
+	void sendsOneBatchOfAGroupAtATimeInInputOrder() throws IOException {
+		SQSIngestSummary summary = ingestor.ingest(QUEUE_URL, "group", input(200), new ByteArrayOutputStream());
+
+		assertThat(summary.sent()).isEqualTo(200);
+		assertThat(maxInFlight).hasValue(1);
+		assertThat(requests.stream().flatMap(request -> request.entries().stream())
+				.map(SendMessageBatchRequestEntry::messageBody).toList()).isEqualTo(bodies(200));
+		assertThat(requests).allSatisfy(request -> assertThat(request.entries())
+				.allSatisfy(entry -> assertThat(entry.messageGroupId()).isEqualTo("group")));
+	}
+
+	@Test
+	void sendsBatchesInParallelWhenEveryLineHasItsOwnGroup() throws IOException {
+		SQSIngestSummary summary = ingestor.ingest(QUEUE_URL, null, input(200), new ByteArrayOutputStream());
+
+		assertThat(summary.sent()).isEqualTo(200);
+		assertThat(maxInFlight.get()).isGreaterThan(1);
+		assertThat(requests.stream().flatMap(request -> request.entries().stream())
+				.map(SendMessageBatchRequestEntry::messageGroupId).distinct()).hasSize(200);
+	}
+
+	@Test
+	void reportsEveryLineInInputOrder() throws IOException {
+		String input = "first\r\n\n   \nsecond\n" + "x".repeat(2000) + "\nlast";
+		ByteArrayOutputStream report = new ByteArrayOutputStream();
+
+		SQSIngestSummary summary = ingestor.ingest(QUEUE_URL, null,
+				new ByteArrayInputStream(input.getBytes(StandardCharsets.UTF_8)), report);
+
+		List<SQSIngestResult> results = new ArrayList<>();
+		String[] reportLines = report.toString(StandardCharsets.UTF_8).split("\n");
+		for (int i = 0; i < reportLines.length - 1; i++) {
+			results.add(objectMapper.readValue(reportLines[i], SQSIngestResult.class));
+		}
+		assertThat(results).extracting(SQSIngestResult::line).containsExactly(1L, 4L, 5L, 6L);
+		assertThat(results).extracting(SQSIngestResult::success).containsExactly(true, true, false, true);
+		assertThat(results.get(2).errorCode()).isEqualTo("LineTooLong");
+		assertThat(summary.lines()).isEqualTo(4);
+		assertThat(summary.failed()).isEqualTo(1);
+	}
+
+	@Test
+	void lineReaderStripsTheCarriageReturnOfCrlf() throws IOException {
+		SQSBulkIngestor.LineReader lineReader = lineReader("first\r\nsecond\r\n", 1024);
+
+		assertThat(lines(lineReader)).containsExactly("first", "second");
+	}
+
+	@Test
+	void lineReaderReturnsALastLineWithoutNewline() throws IOException {
+		SQSBulkIngestor.LineReader lineReader = lineReader("first\nlast", 1024);
+
+		assertThat(lines(lineReader)).containsExactly("first", "last");
+		assertThat(lineReader.lineNumber()).isEqualTo(2);
+	}
+
+	@Test
+	void lineReaderKeepsBlankLinesAndTheirNumbers() throws IOException {
+		SQSBulkIngestor.LineReader lineReader = lineReader("\n\r\nthird\n", 1024);
+
+		assertThat(lines(lineReader)).containsExactly("", "", "third");
+		assertThat(lineReader.lineNumber()).isEqualTo(3);
+	}
+
+	@Test
+	void lineReaderSkipsOverLongLines() throws IOException {
+		SQSBulkIngestor.LineReader lineReader = lineReader("12345\n123456\n1234\r\n12345\r\n" + "y".repeat(200_000)
+				+ "\nend", 5);
+
+		assertThat(lines(lineReader)).containsExactly("12345", null, "1234", "12345", null, "end");
+		assertThat(lineReader.lineNumber()).isEqualTo(6);
+	}
+
+	private static SQSBulkIngestor.LineReader lineReader(String input, int maxLineBytes) {
+		return new SQSBulkIngestor.LineReader(new ByteArrayInputStream(input.getBytes(StandardCharsets.UTF_8)),
+				maxLineBytes);
+	}
+
+	/**
+	 * @return The lines read, null for each line that was too long.
+	 */
+	private static List<String> lines(SQSBulkIngestor.LineReader lineReader) throws IOException {
+		List<String> lines = new ArrayList<>();
+		while (lineReader.next()) {
+			lines.add(lineReader.isTooLong() ? null : lineReader.line());
+		}
+		return lines;
+	}
+
+	private static ByteArrayInputStream input(int lines) {
+		return new ByteArrayInputStream((String.join("\n", bodies(lines)) + "\n").getBytes(StandardCharsets.UTF_8));
+	}
+
+	private static List<String> bodies(int lines) {
+		List<String> bodies = new ArrayList<>(lines);
+		for (int i = 0; i < lines; i++) {
+			bodies.add("{\"n\":" + i + "}");
+		}
+		return bodies;
+	}
+}
@@ -0,0 +1,182 @@
+package com.aws.services.service.sqs;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SQSGroupDispatcherTest {
+
+	private final ExecutorService executor = Executors.newCachedThreadPool();
+
+	@AfterEach
+	void tearDown() {
+		executor.shutdownNow();
+	}
+
+	@Test
+	void runsTheTasksOfEachGroupOneAtATimeInOrder() throws Exception {
+		Semaphore slots = new Semaphore(4);
+		SQSGroupDispatcher dispatcher = new SQSGroupDispatcher(executor, slots, 3);
+		Map<String, List<Integer>> seen = new ConcurrentHashMap<>();
+		Map<String, AtomicInteger> running = new ConcurrentHashMap<>();
+		AtomicInteger overlaps = new AtomicInteger();
+		CountDownLatch done = new CountDownLatch(8 * 200);
+
+		for (int i = 0; i < 200; i++) {
+			for (int group = 0; group < 8; group++) {
+				String groupId = "group-" + group;
+				int sequence = i;
+				dispatcher.execute(groupId, () -> {
+					if (running.computeIfAbsent(groupId, id -> new AtomicInteger()).incrementAndGet() > 1) {
+						overlaps.incrementAndGet();
+					}
+					seen.computeIfAbsent(groupId, id -> new ArrayList<>()).add(sequence);
+					running.get(groupId).decrementAndGet();
+					done.countDown();
+				});
+			}
+		}
+
+		assertThat(done.await(10, TimeUnit.SECONDS)).isTrue();
+		assertThat(overlaps).hasValue(0);
+		assertThat(seen).hasSize(8).allSatisfy((groupId, sequences) -> assertThat(sequences).isSorted().hasSize(200));
+		awaitSlots(slots, 4);
+	}
+
+	@Test
+	void aBusyGroupDoesNotHoldBackOtherStripes() throws Exception {
+		Semaphore slots = new Semaphore(2);
+		SQSGroupDispatcher dispatcher = new SQSGroupDispatcher(executor, slots, 64);
+		CountDownLatch release = new CountDownLatch(1);
+		CountDownLatch otherDone = new CountDownLatch(1);
+		String busy = "busy";
+		String other = otherStripeThan(busy, 64);
+
+		for (int i = 0; i < 10; i++) {
+			dispatcher.execute(busy, () -> await(release));
+		}
+		dispatcher.execute(other, otherDone::countDown);
+
+		// The busy group holds a single slot however many of its tasks are queued
+		assertThat(otherDone.await(5, TimeUnit.SECONDS)).isTrue();
+		release.countDown();
+		awaitSlots(slots, 2);
+	}
+
+	@Test
+	void anotherStripeKeepsRunningWhileOneHasALongBacklog() throws Exception {
+		Semaphore slots = new Semaphore(2);
+		SQSGroupDispatcher dispatcher = new SQSGroupDispatcher(executor, slots, 64);
+		CountDownLatch release = new CountDownLatch(1);
+		CountDownLatch otherDone = new CountDownLatch(1);
+		String first = "first";
+		String second = sameStripeAs(first, 64);
+		String other = otherStripeThan(first, 64);
+
+		// Two groups sharing a stripe queue far more than one receive batch without blocking the caller
+		for (int i = 0; i < 100; i++) {
+			dispatcher.execute(i % 2 == 0 ? first : second, () -> await(release));
+		}
+		dispatcher.execute(other, otherDone::countDown);
+
+		assertThat(otherDone.await(5, TimeUnit.SECONDS)).isTrue();
+		release.countDown();
+		awaitSlots(slots, 2);
+	}
+
+	@Test
+	void ungroupedTasksTakeAndReturnASlotEach() throws Exception {
+		Semaphore slots = new Semaphore(2);
+		SQSGroupDispatcher dispatcher = new SQSGroupDispatcher(executor, slots, 4);
+		CountDownLatch release = new CountDownLatch(1);
+		CountDownLatch done = new CountDownLatch(3);
+
+		dispatcher.execute(null, () -> {
+			await(release);
+			done.countDown();
+		});
+		dispatcher.execute(null, () -> {
+			await(release);
+			done.countDown();
+		});
+		assertThat(slots.availablePermits()).isZero();
+		Thread third = new Thread(() -> {
+			try {
+				dispatcher.execute(null, done::countDown);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		});
+		third.start();
+
+		assertThat(done.await(200, TimeUnit.MILLISECONDS)).isFalse();
+		assertThat(done.getCount()).isEqualTo(3);
+		release.countDown();
+		assertThat(done.await(5, TimeUnit.SECONDS)).isTrue();
+		third.join();
+		awaitSlots(slots, 2);
+	}
+
+	@Test
+	void aFailingTaskDoesNotStopItsGroup() throws Exception {
+		Semaphore slots = new Semaphore(1);
+		SQSGroupDispatcher dispatcher = new SQSGroupDispatcher(executor, slots, 1);
+		CountDownLatch done = new CountDownLatch(1);
+
+		dispatcher.execute("group", () -> {
+			throw new IllegalStateException("handler failed");
+		});
+		dispatcher.execute("group", done::countDown);
+
+		assertThat(done.await(5, TimeUnit.SECONDS)).isTrue();
+		awaitSlots(slots, 1);
+	}
+
+	private static String otherStripeThan(String groupId, int stripes) {
+		int stripe = stripeOf(groupId, stripes);
+		for (int i = 0; ; i++) {
+			if (stripeOf("other-" + i, stripes) != stripe) {
+				return "other-" + i;
+			}
+		}
+	}
+
+	private static String sameStripeAs(String groupId, int stripes) {
+		int stripe = stripeOf(groupId, stripes);
+		for (int i = 0; ; i++) {
+			if (stripeOf("same-" + i, stripes) == stripe) {
+				return "same-" + i;
+			}
+		}
+	}
+
+	private static int stripeOf(String groupId, int stripes) {
+		int hash = groupId.hashCode();
+		return Math.floorMod(hash ^ (hash >>> 16), stripes);
+	}
+
+	private static void await(CountDownLatch latch) {
+		try {
+			latch.await();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private static void awaitSlots(Semaphore slots, int permits) throws InterruptedException {
+		assertThat(slots.tryAcquire(permits, 5, TimeUnit.SECONDS)).as("all slots returned").isTrue();
+		slots.release(permits);
+	}
+}
@@ -0,0 +1,203 @@
+package com.aws.services.service.sqs;
+
+import com.aws.services.config.AWSThreadFactory;
+import com.aws.services.config.ApplicationProperties;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.test.util.ReflectionTestUtils;
+import software.amazon.awssdk.services.sqs.model.SendMessageRequest;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class SQSOutboundSpoolTest {
+
+	private static final String QUEUE = "queue";
+
+	@TempDir
+	Path directory;
+
+	private final List<String> sentBodies = new CopyOnWriteArrayList<>();
+	private final List<SQSOutboundSpool> spools = new ArrayList<>();
+	private SQSBatchingProducer sqsBatchingProducer;
+	private SQSQueueRegistry sqsQueueRegistry;
+	private ApplicationProperties applicationProperties;
+
+	@BeforeEach
+	void setUp() {
+		sqsBatchingProducer = mock(SQSBatchingProducer.class);
+		when(sqsBatchingProducer.send(any(SendMessageRequest.class))).thenAnswer(invocation -> {
+			sentBodies.add(invocation.<SendMessageRequest>getArgument(0).messageBody());
+			return CompletableFuture.completedFuture("id-" + sentBodies.size());
+		});
+		sqsQueueRegistry = mock(SQSQueueRegistry.class);
+		when(sqsQueueRegistry.getQueueUrl(anyString())).thenReturn("https://sqs.us-east-1.amazonaws.com/000000000000/queue");
+		applicationProperties = new ApplicationProperties();
+		ReflectionTestUtils.setField(applicationProperties, "sqsSpoolEnabled", true);
+		ReflectionTestUtils.setField(applicationProperties, "sqsSpoolDirectory", directory.toString());
+		ReflectionTestUtils.setField(applicationProperties, "sqsSpoolSegmentBytes", 1L << 20);
+		ReflectionTestUtils.setField(applicationProperties, "sqsSpoolMaxBytes", 2L << 20);
+		ReflectionTestUtils.setField(applicationProperties, "sqsSpoolMaxWaitMillis", 100L);
+		ReflectionTestUtils.setField(applicationProperties, "sqsSpoolCheckpointIntervalMillis", 20L);
+	}
+
+	@AfterEach
+	void tearDown() throws InterruptedException {
+		for (SQSOutboundSpool spool : spools) {
+			spool.shutdown();
+		}
+	}
+
+	@Test
+	void replaysMessagesNotSentBeforeARestart() throws Exception {
+		SQSOutboundSpool first = open();
+		append(first, "one", "two", "three");
+		first.shutdown();
+		spools.remove(first);
+
+		SQSOutboundSpool second = open();
+		assertThat(second.getStats()).containsEntry("depthMessages", 3L).containsEntry("replayed", 3L);
+		append(second, "four");
+		second.start();
+		awaitDrained(second);
+
+		assertThat(sentBodies).containsExactly("one", "two", "three", "four");
+	}
+
+	@Test
+	void doesNotReplayMessagesBelowTheCheckpoint() throws Exception {
+		SQSOutboundSpool first = open();
+		append(first, "one", "two");
+		first.start();
+		awaitDrained(first);
+		first.shutdown();
+		spools.remove(first);
+
+		SQSOutboundSpool second = open();
+
+		assertThat(second.getStats()).containsEntry("depthMessages", 0L).containsEntry("replayed", 0L);
+		assertThat(sentBodies).containsExactly("one", "two");
+	}
+
+	@Test
+	void dropsATornRecordAtTheEndOfTheLog() throws Exception {
+		SQSOutboundSpool first = open();
+		append(first, "one", "two");
+		first.shutdown();
+		spools.remove(first);
+		try (FileChannel channel = FileChannel.open(segmentFile(), StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+			MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, channel.size());
+			int end = recordPositions(buffer).get(2);
+			// A header whose payload was never written completely: the checksum does not match
+			buffer.putInt(end, 300);
+			buffer.putInt(end + 4, 12345);
+			buffer.put(end + 8, (byte) 7);
+			buffer.force();
+		}
+
+		SQSOutboundSpool second = open();
+		assertThat(second.getStats()).containsEntry("depthMessages", 2L);
+		append(second, "three");
+		second.start();
+		awaitDrained(second);
+
+		assertThat(sentBodies).containsExactly("one", "two", "three");
+	}
+
+	@Test
+	void truncatesTheLogAtARecordWithACorruptPayload() throws Exception {
+		SQSOutboundSpool first = open();
+		append(first, "one", "two", "three");
+		first.shutdown();
+		spools.remove(first);
+		try (FileChannel channel = FileChannel.open(segmentFile(), StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+			MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, channel.size());
+			int second = recordPositions(buffer).get(1);
+			buffer.put(second + 8, (byte) (buffer.get(second + 8) ^ 0xFF));
+			buffer.force();
+		}
+
+		SQSOutboundSpool second = open();
+		second.start();
+		awaitDrained(second);
+
+		assertThat(second.getStats()).containsEntry("replayed", 1L);
+		assertThat(sentBodies).containsExactly("one");
+	}
+
+	@Test
+	void rejectsAppendsOnceTheSpoolStaysFull() throws Exception {
+		SQSOutboundSpool spool = open();
+		String body = "x".repeat(1000);
+
+		assertThatThrownBy(() -> {
+			for (int i = 0; i < 10_000; i++) {
+				append(spool, body);
+			}
+		}).isInstanceOf(SQSSpoolFullException.class);
+		assertThat(spool.getStats()).containsEntry("rejected", 1L);
+	}
+
+	private SQSOutboundSpool open() {
+		SQSOutboundSpool spool = new SQSOutboundSpool(sqsBatchingProducer, sqsQueueRegistry, applicationProperties,
+				new AWSThreadFactory(new MockEnvironment()));
+		spools.add(spool);
+		return spool;
+	}
+
+	private static void append(SQSOutboundSpool spool, String... bodies) throws IOException {
+		for (String body : bodies) {
+			spool.append(QUEUE, SendMessageRequest.builder().messageBody(body).build());
+		}
+	}
+
+	private static void awaitDrained(SQSOutboundSpool spool) throws InterruptedException {
+		long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+		while (spool.getStats().get("depthMessages") > 0) {
+			assertThat(System.nanoTime()).as("spool drained in time").isLessThan(deadline);
+			Thread.sleep(10);
+		}
+	}
+
+	private Path segmentFile() throws IOException {
+		try (Stream<Path> files = Files.list(directory)) {
+			List<Path> segments = files.filter(file -> file.toString().endsWith(SQSOutboundSpool.SEGMENT_SUFFIX)).toList();
+			assertThat(segments).hasSize(1);
+			return segments.get(0);
+		}
+	}
+
+	/**
+	 * @return The position of every record, followed by the end of the last one.
+	 */
+	private static List<Integer> recordPositions(MappedByteBuffer buffer) {
+		List<Integer> positions = new ArrayList<>();
+		int position = 0;
+		while (buffer.getInt(position) > 0) {
+			positions.add(position);
+			position += 8 + buffer.getInt(position);
+		}
+		positions.add(position);
+		return positions;
+	}
+}
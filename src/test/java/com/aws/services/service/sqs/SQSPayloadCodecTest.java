@@ -0,0 +1,120 @@
+package com.aws.services.service.sqs;
+
+import com.aws.services.config.ApplicationProperties;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.springframework.test.util.ReflectionTestUtils;
+import software.amazon.awssdk.services.sqs.model.Message;
+import software.amazon.awssdk.services.sqs.model.SendMessageRequest;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SQSPayloadCodecTest {
+
+	private static final String BODY = "{\"order\":12345,\"items\":[" + "{\"sku\":\"ABC-123\",\"quantity\":1},".repeat(200)
+			+ "{}]}";
+
+	@ParameterizedTest
+	@ValueSource(strings = {"gzip", "deflate"})
+	void restoresTheBodyOfAnEncodedMessage(String codecName) {
+		SQSPayloadCodec codec = codec(codecName, 1024 * 1024);
+
+		SendMessageRequest encoded = codec.encode(request(BODY));
+
+		assertThat(encoded.messageBody().length()).isLessThan(BODY.length());
+		assertThat(encoded.messageAttributes().get(SQSPayloadCodec.CONTENT_ENCODING).stringValue())
+				.isEqualTo(codecName);
+		assertThat(codec.decode(received(encoded)).body()).isEqualTo(BODY);
+		assertThat(codec.getStats()).containsEntry("encoded", 1L).containsEntry("decoded", 1L);
+	}
+
+	@ParameterizedTest
+	@ValueSource(strings = {"gzip", "deflate"})
+	void restoresTheBodyOfAnEncodedMessageAsAStream(String codecName) throws IOException {
+		SQSPayloadCodec codec = codec(codecName, 1024 * 1024);
+		SendMessageRequest encoded = codec.encode(request(BODY));
+
+		try (InputStream body = codec.decode(received(encoded),
+				new ByteArrayInputStream(encoded.messageBody().getBytes(StandardCharsets.US_ASCII)))) {
+			assertThat(new String(body.readAllBytes(), StandardCharsets.UTF_8)).isEqualTo(BODY);
+		}
+	}
+
+	@Test
+	void sendsSmallBodiesUnchanged() {
+		SQSPayloadCodec codec = codec("gzip", 1024 * 1024);
+		SendMessageRequest request = request("{\"small\":true}");
+
+		assertThat(codec.encode(request)).isSameAs(request);
+	}
+
+	@Test
+	void sendsBodiesThatDoNotShrinkUnchanged() {
+		SQSPayloadCodec codec = codec("gzip", 1024 * 1024);
+		byte[] random = new byte[4096];
+		new Random(1).nextBytes(random);
+		SendMessageRequest request = request(Base64.getEncoder().encodeToString(random));
+
+		assertThat(codec.encode(request)).isSameAs(request);
+		assertThat(codec.getStats()).containsEntry("skipped", 1L);
+	}
+
+	@ParameterizedTest
+	@ValueSource(strings = {"gzip", "deflate"})
+	void leavesABodyThatDecodesBeyondTheLimitUndecoded(String codecName) {
+		// A few KB on the wire that inflate to 16 MB
+		String bomb = "0".repeat(16 * 1024 * 1024);
+		Message message = received(codec(codecName, Integer.MAX_VALUE - 1).encode(request(bomb)));
+		assertThat(message.body().length()).isLessThan(100 * 1024);
+		SQSPayloadCodec codec = codec(codecName, 1024 * 1024);
+
+		Message decoded = codec.decode(message);
+
+		assertThat(decoded).isSameAs(message);
+		assertThat(codec.getStats()).containsEntry("decoded", 0L).containsEntry("decodeFailures", 1L);
+	}
+
+	@Test
+	void decodesABodyOfExactlyTheLimit() {
+		String body = "0".repeat(64 * 1024);
+		Message message = received(codec("gzip", body.length()).encode(request(body)));
+
+		assertThat(codec("gzip", body.length()).decode(message).body()).isEqualTo(body);
+	}
+
+	@Test
+	void leavesAMalformedBodyUndecoded() {
+		SendMessageRequest encoded = codec("gzip", 1024 * 1024).encode(request(BODY));
+		Message message = received(encoded).toBuilder().body("not base64 !").build();
+		SQSPayloadCodec codec = codec("gzip", 1024 * 1024);
+
+		assertThat(codec.decode(message)).isSameAs(message);
+		assertThat(codec.getStats()).containsEntry("decodeFailures", 1L);
+	}
+
+	private static SQSPayloadCodec codec(String codecName, int maxDecodedBytes) {
+		ApplicationProperties applicationProperties = new ApplicationProperties();
+		ReflectionTestUtils.setField(applicationProperties, "sqsCompressionCodec", codecName);
+		ReflectionTestUtils.setField(applicationProperties, "sqsCompressionMinBytes", 1024);
+		ReflectionTestUtils.setField(applicationProperties, "sqsCompressionMaxDecodedBytes", maxDecodedBytes);
+		return new SQSPayloadCodec(applicationProperties);
+	}
+
+	private static SendMessageRequest request(String body) {
+		return SendMessageRequest.builder().queueUrl("https://sqs.us-east-1.amazonaws.com/000000000000/queue")
+				.messageBody(body).build();
+	}
+
+	private static Message received(SendMessageRequest sent) {
+		return Message.builder().messageId("id").body(sent.messageBody()).messageAttributes(sent.messageAttributes())
+				.build();
+	}
+}
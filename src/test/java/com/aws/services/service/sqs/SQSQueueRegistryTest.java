@@ -0,0 +1,138 @@
+package com.aws.services.service.sqs;
+
+import com.aws.services.config.ApplicationProperties;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import software.amazon.awssdk.services.sqs.SqsAsyncClient;
+import software.amazon.awssdk.services.sqs.SqsClient;
+import software.amazon.awssdk.services.sqs.model.GetQueueUrlRequest;
+import software.amazon.awssdk.services.sqs.model.GetQueueUrlResponse;
+import software.amazon.awssdk.services.sqs.model.QueueDoesNotExistException;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class SQSQueueRegistryTest {
+
+	private static final String URL_PREFIX = "https://sqs.us-east-1.amazonaws.com/000000000000/";
+
+	// The queue names GetQueueUrl was called for
+	private final List<String> lookups = new CopyOnWriteArrayList<>();
+	private final SqsClient sqsClient = mock(SqsClient.class);
+	private final ApplicationProperties applicationProperties = new ApplicationProperties();
+
+	@BeforeEach
+	void setUp() {
+		when(sqsClient.getQueueUrl(any(GetQueueUrlRequest.class))).thenAnswer(invocation -> {
+			String queueName = invocation.<GetQueueUrlRequest>getArgument(0).queueName();
+			lookups.add(queueName);
+			if (queueName.startsWith("missing")) {
+				throw QueueDoesNotExistException.builder().message("The specified queue does not exist").build();
+			}
+			return GetQueueUrlResponse.builder().queueUrl(URL_PREFIX + queueName).build();
+		});
+		ReflectionTestUtils.setField(applicationProperties, "sqsQueueUrlCacheTtlSeconds", 300L);
+		ReflectionTestUtils.setField(applicationProperties, "sqsQueueUrlCacheNegativeTtlSeconds", 10L);
+		ReflectionTestUtils.setField(applicationProperties, "sqsQueueUrlCacheMaxSize", 100);
+	}
+
+	@Test
+	void servesRepeatedLookupsFromTheCache() {
+		SQSQueueRegistry registry = registry();
+
+		assertThat(registry.getQueueUrl("queue")).isEqualTo(URL_PREFIX + "queue");
+		assertThat(registry.getQueueUrl("queue")).isEqualTo(URL_PREFIX + "queue");
+		assertThat(registry.getQueueUrlAsync("queue").join()).isEqualTo(URL_PREFIX + "queue");
+
+		assertThat(lookups).containsExactly("queue");
+		assertThat(registry.getStats()).containsEntry("hits", 2L).containsEntry("misses", 1L);
+	}
+
+	@Test
+	void looksUpAgainOnceTheEntryExpired() {
+		ReflectionTestUtils.setField(applicationProperties, "sqsQueueUrlCacheTtlSeconds", 0L);
+		SQSQueueRegistry registry = registry();
+
+		registry.getQueueUrl("queue");
+		registry.getQueueUrl("queue");
+
+		assertThat(lookups).containsExactly("queue", "queue");
+	}
+
+	@Test
+	void cachesQueuesThatDoNotExist() {
+		SQSQueueRegistry registry = registry();
+
+		assertThatThrownBy(() -> registry.getQueueUrl("missing")).isInstanceOf(QueueDoesNotExistException.class);
+		assertThatThrownBy(() -> registry.getQueueUrl("missing")).isInstanceOf(QueueDoesNotExistException.class);
+
+		assertThat(lookups).containsExactly("missing");
+		assertThat(registry.getStats()).containsEntry("negativeHits", 1L);
+	}
+
+	@Test
+	void invalidateDropsOnlyTheStaleUrl() {
+		SQSQueueRegistry registry = registry();
+		registry.getQueueUrl("queue");
+
+		registry.invalidate("queue", URL_PREFIX + "other");
+		registry.getQueueUrl("queue");
+		assertThat(lookups).containsExactly("queue");
+
+		registry.invalidate("queue", URL_PREFIX + "queue");
+		registry.getQueueUrl("queue");
+		assertThat(lookups).containsExactly("queue", "queue");
+	}
+
+	@Test
+	void evictsQueuesThatDoNotExistBeforeQueuesInUse() {
+		ReflectionTestUtils.setField(applicationProperties, "sqsQueueUrlCacheMaxSize", 3);
+		SQSQueueRegistry registry = registry();
+		registry.getQueueUrl("hot-1");
+		registry.getQueueUrl("hot-2");
+
+		for (int i = 0; i < 50; i++) {
+			String queueName = "missing-" + i;
+			assertThatThrownBy(() -> registry.getQueueUrl(queueName)).isInstanceOf(QueueDoesNotExistException.class);
+		}
+		lookups.clear();
+		registry.getQueueUrl("hot-1");
+		registry.getQueueUrl("hot-2");
+
+		assertThat(lookups).isEmpty();
+		assertThat(registry.getStats()).containsEntry("size", 3L).containsEntry("evictions", 49L);
+	}
+
+	@Test
+	void evictsTheLeastRecentlyUsedQueue() throws InterruptedException {
+		ReflectionTestUtils.setField(applicationProperties, "sqsQueueUrlCacheMaxSize", 3);
+		SQSQueueRegistry registry = registry();
+		registry.getQueueUrl("a");
+		registry.getQueueUrl("b");
+		registry.getQueueUrl("c");
+		Thread.sleep(5);
+		registry.getQueueUrl("a");
+		registry.getQueueUrl("c");
+
+		registry.getQueueUrl("d");
+		lookups.clear();
+		registry.getQueueUrl("a");
+		registry.getQueueUrl("c");
+		registry.getQueueUrl("d");
+		assertThat(lookups).isEmpty();
+
+		registry.getQueueUrl("b");
+		assertThat(lookups).containsExactly("b");
+	}
+
+	private SQSQueueRegistry registry() {
+		return new SQSQueueRegistry(sqsClient, mock(SqsAsyncClient.class), applicationProperties);
+	}
+}